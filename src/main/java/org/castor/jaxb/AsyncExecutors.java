@@ -0,0 +1,209 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the asynchronous marshalling and unmarshalling tasks of the {@link MarshallerTemplate} and {@link
+ * UnmarshallerTemplate}.
+ * <p/>
+ * The default executor starts a virtual thread per task when the running JVM provides them, and otherwise runs the
+ * tasks on a shared pool of as many daemon threads as there are processors. The pool queues at most {@link
+ * #QUEUE_CAPACITY} tasks, any further task is run by the thread submitting it. The chunks of the sequences are run
+ * by a {@link #getSequenceExecutor() sequence executor} of the same kind but distinct from the default one, so that
+ * an asynchronous task waiting for its chunks never waits for a thread that it occupies itself.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+final class AsyncExecutors {
+
+    /**
+     * Logger used by this class.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncExecutors.class);
+
+    /**
+     * Represents the name of the factory method of the virtual thread per task executor.
+     */
+    private static final String VIRTUAL_THREAD_EXECUTOR_METHOD = "newVirtualThreadPerTaskExecutor";
+
+    /**
+     * Represents the prefix of the names of the default pool threads.
+     */
+    private static final String THREAD_NAME_PREFIX = "castor-jaxb-async-";
+
+    /**
+     * Represents the prefix of the names of the sequence pool threads.
+     */
+    private static final String SEQUENCE_THREAD_NAME_PREFIX = "castor-jaxb-sequence-";
+
+    /**
+     * Represents the maximal number of tasks waiting for a thread of the default pool.
+     */
+    static final int QUEUE_CAPACITY = 1024;
+
+    /**
+     * Creates new instance of {@link AsyncExecutors} class. Private constructor prevents from instantiation outside
+     * this class.
+     */
+    private AsyncExecutors() {
+        // empty constructor
+    }
+
+    /**
+     * Retrieves the default executor, created on the first use.
+     *
+     * @return the default executor
+     */
+    static Executor getDefaultExecutor() {
+        return DefaultExecutorHolder.EXECUTOR;
+    }
+
+    /**
+     * Retrieves the executor of the chunks of the sequences, created on the first use.
+     *
+     * @return the sequence executor
+     */
+    static Executor getSequenceExecutor() {
+        return SequenceExecutorHolder.EXECUTOR;
+    }
+
+    /**
+     * Submits the task to the given executor.
+     *
+     * @param task     the task to run
+     * @param executor the executor to run the task with
+     * @param <T>      the type of the task result
+     *
+     * @return the future result of the task
+     *
+     * @throws IllegalArgumentException if executor is null
+     * @throws java.util.concurrent.RejectedExecutionException
+     *                                  if the executor does not accept the task
+     */
+    static <T> Future<T> submit(Callable<T> task, Executor executor) {
+        CastorJAXBUtils.checkNotNull(executor, "executor");
+
+        FutureTask<T> future = new FutureTask<T>(task);
+        executor.execute(future);
+        return future;
+    }
+
+    /**
+     * Creates an executor of virtual threads if the JVM provides them, otherwise of a bounded pool of daemon threads.
+     *
+     * @param threadNamePrefix the prefix of the names of the pool threads
+     *
+     * @return the executor
+     */
+    private static Executor createExecutor(String threadNamePrefix) {
+
+        try {
+            // the virtual threads are looked up reflectively, as they are not available on every supported JVM
+            Executor executor = (Executor) Executors.class.getMethod(VIRTUAL_THREAD_EXECUTOR_METHOD).invoke(null);
+
+            LOG.debug("Running the asynchronous tasks on virtual threads.");
+            return executor;
+        } catch (Exception e) {
+            LOG.debug("Virtual threads are not available, running the asynchronous tasks on a thread pool.");
+        }
+
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        return new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(QUEUE_CAPACITY), new DaemonThreadFactory(threadNamePrefix),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Holds the default executor, so that it is only created when needed.
+     *
+     * @author Jakub Narloch, jmnarloch AT gmail DOT org
+     * @version 1.0
+     */
+    private static final class DefaultExecutorHolder {
+
+        /**
+         * Represents the default executor.
+         */
+        private static final Executor EXECUTOR = createExecutor(THREAD_NAME_PREFIX);
+    }
+
+    /**
+     * Holds the sequence executor, so that it is only created when needed.
+     *
+     * @author Jakub Narloch, jmnarloch AT gmail DOT org
+     * @version 1.0
+     */
+    private static final class SequenceExecutorHolder {
+
+        /**
+         * Represents the sequence executor.
+         */
+        private static final Executor EXECUTOR = createExecutor(SEQUENCE_THREAD_NAME_PREFIX);
+    }
+
+    /**
+     * Creates the named daemon threads of a pool, which never prevent the JVM from exiting.
+     *
+     * @author Jakub Narloch, jmnarloch AT gmail DOT org
+     * @version 1.0
+     */
+    private static final class DaemonThreadFactory implements ThreadFactory {
+
+        /**
+         * Represents the number of the created threads.
+         */
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        /**
+         * Represents the prefix of the names of the created threads.
+         */
+        private final String threadNamePrefix;
+
+        /**
+         * Creates new instance of {@link DaemonThreadFactory} class.
+         *
+         * @param threadNamePrefix the prefix of the names of the created threads
+         */
+        DaemonThreadFactory(String threadNamePrefix) {
+            this.threadNamePrefix = threadNamePrefix;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public Thread newThread(Runnable runnable) {
+
+            Thread thread = new Thread(runnable, threadNamePrefix + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An {@link OutputStream} putting the bytes into a {@link ByteBuffer}, heap or direct, starting at its position. The
+ * buffer is not expanded, a write that does not fit into the remaining space fails without changing the buffer.
+ * <p/>
+ * This class is not thread safe.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+final class ByteBufferOutputStream extends OutputStream {
+
+    /**
+     * Represents the underlying buffer.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Creates new instance of {@link ByteBufferOutputStream} class.
+     *
+     * @param buffer the underlying buffer
+     *
+     * @throws IllegalArgumentException if buffer is null
+     */
+    ByteBufferOutputStream(ByteBuffer buffer) {
+        CastorJAXBUtils.checkNotNull(buffer, "buffer");
+
+        this.buffer = buffer;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(int b) throws IOException {
+
+        ensureRemaining(1);
+        buffer.put((byte) b);
+    }
+
+    /**
+     * Puts the bytes into the buffer.
+     *
+     * @param b   the bytes
+     * @param off the offset of the first byte to put
+     * @param len the number of bytes to put
+     *
+     * @throws IOException if the bytes do not fit into the remaining space of the buffer
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+
+        ensureRemaining(len);
+        buffer.put(b, off, len);
+    }
+
+    /**
+     * Checks that the buffer has room for the given number of bytes.
+     *
+     * @param length the number of bytes
+     *
+     * @throws IOException if the buffer has not enough room
+     */
+    private void ensureRemaining(int length) throws IOException {
+
+        if (buffer.remaining() < length) {
+            throw new IOException("The buffer has not enough room for the marshalled output, " + buffer.remaining()
+                    + " bytes remaining.");
+        }
+    }
+}
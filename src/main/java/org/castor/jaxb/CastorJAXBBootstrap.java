@@ -0,0 +1,294 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb;
+
+import org.castor.jaxb.naming.JAXBJavaNaming;
+import org.castor.jaxb.naming.JAXBXmlNaming;
+import org.castor.jaxb.reflection.ClassInfoBuilder;
+import org.castor.jaxb.reflection.ClassInfoCache;
+import org.castor.jaxb.resolver.JAXBAdapterRegistry;
+import org.castor.jaxb.resolver.JAXBResolverStrategy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+/**
+ * Holds the annotation processing graph shared by all {@link CastorJAXBContext} instances of the JVM.
+ * <p/>
+ * The graph (the naming services, the annotation processing services and the {@link ClassInfoBuilder}) is
+ * stateless once wired, so it is built only once, on first use. Everything that carries per context state, as
+ * the {@link JAXBAdapterRegistry} and the descriptor builder and resolver commands referring to it, is created
+ * for every context by {@link #createResolverStrategy(JAXBAdapterRegistry)}.
+ * <p/>
+ * The graph is read from <code>castor-jaxb-context.xml</code> when Spring is available on the classpath and is
+ * otherwise wired in plain Java by {@link CastorJAXBRuntimeBuilder}. The choice can be forced through the
+ * {@link #WIRING_PROPERTY} system property, set to either {@link #WIRING_SPRING} or {@link #WIRING_PROGRAMMATIC}.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+final class CastorJAXBBootstrap {
+
+    /**
+     * Represents the name of the system property selecting how the processing graph is wired.
+     */
+    static final String WIRING_PROPERTY = "org.castor.jaxb.wiring";
+
+    /**
+     * Represents the wiring reading the graph from the Spring configuration.
+     */
+    static final String WIRING_SPRING = "spring";
+
+    /**
+     * Represents the wiring building the graph in plain Java.
+     */
+    static final String WIRING_PROGRAMMATIC = "programmatic";
+
+    /**
+     * Represents the class used for detecting whether Spring is available.
+     */
+    private static final String SPRING_CONTEXT_CLASS =
+            "org.springframework.context.support.ClassPathXmlApplicationContext";
+
+    /**
+     * Logger used by this class.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(CastorJAXBBootstrap.class);
+
+    /**
+     * Represents the shared instance, created lazily by {@link #getInstance()}.
+     */
+    private static CastorJAXBBootstrap instance;
+
+    /**
+     * Represents the java naming shared by all contexts.
+     */
+    private final JAXBJavaNaming javaNaming;
+
+    /**
+     * Represents the xml naming shared by all contexts.
+     */
+    private final JAXBXmlNaming xmlNaming;
+
+    /**
+     * Represents the {@link ClassInfoBuilder} shared by all contexts.
+     */
+    private final ClassInfoBuilder classInfoBuilder;
+
+    /**
+     * Represents the cache of the class infos shared by all contexts, null if it has been disabled through the
+     * {@link ClassInfoCache#DISABLED_PROPERTY} system property.
+     */
+    private final ClassInfoCache classInfoCache;
+
+    /**
+     * Represents the builder used for creating the per context resolver strategies.
+     */
+    private final CastorJAXBRuntimeBuilder runtimeBuilder = new CastorJAXBRuntimeBuilder();
+
+    /**
+     * Creates new instance of {@link CastorJAXBBootstrap} class.
+     *
+     * @param javaNaming       the java naming to share
+     * @param xmlNaming        the xml naming to share
+     * @param classInfoBuilder the {@link ClassInfoBuilder} to share
+     */
+    private CastorJAXBBootstrap(JAXBJavaNaming javaNaming, JAXBXmlNaming xmlNaming,
+                                ClassInfoBuilder classInfoBuilder) {
+        this.javaNaming = javaNaming;
+        this.xmlNaming = xmlNaming;
+        this.classInfoBuilder = classInfoBuilder;
+        this.classInfoCache = Boolean.getBoolean(ClassInfoCache.DISABLED_PROPERTY) ? null : new ClassInfoCache();
+    }
+
+    /**
+     * Retrieves the shared {@link CastorJAXBBootstrap} instance, building the processing graph on the first call.
+     *
+     * @return the shared {@link CastorJAXBBootstrap} instance
+     */
+    static synchronized CastorJAXBBootstrap getInstance() {
+
+        if (instance == null) {
+            long start = System.currentTimeMillis();
+
+            String wiring = getWiring();
+            instance = create(wiring);
+
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Castor JAXB processing graph built using " + wiring + " wiring in "
+                        + (System.currentTimeMillis() - start) + " ms.");
+            }
+        }
+
+        return instance;
+    }
+
+    /**
+     * Builds the processing graph using the given wiring.
+     *
+     * @param wiring the wiring to use, either {@link #WIRING_SPRING} or {@link #WIRING_PROGRAMMATIC}
+     *
+     * @return the newly created {@link CastorJAXBBootstrap}
+     *
+     * @throws IllegalArgumentException if the wiring is not supported
+     */
+    static CastorJAXBBootstrap create(String wiring) {
+
+        if (WIRING_SPRING.equals(wiring)) {
+            return SpringWiring.create();
+        } else if (WIRING_PROGRAMMATIC.equals(wiring)) {
+            return createProgrammatically();
+        }
+
+        throw new IllegalArgumentException("Unsupported value '" + wiring + "' of the " + WIRING_PROPERTY
+                + " property, expected either '" + WIRING_SPRING + "' or '" + WIRING_PROGRAMMATIC + "'.");
+    }
+
+    /**
+     * Retrieves the wiring to use, either the one requested through the {@link #WIRING_PROPERTY} system property
+     * or the Spring wiring if Spring is available on the classpath.
+     *
+     * @return the wiring to use
+     */
+    static String getWiring() {
+
+        String wiring = System.getProperty(WIRING_PROPERTY);
+        if (wiring != null && wiring.trim().length() > 0) {
+            return wiring.trim();
+        }
+
+        return isSpringAvailable() ? WIRING_SPRING : WIRING_PROGRAMMATIC;
+    }
+
+    /**
+     * Checks whether Spring is available on the classpath.
+     *
+     * @return true if Spring is available, false otherwise
+     */
+    private static boolean isSpringAvailable() {
+
+        try {
+            Class.forName(SPRING_CONTEXT_CLASS, false, CastorJAXBBootstrap.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Builds the processing graph in plain Java.
+     *
+     * @return the newly created {@link CastorJAXBBootstrap}
+     */
+    private static CastorJAXBBootstrap createProgrammatically() {
+
+        CastorJAXBRuntimeBuilder runtimeBuilder = new CastorJAXBRuntimeBuilder();
+        JAXBJavaNaming javaNaming = runtimeBuilder.buildJavaNaming();
+
+        return new CastorJAXBBootstrap(javaNaming, runtimeBuilder.buildXmlNaming(),
+                runtimeBuilder.buildClassInfoBuilder(javaNaming));
+    }
+
+    /**
+     * Creates the {@link JAXBResolverStrategy} for a single context. The strategy and its resolver commands use
+     * the shared {@link ClassInfoBuilder} and {@link ClassInfoCache}, but build their descriptors against the passed
+     * adapter registry.
+     *
+     * @param jaxbAdapterRegistry the adapter registry of the context
+     *
+     * @return the newly created {@link JAXBResolverStrategy}
+     */
+    JAXBResolverStrategy createResolverStrategy(JAXBAdapterRegistry jaxbAdapterRegistry) {
+
+        JAXBResolverStrategy resolverStrategy = runtimeBuilder.buildResolverStrategy(classInfoBuilder, xmlNaming,
+                jaxbAdapterRegistry);
+        resolverStrategy.getClassResolverCommand().setClassInfoCache(classInfoCache);
+        return resolverStrategy;
+    }
+
+    /**
+     * Retrieves the shared java naming.
+     *
+     * @return the shared java naming
+     */
+    JAXBJavaNaming getJavaNaming() {
+        return javaNaming;
+    }
+
+    /**
+     * Retrieves the shared xml naming.
+     *
+     * @return the shared xml naming
+     */
+    JAXBXmlNaming getXmlNaming() {
+        return xmlNaming;
+    }
+
+    /**
+     * Retrieves the shared {@link ClassInfoBuilder}.
+     *
+     * @return the shared {@link ClassInfoBuilder}
+     */
+    ClassInfoBuilder getClassInfoBuilder() {
+        return classInfoBuilder;
+    }
+
+    /**
+     * Retrieves the shared {@link ClassInfoCache}.
+     *
+     * @return the shared {@link ClassInfoCache}, or null if it has been disabled
+     */
+    ClassInfoCache getClassInfoCache() {
+        return classInfoCache;
+    }
+
+    /**
+     * Builds the processing graph from the Spring configuration. Kept in a separate class, so that the Spring
+     * classes are only loaded when this wiring is actually used.
+     *
+     * @author Jakub Narloch, jmnarloch AT gmail DOT org
+     * @version 1.0
+     */
+    private static final class SpringWiring {
+
+        /**
+         * Represents the location of the Spring configuration describing the processing graph.
+         */
+        private static final String CONTEXT_LOCATION = "classpath:/castor-jaxb-context.xml";
+
+        /**
+         * Builds the processing graph from the Spring configuration.
+         *
+         * @return the newly created {@link CastorJAXBBootstrap}
+         */
+        static CastorJAXBBootstrap create() {
+
+            ClassPathXmlApplicationContext context = new ClassPathXmlApplicationContext(CONTEXT_LOCATION);
+
+            try {
+                return new CastorJAXBBootstrap(
+                        context.getBean("jaxbJavaNaming", JAXBJavaNaming.class),
+                        context.getBean("jaxbXmlNaming", JAXBXmlNaming.class),
+                        context.getBean("classInfoBuilder", ClassInfoBuilder.class));
+            } finally {
+                // the beans are retained by the created instance, the context itself is no longer needed
+                context.close();
+            }
+        }
+    }
+}
@@ -15,21 +15,21 @@
  */
 package org.castor.jaxb;
 
-import org.castor.jaxb.naming.JAXBJavaNaming;
-import org.castor.jaxb.naming.JAXBXmlNaming;
-import org.castor.jaxb.reflection.ClassDescriptorBuilder;
-import org.castor.jaxb.reflection.ClassInfoBuilder;
+import org.castor.jaxb.reflection.ClassDescriptorSnapshot;
 import org.castor.jaxb.resolver.JAXBAdapterRegistry;
-import org.castor.jaxb.resolver.JAXBClassResolverCommand;
+import org.castor.jaxb.resolver.JAXBDescriptorPrewarmer;
+import org.castor.jaxb.resolver.JAXBDescriptorRegistry;
+import org.castor.jaxb.resolver.JAXBFrozenDescriptorResolver;
 import org.castor.jaxb.resolver.JAXBPackageResolverCommand;
 import org.castor.jaxb.resolver.JAXBResolverStrategy;
+import org.castor.jaxb.resolver.JAXBStartupReport;
 import org.castor.xml.InternalContext;
-import org.castor.xml.JavaNaming;
-import org.castor.xml.XMLNaming;
 import org.exolab.castor.xml.ResolverException;
+import org.exolab.castor.xml.XMLClassDescriptor;
 import org.exolab.castor.xml.XMLClassDescriptorResolver;
 import org.exolab.castor.xml.XMLContext;
-import org.springframework.context.support.ClassPathXmlApplicationContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.w3c.dom.Node;
 
 import javax.xml.bind.Binder;
@@ -40,8 +40,21 @@ import javax.xml.bind.Marshaller;
 import javax.xml.bind.SchemaOutputResolver;
 import javax.xml.bind.Unmarshaller;
 import javax.xml.bind.Validator;
+import javax.xml.validation.Schema;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A implementation of {@link JAXBContext}, that wraps the Castor marshalling framework.
@@ -52,6 +65,82 @@ import java.util.Map;
  */
 public class CastorJAXBContext extends JAXBContext {
 
+    /**
+     * Represents the name of the property that enables building the descriptors of all the bound classes, and of
+     * the classes reachable from them, when the classes or the context path are set. Expects a {@link Boolean} or
+     * its {@link String} representation.
+     */
+    public static final String PREWARM_PROPERTY = "org.castor.jaxb.prewarm";
+
+    /**
+     * Represents the name of the property holding the number of threads building the descriptors when
+     * pre-warming. Expects an {@link Integer} or its {@link String} representation, defaults to the number of
+     * available processors.
+     */
+    public static final String PREWARM_THREADS_PROPERTY = "org.castor.jaxb.prewarm.threads";
+
+    /**
+     * Represents the name of the property holding the {@link ExecutorService} building the descriptors when
+     * pre-warming. When set, it is used instead of a dedicated thread pool and is not shut down by the context.
+     */
+    public static final String PREWARM_EXECUTOR_PROPERTY = "org.castor.jaxb.prewarm.executor";
+
+    /**
+     * Represents the name of the property holding the number of threads building the descriptors of the classes of
+     * a context path package. Expects an {@link Integer} or its {@link String} representation, defaults to the
+     * number of available processors. Packages with fewer classes than {@link
+     * JAXBPackageResolverCommand#DEFAULT_PARALLEL_THRESHOLD} are always built in the calling thread.
+     */
+    public static final String PACKAGE_THREADS_PROPERTY = "org.castor.jaxb.package.threads";
+
+    /**
+     * Represents the name of the property holding the {@link ExecutorService} building the descriptors of the
+     * classes of a context path package. When set, it is used instead of a dedicated thread pool and is not shut
+     * down by the context.
+     */
+    public static final String PACKAGE_EXECUTOR_PROPERTY = "org.castor.jaxb.package.executor";
+
+    /**
+     * Represents the name of the property holding the descriptor snapshot file, as a {@link File} or its path.
+     * When set, the descriptors are restored from the snapshot when the classes or the context path are set, and
+     * the snapshot is (re)written afterwards if it did not exist or was out of date. Together with {@link
+     * #PREWARM_PROPERTY} the snapshot covers all the classes reachable from the bound classes.
+     *
+     * @see #writeSnapshot(OutputStream)
+     */
+    public static final String SNAPSHOT_PROPERTY = "org.castor.jaxb.snapshot";
+
+    /**
+     * Represents the name of the property holding the number of warm-up round trips of every bound class, performed
+     * once the classes or the context path are set. Expects an {@link Integer} or its {@link String} representation,
+     * the warm-up is disabled by default.
+     *
+     * @see #warmUp(int)
+     */
+    public static final String WARM_UP_PROPERTY = "org.castor.jaxb.warmUp";
+
+    /**
+     * Represents the name of the property that freezes the descriptors once the classes or the context path are set.
+     * Expects a {@link Boolean} or its {@link String} representation. Best used together with {@link
+     * #PREWARM_PROPERTY}, so that the descriptors of all the reachable classes are frozen.
+     *
+     * @see #freeze(boolean)
+     */
+    public static final String FREEZE_PROPERTY = "org.castor.jaxb.freeze";
+
+    /**
+     * Represents the name of the property that makes the frozen context reject the classes whose descriptors were
+     * not frozen. Expects a {@link Boolean} or its {@link String} representation.
+     *
+     * @see #freeze(boolean)
+     */
+    public static final String FREEZE_STRICT_PROPERTY = "org.castor.jaxb.freeze.strict";
+
+    /**
+     * Logger used by this class.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(CastorJAXBContext.class);
+
     /**
      * Represents the {@link XMLContext} instance used for configuring the backend marshalling framework.
      */
@@ -62,28 +151,94 @@ public class CastorJAXBContext extends JAXBContext {
      */
     private JAXBAdapterRegistry jaxbAdapterRegistry;
 
+    /**
+     * Represents the registry of the descriptors built for this context.
+     */
+    private JAXBDescriptorRegistry descriptorRegistry;
+
+    /**
+     * Represents the resolver strategy used by this context.
+     */
+    private JAXBResolverStrategy resolverStrategy;
+
+    /**
+     * Represents whether the descriptors are built when the classes or the context path are set.
+     */
+    private boolean prewarmEnabled;
+
+    /**
+     * Represents the number of threads building the descriptors when pre-warming.
+     */
+    private int prewarmThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Represents the executor building the descriptors when pre-warming, may be null.
+     */
+    private ExecutorService prewarmExecutor;
+
+    /**
+     * Represents the descriptor snapshot file, may be null.
+     */
+    private File snapshotFile;
+
+    /**
+     * Represents the report of the time spent creating this context.
+     */
+    private final JAXBStartupReport startupReport = new JAXBStartupReport();
+
+    /**
+     * Represents the number of warm-up round trips performed once the classes or the context path are set.
+     */
+    private int warmUpIterations;
+
+    /**
+     * Represents whether the descriptors are frozen once the classes or the context path are set.
+     */
+    private boolean freezeEnabled;
+
+    /**
+     * Represents whether the frozen context rejects the classes whose descriptors were not frozen.
+     */
+    private boolean freezeStrict;
+
+    /**
+     * Represents the resolver serving the frozen descriptors, null if the context is not frozen.
+     */
+    private JAXBFrozenDescriptorResolver frozenResolver;
+
+    /**
+     * Represents the templates of the element and attribute names written by the marshallers.
+     */
+    private final TagTemplateCache tagTemplates = new TagTemplateCache();
+
     /**
      * Creates new instance of {@link CastorJAXBContext} class.
      */
     CastorJAXBContext() {
 
+        long start = System.nanoTime();
         xmlContext = new XMLContext();
         InternalContext internalContext = xmlContext.getInternalContext();
 
-        ClassPathXmlApplicationContext context = new ClassPathXmlApplicationContext("classpath:/castor-jaxb-context.xml");
-        
-        JavaNaming javaNaming = context.getBean("jaxbJavaNaming", JAXBJavaNaming.class);
-        XMLNaming xmlNaming = context.getBean("jaxbXmlNaming", JAXBXmlNaming.class);
-        jaxbAdapterRegistry = context.getBean("jaxbAdapterRegistry", JAXBAdapterRegistry.class);
+        // the processing graph is built once per JVM and shared by all the contexts
+        CastorJAXBBootstrap bootstrap = CastorJAXBBootstrap.getInstance();
+
+        jaxbAdapterRegistry = new JAXBAdapterRegistry();
+        descriptorRegistry = new JAXBDescriptorRegistry();
 
-        internalContext.setJavaNaming(javaNaming);
-        internalContext.setXMLNaming(xmlNaming);
+        internalContext.setJavaNaming(bootstrap.getJavaNaming());
+        internalContext.setXMLNaming(bootstrap.getXmlNaming());
 
-        JAXBResolverStrategy resolverStrategy = context.getBean("jaxbResolverStrategy", JAXBResolverStrategy.class);
+        resolverStrategy = bootstrap.createResolverStrategy(jaxbAdapterRegistry);
+        resolverStrategy.setDescriptorRegistry(descriptorRegistry);
+        resolverStrategy.getClassResolverCommand().setStartupReport(startupReport);
+        resolverStrategy.getPackageResolverCommand().setStartupReport(startupReport);
 
         internalContext.setResolverStrategy(resolverStrategy);
         XMLClassDescriptorResolver classDescriptorResolver = internalContext.getXMLClassDescriptorResolver();
         classDescriptorResolver.setResolverStrategy(resolverStrategy);
+
+        startupReport.record(JAXBStartupReport.Phase.CONTEXT_CREATION, System.nanoTime() - start);
     }
 
     /**
@@ -95,12 +250,39 @@ public class CastorJAXBContext extends JAXBContext {
      * @throws JAXBException if any error occurs when settings the classes
      */
     public void setContextPath(String contextPath, ClassLoader classLoader) throws JAXBException {
+        long start = System.nanoTime();
         try {
+            boolean restored = restoreSnapshot(classLoader);
+
+            resolverStrategy.getPackageResolverCommand().setClassLoader(classLoader);
             xmlContext.addPackage(contextPath);
+
+            if (prewarmEnabled) {
+                List<Class<?>> classes = new ArrayList<Class<?>>();
+                for (XMLClassDescriptor descriptor : descriptorRegistry.getDescriptors()) {
+                    classes.add(descriptor.getJavaClass());
+                }
+                prewarm(classes);
+            }
+
+            if (!restored) {
+                writeSnapshot();
+            }
         } catch (ResolverException e) {
             // wraps and throws exception
             throw CastorJAXBUtils.convertToJAXBException("Error occurred when setting the context path.", e);
         }
+
+        if (warmUpIterations > 0) {
+            warmUp(warmUpIterations);
+        }
+        if (freezeEnabled) {
+            freeze(freezeStrict);
+        }
+        tagTemplates.addDescriptors(descriptorRegistry.getDescriptors());
+
+        startupReport.record(JAXBStartupReport.Phase.SET_CONTEXT_PATH, System.nanoTime() - start);
+        logStartupReport();
     }
 
     /**
@@ -111,16 +293,144 @@ public class CastorJAXBContext extends JAXBContext {
      * @throws JAXBException if any error occurs when settings the classes
      */
     public void setClasses(Class[] classes) throws JAXBException {
+        long start = System.nanoTime();
         try {
+            boolean restored = classes.length > 0 && restoreSnapshot(classes[0].getClassLoader());
+
             xmlContext.addClasses(classes);
+
+            if (prewarmEnabled) {
+                prewarm(Arrays.<Class<?>>asList(classes));
+            }
+
+            if (!restored) {
+                writeSnapshot();
+            }
         } catch (ResolverException e) {
             // wraps and throws exception
             throw CastorJAXBUtils.convertToJAXBException("Error occurred when setting the classes.", e);
         }
+
+        if (warmUpIterations > 0) {
+            warmUp(warmUpIterations);
+        }
+        if (freezeEnabled) {
+            freeze(freezeStrict);
+        }
+        tagTemplates.addDescriptors(descriptorRegistry.getDescriptors());
+
+        startupReport.record(JAXBStartupReport.Phase.SET_CLASSES, System.nanoTime() - start);
+        logStartupReport();
+    }
+
+    /**
+     * Retrieves the report of the time spent creating this context, including the time spent introspecting every
+     * bound class. Its summary is logged at debug level once the classes or the context path are set.
+     *
+     * @return the startup report
+     */
+    public JAXBStartupReport getStartupReport() {
+        return startupReport;
     }
 
     /**
-     * Sets the properties for this context.
+     * Warms up this context before it serves any traffic. A sample instance of every bound root element class is
+     * synthesized from its descriptor and marshalled and unmarshalled in memory the given number of times, priming
+     * the descriptor resolution, the adapters, the parser factories and the just in time compiler. The classes that
+     * can not be instantiated or round tripped are skipped.
+     *
+     * @param iterations the number of round trips of every sample
+     *
+     * @return the number of classes that were warmed up
+     *
+     * @throws IllegalArgumentException if iterations is not positive
+     * @throws JAXBException            if the marshaller or the unmarshaller can not be created
+     */
+    public int warmUp(int iterations) throws JAXBException {
+        if (iterations <= 0) {
+            throw new IllegalArgumentException("Argument 'iterations' must be positive.");
+        }
+
+        long start = System.nanoTime();
+        int count = new CastorJAXBWarmUp(this).warmUp(
+                new ArrayList<XMLClassDescriptor>(descriptorRegistry.getDescriptors()), iterations);
+
+        long time = System.nanoTime() - start;
+        startupReport.record(JAXBStartupReport.Phase.WARM_UP, time);
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Warmed up " + count + " classes with " + iterations + " round trips in "
+                    + TimeUnit.NANOSECONDS.toMillis(time) + " ms.");
+        }
+        return count;
+    }
+
+    /**
+     * Freezes the descriptors of this context, serving all the later lookups without any synchronization. The classes
+     * without a frozen descriptor are still resolved, but more slowly.
+     *
+     * @see #freeze(boolean)
+     */
+    public void freeze() {
+        freeze(false);
+    }
+
+    /**
+     * Freezes the descriptors of this context. All the descriptors built so far are copied into the immutable tables
+     * of a {@link JAXBFrozenDescriptorResolver}, which replaces the resolver of the backend framework. The classes
+     * without a frozen descriptor are either rejected, when strict, or resolved by the previous resolver, the misses
+     * being counted by the frozen resolver. Freezing the context again refreezes the descriptors built since.
+     * <p/>
+     * No classes or context path can be set once the context is frozen.
+     *
+     * @param strict whether the classes without a frozen descriptor should be rejected
+     */
+    public void freeze(boolean strict) {
+
+        InternalContext internalContext = xmlContext.getInternalContext();
+        XMLClassDescriptorResolver resolver = frozenResolver != null ? frozenResolver.getResolver()
+                : internalContext.getXMLClassDescriptorResolver();
+
+        frozenResolver = new JAXBFrozenDescriptorResolver(resolver, descriptorRegistry.getDescriptors(), strict);
+        internalContext.setXMLClassDescriptorResolver(frozenResolver);
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Froze " + frozenResolver.size() + " class descriptors" + (strict ? ", strict." : "."));
+        }
+    }
+
+    /**
+     * Retrieves whether the descriptors of this context are frozen.
+     *
+     * @return true if the context is frozen, false otherwise
+     */
+    public boolean isFrozen() {
+        return frozenResolver != null;
+    }
+
+    /**
+     * Retrieves the resolver serving the frozen descriptors, which counts the lookups of the classes that were not
+     * frozen.
+     *
+     * @return the frozen resolver, or null if the context is not frozen
+     */
+    public JAXBFrozenDescriptorResolver getFrozenResolver() {
+        return frozenResolver;
+    }
+
+    /**
+     * Logs the summary of the startup report at debug level, as it is produced for every context.
+     */
+    private void logStartupReport() {
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(startupReport.getSummary());
+        }
+    }
+
+    /**
+     * Sets the properties for this context. The pre-warming, package, snapshot, warm-up and freeze properties take
+     * effect only if set before the classes or the context path.
      *
      * @param properties the map of the properties to set
      */
@@ -128,7 +438,197 @@ public class CastorJAXBContext extends JAXBContext {
         // TODO check input
 
         for (Map.Entry<String, Object> property : properties.entrySet()) {
-            xmlContext.setProperty(property.getKey(), property.getValue());
+            String name = property.getKey();
+            Object value = property.getValue();
+
+            if (PREWARM_PROPERTY.equals(name)) {
+                prewarmEnabled = value instanceof Boolean ? (Boolean) value
+                        : Boolean.parseBoolean(String.valueOf(value).trim());
+            } else if (PREWARM_THREADS_PROPERTY.equals(name)) {
+                prewarmThreads = value instanceof Number ? ((Number) value).intValue()
+                        : Integer.parseInt(String.valueOf(value).trim());
+            } else if (PREWARM_EXECUTOR_PROPERTY.equals(name)) {
+                prewarmExecutor = (ExecutorService) value;
+            } else if (PACKAGE_THREADS_PROPERTY.equals(name)) {
+                resolverStrategy.getPackageResolverCommand().setThreads(value instanceof Number
+                        ? ((Number) value).intValue() : Integer.parseInt(String.valueOf(value).trim()));
+            } else if (PACKAGE_EXECUTOR_PROPERTY.equals(name)) {
+                resolverStrategy.getPackageResolverCommand().setExecutor((ExecutorService) value);
+            } else if (WARM_UP_PROPERTY.equals(name)) {
+                warmUpIterations = value instanceof Number ? ((Number) value).intValue()
+                        : Integer.parseInt(String.valueOf(value).trim());
+            } else if (FREEZE_PROPERTY.equals(name)) {
+                freezeEnabled = value instanceof Boolean ? (Boolean) value
+                        : Boolean.parseBoolean(String.valueOf(value).trim());
+            } else if (FREEZE_STRICT_PROPERTY.equals(name)) {
+                freezeStrict = value instanceof Boolean ? (Boolean) value
+                        : Boolean.parseBoolean(String.valueOf(value).trim());
+            } else if (SNAPSHOT_PROPERTY.equals(name)) {
+                snapshotFile = value instanceof File ? (File) value : new File(String.valueOf(value).trim());
+            } else {
+                xmlContext.setProperty(name, value);
+            }
+        }
+    }
+
+    /**
+     * Builds the descriptors of the given classes and of all the classes reachable from them, and registers them
+     * in the backend class descriptor resolver, so that no descriptor needs to be built on the first marshalling.
+     *
+     * @param classes the bound classes
+     *
+     * @throws ResolverException if building any of the descriptors fails
+     */
+    private void prewarm(List<Class<?>> classes) throws ResolverException {
+
+        long start = System.nanoTime();
+
+        ExecutorService executor = prewarmExecutor != null ? prewarmExecutor
+                : JAXBDescriptorPrewarmer.createExecutor(prewarmThreads);
+        int count;
+        try {
+            count = new JAXBDescriptorPrewarmer(resolverStrategy.getClassResolverCommand(), descriptorRegistry)
+                    .prewarm(classes, executor);
+        } finally {
+            if (executor != prewarmExecutor) {
+                executor.shutdown();
+            }
+        }
+
+        // registers the descriptors in the resolver cache, they are taken from the descriptor registry
+        XMLClassDescriptorResolver classDescriptorResolver =
+                xmlContext.getInternalContext().getXMLClassDescriptorResolver();
+        for (XMLClassDescriptor descriptor : descriptorRegistry.getDescriptors()) {
+            classDescriptorResolver.resolve(descriptor.getJavaClass());
+        }
+
+        long time = System.nanoTime() - start;
+        startupReport.record(JAXBStartupReport.Phase.PREWARM, time);
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Pre-warmed " + count + " class descriptors (" + descriptorRegistry.size()
+                    + " in total) in " + TimeUnit.NANOSECONDS.toMillis(time) + " ms.");
+        }
+    }
+
+    /**
+     * Writes the descriptors built so far for this context to the given stream, so that a later JVM can restore
+     * them with {@link #restoreSnapshot(InputStream, ClassLoader)} instead of introspecting the bound classes. The
+     * stream is not closed.
+     *
+     * @param outputStream the stream to write to
+     *
+     * @return the number of written descriptors
+     *
+     * @throws IOException if any error occurs when writing the snapshot
+     */
+    public int writeSnapshot(OutputStream outputStream) throws IOException {
+        CastorJAXBUtils.checkNotNull(outputStream, "outputStream");
+
+        return ClassDescriptorSnapshot.write(descriptorRegistry.getDescriptors(), outputStream);
+    }
+
+    /**
+     * Restores the descriptors written by {@link #writeSnapshot(OutputStream)}. The snapshot is rejected if any of
+     * the class files the descriptors were built from has changed since it was written. The stream is not closed.
+     * <p/>
+     * The snapshot must be restored before the classes or the context path are set.
+     *
+     * @param inputStream the stream to read from
+     * @param classLoader the class loader to load the bound classes with
+     *
+     * @return true if the descriptors were restored, false if the snapshot is out of date
+     *
+     * @throws IOException if any error occurs when reading the snapshot
+     */
+    public boolean restoreSnapshot(InputStream inputStream, ClassLoader classLoader) throws IOException {
+        CastorJAXBUtils.checkNotNull(inputStream, "inputStream");
+        CastorJAXBUtils.checkNotNull(classLoader, "classLoader");
+
+        List<XMLClassDescriptor> descriptors = ClassDescriptorSnapshot.read(inputStream, classLoader,
+                jaxbAdapterRegistry);
+        if (descriptors == null) {
+            return false;
+        }
+
+        for (XMLClassDescriptor descriptor : descriptors) {
+            descriptorRegistry.addDescriptor(descriptor.getJavaClass().getName(), descriptor);
+        }
+        return true;
+    }
+
+    /**
+     * Restores the descriptors from the snapshot file, if one is configured and exists.
+     *
+     * @param classLoader the class loader to load the bound classes with
+     *
+     * @return true if the descriptors were restored, false otherwise
+     */
+    private boolean restoreSnapshot(ClassLoader classLoader) {
+
+        if (snapshotFile == null || !snapshotFile.isFile()) {
+            return false;
+        }
+
+        long start = System.nanoTime();
+        try {
+            InputStream inputStream = new BufferedInputStream(new FileInputStream(snapshotFile));
+            try {
+                if (!restoreSnapshot(inputStream, classLoader != null ? classLoader
+                        : Thread.currentThread().getContextClassLoader())) {
+                    return false;
+                }
+            } finally {
+                inputStream.close();
+            }
+        } catch (IOException e) {
+            LOG.warn("Unable to restore the descriptor snapshot " + snapshotFile + ", it will be rewritten.", e);
+            return false;
+        }
+
+        long time = System.nanoTime() - start;
+        startupReport.record(JAXBStartupReport.Phase.SNAPSHOT_RESTORE, time);
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Restored " + descriptorRegistry.size() + " class descriptors from " + snapshotFile + " in "
+                    + TimeUnit.NANOSECONDS.toMillis(time) + " ms.");
+        }
+        return true;
+    }
+
+    /**
+     * Writes the descriptors to the snapshot file, if one is configured. The snapshot is first written to a temporary
+     * file in the same directory, which then replaces the snapshot file, so that no other context ever reads a
+     * partially written snapshot.
+     */
+    private void writeSnapshot() {
+
+        if (snapshotFile == null) {
+            return;
+        }
+
+        File tempFile = null;
+        try {
+            tempFile = File.createTempFile(snapshotFile.getName(), ".tmp",
+                    snapshotFile.getAbsoluteFile().getParentFile());
+            OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(tempFile));
+            try {
+                writeSnapshot(outputStream);
+            } finally {
+                outputStream.close();
+            }
+
+            // the rename does not replace an existing file on every platform
+            if (!tempFile.renameTo(snapshotFile) && !(snapshotFile.delete() && tempFile.renameTo(snapshotFile))) {
+                throw new IOException("Unable to rename " + tempFile + " to " + snapshotFile + ".");
+            }
+            tempFile = null;
+        } catch (IOException e) {
+            LOG.warn("Unable to write the descriptor snapshot " + snapshotFile + ".", e);
+        } finally {
+            if (tempFile != null && !tempFile.delete()) {
+                tempFile.deleteOnExit();
+            }
         }
     }
 
@@ -148,6 +648,39 @@ public class CastorJAXBContext extends JAXBContext {
         return new CastorUnmarshaller(this);
     }
 
+    /**
+     * Creates a {@link MarshallerTemplate} that can be shared by any number of threads.
+     *
+     * @param properties the marshaller properties, may be null
+     * @param listener   the marshal listener, may be null
+     * @param schema     the schema against which the result will be validated, may be null
+     *
+     * @return the newly created template
+     *
+     * @throws JAXBException if any of the properties is not supported
+     */
+    public MarshallerTemplate createMarshallerTemplate(Map<String, ?> properties, Marshaller.Listener listener,
+                                                       Schema schema) throws JAXBException {
+        return new MarshallerTemplate(this, properties, listener, schema);
+    }
+
+    /**
+     * Creates an {@link UnmarshallerTemplate} that can be shared by any number of threads.
+     *
+     * @param properties the unmarshaller properties, may be null
+     * @param listener   the unmarshal listener, may be null
+     * @param schema     the schema against which the input will be validated, may be null
+     *
+     * @return the newly created template
+     *
+     * @throws JAXBException if any of the properties is not supported
+     */
+    public UnmarshallerTemplate createUnmarshallerTemplate(Map<String, ?> properties,
+                                                           Unmarshaller.Listener listener,
+                                                           Schema schema) throws JAXBException {
+        return new UnmarshallerTemplate(this, properties, listener, schema);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -193,6 +726,15 @@ public class CastorJAXBContext extends JAXBContext {
         super.generateSchema(outputResolver);
     }
 
+    /**
+     * Retrieves the templates of the element and attribute names written by the marshallers of this context.
+     *
+     * @return the templates of the names
+     */
+    TagTemplateCache getTagTemplates() {
+        return tagTemplates;
+    }
+
     /**
      * Creates new instance of {@link org.exolab.castor.xml.Marshaller} class.
      * @return the new instance of {@link org.exolab.castor.xml.Marshaller}
@@ -219,4 +761,13 @@ public class CastorJAXBContext extends JAXBContext {
 
         return jaxbAdapterRegistry;
     }
+
+    /**
+     * Retrieves the {@link JAXBDescriptorRegistry} for this context.
+     * @return {@link JAXBDescriptorRegistry} for this context
+     */
+    JAXBDescriptorRegistry getDescriptorRegistry() {
+
+        return descriptorRegistry;
+    }
 }
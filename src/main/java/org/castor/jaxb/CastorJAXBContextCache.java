@@ -0,0 +1,592 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb;
+
+import javax.xml.bind.JAXBContext;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, least recently used cache of the {@link JAXBContext} instances created by the {@link
+ * CastorJAXBContextFactory}.
+ * <p/>
+ * A context is cached under its class set (or context path), its class loader and its properties. The class loader
+ * is held through a weak reference. As a context strongly references its classes and through them their class
+ * loader, a context is held strongly only if its class loader is the class loader of this library or one of its
+ * ancestors, which live as long as the cache itself. The contexts of any other class loader, for instance of a web
+ * application, are held through soft references: they stay cached until the memory runs short, and the {@link
+ * #clear(ClassLoader)} method drops them eagerly, as it should be called when a web application is undeployed.
+ * Entries of class loaders that have been collected are purged on the next access.
+ * <p/>
+ * A cached context is shared between unrelated callers. This is safe, as the adapters are registered on the
+ * marshallers and unmarshallers rather than on the context.
+ * <p/>
+ * This class is thread safe.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+public final class CastorJAXBContextCache {
+
+    /**
+     * Represents the name of the system property holding the maximum number of cached contexts. The cache is enabled
+     * when the property is set to a positive number.
+     */
+    public static final String CACHE_SIZE_PROPERTY = "org.castor.jaxb.contextCacheSize";
+
+    /**
+     * Represents the maximum number of cached contexts.
+     */
+    private final int maxSize;
+
+    /**
+     * Represents the cached contexts, in the least recently used order.
+     */
+    private final LinkedHashMap<CacheKey, CacheEntry> entries;
+
+    /**
+     * Represents the queue of the collected class loaders.
+     */
+    private final ReferenceQueue<ClassLoader> collectedClassLoaders = new ReferenceQueue<ClassLoader>();
+
+    /**
+     * Represents the number of cache hits.
+     */
+    private final AtomicLong hitCount = new AtomicLong();
+
+    /**
+     * Represents the number of cache misses.
+     */
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Represents the number of evicted contexts.
+     */
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * Creates new instance of {@link CastorJAXBContextCache} class.
+     *
+     * @param maxSize the maximum number of cached contexts
+     *
+     * @throws IllegalArgumentException if maxSize is not positive
+     */
+    public CastorJAXBContextCache(final int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Argument 'maxSize' must be positive.");
+        }
+
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<CacheKey, CacheEntry>(16, 0.75f, true) {
+
+            /**
+             * Removes the least recently used context when the cache grows over its maximum size.
+             */
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, CacheEntry> eldest) {
+                if (size() > CastorJAXBContextCache.this.maxSize) {
+                    evictionCount.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Creates the cache configured through the {@link #CACHE_SIZE_PROPERTY} system property.
+     *
+     * @return the newly created cache, or null if the cache has not been enabled
+     *
+     * @throws IllegalArgumentException if the property value is not a number
+     */
+    static CastorJAXBContextCache fromSystemProperties() {
+
+        String value = System.getProperty(CACHE_SIZE_PROPERTY);
+        if (value == null || value.trim().length() == 0) {
+            return null;
+        }
+
+        int size;
+        try {
+            size = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value '" + value + "' of the " + CACHE_SIZE_PROPERTY
+                    + " property, a number is expected.");
+        }
+
+        return size > 0 ? new CastorJAXBContextCache(size) : null;
+    }
+
+    /**
+     * Retrieves the context cached for the given classes and properties.
+     *
+     * @param classes    the classes of the context
+     * @param properties the properties of the context
+     *
+     * @return the cached context, or null if there is none
+     */
+    JAXBContext get(Class[] classes, Map<String, Object> properties) {
+        return get(createKey(classes, properties), classes);
+    }
+
+    /**
+     * Retrieves the context cached for the given context path, class loader and properties.
+     *
+     * @param contextPath the context path of the context
+     * @param classLoader the class loader of the context
+     * @param properties  the properties of the context
+     *
+     * @return the cached context, or null if there is none
+     */
+    JAXBContext get(String contextPath, ClassLoader classLoader, Map<String, Object> properties) {
+        return get(createKey(contextPath, classLoader, properties), null);
+    }
+
+    /**
+     * Caches the context created for the given classes and properties. If a context has been cached meanwhile by
+     * another thread, that context is kept and returned instead.
+     *
+     * @param classes    the classes of the context
+     * @param properties the properties of the context
+     * @param context    the context to cache
+     *
+     * @return the cached context
+     */
+    JAXBContext put(Class[] classes, Map<String, Object> properties, JAXBContext context) {
+        return put(createKey(classes, properties), classes, context);
+    }
+
+    /**
+     * Caches the context created for the given context path, class loader and properties. If a context has been
+     * cached meanwhile by another thread, that context is kept and returned instead.
+     *
+     * @param contextPath the context path of the context
+     * @param classLoader the class loader of the context
+     * @param properties  the properties of the context
+     * @param context     the context to cache
+     *
+     * @return the cached context
+     */
+    JAXBContext put(String contextPath, ClassLoader classLoader, Map<String, Object> properties,
+                    JAXBContext context) {
+        return put(createKey(contextPath, classLoader, properties), null, context);
+    }
+
+    /**
+     * Removes all the cached contexts.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Removes all the contexts cached for the given class loader.
+     *
+     * @param classLoader the class loader
+     */
+    public synchronized void clear(ClassLoader classLoader) {
+
+        for (Iterator<CacheKey> iterator = entries.keySet().iterator(); iterator.hasNext();) {
+            if (iterator.next().getClassLoader() == classLoader) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Retrieves the number of cached contexts.
+     *
+     * @return the number of cached contexts
+     */
+    public synchronized int size() {
+        purgeCollectedClassLoaders();
+        return entries.size();
+    }
+
+    /**
+     * Retrieves the maximum number of cached contexts.
+     *
+     * @return the maximum number of cached contexts
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Retrieves the number of requests served from the cache.
+     *
+     * @return the number of cache hits
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Retrieves the number of requests that required creating a new context.
+     *
+     * @return the number of cache misses
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Retrieves the number of contexts removed from the cache, either because the cache has been full, because the
+     * garbage collector reclaimed them or because their class loader has been collected.
+     *
+     * @return the number of evicted contexts
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * Retrieves the cached context.
+     *
+     * @param key     the cache key
+     * @param classes the classes of the context, or null if the context was created from a context path
+     *
+     * @return the cached context, or null if there is none
+     */
+    private synchronized JAXBContext get(CacheKey key, Class[] classes) {
+        purgeCollectedClassLoaders();
+
+        CacheEntry entry = entries.get(key);
+        JAXBContext context = entry != null ? entry.getContext() : null;
+
+        if (entry != null && context == null) {
+            // the context has been reclaimed by the garbage collector
+            entries.remove(key);
+            evictionCount.incrementAndGet();
+        }
+
+        if (context != null && entry.hasClasses(classes)) {
+            hitCount.incrementAndGet();
+            return context;
+        }
+
+        missCount.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Caches the context.
+     *
+     * @param key     the cache key
+     * @param classes the classes of the context, or null if the context was created from a context path
+     * @param context the context to cache
+     *
+     * @return the cached context
+     */
+    private synchronized JAXBContext put(CacheKey key, Class[] classes, JAXBContext context) {
+        purgeCollectedClassLoaders();
+
+        CacheEntry entry = entries.get(key);
+        JAXBContext cached = entry != null ? entry.getContext() : null;
+
+        if (cached != null && entry.hasClasses(classes)) {
+            return cached;
+        }
+
+        entries.put(key, new CacheEntry(classes, context, isCacheSafe(key.getClassLoader(), classes)));
+        return context;
+    }
+
+    /**
+     * Removes the contexts of all the class loaders collected by the garbage collector.
+     */
+    private void purgeCollectedClassLoaders() {
+
+        Reference<? extends ClassLoader> reference = collectedClassLoaders.poll();
+        if (reference == null) {
+            return;
+        }
+
+        while (collectedClassLoaders.poll() != null) {
+            // drains the queue, all the stale keys are removed below
+        }
+
+        for (Iterator<CacheKey> iterator = entries.keySet().iterator(); iterator.hasNext();) {
+            if (iterator.next().isCollected()) {
+                iterator.remove();
+                evictionCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Checks whether a context of the given classes can be held strongly, without keeping any class loader reachable
+     * longer than the cache itself: the class loaders of all the classes need to be the class loader of this class
+     * or one of its ancestors.
+     *
+     * @param classLoader the class loader of the context
+     * @param classes     the classes of the context, or null if the context was created from a context path
+     *
+     * @return true if the context can be held strongly, false otherwise
+     */
+    private static boolean isCacheSafe(ClassLoader classLoader, Class[] classes) {
+
+        if (!isCacheSafe(classLoader)) {
+            return false;
+        }
+
+        if (classes != null) {
+            for (Class clazz : classes) {
+                if (!isCacheSafe(clazz.getClassLoader())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether the given class loader is the class loader of this class or one of its ancestors.
+     *
+     * @param classLoader the class loader to check
+     *
+     * @return true if the class loader lives at least as long as this class, false otherwise
+     */
+    private static boolean isCacheSafe(ClassLoader classLoader) {
+
+        if (classLoader == null) {
+            return true;
+        }
+
+        for (ClassLoader current = CastorJAXBContextCache.class.getClassLoader(); current != null;
+             current = current.getParent()) {
+            if (current == classLoader) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Creates the cache key for the given classes and properties.
+     *
+     * @param classes    the classes of the context
+     * @param properties the properties of the context
+     *
+     * @return the cache key
+     */
+    private CacheKey createKey(Class[] classes, Map<String, Object> properties) {
+
+        List<String> classNames = new ArrayList<String>(classes.length);
+        ClassLoader classLoader = null;
+        for (Class clazz : classes) {
+            classNames.add(clazz.getName());
+
+            if (classLoader == null) {
+                classLoader = clazz.getClassLoader();
+            }
+        }
+
+        return new CacheKey(classLoader, classNames, properties, collectedClassLoaders);
+    }
+
+    /**
+     * Creates the cache key for the given context path, class loader and properties.
+     *
+     * @param contextPath the context path of the context
+     * @param classLoader the class loader of the context
+     * @param properties  the properties of the context
+     *
+     * @return the cache key
+     */
+    private CacheKey createKey(String contextPath, ClassLoader classLoader, Map<String, Object> properties) {
+
+        return new CacheKey(classLoader, contextPath, properties, collectedClassLoaders);
+    }
+
+    /**
+     * The key under which a context is cached. The class loader is compared by identity and referenced weakly.
+     *
+     * @author Jakub Narloch, jmnarloch AT gmail DOT org
+     * @version 1.0
+     */
+    private static final class CacheKey {
+
+        /**
+         * Represents the class loader of the context, or null for the bootstrap class loader.
+         */
+        private final WeakReference<ClassLoader> classLoader;
+
+        /**
+         * Represents the class names or the context path of the context.
+         */
+        private final Object contents;
+
+        /**
+         * Represents the properties of the context.
+         */
+        private final Map<String, Object> properties;
+
+        /**
+         * Represents the hash code of this key.
+         */
+        private final int hashCode;
+
+        /**
+         * Creates new instance of {@link CacheKey} class.
+         *
+         * @param classLoader the class loader of the context
+         * @param contents    the class names or the context path of the context
+         * @param properties  the properties of the context
+         * @param queue       the queue notified when the class loader is collected
+         */
+        CacheKey(ClassLoader classLoader, Object contents, Map<String, Object> properties,
+                 ReferenceQueue<ClassLoader> queue) {
+            this.classLoader = classLoader != null ? new WeakReference<ClassLoader>(classLoader, queue) : null;
+            this.contents = contents;
+            this.properties = Collections.unmodifiableMap(new HashMap<String, Object>(properties));
+            this.hashCode = 31 * (31 * System.identityHashCode(classLoader) + contents.hashCode())
+                    + this.properties.hashCode();
+        }
+
+        /**
+         * Retrieves the class loader of the context.
+         *
+         * @return the class loader, or null if it is the bootstrap class loader or it has been collected
+         */
+        ClassLoader getClassLoader() {
+            return classLoader != null ? classLoader.get() : null;
+        }
+
+        /**
+         * Checks whether the class loader of the context has been collected.
+         *
+         * @return true if the class loader has been collected, false otherwise
+         */
+        boolean isCollected() {
+            return classLoader != null && classLoader.get() == null;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+
+            if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+
+            CacheKey other = (CacheKey) obj;
+            return hashCode == other.hashCode
+                    && !isCollected()
+                    && getClassLoader() == other.getClassLoader()
+                    && contents.equals(other.contents)
+                    && properties.equals(other.properties);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * A cached context together with the classes it was created from.
+     *
+     * @author Jakub Narloch, jmnarloch AT gmail DOT org
+     * @version 1.0
+     */
+    private static final class CacheEntry {
+
+        /**
+         * Represents the classes of the context, or null if the context was created from a context path.
+         */
+        private final List<WeakReference<Class>> classes;
+
+        /**
+         * Represents the cached context, if it is held strongly.
+         */
+        private final JAXBContext context;
+
+        /**
+         * Represents the cached context, if it is held softly.
+         */
+        private final SoftReference<JAXBContext> softContext;
+
+        /**
+         * Creates new instance of {@link CacheEntry} class.
+         *
+         * @param classes the classes of the context, or null if the context was created from a context path
+         * @param context the cached context
+         * @param strong  whether the context is held strongly, otherwise it is held softly
+         */
+        CacheEntry(Class[] classes, JAXBContext context, boolean strong) {
+            if (classes != null) {
+                this.classes = new ArrayList<WeakReference<Class>>(classes.length);
+                for (Class clazz : classes) {
+                    this.classes.add(new WeakReference<Class>(clazz));
+                }
+            } else {
+                this.classes = null;
+            }
+            this.context = strong ? context : null;
+            this.softContext = strong ? null : new SoftReference<JAXBContext>(context);
+        }
+
+        /**
+         * Retrieves the cached context.
+         *
+         * @return the cached context, or null if it has been reclaimed by the garbage collector
+         */
+        JAXBContext getContext() {
+            return context != null ? context : softContext.get();
+        }
+
+        /**
+         * Checks whether the context has been created from the very same classes. The classes are compared by
+         * identity, as two classes of the same name may come from different class loaders.
+         *
+         * @param classes the classes to check, or null if the context was created from a context path
+         *
+         * @return true if the context has been created from the given classes, false otherwise
+         */
+        boolean hasClasses(Class[] classes) {
+            if (this.classes == null || classes == null) {
+                return this.classes == null && classes == null;
+            }
+
+            for (int i = 0; i < classes.length; i++) {
+                if (this.classes.get(i).get() != classes[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -17,6 +17,7 @@ package org.castor.jaxb;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.castor.jaxb.reflection.ClassInfoCache;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
@@ -48,6 +49,11 @@ public class CastorJAXBContextFactory {
      */
     private static final Log LOG = LogFactory.getLog(CastorJAXBContextFactory.class);
 
+    /**
+     * Represents the cache of the created contexts, null if the caching is disabled.
+     */
+    private static volatile CastorJAXBContextCache contextCache = CastorJAXBContextCache.fromSystemProperties();
+
     /**
      * Creates new instance of {@link JAXBContext} class from the given contextPath and class loader.
      *
@@ -68,13 +74,23 @@ public class CastorJAXBContextFactory {
             CastorJAXBUtils.checkNotNull(classLoader, "classLoader");
             CastorJAXBUtils.checkNotNull(properties, "properties");
 
+            // returns the cached context if there is one
+            CastorJAXBContextCache cache = contextCache;
+            if (cache != null) {
+                JAXBContext cached = cache.get(contextPath, classLoader, properties);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+
             // creates new context instance
             CastorJAXBContext castorJAXBContext = new CastorJAXBContext();
-            castorJAXBContext.setContextPath(contextPath, classLoader);
             castorJAXBContext.setProperties(properties);
+            castorJAXBContext.setContextPath(contextPath, classLoader);
 
             // returns the created context
-            return castorJAXBContext;
+            return cache != null ? cache.put(contextPath, classLoader, properties, castorJAXBContext)
+                    : castorJAXBContext;
         } catch (JAXBException e) {
 
             CastorJAXBUtils.logError(LOG,
@@ -107,12 +123,21 @@ public class CastorJAXBContextFactory {
             CastorJAXBUtils.checkNotNull(classes, "classes");
             CastorJAXBUtils.checkNotNull(properties, "properties");
 
+            // returns the cached context if there is one
+            CastorJAXBContextCache cache = contextCache;
+            if (cache != null) {
+                JAXBContext cached = cache.get(classes, properties);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+
             // creates new context instance
             CastorJAXBContext castorJAXBContext = new CastorJAXBContext();
-            castorJAXBContext.setClasses(classes);
             castorJAXBContext.setProperties(properties);
+            castorJAXBContext.setClasses(classes);
 
-            return castorJAXBContext;
+            return cache != null ? cache.put(classes, properties, castorJAXBContext) : castorJAXBContext;
         } catch (JAXBException e) {
 
             CastorJAXBUtils.logError(LOG,
@@ -126,6 +151,58 @@ public class CastorJAXBContextFactory {
         }
     }
 
+    /**
+     * Enables caching of the created contexts. Every subsequent request for a context with the same classes (or
+     * context path), class loader and properties returns the already created context.
+     * <p/>
+     * The cache can also be enabled through the {@link CastorJAXBContextCache#CACHE_SIZE_PROPERTY} system property.
+     *
+     * @param maxSize the maximum number of cached contexts
+     *
+     * @return the enabled cache
+     *
+     * @throws IllegalArgumentException if maxSize is not positive
+     */
+    public static CastorJAXBContextCache enableContextCache(int maxSize) {
+
+        CastorJAXBContextCache cache = new CastorJAXBContextCache(maxSize);
+        contextCache = cache;
+        return cache;
+    }
+
+    /**
+     * Disables caching of the created contexts and releases all the cached contexts.
+     */
+    public static void disableContextCache() {
+
+        CastorJAXBContextCache cache = contextCache;
+        contextCache = null;
+
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Retrieves the cache of the created contexts, which exposes the cache statistics.
+     *
+     * @return the context cache, or null if the caching is disabled
+     */
+    public static CastorJAXBContextCache getContextCache() {
+        return contextCache;
+    }
+
+    /**
+     * Retrieves the cache of the class infos shared by all the contexts, which exposes the cache statistics and
+     * allows to drop the class infos of an undeployed class loader.
+     *
+     * @return the class info cache, or null if it has been disabled through the {@link
+     *         ClassInfoCache#DISABLED_PROPERTY} system property
+     */
+    public static ClassInfoCache getClassInfoCache() {
+        return CastorJAXBBootstrap.getInstance().getClassInfoCache();
+    }
+
     /**
      * Registers the {@link CastorJAXBContextFactory} as the default JAXB provider.
      */
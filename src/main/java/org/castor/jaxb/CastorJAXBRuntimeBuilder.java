@@ -0,0 +1,211 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb;
+
+import java.util.Arrays;
+
+import org.castor.core.annotationprocessing.AnnotationProcessor;
+import org.castor.jaxb.naming.JAXBJavaNaming;
+import org.castor.jaxb.naming.JAXBXmlNaming;
+import org.castor.jaxb.reflection.ClassAnnotationProcessingServiceImpl;
+import org.castor.jaxb.reflection.ClassDescriptorBuilder;
+import org.castor.jaxb.reflection.ClassInfoBuilder;
+import org.castor.jaxb.reflection.FieldAnnotationProcessingServiceImpl;
+import org.castor.jaxb.reflection.PackageAnnotationProcessingServiceImpl;
+import org.castor.jaxb.reflection.processor.clazz.XmlEnumProcessor;
+import org.castor.jaxb.reflection.processor.clazz.XmlRootElementProcessor;
+import org.castor.jaxb.reflection.processor.clazz.XmlSeeAlsoProcessor;
+import org.castor.jaxb.reflection.processor.clazz.XmlTypeProcessor;
+import org.castor.jaxb.reflection.processor.field.XmlAnyAttributeProcessor;
+import org.castor.jaxb.reflection.processor.field.XmlAnyElementProcessor;
+import org.castor.jaxb.reflection.processor.field.XmlAttachmentRefProcessor;
+import org.castor.jaxb.reflection.processor.field.XmlAttributeProcessor;
+import org.castor.jaxb.reflection.processor.field.XmlElementProcessor;
+import org.castor.jaxb.reflection.processor.field.XmlElementRefProcessor;
+import org.castor.jaxb.reflection.processor.field.XmlElementRefsProcessor;
+import org.castor.jaxb.reflection.processor.field.XmlElementWrapperProcessor;
+import org.castor.jaxb.reflection.processor.field.XmlElementsProcessor;
+import org.castor.jaxb.reflection.processor.field.XmlEnumValueProcessor;
+import org.castor.jaxb.reflection.processor.field.XmlIDProcessor;
+import org.castor.jaxb.reflection.processor.field.XmlIDREFProcessor;
+import org.castor.jaxb.reflection.processor.field.XmlInlineBinaryDataProcessor;
+import org.castor.jaxb.reflection.processor.field.XmlJavaTypeAdapterProcessor;
+import org.castor.jaxb.reflection.processor.field.XmlListProcessor;
+import org.castor.jaxb.reflection.processor.field.XmlMimeTypeProcessor;
+import org.castor.jaxb.reflection.processor.field.XmlMixedProcessor;
+import org.castor.jaxb.reflection.processor.field.XmlValueProcessor;
+import org.castor.jaxb.reflection.processor.packagge.XmlSchemaProcessor;
+import org.castor.jaxb.reflection.processor.packagge.XmlSchemaTypeProcessor;
+import org.castor.jaxb.reflection.processor.packagge.XmlSchemaTypesProcessor;
+import org.castor.jaxb.resolver.JAXBAdapterRegistry;
+import org.castor.jaxb.resolver.JAXBClassResolverCommand;
+import org.castor.jaxb.resolver.JAXBPackageResolverCommand;
+import org.castor.jaxb.resolver.JAXBResolverStrategy;
+import org.castor.xml.JavaNaming;
+import org.castor.xml.XMLNaming;
+
+/**
+ * Wires the Castor JAXB runtime in plain Java, without Spring reading <code>castor-jaxb-context.xml</code> and
+ * scanning the classpath.
+ * <p/>
+ * The annotation processors are registered in the very same order as in <code>castor-jaxb-context.xml</code>,
+ * so both ways of wiring produce the same descriptors.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+public class CastorJAXBRuntimeBuilder {
+
+    /**
+     * Creates the java naming used by the runtime.
+     *
+     * @return the newly created {@link JAXBJavaNaming}
+     */
+    public JAXBJavaNaming buildJavaNaming() {
+        return new JAXBJavaNaming();
+    }
+
+    /**
+     * Creates the xml naming used by the runtime.
+     *
+     * @return the newly created {@link JAXBXmlNaming}
+     */
+    public JAXBXmlNaming buildXmlNaming() {
+        return new JAXBXmlNaming();
+    }
+
+    /**
+     * Creates the service processing the class level annotations.
+     *
+     * @return the newly created {@link ClassAnnotationProcessingServiceImpl}
+     */
+    public ClassAnnotationProcessingServiceImpl buildClassAnnotationProcessingService() {
+
+        ClassAnnotationProcessingServiceImpl service = new ClassAnnotationProcessingServiceImpl();
+        service.setClassAnnotationProcessors(Arrays.<AnnotationProcessor>asList(
+                new XmlTypeProcessor(),
+                new XmlRootElementProcessor(),
+                new org.castor.jaxb.reflection.processor.clazz.XmlTransientProcessor(),
+                new XmlSeeAlsoProcessor(),
+                new org.castor.jaxb.reflection.processor.clazz.XmlAccessorTypeProcessor(),
+                new org.castor.jaxb.reflection.processor.clazz.XmlAccessorOrderProcessor(),
+                new XmlEnumProcessor()));
+        return service;
+    }
+
+    /**
+     * Creates the service processing the field level annotations.
+     *
+     * @return the newly created {@link FieldAnnotationProcessingServiceImpl}
+     */
+    public FieldAnnotationProcessingServiceImpl buildFieldAnnotationProcessingService() {
+
+        FieldAnnotationProcessingServiceImpl service = new FieldAnnotationProcessingServiceImpl();
+        service.setFieldAnnotationProcessors(Arrays.<AnnotationProcessor>asList(
+                new XmlElementProcessor(),
+                new XmlElementsProcessor(),
+                new XmlElementRefProcessor(),
+                new XmlElementRefsProcessor(),
+                new XmlElementWrapperProcessor(),
+                new XmlAnyElementProcessor(),
+                new XmlAttributeProcessor(),
+                new XmlAnyAttributeProcessor(),
+                new org.castor.jaxb.reflection.processor.field.XmlTransientProcessor(),
+                new XmlValueProcessor(),
+                new XmlIDProcessor(),
+                new XmlIDREFProcessor(),
+                new XmlListProcessor(),
+                new XmlMixedProcessor(),
+                new XmlMimeTypeProcessor(),
+                new XmlAttachmentRefProcessor(),
+                new XmlInlineBinaryDataProcessor(),
+                new XmlEnumValueProcessor(),
+                new XmlJavaTypeAdapterProcessor()));
+        return service;
+    }
+
+    /**
+     * Creates the service processing the package level annotations.
+     *
+     * @return the newly created {@link PackageAnnotationProcessingServiceImpl}
+     */
+    public PackageAnnotationProcessingServiceImpl buildPackageAnnotationProcessingService() {
+
+        PackageAnnotationProcessingServiceImpl service = new PackageAnnotationProcessingServiceImpl();
+        service.setPackageAnnotationProcessors(Arrays.<AnnotationProcessor>asList(
+                new XmlSchemaProcessor(),
+                new org.castor.jaxb.reflection.processor.packagge.XmlAccessorTypeProcessor(),
+                new org.castor.jaxb.reflection.processor.packagge.XmlAccessorOrderProcessor(),
+                new XmlSchemaTypeProcessor(),
+                new XmlSchemaTypesProcessor()));
+        return service;
+    }
+
+    /**
+     * Creates the {@link ClassInfoBuilder} together with its annotation processing services.
+     *
+     * @param javaNaming the java naming to use
+     *
+     * @return the newly created {@link ClassInfoBuilder}
+     *
+     * @throws IllegalArgumentException if javaNaming is null
+     */
+    public ClassInfoBuilder buildClassInfoBuilder(JavaNaming javaNaming) {
+        CastorJAXBUtils.checkNotNull(javaNaming, "javaNaming");
+
+        ClassInfoBuilder classInfoBuilder = new ClassInfoBuilder();
+        classInfoBuilder.setJavaNaming(javaNaming);
+        classInfoBuilder.setPackageAnnotationProcessingService(buildPackageAnnotationProcessingService());
+        classInfoBuilder.setClassAnnotationProcessingService(buildClassAnnotationProcessingService());
+        classInfoBuilder.setFieldAnnotationProcessingService(buildFieldAnnotationProcessingService());
+        return classInfoBuilder;
+    }
+
+    /**
+     * Creates the {@link JAXBResolverStrategy} together with its resolver commands. The descriptors built by the
+     * strategy use the passed adapter registry.
+     *
+     * @param classInfoBuilder    the {@link ClassInfoBuilder} to use
+     * @param xmlNaming           the xml naming to use
+     * @param jaxbAdapterRegistry the adapter registry to use
+     *
+     * @return the newly created {@link JAXBResolverStrategy}
+     *
+     * @throws IllegalArgumentException if any of the arguments is null
+     */
+    public JAXBResolverStrategy buildResolverStrategy(ClassInfoBuilder classInfoBuilder, XMLNaming xmlNaming,
+                                                      JAXBAdapterRegistry jaxbAdapterRegistry) {
+        CastorJAXBUtils.checkNotNull(classInfoBuilder, "classInfoBuilder");
+        CastorJAXBUtils.checkNotNull(xmlNaming, "xmlNaming");
+        CastorJAXBUtils.checkNotNull(jaxbAdapterRegistry, "jaxbAdapterRegistry");
+
+        ClassDescriptorBuilder classDescriptorBuilder = new ClassDescriptorBuilder();
+        classDescriptorBuilder.setXMLNaming(xmlNaming);
+        classDescriptorBuilder.setJaxbAdapterRegistry(jaxbAdapterRegistry);
+
+        JAXBClassResolverCommand classResolverCommand = new JAXBClassResolverCommand();
+        classResolverCommand.setClassInfoBuilder(classInfoBuilder);
+        classResolverCommand.setClassDescriptorBuilder(classDescriptorBuilder);
+
+        JAXBPackageResolverCommand packageResolverCommand = new JAXBPackageResolverCommand();
+        packageResolverCommand.setClassResolverCommand(classResolverCommand);
+
+        JAXBResolverStrategy resolverStrategy = new JAXBResolverStrategy();
+        resolverStrategy.setClassResolverCommand(classResolverCommand);
+        resolverStrategy.setPackageResolverCommand(packageResolverCommand);
+        return resolverStrategy;
+    }
+}
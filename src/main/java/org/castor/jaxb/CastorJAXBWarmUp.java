@@ -0,0 +1,309 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb;
+
+import org.castor.jaxb.reflection.JAXBFieldHandlerImpl;
+import org.exolab.castor.mapping.FieldHandler;
+import org.exolab.castor.xml.XMLClassDescriptor;
+import org.exolab.castor.xml.XMLFieldDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Warms up a {@link CastorJAXBContext} before it serves any traffic. A sample instance is synthesized for every
+ * bound root element class from its descriptor, and the samples are then repeatedly marshalled and unmarshalled in
+ * memory. This primes the descriptor resolution, the adapters, the parser factories and the just in time compiler.
+ * <p/>
+ * The samples have their single valued properties of simple types set, and their nested objects populated up to
+ * {@link #MAX_DEPTH} levels. A sample that can not be round tripped is replaced by an instance without any property
+ * set. A class that can not be instantiated or round tripped at all is skipped, the warm-up never fails.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+final class CastorJAXBWarmUp {
+
+    /**
+     * Logger used by this class.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(CastorJAXBWarmUp.class);
+
+    /**
+     * Represents the maximum depth of the nested objects of a sample.
+     */
+    static final int MAX_DEPTH = 3;
+
+    /**
+     * Represents the sample values of the simple types.
+     */
+    private static final Map<Class<?>, Object> SAMPLE_VALUES = new HashMap<Class<?>, Object>();
+
+    static {
+        SAMPLE_VALUES.put(String.class, "warm-up");
+        SAMPLE_VALUES.put(Boolean.class, Boolean.TRUE);
+        SAMPLE_VALUES.put(Boolean.TYPE, Boolean.TRUE);
+        SAMPLE_VALUES.put(Byte.class, (byte) 1);
+        SAMPLE_VALUES.put(Byte.TYPE, (byte) 1);
+        SAMPLE_VALUES.put(Short.class, (short) 1);
+        SAMPLE_VALUES.put(Short.TYPE, (short) 1);
+        SAMPLE_VALUES.put(Integer.class, 1);
+        SAMPLE_VALUES.put(Integer.TYPE, 1);
+        SAMPLE_VALUES.put(Long.class, 1L);
+        SAMPLE_VALUES.put(Long.TYPE, 1L);
+        SAMPLE_VALUES.put(Float.class, 1F);
+        SAMPLE_VALUES.put(Float.TYPE, 1F);
+        SAMPLE_VALUES.put(Double.class, 1D);
+        SAMPLE_VALUES.put(Double.TYPE, 1D);
+        SAMPLE_VALUES.put(BigInteger.class, BigInteger.ONE);
+        SAMPLE_VALUES.put(BigDecimal.class, BigDecimal.ONE);
+    }
+
+    /**
+     * Represents the context to warm up.
+     */
+    private final CastorJAXBContext context;
+
+    /**
+     * Creates new instance of {@link CastorJAXBWarmUp} class.
+     *
+     * @param context the context to warm up
+     */
+    CastorJAXBWarmUp(CastorJAXBContext context) {
+        this.context = context;
+    }
+
+    /**
+     * Synthesizes the samples of the given classes and marshals and unmarshals each of them the given number of
+     * times.
+     *
+     * @param descriptors the descriptors of the classes to warm up
+     * @param iterations  the number of round trips of every sample
+     *
+     * @return the number of classes that were warmed up
+     *
+     * @throws JAXBException if the marshaller or the unmarshaller can not be created
+     */
+    int warmUp(Collection<XMLClassDescriptor> descriptors, int iterations) throws JAXBException {
+
+        Map<Class<?>, XMLClassDescriptor> descriptorsByClass = new HashMap<Class<?>, XMLClassDescriptor>();
+        for (XMLClassDescriptor descriptor : descriptors) {
+            descriptorsByClass.put(descriptor.getJavaClass(), descriptor);
+        }
+
+        Marshaller marshaller = context.createMarshaller();
+        Unmarshaller unmarshaller = context.createUnmarshaller();
+
+        int count = 0;
+        for (XMLClassDescriptor descriptor : descriptors) {
+            if (!descriptor.getJavaClass().isAnnotationPresent(XmlRootElement.class)) {
+                continue;
+            }
+
+            Object sample = createSample(descriptor, descriptorsByClass, 0);
+            if (sample == null) {
+                continue;
+            }
+
+            // falls back to an instance without any property set, if the synthesized values are not accepted
+            if (roundTrip(sample, marshaller, unmarshaller, iterations)
+                    || roundTrip(createInstance(descriptor.getJavaClass()), marshaller, unmarshaller, iterations)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Marshals and unmarshals the sample the given number of times.
+     *
+     * @param sample       the sample
+     * @param marshaller   the marshaller to use
+     * @param unmarshaller the unmarshaller to use
+     * @param iterations   the number of round trips
+     *
+     * @return true if the sample has been round tripped, false if it failed
+     */
+    private static boolean roundTrip(Object sample, Marshaller marshaller, Unmarshaller unmarshaller,
+                                     int iterations) {
+
+        try {
+            for (int i = 0; i < iterations; i++) {
+                StringWriter writer = new StringWriter();
+                marshaller.marshal(sample, writer);
+                unmarshaller.unmarshal(new StringReader(writer.toString()));
+            }
+            return true;
+        } catch (JAXBException e) {
+            LOG.debug("Unable to warm up " + sample.getClass().getName() + ", it will be skipped.", e);
+        } catch (RuntimeException e) {
+            LOG.debug("Unable to warm up " + sample.getClass().getName() + ", it will be skipped.", e);
+        }
+        return false;
+    }
+
+    /**
+     * Synthesizes a sample instance of the described class.
+     *
+     * @param descriptor         the class descriptor
+     * @param descriptorsByClass the known descriptors, by class
+     * @param depth              the depth of the sample within the enclosing sample
+     *
+     * @return the sample, or null if the class can not be instantiated
+     */
+    static Object createSample(XMLClassDescriptor descriptor, Map<Class<?>, XMLClassDescriptor> descriptorsByClass,
+                               int depth) {
+
+        Class<?> type = descriptor.getJavaClass();
+        Object sample = createInstance(type);
+        if (sample == null) {
+            return null;
+        }
+
+        List<XMLFieldDescriptor> fields = new ArrayList<XMLFieldDescriptor>();
+        addFields(fields, descriptor.getAttributeDescriptors());
+        addFields(fields, descriptor.getElementDescriptors());
+        if (descriptor.getContentDescriptor() != null) {
+            fields.add(descriptor.getContentDescriptor());
+        }
+
+        for (XMLFieldDescriptor field : fields) {
+            // the descriptors expose raw handlers, the value is checked by the handler itself
+            @SuppressWarnings("unchecked")
+            FieldHandler<Object> handler = field.getHandler();
+            if (field.isMultivalued() || handler == null) {
+                continue;
+            }
+
+            Object value = createValue(getValueType(field), descriptorsByClass, depth);
+            if (value != null) {
+                try {
+                    handler.setValue(sample, value);
+                } catch (RuntimeException e) {
+                    // the property is left unset
+                    LOG.debug("Unable to set the " + field.getFieldName() + " property of the " + type.getName()
+                            + " sample.", e);
+                }
+            }
+        }
+        return sample;
+    }
+
+    /**
+     * Creates an instance of the given class through its no argument constructor.
+     *
+     * @param type the class
+     *
+     * @return the created instance, or null if the class can not be instantiated
+     */
+    private static Object createInstance(Class<?> type) {
+
+        if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+            return null;
+        }
+
+        try {
+            return type.newInstance();
+        } catch (InstantiationException e) {
+            return null;
+        } catch (IllegalAccessException e) {
+            return null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Synthesizes a sample value of the given type.
+     *
+     * @param type               the value type
+     * @param descriptorsByClass the known descriptors, by class
+     * @param depth              the depth of the enclosing sample
+     *
+     * @return the sample value, or null if none can be synthesized
+     */
+    private static Object createValue(Class<?> type, Map<Class<?>, XMLClassDescriptor> descriptorsByClass,
+                                      int depth) {
+
+        if (type == null) {
+            return null;
+        }
+
+        Object value = SAMPLE_VALUES.get(type);
+        if (value != null) {
+            return value;
+        }
+
+        if (type.isEnum()) {
+            Object[] constants = type.getEnumConstants();
+            return constants.length > 0 ? constants[0] : null;
+        }
+
+        XMLClassDescriptor descriptor = descriptorsByClass.get(type);
+        if (descriptor != null && depth < MAX_DEPTH) {
+            return createSample(descriptor, descriptorsByClass, depth + 1);
+        }
+        return null;
+    }
+
+    /**
+     * Retrieves the type of the values of the field. A field handed to Castor in its lexical form is bound as a
+     * string, its handler knows the type of the values it actually accepts.
+     *
+     * @param field the field descriptor
+     *
+     * @return the type of the values of the field
+     */
+    private static Class<?> getValueType(XMLFieldDescriptor field) {
+
+        if (field.getHandler() instanceof JAXBFieldHandlerImpl) {
+            Class<?> valueType = ((JAXBFieldHandlerImpl) field.getHandler()).getValueType();
+            if (valueType != null) {
+                return valueType;
+            }
+        }
+        return field.getFieldType();
+    }
+
+    /**
+     * Adds the field descriptors to the list.
+     *
+     * @param fields      the list of the field descriptors
+     * @param descriptors the field descriptors to add, may be null
+     */
+    private static void addFields(List<XMLFieldDescriptor> fields, XMLFieldDescriptor[] descriptors) {
+
+        if (descriptors != null) {
+            for (XMLFieldDescriptor descriptor : descriptors) {
+                fields.add(descriptor);
+            }
+        }
+    }
+}
@@ -15,11 +15,25 @@
  */
 package org.castor.jaxb;
 
+import org.castor.jaxb.adapters.FragmentSequenceHandler;
 import org.castor.jaxb.adapters.MarshalListenerAdapter;
+import org.castor.jaxb.adapters.SAXEventBuffer;
+import org.castor.jaxb.adapters.ValidatingContentHandler;
+import org.castor.jaxb.adapters.ValidationEventHandlerAdapter;
+import org.castor.jaxb.resolver.JAXBAdapterRegistry;
+import org.castor.xml.XMLProperties;
 import org.exolab.castor.xml.MarshalException;
+import org.exolab.castor.xml.OutputFormat;
+import org.exolab.castor.xml.Serializer;
 import org.exolab.castor.xml.ValidationException;
+import org.exolab.castor.xml.util.DocumentHandlerAdapter;
+import org.exolab.castor.xml.util.SAX2DOMHandler;
+import org.exolab.castor.xml.util.StaxEventHandler;
+import org.exolab.castor.xml.util.StaxStreamHandler;
 import org.w3c.dom.Node;
 import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
 
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
@@ -28,18 +42,40 @@ import javax.xml.bind.ValidationEventHandler;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.annotation.adapters.XmlAdapter;
 import javax.xml.bind.attachment.AttachmentMarshaller;
+import javax.xml.namespace.QName;
 import javax.xml.stream.XMLEventWriter;
 import javax.xml.stream.XMLStreamWriter;
 import javax.xml.transform.Result;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.stream.StreamResult;
 import javax.xml.validation.Schema;
+import javax.xml.validation.ValidatorHandler;
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * The implementation of {@link org.exolab.castor.xml.Marshaller} which wraps the Castor {@link
@@ -51,6 +87,82 @@ import java.util.Map;
  */
 public class CastorMarshaller implements Marshaller {
 
+    /**
+     * Represents the name of the property that enables reusing the backend marshaller across the calls of this
+     * marshaller. Expects a {@link Boolean} or its {@link String} representation, disabled by default.
+     * <p/>
+     * When enabled, the backend marshaller is created and configured on the first call only. The later calls merely
+     * set their output, and the changes of the properties and of the listener are applied to the kept marshaller.
+     * The marshaller is dropped whenever a marshalling fails. A marshalling started from within another one, for
+     * instance by the listener, uses a marshaller of its own.
+     */
+    public static final String REUSE_MARSHALLER_PROPERTY = "org.castor.jaxb.marshaller.reuse";
+
+    /**
+     * Represents the name of the property selecting how the output is written when a {@link Schema} is set. Expects
+     * a {@link ValidationOutput} or its name, {@link ValidationOutput#BUFFERED} by default.
+     */
+    public static final String VALIDATION_OUTPUT_PROPERTY = "org.castor.jaxb.marshaller.validationOutput";
+
+    /**
+     * Represents the name of the property setting after how many items {@link #marshalSequence(QName, Iterator,
+     * Writer)} flushes the output. Expects a positive {@link Integer} or its {@link String} representation, 100 by
+     * default.
+     */
+    public static final String SEQUENCE_FLUSH_INTERVAL_PROPERTY = "org.castor.jaxb.marshaller.sequenceFlushInterval";
+
+    /**
+     * Represents the name of the property setting how many chunks of a sequence are marshalled in parallel. Expects a
+     * positive {@link Integer} or its {@link String} representation, 1 by default, which marshals the sequence in
+     * the calling thread.
+     * <p/>
+     * Above 1, the items of a sequence longer than {@link #SEQUENCE_CHUNK_SIZE_PROPERTY} are split into chunks. The
+     * chunks are marshalled by the {@link #SEQUENCE_EXECUTOR_PROPERTY} into buffers of events, which the calling
+     * thread serializes in the order of the items, validating them if a {@link Schema} is set. The output is the same
+     * as in the calling thread; the listener is however invoked from several threads at the same time.
+     */
+    public static final String SEQUENCE_PARALLELISM_PROPERTY = "org.castor.jaxb.marshaller.sequenceParallelism";
+
+    /**
+     * Represents the name of the property setting the number of items of a chunk marshalled in parallel. Expects a
+     * positive {@link Integer} or its {@link String} representation, 1000 by default.
+     */
+    public static final String SEQUENCE_CHUNK_SIZE_PROPERTY = "org.castor.jaxb.marshaller.sequenceChunkSize";
+
+    /**
+     * Represents the name of the property setting the {@link Executor} that marshals the chunks of a sequence in
+     * parallel. By default, virtual threads if the JVM provides them, otherwise a shared bounded pool of daemon
+     * threads, distinct from the one running the asynchronous tasks. An executor that rejects a chunk fails the
+     * marshalling with a {@link JAXBException}.
+     */
+    public static final String SEQUENCE_EXECUTOR_PROPERTY = "org.castor.jaxb.marshaller.sequenceExecutor";
+
+    /**
+     * Represents the default number of items after which a sequence is flushed.
+     */
+    private static final int DEFAULT_SEQUENCE_FLUSH_INTERVAL = 100;
+
+    /**
+     * Represents the default number of items of a chunk marshalled in parallel.
+     */
+    private static final int DEFAULT_SEQUENCE_CHUNK_SIZE = 1000;
+
+    /**
+     * Represents the UTF-8 charset.
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Represents the output of the reused backend marshaller between the calls, discarding any event.
+     */
+    private static final ContentHandler NO_OUTPUT = new DefaultHandler();
+
+    /**
+     * Represents the character output of the serializer of the reused backend marshaller between the calls,
+     * discarding any character.
+     */
+    private static final Writer NO_OUTPUT_WRITER = new NoOutputWriter();
+
     /**
      * Represents the instance of {@link CastorJAXBContext} that created this marshaller.
      */
@@ -61,6 +173,11 @@ public class CastorMarshaller implements Marshaller {
      */
     private final Map<String, Object> properties = new HashMap<String, Object>();
 
+    /**
+     * Represents the adapters registered on this marshaller, by adapter class.
+     */
+    private final Map<Class, XmlAdapter> adapters = new HashMap<Class, XmlAdapter>();
+
     /**
      * Represents the marshall listener.
      */
@@ -71,6 +188,57 @@ public class CastorMarshaller implements Marshaller {
      */
     private Schema schema;
 
+    /**
+     * Represents the handler of the validation events, null for the default behaviour.
+     */
+    private ValidationEventHandler eventHandler;
+
+    /**
+     * Represents how the output is written when validating.
+     */
+    private ValidationOutput validationOutput = ValidationOutput.BUFFERED;
+
+    /**
+     * Represents the number of items after which a sequence is flushed.
+     */
+    private int sequenceFlushInterval = DEFAULT_SEQUENCE_FLUSH_INTERVAL;
+
+    /**
+     * Represents the number of chunks of a sequence marshalled in parallel.
+     */
+    private int sequenceParallelism = 1;
+
+    /**
+     * Represents the number of items of a chunk marshalled in parallel.
+     */
+    private int sequenceChunkSize = DEFAULT_SEQUENCE_CHUNK_SIZE;
+
+    /**
+     * Represents the executor marshalling the chunks of a sequence, null for the default one.
+     */
+    private Executor sequenceExecutor;
+
+    /**
+     * Represents whether the backend marshaller is reused across the calls.
+     */
+    private boolean reuseMarshaller;
+
+    /**
+     * Represents the reused backend marshaller, null until the first call or after a failed marshalling.
+     */
+    private org.exolab.castor.xml.Marshaller reusableMarshaller;
+
+    /**
+     * Represents the reused backend marshaller while it is marshalling, null otherwise.
+     */
+    private org.exolab.castor.xml.Marshaller acquiredMarshaller;
+
+    /**
+     * Represents whether the output of the acquired backend marshaller was given to a backend serializer, which
+     * keeps referring to it.
+     */
+    private boolean serializerOutput;
+
     /**
      * Creates new instance of {@link CastorMarshaller} with the given {@link CastorJAXBContext}
      * instance.
@@ -93,16 +261,22 @@ public class CastorMarshaller implements Marshaller {
         // checks the input parameter
         CastorJAXBUtils.checkNotNull(result, "result");
 
+        // retrieves the instance of marshaller
+        org.exolab.castor.xml.Marshaller marshaller = acquireMarshaller();
         try {
-            // creates the instance of marshaller
-            org.exolab.castor.xml.Marshaller marshaller = createMarshaller();
             // sets the output
             marshaller.setResult(result);
+            if (result instanceof StreamResult) {
+                serializerOutput = true;
+                configureSerializer(marshaller);
+            }
             // marshals the object
-            validateAndMarshal(marshaller, jaxbElement);
+            validateAndMarshal(marshaller, jaxbElement, result);
         } catch (IOException e) {
             // wraps and throws exception
             throw CastorJAXBUtils.convertToJAXBException("Exception occurred when marshalling object.", e);
+        } finally {
+            releaseMarshaller(marshaller);
         }
     }
 
@@ -113,16 +287,56 @@ public class CastorMarshaller implements Marshaller {
         // checks the input
         CastorJAXBUtils.checkNotNull(os, "os");
 
+        // marshals the object
+        marshalToStream(jaxbElement, os);
+    }
+
+    /**
+     * Marshals the object into the given channel, encoded as set by the {@link #JAXB_ENCODING} property. UTF-8 is
+     * encoded into a pooled buffer that is written to the channel as it is, without any intermediate copy. The channel
+     * is not closed. A selectable channel must be in blocking mode.
+     *
+     * @param jaxbElement the object to marshal
+     * @param channel     the output
+     *
+     * @throws IllegalArgumentException if any of the arguments is null, or the channel is in non-blocking mode
+     * @throws JAXBException            if any error occurs during marshalling
+     */
+    public void marshal(Object jaxbElement, WritableByteChannel channel) throws JAXBException {
+        // checks the input
+        CastorJAXBUtils.checkNotNull(channel, "channel");
+
+        // marshals the object
+        marshalToStream(jaxbElement, new ChannelOutputStream(channel));
+    }
+
+    /**
+     * Marshals the object into the given buffer, heap or direct, encoded as set by the {@link #JAXB_ENCODING}
+     * property. The output is put at the position of the buffer, which is advanced past it. The buffer is not
+     * expanded; if the output does not fit into its remaining space, the marshalling fails and the position is left
+     * unchanged.
+     *
+     * @param jaxbElement the object to marshal
+     * @param buffer      the output
+     *
+     * @throws IllegalArgumentException if any of the arguments is null
+     * @throws JAXBException            if the output does not fit into the buffer or any error occurs during
+     *                                  marshalling
+     */
+    public void marshal(Object jaxbElement, ByteBuffer buffer) throws JAXBException {
+        // checks the input
+        CastorJAXBUtils.checkNotNull(buffer, "buffer");
+
+        int position = buffer.position();
+        boolean completed = false;
         try {
-            // creates the instance of marshaller
-            org.exolab.castor.xml.Marshaller marshaller = createMarshaller();
-            // sets the output
-            marshaller.setWriter(new OutputStreamWriter(os));
             // marshals the object
-            validateAndMarshal(marshaller, jaxbElement);
-        } catch (IOException e) {
-            // wraps and throws exception
-            throw CastorJAXBUtils.convertToJAXBException("Exception occurred when marshalling object.", e);
+            marshalToStream(jaxbElement, new ByteBufferOutputStream(buffer));
+            completed = true;
+        } finally {
+            if (!completed) {
+                buffer.position(position);
+            }
         }
     }
 
@@ -134,12 +348,13 @@ public class CastorMarshaller implements Marshaller {
         CastorJAXBUtils.checkNotNull(output, "output");
 
         try {
-            // creates the instance of marshaller
-            org.exolab.castor.xml.Marshaller marshaller = createMarshaller();
-            // sets the output
-            marshaller.setWriter(new FileWriter(output));
-            // marshals the object
-            validateAndMarshal(marshaller, jaxbElement);
+            OutputStream outputStream = new FileOutputStream(output);
+            try {
+                // marshals the object
+                marshalToStream(jaxbElement, outputStream);
+            } finally {
+                outputStream.close();
+            }
         } catch (IOException e) {
             // wraps and throws exception
             throw CastorJAXBUtils.convertToJAXBException("Exception occurred when marshalling object.", e);
@@ -153,16 +368,20 @@ public class CastorMarshaller implements Marshaller {
         // checks the input
         CastorJAXBUtils.checkNotNull(writer, "writer");
 
+        // retrieves the instance of marshaller
+        org.exolab.castor.xml.Marshaller marshaller = acquireMarshaller();
         try {
-            // creates the instance of marshaller
-            org.exolab.castor.xml.Marshaller marshaller = createMarshaller();
             // sets the output
-            marshaller.setWriter(writer);
+            setOutput(marshaller, writer);
             // marshals the object
-            validateAndMarshal(marshaller, jaxbElement);
+            validateAndMarshal(marshaller, jaxbElement, writer);
+            // writes the output kept by the serializer
+            writer.flush();
         } catch (IOException e) {
             // wraps and throws exception
             throw CastorJAXBUtils.convertToJAXBException("Exception occurred when marshalling object.", e);
+        } finally {
+            releaseMarshaller(marshaller);
         }
     }
 
@@ -173,12 +392,16 @@ public class CastorMarshaller implements Marshaller {
         // checks the input
         CastorJAXBUtils.checkNotNull(handler, "handler");
 
-        // creates the instance of marshaller
-        org.exolab.castor.xml.Marshaller marshaller = createMarshaller();
-        // sets the output
-        marshaller.setContentHandler(handler);
-        // marshals the object
-        validateAndMarshal(marshaller, jaxbElement);
+        // retrieves the instance of marshaller
+        org.exolab.castor.xml.Marshaller marshaller = acquireMarshaller();
+        try {
+            // sets the output
+            marshaller.setContentHandler(handler);
+            // marshals the object
+            validateAndMarshal(marshaller, jaxbElement, handler);
+        } finally {
+            releaseMarshaller(marshaller);
+        }
     }
 
     /**
@@ -188,12 +411,16 @@ public class CastorMarshaller implements Marshaller {
         // checks the input
         CastorJAXBUtils.checkNotNull(node, "node");
 
-        // creates the instance of marshaller
-        org.exolab.castor.xml.Marshaller marshaller = createMarshaller();
-        // sets the output
-        marshaller.setNode(node);
-        // marshals the object
-        validateAndMarshal(marshaller, jaxbElement);
+        // retrieves the instance of marshaller
+        org.exolab.castor.xml.Marshaller marshaller = acquireMarshaller();
+        try {
+            // sets the output
+            marshaller.setNode(node);
+            // marshals the object
+            validateAndMarshal(marshaller, jaxbElement, node);
+        } finally {
+            releaseMarshaller(marshaller);
+        }
     }
 
     /**
@@ -203,12 +430,16 @@ public class CastorMarshaller implements Marshaller {
         // checks the input
         CastorJAXBUtils.checkNotNull(writer, "writer");
 
-        // creates the instance of marshaller
-        org.exolab.castor.xml.Marshaller marshaller = createMarshaller();
-        // sets the output
-        marshaller.setXmlStreamWriter(writer);
-        // marshals the object
-        validateAndMarshal(marshaller, jaxbElement);
+        // retrieves the instance of marshaller
+        org.exolab.castor.xml.Marshaller marshaller = acquireMarshaller();
+        try {
+            // sets the output
+            marshaller.setXmlStreamWriter(writer);
+            // marshals the object
+            validateAndMarshal(marshaller, jaxbElement, writer);
+        } finally {
+            releaseMarshaller(marshaller);
+        }
     }
 
     /**
@@ -218,12 +449,80 @@ public class CastorMarshaller implements Marshaller {
         // checks the input
         CastorJAXBUtils.checkNotNull(writer, "writer");
 
-        // creates the instance of marshaller
-        org.exolab.castor.xml.Marshaller marshaller = createMarshaller();
-        // sets the output
-        marshaller.setXmlEventWriter(writer);
-        // marshals the object
-        validateAndMarshal(marshaller, jaxbElement);
+        // retrieves the instance of marshaller
+        org.exolab.castor.xml.Marshaller marshaller = acquireMarshaller();
+        try {
+            // sets the output
+            marshaller.setXmlEventWriter(writer);
+            // marshals the object
+            validateAndMarshal(marshaller, jaxbElement, writer);
+        } finally {
+            releaseMarshaller(marshaller);
+        }
+    }
+
+    /**
+     * Marshals the items, one by one, as the content of a single wrapper element. The items are marshalled as
+     * fragments into the same output and are not referenced once marshalled, so the memory used does not depend on
+     * their count. The namespaces of the wrapper and of the first item are declared once, on the wrapper.
+     * <p/>
+     * The sequence is written as a whole document, unless the {@link #JAXB_FRAGMENT} property is set. The writer is
+     * flushed every {@link #SEQUENCE_FLUSH_INTERVAL_PROPERTY} items and at the end. When a {@link Schema} is set, the
+     * whole sequence is validated, and its events are always streamed, whatever the {@link ValidationOutput}.
+     * Long sequences may be marshalled in parallel, as set by the {@link #SEQUENCE_PARALLELISM_PROPERTY}.
+     *
+     * @param wrapper the name of the wrapper element
+     * @param items   the items to marshal, either bound objects or {@link JAXBElement}s
+     * @param writer  the output
+     *
+     * @return the number of marshalled items
+     *
+     * @throws IllegalArgumentException if any of the arguments is null
+     * @throws JAXBException            if any error occurs during marshalling
+     */
+    public int marshalSequence(QName wrapper, Iterator<?> items, Writer writer) throws JAXBException {
+        // checks the input
+        CastorJAXBUtils.checkNotNull(wrapper, "wrapper");
+        CastorJAXBUtils.checkNotNull(items, "items");
+        CastorJAXBUtils.checkNotNull(writer, "writer");
+
+        // retrieves the instance of marshaller
+        org.exolab.castor.xml.Marshaller marshaller = acquireMarshaller();
+        try {
+            // marshals the items
+            return marshalSequence(marshaller, wrapper, items, writer);
+        } finally {
+            releaseMarshaller(marshaller);
+        }
+    }
+
+    /**
+     * Marshals the items, one by one, as the content of a single wrapper element into the stream, encoded as set by
+     * the {@link #JAXB_ENCODING} property. The stream is flushed but not closed.
+     *
+     * @param wrapper the name of the wrapper element
+     * @param items   the items to marshal, either bound objects or {@link JAXBElement}s
+     * @param os      the output
+     *
+     * @return the number of marshalled items
+     *
+     * @throws IllegalArgumentException if any of the arguments is null
+     * @throws JAXBException            if any error occurs during marshalling
+     * @see #marshalSequence(QName, Iterator, Writer)
+     */
+    public int marshalSequence(QName wrapper, Iterator<?> items, OutputStream os) throws JAXBException {
+        // checks the input
+        CastorJAXBUtils.checkNotNull(os, "os");
+
+        Writer writer = createWriter(os);
+        try {
+            // marshals the items
+            return marshalSequence(wrapper, items, writer);
+        } finally {
+            if (writer instanceof EncodingWriter) {
+                ((EncodingWriter) writer).release();
+            }
+        }
     }
 
     /**
@@ -241,8 +540,33 @@ public class CastorMarshaller implements Marshaller {
      */
     public void setProperty(String name, Object value) throws PropertyException {
 
+        if (REUSE_MARSHALLER_PROPERTY.equals(name)) {
+            reuseMarshaller = isTrue(value);
+            if (!reuseMarshaller) {
+                reusableMarshaller = null;
+            }
+        } else if (VALIDATION_OUTPUT_PROPERTY.equals(name)) {
+            validationOutput = toValidationOutput(value);
+        } else if (SEQUENCE_FLUSH_INTERVAL_PROPERTY.equals(name)) {
+            sequenceFlushInterval = toPositiveInt(name, value);
+        } else if (SEQUENCE_PARALLELISM_PROPERTY.equals(name)) {
+            sequenceParallelism = toPositiveInt(name, value);
+        } else if (SEQUENCE_CHUNK_SIZE_PROPERTY.equals(name)) {
+            sequenceChunkSize = toPositiveInt(name, value);
+        } else if (SEQUENCE_EXECUTOR_PROPERTY.equals(name)) {
+            if (value != null && !(value instanceof Executor)) {
+                throw new PropertyException(name, value);
+            }
+            sequenceExecutor = (Executor) value;
+        }
+
         // adds the property to map
-        properties.put(name, value);
+        Object previous = properties.put(name, value);
+
+        // applies the changed property to the reused marshaller
+        if (reusableMarshaller != null && (previous == null ? value != null : !previous.equals(value))) {
+            setMarshallerProperty(reusableMarshaller, name, value);
+        }
     }
 
     /**
@@ -259,8 +583,8 @@ public class CastorMarshaller implements Marshaller {
      */
     public void setEventHandler(ValidationEventHandler handler) throws JAXBException {
 
-        // TODO implement
-        throw new UnsupportedOperationException("Marshaller.setEventHandler method is unsupported.");
+        // sets the handler
+        this.eventHandler = handler;
     }
 
     /**
@@ -268,8 +592,8 @@ public class CastorMarshaller implements Marshaller {
      */
     public ValidationEventHandler getEventHandler() throws JAXBException {
 
-        // TODO implement
-        throw new UnsupportedOperationException("Marshaller.getEventHandler method is unsupported.");
+        // returns the handler
+        return eventHandler;
     }
 
     /**
@@ -288,7 +612,12 @@ public class CastorMarshaller implements Marshaller {
     public <A extends XmlAdapter> void setAdapter(Class<A> type, A adapter) {
         CastorJAXBUtils.checkNotNull(type, "type");
 
-        context.getJaxbAdapterRegistry().setAdapter(type, adapter);
+        // the adapters are kept by this marshaller, the context may be shared by other callers
+        if (adapter == null) {
+            adapters.remove(type);
+        } else {
+            adapters.put(type, adapter);
+        }
     }
 
     /**
@@ -298,7 +627,7 @@ public class CastorMarshaller implements Marshaller {
     public <A extends XmlAdapter> A getAdapter(Class<A> type) {
         CastorJAXBUtils.checkNotNull(type, "type");
 
-        return (A) context.getJaxbAdapterRegistry().getAdapter(type);
+        return (A) adapters.get(type);
     }
 
     /**
@@ -342,6 +671,10 @@ public class CastorMarshaller implements Marshaller {
 
         // sets the listener
         this.listener = listener;
+
+        if (reusableMarshaller != null) {
+            reusableMarshaller.setMarshalListener(listener != null ? new MarshalListenerAdapter(listener) : null);
+        }
     }
 
     /**
@@ -354,51 +687,468 @@ public class CastorMarshaller implements Marshaller {
     }
 
     /**
-     * Marshals the given object.
+     * Marshals the given object into the stream, encoded as set by the {@link #JAXB_ENCODING} property, UTF-8 by
+     * default. UTF-8 is written through an {@link EncodingWriter}, any other encoding through a buffered {@link
+     * OutputStreamWriter}. The stream is flushed but not closed.
+     *
+     * @param jaxbElement  the object to marshall
+     * @param outputStream the stream to write to
+     *
+     * @throws JAXBException if the encoding is not supported or any error occurs during marshalling
+     */
+    private void marshalToStream(Object jaxbElement, OutputStream outputStream) throws JAXBException {
+
+        Writer writer = createWriter(outputStream);
+
+        // retrieves the instance of marshaller
+        org.exolab.castor.xml.Marshaller marshaller = acquireMarshaller();
+        try {
+            // sets the output
+            setOutput(marshaller, writer);
+            // marshals the object
+            validateAndMarshal(marshaller, jaxbElement, writer);
+            // writes the buffered output
+            writer.flush();
+        } catch (IOException e) {
+            // wraps and throws exception
+            throw CastorJAXBUtils.convertToJAXBException("Exception occurred when marshalling object.", e);
+        } finally {
+            releaseMarshaller(marshaller);
+
+            if (writer instanceof EncodingWriter) {
+                ((EncodingWriter) writer).release();
+            }
+        }
+    }
+
+    /**
+     * Creates the writer encoding the characters into the given stream.
+     *
+     * @param outputStream the stream to write to
+     *
+     * @return the writer
+     *
+     * @throws JAXBException if the encoding is not supported
+     */
+    private Writer createWriter(OutputStream outputStream) throws JAXBException {
+
+        Charset charset;
+        try {
+            charset = getCharset();
+        } catch (UnsupportedEncodingException e) {
+            // wraps and throws exception
+            throw CastorJAXBUtils.convertToJAXBException(e.getMessage(), e);
+        }
+
+        if (UTF_8.equals(charset)) {
+            return new EncodingWriter(outputStream);
+        }
+        return new OutputStreamWriter(new BufferedOutputStream(outputStream, EncodingWriter.BUFFER_SIZE), charset);
+    }
+
+    /**
+     * Retrieves the charset set by the {@link #JAXB_ENCODING} property, UTF-8 by default.
      *
-     * @param marshaller  the marshaller to use
+     * @return the charset
+     *
+     * @throws UnsupportedEncodingException if the encoding is not supported
+     */
+    private Charset getCharset() throws UnsupportedEncodingException {
+
+        Object encoding = properties.get(JAXB_ENCODING);
+        if (encoding == null) {
+            return UTF_8;
+        }
+
+        try {
+            return Charset.forName(String.valueOf(encoding).trim());
+        } catch (IllegalArgumentException e) {
+            // covers both the illegal and the unsupported charset names
+            throw new UnsupportedEncodingException("Unsupported encoding " + encoding + ".");
+        }
+    }
+
+    /**
+     * Marshals the given object. If a schema is set, the marshalled document is validated in the same pass, as
+     * described by {@link ValidationOutput}.
+     *
+     * @param marshaller  the marshaller to use, with the output already set
      * @param jaxbElement the object to marshall
+     * @param output      the output set to the marshaller
      * @throws IllegalArgumentException if the argument is null
      * @throws JAXBException            if any error occurs during marshalling
      */
     private void validateAndMarshal(org.exolab.castor.xml.Marshaller marshaller,
-                                    Object jaxbElement) throws JAXBException {
+                                    Object jaxbElement, Object output) throws JAXBException {
         // checks the input parameter
         CastorJAXBUtils.checkNotNull(jaxbElement, "jaxbElement");
 
+        JAXBAdapterRegistry adapterRegistry = context.getJaxbAdapterRegistry();
+        Map<Class, XmlAdapter> previousAdapters = adapterRegistry.bindAdapters(adapters);
+        boolean completed = false;
         try {
             Object jaxbObj = unwrapJAXBElement(jaxbElement);
 
-            validate(jaxbObj);
-
-            // marshals the object
-            marshaller.marshal(jaxbObj);
-
+            if (schema != null) {
+                // a stream is written through the same writer as the one used by the unvalidated path
+                Writer streamWriter = createStreamWriter(output);
+                try {
+                    // marshals and validates the object
+                    marshalValidated(marshaller, jaxbObj,
+                            createContentHandler(marshaller, streamWriter != null ? streamWriter : output));
+                    if (streamWriter != null) {
+                        // writes the buffered output
+                        streamWriter.flush();
+                    }
+                } finally {
+                    if (streamWriter instanceof EncodingWriter) {
+                        ((EncodingWriter) streamWriter).release();
+                    }
+                }
+            } else {
+                // marshals the object
+                marshaller.marshal(jaxbObj);
+            }
+            completed = true;
+
+        } catch (SAXException e) {
+            // wraps and throws exception
+            throw CastorJAXBUtils.convertToJAXBException("Exception occurred when marshalling object.", e);
+        } catch (IOException e) {
+            // wraps and throws exception
+            throw CastorJAXBUtils.convertToJAXBException("Exception occurred when marshalling object.", e);
         } catch (MarshalException e) {
             // wraps and throws exception
             throw CastorJAXBUtils.convertToJAXBException("Exception occurred when marshalling object.", e);
         } catch (ValidationException e) {
             // wraps and throws exception
             throw CastorJAXBUtils.convertToJAXBException("Exception occurred when marshalling object.", e);
+        } finally {
+            adapterRegistry.restoreAdapters(previousAdapters);
+            if (!completed && marshaller == reusableMarshaller) {
+                // the state of a marshaller that failed is unknown
+                reusableMarshaller = null;
+            }
+        }
+    }
+
+    /**
+     * Marshals the items as the content of a single wrapper element.
+     *
+     * @param marshaller the marshaller to use
+     * @param wrapper    the name of the wrapper element
+     * @param items      the items to marshal
+     * @param writer     the output
+     *
+     * @return the number of marshalled items
+     *
+     * @throws JAXBException if any error occurs during marshalling
+     */
+    private int marshalSequence(org.exolab.castor.xml.Marshaller marshaller, QName wrapper, Iterator<?> items,
+                                Writer writer) throws JAXBException {
+
+        JAXBAdapterRegistry adapterRegistry = context.getJaxbAdapterRegistry();
+        Map<Class, XmlAdapter> previousAdapters = adapterRegistry.bindAdapters(adapters);
+        boolean completed = false;
+        try {
+            ContentHandler contentHandler = createSerializerHandler(marshaller, writer);
+
+            ValidatingContentHandler validatingHandler = null;
+            if (schema != null) {
+                ValidatorHandler validatorHandler = schema.newValidatorHandler();
+                validatorHandler.setErrorHandler(new ValidationEventHandlerAdapter(eventHandler));
+                validatingHandler = new ValidatingContentHandler(validatorHandler, contentHandler);
+                contentHandler = validatingHandler;
+            }
+
+            boolean document = !isFragment();
+            FragmentSequenceHandler sequenceHandler = new FragmentSequenceHandler(contentHandler, wrapper);
+            sequenceHandler.startSequence(document);
+
+            marshaller.setMarshalAsDocument(false);
+            marshaller.setContentHandler(sequenceHandler);
+
+            int count = 0;
+            if (sequenceParallelism > 1) {
+                count = marshalChunks(marshaller, sequenceHandler, items, writer);
+            } else {
+                while (items.hasNext()) {
+                    marshaller.marshal(unwrapJAXBElement(items.next()));
+
+                    if (++count % sequenceFlushInterval == 0) {
+                        writer.flush();
+                    }
+                }
+            }
+
+            sequenceHandler.endSequence(document);
+            if (validatingHandler != null) {
+                validatingHandler.endValidation();
+            }
+            writer.flush();
+
+            completed = true;
+            return count;
+        } catch (SAXException e) {
+            // wraps and throws exception
+            throw CastorJAXBUtils.convertToJAXBException("Exception occurred when marshalling sequence.", e);
+        } catch (IOException e) {
+            // wraps and throws exception
+            throw CastorJAXBUtils.convertToJAXBException("Exception occurred when marshalling sequence.", e);
+        } catch (MarshalException e) {
+            // wraps and throws exception
+            throw CastorJAXBUtils.convertToJAXBException("Exception occurred when marshalling sequence.", e);
+        } catch (ValidationException e) {
+            // wraps and throws exception
+            throw CastorJAXBUtils.convertToJAXBException("Exception occurred when marshalling sequence.", e);
+        } catch (ExecutionException e) {
+            // wraps and throws the exception of the chunk
+            throw CastorJAXBUtils.convertToJAXBException("Exception occurred when marshalling sequence.",
+                    e.getCause());
+        } catch (RejectedExecutionException e) {
+            // wraps and throws exception
+            throw CastorJAXBUtils.convertToJAXBException("The sequence executor rejected a chunk of the sequence.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // wraps and throws exception
+            throw CastorJAXBUtils.convertToJAXBException("Interrupted when marshalling sequence.", e);
+        } finally {
+            adapterRegistry.restoreAdapters(previousAdapters);
+            if (marshaller == reusableMarshaller) {
+                if (completed) {
+                    // restores the marshalling of documents
+                    marshaller.setMarshalAsDocument(!isFragment());
+                } else {
+                    // the state of a marshaller that failed is unknown
+                    reusableMarshaller = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Marshals the items in chunks of {@link #SEQUENCE_CHUNK_SIZE_PROPERTY} items, at most {@link
+     * #SEQUENCE_PARALLELISM_PROPERTY} of them in parallel. Every chunk is marshalled by a marshaller of its own into a
+     * buffer of events, and the buffers are replayed to the sequence handler in the order of the items. At most twice
+     * as many chunks as run in parallel are kept in memory. A sequence of a single chunk is marshalled directly by
+     * the given marshaller.
+     *
+     * @param marshaller      the marshaller writing to the sequence handler
+     * @param sequenceHandler the handler of the sequence
+     * @param items           the items to marshal
+     * @param writer          the output, flushed every {@link #SEQUENCE_FLUSH_INTERVAL_PROPERTY} items
+     *
+     * @return the number of marshalled items
+     *
+     * @throws MarshalException     if any error occurs during marshalling
+     * @throws ValidationException  if any error occurs during validation
+     * @throws SAXException         if the handler of the sequence fails
+     * @throws IOException          if any error occurs when flushing the output
+     * @throws ExecutionException   if any error occurs during marshalling of a chunk
+     * @throws InterruptedException if the thread is interrupted while waiting for a chunk
+     * @throws java.util.concurrent.RejectedExecutionException
+     *                              if the executor does not accept a chunk
+     */
+    private int marshalChunks(org.exolab.castor.xml.Marshaller marshaller, ContentHandler sequenceHandler,
+                              Iterator<?> items, Writer writer) throws MarshalException, ValidationException,
+            SAXException, IOException, ExecutionException, InterruptedException {
+
+        List<Object> chunk = readChunk(items);
+        if (!items.hasNext()) {
+            // a single chunk is not worth handing over to other threads
+            for (Object item : chunk) {
+                marshaller.marshal(item);
+            }
+            return chunk.size();
+        }
+
+        Executor executor = sequenceExecutor != null ? sequenceExecutor : AsyncExecutors.getSequenceExecutor();
+        int maxPending = sequenceParallelism * 2;
+        Map<Class, XmlAdapter> chunkAdapters = new HashMap<Class, XmlAdapter>(adapters);
+
+        Queue<org.exolab.castor.xml.Marshaller> idleMarshallers =
+                new ConcurrentLinkedQueue<org.exolab.castor.xml.Marshaller>();
+        LinkedList<SAXEventBuffer> idleBuffers = new LinkedList<SAXEventBuffer>();
+        LinkedList<Future<SAXEventBuffer>> pendingChunks = new LinkedList<Future<SAXEventBuffer>>();
+        LinkedList<Integer> pendingSizes = new LinkedList<Integer>();
+
+        int count = 0;
+        int flushed = 0;
+        try {
+            while (!chunk.isEmpty() || !pendingChunks.isEmpty()) {
+                // keeps the executor busy
+                while (!chunk.isEmpty() && pendingChunks.size() < maxPending) {
+                    org.exolab.castor.xml.Marshaller chunkMarshaller = idleMarshallers.poll();
+                    if (chunkMarshaller == null) {
+                        chunkMarshaller = createMarshaller();
+                        chunkMarshaller.setMarshalAsDocument(false);
+                    }
+                    SAXEventBuffer buffer = idleBuffers.isEmpty() ? new SAXEventBuffer() : idleBuffers.removeFirst();
+
+                    pendingChunks.addLast(AsyncExecutors.submit(
+                            new ChunkTask(chunkMarshaller, chunk, buffer, idleMarshallers,
+                                    context.getJaxbAdapterRegistry(), chunkAdapters), executor));
+                    pendingSizes.addLast(chunk.size());
+                    chunk = readChunk(items);
+                }
+
+                // writes the oldest chunk
+                SAXEventBuffer buffer = pendingChunks.removeFirst().get();
+                buffer.replay(sequenceHandler);
+                buffer.clear();
+                idleBuffers.addLast(buffer);
+
+                count += pendingSizes.removeFirst();
+                if (count - flushed >= sequenceFlushInterval) {
+                    writer.flush();
+                    flushed = count;
+                }
+            }
+            return count;
+        } finally {
+            for (Future<SAXEventBuffer> pendingChunk : pendingChunks) {
+                pendingChunk.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Reads the next chunk of items, unwrapping the {@link JAXBElement}s.
+     *
+     * @param items the items
+     *
+     * @return the list of at most {@link #SEQUENCE_CHUNK_SIZE_PROPERTY} items, empty if there are no more items
+     */
+    private List<Object> readChunk(Iterator<?> items) {
+
+        List<Object> chunk = new ArrayList<Object>(sequenceChunkSize);
+        while (chunk.size() < sequenceChunkSize && items.hasNext()) {
+            chunk.add(unwrapJAXBElement(items.next()));
+        }
+        return chunk;
+    }
+
+    /**
+     * Marshals the given object once, feeding the events both to the validator of the schema and to the output.
+     * Depending on the {@link ValidationOutput}, the output receives the events as they are validated or only once
+     * the whole document was found valid.
+     *
+     * @param marshaller     the marshaller to use
+     * @param jaxbObj        the object to marshal
+     * @param contentHandler the handler writing the output
+     *
+     * @throws MarshalException    if any error occurs during marshalling, including the validation errors
+     * @throws ValidationException if any error occurs during validation
+     * @throws SAXException        if the document is not valid
+     */
+    private void marshalValidated(org.exolab.castor.xml.Marshaller marshaller, Object jaxbObj,
+                                  ContentHandler contentHandler)
+            throws MarshalException, ValidationException, SAXException {
+
+        ValidatorHandler validatorHandler = schema.newValidatorHandler();
+        validatorHandler.setErrorHandler(new ValidationEventHandlerAdapter(eventHandler));
+
+        SAXEventBuffer eventBuffer = validationOutput == ValidationOutput.BUFFERED ? new SAXEventBuffer() : null;
+        ValidatingContentHandler validatingHandler = new ValidatingContentHandler(validatorHandler,
+                eventBuffer != null ? eventBuffer : contentHandler);
+
+        if (properties.containsKey(JAXB_FRAGMENT)) {
+            marshaller.setMarshalAsDocument(!isTrue(properties.get(JAXB_FRAGMENT)));
+        }
+        marshaller.setContentHandler(validatingHandler);
+        marshaller.marshal(jaxbObj);
+        validatingHandler.endValidation();
+
+        if (eventBuffer != null) {
+            // the document is valid, so it is written
+            eventBuffer.replay(contentHandler);
+        }
+    }
+
+    /**
+     * Creates the writer encoding the characters into the stream of the given output, if the output is a {@link
+     * StreamResult} set with a stream only.
+     *
+     * @param output the output
+     *
+     * @return the writer, or null if the output is not a stream
+     *
+     * @throws JAXBException if the encoding is not supported
+     */
+    private Writer createStreamWriter(Object output) throws JAXBException {
+
+        if (output instanceof StreamResult && ((StreamResult) output).getWriter() == null
+                && ((StreamResult) output).getOutputStream() != null) {
+            return createWriter(((StreamResult) output).getOutputStream());
         }
+        return null;
     }
 
     /**
-     * Validates the result of the given object against the specified schema.
+     * Creates the {@link ContentHandler} writing to the given output, the same way the marshaller does.
      *
-     * @param jaxbElement the object to validate
+     * @param marshaller the marshaller
+     * @param output     the output
      *
-     * @throws MarshalException if any error occurs during marshalling
-     * @throws ValidationException if any error occurs during valdation
+     * @return the handler writing to the output
+     *
+     * @throws IOException if the serializer can not be created
+     */
+    private ContentHandler createContentHandler(org.exolab.castor.xml.Marshaller marshaller, Object output)
+            throws IOException {
+
+        if (output instanceof ContentHandler) {
+            return (ContentHandler) output;
+        } else if (output instanceof Writer) {
+            return createSerializerHandler(marshaller, (Writer) output);
+        } else if (output instanceof Node) {
+            return new DocumentHandlerAdapter(new SAX2DOMHandler((Node) output));
+        } else if (output instanceof XMLStreamWriter) {
+            return new StaxStreamHandler((XMLStreamWriter) output);
+        } else if (output instanceof XMLEventWriter) {
+            return new StaxEventHandler((XMLEventWriter) output);
+        } else if (output instanceof DOMResult) {
+            return new DocumentHandlerAdapter(new SAX2DOMHandler(((DOMResult) output).getNode()));
+        } else if (output instanceof SAXResult) {
+            return ((SAXResult) output).getHandler();
+        } else if (output instanceof StreamResult && ((StreamResult) output).getWriter() != null) {
+            return createSerializerHandler(marshaller, ((StreamResult) output).getWriter());
+        }
+
+        throw new IllegalArgumentException("The output " + output + " is not supported.");
+    }
+
+    /**
+     * Creates the {@link ContentHandler} serializing the document into the given writer.
+     *
+     * @param marshaller the marshaller
+     * @param writer     the writer
+     *
+     * @return the handler serializing the document
+     *
+     * @throws IOException if the serializer can not be created
      */
-    private void validate(Object jaxbElement) throws MarshalException, ValidationException {
+    private ContentHandler createSerializerHandler(org.exolab.castor.xml.Marshaller marshaller, Writer writer)
+            throws IOException {
 
-        if (schema != null) {
+        if (isTagTemplateSupported(marshaller)) {
+            return new TagTemplateSerializer(writer, context.getTagTemplates(), isFragment() ? null : getEncoding());
+        }
 
-            org.exolab.castor.xml.Marshaller marshaller = createMarshaller();
-            marshaller.setContentHandler(schema.newValidatorHandler());
-            marshaller.marshal(jaxbElement);
+        OutputFormat format = marshaller.getInternalContext().getOutputFormat();
+        Object encoding = properties.get(JAXB_ENCODING);
+        if (encoding != null) {
+            format.setEncoding(String.valueOf(encoding).trim());
+        }
+        if (isFragment()) {
+            format.setOmitXMLDeclaration(true);
+            format.setOmitDocumentType(true);
         }
+
+        Serializer serializer = marshaller.getInternalContext().getSerializer();
+        serializer.setOutputFormat(format);
+        serializer.setOutputCharStream(writer);
+        return new DocumentHandlerAdapter(serializer.asDocumentHandler());
     }
 
     /**
@@ -420,6 +1170,49 @@ public class CastorMarshaller implements Marshaller {
         return jaxbElement;
     }
 
+    /**
+     * Retrieves the {@link org.exolab.castor.xml.Marshaller} for a single marshalling. This is the reused marshaller
+     * if {@link #REUSE_MARSHALLER_PROPERTY} is enabled and the marshaller is not in use, otherwise a newly created
+     * one.
+     *
+     * @return the {@link org.exolab.castor.xml.Marshaller} instance
+     */
+    private org.exolab.castor.xml.Marshaller acquireMarshaller() {
+
+        if (!reuseMarshaller || acquiredMarshaller != null) {
+            return createMarshaller();
+        }
+
+        if (reusableMarshaller == null) {
+            reusableMarshaller = createMarshaller();
+        }
+        acquiredMarshaller = reusableMarshaller;
+        return acquiredMarshaller;
+    }
+
+    /**
+     * Releases the {@link org.exolab.castor.xml.Marshaller} retrieved by {@link #acquireMarshaller()}. The output of
+     * the reused marshaller is reset, so that it does not keep the last writer, stream, node or handler reachable.
+     *
+     * @param marshaller the marshaller to release
+     */
+    private void releaseMarshaller(org.exolab.castor.xml.Marshaller marshaller) {
+
+        if (marshaller == acquiredMarshaller) {
+            if (serializerOutput) {
+                try {
+                    marshaller.setWriter(NO_OUTPUT_WRITER);
+                } catch (IOException e) {
+                    // the serializer can not be replaced, the marshaller is not reused
+                    reusableMarshaller = null;
+                }
+            }
+            marshaller.setContentHandler(NO_OUTPUT);
+            acquiredMarshaller = null;
+            serializerOutput = false;
+        }
+    }
+
     /**
      * Creates new instance of {@link org.exolab.castor.xml.Marshaller} that is used internally
      * as marshaling framework.
@@ -454,6 +1247,76 @@ public class CastorMarshaller implements Marshaller {
         }
     }
 
+    /**
+     * Sets the character output of the given marshaller. The output is written by a {@link TagTemplateSerializer}
+     * when possible, otherwise by the serializer of the backend framework.
+     *
+     * @param marshaller the marshaller
+     * @param writer     the output
+     *
+     * @throws IOException if the encoding is not supported
+     */
+    private void setOutput(org.exolab.castor.xml.Marshaller marshaller, Writer writer) throws IOException {
+
+        if (isTagTemplateSupported(marshaller)) {
+            // Castor points the handler back to its own serializer when the document mode is set, if it has one
+            marshaller.setMarshalAsDocument(!isFragment());
+            marshaller.setContentHandler(createSerializerHandler(marshaller, writer));
+        } else {
+            marshaller.setWriter(writer);
+            serializerOutput = true;
+            configureSerializer(marshaller);
+        }
+    }
+
+    /**
+     * Checks whether the output can be written by a {@link TagTemplateSerializer}, which requires the UTF-8
+     * encoding, able to represent any character, and no indentation.
+     *
+     * @param marshaller the marshaller
+     *
+     * @return true if the output can be written by a {@link TagTemplateSerializer}, false otherwise
+     *
+     * @throws UnsupportedEncodingException if the encoding is not supported
+     */
+    private boolean isTagTemplateSupported(org.exolab.castor.xml.Marshaller marshaller)
+            throws UnsupportedEncodingException {
+
+        return UTF_8.equals(getCharset()) && !Boolean.TRUE.equals(
+                marshaller.getInternalContext().getBooleanProperty(XMLProperties.USE_INDENTATION));
+    }
+
+    /**
+     * Retrieves the name of the encoding set by the {@link #JAXB_ENCODING} property, as written to the XML
+     * declaration.
+     *
+     * @return the name of the encoding, UTF-8 by default
+     */
+    private String getEncoding() {
+
+        Object encoding = properties.get(JAXB_ENCODING);
+        return encoding != null ? String.valueOf(encoding).trim() : UTF_8.name();
+    }
+
+    /**
+     * Configures the serializer of the given marshaller with the {@link #JAXB_ENCODING} and {@link #JAXB_FRAGMENT}
+     * properties. Castor creates a new serializer whenever a character or byte output is set, so this has to be
+     * done after setting the output.
+     *
+     * @param marshaller the marshaller whose output has been set
+     */
+    private void configureSerializer(org.exolab.castor.xml.Marshaller marshaller) {
+
+        Object encoding = properties.get(JAXB_ENCODING);
+        if (encoding != null) {
+            marshaller.setEncoding(String.valueOf(encoding).trim());
+        }
+
+        if (properties.containsKey(JAXB_FRAGMENT)) {
+            marshaller.setMarshalAsDocument(!isTrue(properties.get(JAXB_FRAGMENT)));
+        }
+    }
+
     /**
      * Sets the single property for the marshaller.
      *
@@ -465,16 +1328,227 @@ public class CastorMarshaller implements Marshaller {
                                        String name, Object value) {
 
         if (JAXB_ENCODING.equals(name)) {
-            marshaller.setEncoding(String.valueOf(value));
+            // applied to the serializer, once the output is set
         } else if (JAXB_SCHEMA_LOCATION.equals(name)) {
             marshaller.setSchemaLocation(String.valueOf(value));
         } else if (JAXB_NO_NAMESPACE_SCHEMA_LOCATION.equals(name)) {
             marshaller.setNoNamespaceSchemaLocation(String.valueOf(value));
         } else if (JAXB_FRAGMENT.equals(name)) {
-            marshaller.setMarshalAsDocument(false);
+            marshaller.setMarshalAsDocument(!isTrue(value));
+        } else if (REUSE_MARSHALLER_PROPERTY.equals(name) || VALIDATION_OUTPUT_PROPERTY.equals(name)
+                || SEQUENCE_FLUSH_INTERVAL_PROPERTY.equals(name) || SEQUENCE_PARALLELISM_PROPERTY.equals(name)
+                || SEQUENCE_CHUNK_SIZE_PROPERTY.equals(name) || SEQUENCE_EXECUTOR_PROPERTY.equals(name)) {
+            // configures this marshaller, not the backend one
         } else {
             // sets the property for the internal context
             marshaller.getInternalContext().setProperty(name, value);
         }
     }
+
+    /**
+     * Checks whether the {@link #JAXB_FRAGMENT} property is set to true.
+     *
+     * @return true if fragments are marshalled, false otherwise
+     */
+    private boolean isFragment() {
+
+        return properties.containsKey(JAXB_FRAGMENT) && isTrue(properties.get(JAXB_FRAGMENT));
+    }
+
+    /**
+     * Checks whether the property value represents true.
+     *
+     * @param value the property value, a {@link Boolean} or its {@link String} representation
+     *
+     * @return true if the value represents true, false otherwise
+     */
+    private static boolean isTrue(Object value) {
+
+        return value instanceof Boolean ? (Boolean) value : Boolean.parseBoolean(String.valueOf(value).trim());
+    }
+
+    /**
+     * Converts the property value into the {@link ValidationOutput}.
+     *
+     * @param value the property value, a {@link ValidationOutput} or its name
+     *
+     * @return the validation output
+     *
+     * @throws PropertyException if the value does not name a validation output
+     */
+    private static ValidationOutput toValidationOutput(Object value) throws PropertyException {
+
+        if (value instanceof ValidationOutput) {
+            return (ValidationOutput) value;
+        }
+
+        try {
+            return ValidationOutput.valueOf(String.valueOf(value).trim().toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            throw new PropertyException(VALIDATION_OUTPUT_PROPERTY, value);
+        }
+    }
+
+    /**
+     * Converts the property value into a positive number.
+     *
+     * @param name  the property name
+     * @param value the property value, a {@link Number} or its {@link String} representation
+     *
+     * @return the number
+     *
+     * @throws PropertyException if the value is not a positive number
+     */
+    private static int toPositiveInt(String name, Object value) throws PropertyException {
+
+        try {
+            int number = value instanceof Number ? ((Number) value).intValue()
+                    : Integer.parseInt(String.valueOf(value).trim());
+            if (number > 0) {
+                return number;
+            }
+        } catch (NumberFormatException e) {
+            // handled below
+        }
+        throw new PropertyException(name, value);
+    }
+
+    /**
+     * A writer discarding all the characters.
+     *
+     * @author Jakub Narloch, jmnarloch AT gmail DOT org
+     * @version 1.0
+     */
+    private static final class NoOutputWriter extends Writer {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            // discards the characters
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void flush() {
+            // nothing to flush
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close() {
+            // nothing to close
+        }
+    }
+
+    /**
+     * Marshals a chunk of a sequence into a buffer of events. The marshaller is given back to the idle marshallers
+     * once the chunk is marshalled successfully.
+     *
+     * @author Jakub Narloch, jmnarloch AT gmail DOT org
+     * @version 1.0
+     */
+    private static final class ChunkTask implements Callable<SAXEventBuffer> {
+
+        /**
+         * Represents the marshaller of the chunk.
+         */
+        private final org.exolab.castor.xml.Marshaller marshaller;
+
+        /**
+         * Represents the items of the chunk.
+         */
+        private final List<Object> items;
+
+        /**
+         * Represents the buffer receiving the events.
+         */
+        private final SAXEventBuffer buffer;
+
+        /**
+         * Represents the idle marshallers.
+         */
+        private final Queue<org.exolab.castor.xml.Marshaller> idleMarshallers;
+
+        /**
+         * Represents the adapter registry of the context.
+         */
+        private final JAXBAdapterRegistry adapterRegistry;
+
+        /**
+         * Represents the adapters registered on the marshaller of the sequence.
+         */
+        private final Map<Class, XmlAdapter> adapters;
+
+        /**
+         * Creates new instance of {@link ChunkTask} class.
+         *
+         * @param marshaller      the marshaller of the chunk
+         * @param items           the items of the chunk
+         * @param buffer          the buffer receiving the events
+         * @param idleMarshallers the idle marshallers
+         * @param adapterRegistry the adapter registry of the context
+         * @param adapters        the adapters registered on the marshaller of the sequence
+         */
+        private ChunkTask(org.exolab.castor.xml.Marshaller marshaller, List<Object> items, SAXEventBuffer buffer,
+                          Queue<org.exolab.castor.xml.Marshaller> idleMarshallers,
+                          JAXBAdapterRegistry adapterRegistry, Map<Class, XmlAdapter> adapters) {
+            this.marshaller = marshaller;
+            this.items = items;
+            this.buffer = buffer;
+            this.idleMarshallers = idleMarshallers;
+            this.adapterRegistry = adapterRegistry;
+            this.adapters = adapters;
+        }
+
+        /**
+         * Marshals the items of the chunk.
+         *
+         * @return the buffer of the events
+         *
+         * @throws MarshalException    if any error occurs during marshalling
+         * @throws ValidationException if any error occurs during validation
+         */
+        public SAXEventBuffer call() throws MarshalException, ValidationException {
+
+            Map<Class, XmlAdapter> previousAdapters = adapterRegistry.bindAdapters(adapters);
+            try {
+                marshaller.setContentHandler(buffer);
+                for (Object item : items) {
+                    marshaller.marshal(item);
+                }
+            } finally {
+                adapterRegistry.restoreAdapters(previousAdapters);
+            }
+
+            idleMarshallers.offer(marshaller);
+            return buffer;
+        }
+    }
+
+    /**
+     * The ways of writing the output when the marshalled document is validated against a {@link Schema}. In either
+     * case the object is marshalled once, the events being passed both to the validator and to the output, and the
+     * validation errors are reported to the {@link ValidationEventHandler}. Without a handler, the marshalling
+     * stops on the first error.
+     */
+    public enum ValidationOutput {
+
+        /**
+         * The events are buffered and written to the output only once the whole document is found valid. Nothing is
+         * written when the marshalling stops on a validation error. This is the default.
+         */
+        BUFFERED,
+
+        /**
+         * The events are written to the output as soon as they are validated. When the marshalling stops on a
+         * validation error, the output holds the part of the document written up to the error.
+         */
+        STREAMED
+    }
 }
@@ -17,14 +17,22 @@ package org.castor.jaxb;
 
 import org.castor.jaxb.adapters.CastorUnmarshallerHandler;
 import org.castor.jaxb.adapters.UnmarshalListenerAdapter;
+import org.castor.jaxb.adapters.ValidatingContentHandler;
+import org.castor.jaxb.adapters.ValidationEventHandlerAdapter;
+import org.castor.jaxb.resolver.JAXBAdapterRegistry;
 import org.exolab.castor.xml.MarshalException;
 import org.exolab.castor.xml.ResolverException;
+import org.exolab.castor.xml.UnmarshalHandler;
 import org.exolab.castor.xml.ValidationException;
 import org.exolab.castor.xml.XMLClassDescriptor;
 import org.exolab.castor.xml.XMLClassDescriptorResolver;
 import org.w3c.dom.Node;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.ErrorHandler;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
 
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
@@ -35,20 +43,21 @@ import javax.xml.bind.ValidationEventHandler;
 import javax.xml.bind.annotation.adapters.XmlAdapter;
 import javax.xml.bind.attachment.AttachmentUnmarshaller;
 import javax.xml.namespace.QName;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
 import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLStreamReader;
-import javax.xml.transform.Result;
+import javax.xml.transform.ErrorListener;
 import javax.xml.transform.Source;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.sax.SAXResult;
 import javax.xml.transform.sax.SAXSource;
-import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import javax.xml.validation.ValidatorHandler;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -79,6 +88,11 @@ public class CastorUnmarshaller implements Unmarshaller {
      */
     private final Map<String, Object> properties = new HashMap<String, Object>();
 
+    /**
+     * Represents the adapters registered on this unmarshaller, by adapter class.
+     */
+    private final Map<Class, XmlAdapter> adapters = new HashMap<Class, XmlAdapter>();
+
     /**
      * Represents the unmarshalling listener.
      */
@@ -89,6 +103,11 @@ public class CastorUnmarshaller implements Unmarshaller {
      */
     private Schema schema;
 
+    /**
+     * Represents the handler of the validation events.
+     */
+    private ValidationEventHandler eventHandler;
+
     /**
      * Creates new instance of {@link CastorUnmarshaller} with the given {@link CastorJAXBContext}
      * instance.
@@ -217,6 +236,8 @@ public class CastorUnmarshaller implements Unmarshaller {
         // checks input
         CastorJAXBUtils.checkNotNull(reader, "reader");
 
+        JAXBAdapterRegistry adapterRegistry = context.getJaxbAdapterRegistry();
+        Map<Class, XmlAdapter> previousAdapters = adapterRegistry.bindAdapters(adapters);
         try {
             // unmarshalls object
             return createUnmarshaller().unmarshal(reader);
@@ -226,6 +247,8 @@ public class CastorUnmarshaller implements Unmarshaller {
         } catch (ValidationException e) {
             // wraps and throws exception
             throw CastorJAXBUtils.convertToJAXBException("Error occurred when unmarshalling object.", e);
+        } finally {
+            adapterRegistry.restoreAdapters(previousAdapters);
         }
     }
 
@@ -238,6 +261,8 @@ public class CastorUnmarshaller implements Unmarshaller {
         CastorJAXBUtils.checkNotNull(reader, "reader");
         CastorJAXBUtils.checkNotNull(declaredType, "declaredType");
 
+        JAXBAdapterRegistry adapterRegistry = context.getJaxbAdapterRegistry();
+        Map<Class, XmlAdapter> previousAdapters = adapterRegistry.bindAdapters(adapters);
         try {
             // create unmarshaller instance
             org.exolab.castor.xml.Unmarshaller unmarshaller = createUnmarshaller();
@@ -256,6 +281,8 @@ public class CastorUnmarshaller implements Unmarshaller {
         } catch (ValidationException e) {
             // wraps and throws exception
             throw CastorJAXBUtils.convertToJAXBException("Error occurred when unmarshalling object.", e);
+        } finally {
+            adapterRegistry.restoreAdapters(previousAdapters);
         }
     }
 
@@ -266,6 +293,8 @@ public class CastorUnmarshaller implements Unmarshaller {
         // checks input
         CastorJAXBUtils.checkNotNull(reader, "reader");
 
+        JAXBAdapterRegistry adapterRegistry = context.getJaxbAdapterRegistry();
+        Map<Class, XmlAdapter> previousAdapters = adapterRegistry.bindAdapters(adapters);
         try {
             // unmarshalls object
             return createUnmarshaller().unmarshal(reader);
@@ -275,6 +304,8 @@ public class CastorUnmarshaller implements Unmarshaller {
         } catch (ValidationException e) {
             // wraps and throws exception
             throw CastorJAXBUtils.convertToJAXBException("Error occurred when unmarshalling object.", e);
+        } finally {
+            adapterRegistry.restoreAdapters(previousAdapters);
         }
     }
 
@@ -287,6 +318,8 @@ public class CastorUnmarshaller implements Unmarshaller {
         CastorJAXBUtils.checkNotNull(reader, "reader");
         CastorJAXBUtils.checkNotNull(declaredType, "declaredType");
 
+        JAXBAdapterRegistry adapterRegistry = context.getJaxbAdapterRegistry();
+        Map<Class, XmlAdapter> previousAdapters = adapterRegistry.bindAdapters(adapters);
         try {
             // create unmarshaller instance
             org.exolab.castor.xml.Unmarshaller unmarshaller = createUnmarshaller();
@@ -305,6 +338,8 @@ public class CastorUnmarshaller implements Unmarshaller {
         } catch (ValidationException e) {
             // wraps and throws exception
             throw CastorJAXBUtils.convertToJAXBException("Error occurred when unmarshalling object.", e);
+        } finally {
+            adapterRegistry.restoreAdapters(previousAdapters);
         }
     }
 
@@ -314,7 +349,8 @@ public class CastorUnmarshaller implements Unmarshaller {
     public UnmarshallerHandler getUnmarshallerHandler() {
 
         // creates new castor unmarshaller handler
-        return new CastorUnmarshallerHandler(createUnmarshaller().createHandler());
+        return new CastorUnmarshallerHandler(createUnmarshaller().createHandler(), context.getJaxbAdapterRegistry(),
+                new HashMap<Class, XmlAdapter>(adapters));
     }
 
     /**
@@ -337,16 +373,18 @@ public class CastorUnmarshaller implements Unmarshaller {
      * {@inheritDoc}
      */
     public void setEventHandler(ValidationEventHandler handler) throws JAXBException {
-        // TODO implement
-        throw new UnsupportedOperationException("Unmarshaller.setEventHandler method is unsupported.");
+
+        // sets the handler
+        this.eventHandler = handler;
     }
 
     /**
      * {@inheritDoc}
      */
     public ValidationEventHandler getEventHandler() throws JAXBException {
-        // TODO implement
-        throw new UnsupportedOperationException("Unmarshaller.getEventHandler method is unsupported.");
+
+        // returns the handler
+        return eventHandler;
     }
 
     /**
@@ -399,7 +437,12 @@ public class CastorUnmarshaller implements Unmarshaller {
     public <A extends XmlAdapter> void setAdapter(Class<A> type, A adapter) {
         CastorJAXBUtils.checkNotNull(type, "type");
 
-        context.getJaxbAdapterRegistry().setAdapter(type, adapter);
+        // the adapters are kept by this unmarshaller, the context may be shared by other callers
+        if (adapter == null) {
+            adapters.remove(type);
+        } else {
+            adapters.put(type, adapter);
+        }
     }
 
     /**
@@ -409,7 +452,7 @@ public class CastorUnmarshaller implements Unmarshaller {
     public <A extends XmlAdapter> A getAdapter(Class<A> type) {
         CastorJAXBUtils.checkNotNull(type, "type");
 
-        return (A) context.getJaxbAdapterRegistry().getAdapter(type);
+        return (A) adapters.get(type);
     }
 
     /**
@@ -453,13 +496,11 @@ public class CastorUnmarshaller implements Unmarshaller {
      */
     private Object unmarshalAndValidateSource(Source source) throws JAXBException {
 
+        JAXBAdapterRegistry adapterRegistry = context.getJaxbAdapterRegistry();
+        Map<Class, XmlAdapter> previousAdapters = adapterRegistry.bindAdapters(adapters);
         try {
-            // reads the content of the input
-            byte[] content = readSourceToByteArray(source);
-            // validates the source
-            validateSource(createSource(content));
             // unmarshalls the object
-            return createUnmarshaller().unmarshal(createSource(content));
+            return unmarshalSource(createUnmarshaller(), source);
         } catch (MarshalException e) {
             // wraps and throws exception
             throw CastorJAXBUtils.convertToJAXBException("Error occurred when unmarshalling object.", e);
@@ -475,6 +516,8 @@ public class CastorUnmarshaller implements Unmarshaller {
         } catch (TransformerException e) {
             // wraps and throws exception
             throw CastorJAXBUtils.convertToJAXBException("Error occurred when unmarshalling object.", e);
+        } finally {
+            adapterRegistry.restoreAdapters(previousAdapters);
         }
     }
 
@@ -490,17 +533,15 @@ public class CastorUnmarshaller implements Unmarshaller {
     @SuppressWarnings("unchecked")
     private <T> JAXBElement<T> unmarshalAndValidateSource(Source source, Class<T> declaredType) throws JAXBException {
 
+        JAXBAdapterRegistry adapterRegistry = context.getJaxbAdapterRegistry();
+        Map<Class, XmlAdapter> previousAdapters = adapterRegistry.bindAdapters(adapters);
         try {
-            // reads the content of the input
-            byte[] content = readSourceToByteArray(source);
             // create unmarshaller instance
             org.exolab.castor.xml.Unmarshaller unmarshaller = createUnmarshaller();
-            // validates the source
-            validateSource(createSource(content));
             // sets the expected class
             unmarshaller.setClass(declaredType);
             // unmarshalls object and converts the result into JAXBElement
-            return createJAXBElement(unmarshaller, declaredType, (T) unmarshaller.unmarshal(createSource(content)));
+            return createJAXBElement(unmarshaller, declaredType, (T) unmarshalSource(unmarshaller, source));
         } catch (ClassCastException e) {
             // wraps and throws exception
             throw CastorJAXBUtils.convertToJAXBException("Error occurred when unmarshalling object.", e);
@@ -519,21 +560,126 @@ public class CastorUnmarshaller implements Unmarshaller {
         } catch (ValidationException e) {
             // wraps and throws exception
             throw CastorJAXBUtils.convertToJAXBException("Error occurred when unmarshalling object.", e);
+        } finally {
+            adapterRegistry.restoreAdapters(previousAdapters);
         }
     }
 
     /**
-     * Validates the passed {@link Source} instance, against the specified schema.
+     * Unmarshalls the passed {@link Source}, streaming it into the unmarshaller without reading its whole content
+     * first.
+     * <p/>
+     * If a schema is set, the document is parsed only once as well: every event is passed to a {@link
+     * ValidatorHandler} and then to the unmarshal handler. The validation errors are reported to the {@link
+     * ValidationEventHandler}, and without a handler the unmarshalling stops on the first error.
      *
-     * @param source the {@link Source} to validate
-     * @throws IOException  if any error occurs during IO operation
-     * @throws SAXException if any error occurs during validation
+     * @param unmarshaller the {@link org.exolab.castor.xml.Unmarshaller} to use
+     * @param source       the {@link Source} to unmarshall
+     * @return the unmarshalled object
+     * @throws MarshalException     if any error occurs during unmarshalling
+     * @throws ValidationException  if the unmarshalled object is not valid
+     * @throws TransformerException if any error occurs when reading the source
+     * @throws SAXException         if any error occurs when parsing or validating the source
+     * @throws IOException          if any error occurs when reading the source
      */
-    private void validateSource(Source source) throws IOException, SAXException {
+    private Object unmarshalSource(org.exolab.castor.xml.Unmarshaller unmarshaller, Source source)
+            throws MarshalException, ValidationException, TransformerException, SAXException, IOException {
 
         if (schema != null) {
+            UnmarshalHandler handler = unmarshaller.createHandler();
+
+            ValidatorHandler validatorHandler = schema.newValidatorHandler();
+            validatorHandler.setErrorHandler(new ValidationEventHandlerAdapter(eventHandler));
+            ValidatingContentHandler validatingHandler = new ValidatingContentHandler(validatorHandler, handler);
+
+            parseSource(source, validatingHandler);
+            validatingHandler.endValidation();
+            return handler.getObject();
+        } else if (source instanceof DOMSource) {
+            return unmarshaller.unmarshal(((DOMSource) source).getNode());
+        } else if (source instanceof StreamSource
+                || (source instanceof SAXSource && ((SAXSource) source).getXMLReader() == null)) {
+            return unmarshaller.unmarshal(SAXSource.sourceToInputSource(source));
+        }
+
+        UnmarshalHandler handler = unmarshaller.createHandler();
+        parseSource(source, handler);
+        return handler.getObject();
+    }
+
+    /**
+     * Parses the passed {@link Source}, reporting its content to the given handler. Stream sources are read by a
+     * namespace aware parser, any other source is pushed through the identity transformation.
+     *
+     * @param source         the {@link Source} to parse
+     * @param contentHandler the handler to report the content to
+     * @throws TransformerException if any error occurs when transforming the source
+     * @throws SAXException         if any error occurs when parsing the source
+     * @throws IOException          if any error occurs when reading the source
+     */
+    private static void parseSource(Source source, ContentHandler contentHandler)
+            throws TransformerException, SAXException, IOException {
+
+        if (source instanceof StreamSource || source instanceof SAXSource) {
+            XMLReader xmlReader = source instanceof SAXSource ? ((SAXSource) source).getXMLReader() : null;
+            if (xmlReader == null) {
+                xmlReader = createXMLReader();
+            }
+
+            xmlReader.setContentHandler(contentHandler);
+            if (xmlReader.getErrorHandler() == null) {
+                // the errors are thrown to the caller, rather than printed by the parser
+                xmlReader.setErrorHandler(new ErrorHandler() {
+
+                    public void warning(SAXParseException exception) {
+                        // ignores warnings
+                    }
+
+                    public void error(SAXParseException exception) throws SAXException {
+                        throw exception;
+                    }
 
-            schema.newValidator().validate(source);
+                    public void fatalError(SAXParseException exception) throws SAXException {
+                        throw exception;
+                    }
+                });
+            }
+            xmlReader.parse(SAXSource.sourceToInputSource(source));
+        } else {
+            Transformer transformer = TransformerFactory.newInstance().newTransformer();
+            // the errors are thrown to the caller, rather than printed by the default listener
+            transformer.setErrorListener(new ErrorListener() {
+
+                public void warning(TransformerException exception) {
+                    // ignores warnings
+                }
+
+                public void error(TransformerException exception) throws TransformerException {
+                    throw exception;
+                }
+
+                public void fatalError(TransformerException exception) throws TransformerException {
+                    throw exception;
+                }
+            });
+            transformer.transform(source, new SAXResult(contentHandler));
+        }
+    }
+
+    /**
+     * Creates a namespace aware {@link XMLReader}, as required by the {@link ValidatorHandler}.
+     *
+     * @return the created {@link XMLReader}
+     * @throws SAXException if the reader can not be created
+     */
+    private static XMLReader createXMLReader() throws SAXException {
+
+        try {
+            SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
+            saxParserFactory.setNamespaceAware(true);
+            return saxParserFactory.newSAXParser().getXMLReader();
+        } catch (ParserConfigurationException e) {
+            throw new SAXException(e);
         }
     }
 
@@ -617,29 +763,4 @@ public class CastorUnmarshaller implements Unmarshaller {
             unmarshaller.getInternalContext().setProperty(property.getKey(), property.getValue());
         }
     }
-
-     /**
-     * Reads the entire content of the passed {@link Source} instance and returns the result as a byte array.
-     * @param source the {@link Source} instance to read
-     * @return the content of the {@link Source} as byte array
-     * @throws javax.xml.transform.TransformerException if any error occurs during the transformation
-     */
-    private static byte[] readSourceToByteArray(Source source) throws TransformerException {
-
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-        Transformer transformer = TransformerFactory.newInstance().newTransformer();
-        Result output = new StreamResult(byteArrayOutputStream);
-        transformer.transform(source, output);
-
-        return byteArrayOutputStream.toByteArray();
-    }
-
-    /**
-     * Creates new instance of {@link StreamSource} from passed byte array.
-     * @param content the byte array containing the data to be unmarshalled
-     * @return the {@link StreamSource} created from the byte array
-     */
-    private static Source createSource(byte[] content) {
-        return new StreamSource(new ByteArrayInputStream(content));
-    }
 }
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * An {@link OutputStream} writing to a {@link WritableByteChannel}. The written arrays are wrapped, not copied, so
+ * the bytes go from the array of the caller, typically the buffer of an {@link EncodingWriter}, straight to the
+ * channel. Closing the stream does not close the channel.
+ * <p/>
+ * The channel must be in blocking mode: a non-blocking channel may accept no byte at all, which would make the stream
+ * spin until it does.
+ * <p/>
+ * This class is not thread safe.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+final class ChannelOutputStream extends OutputStream {
+
+    /**
+     * Represents the underlying channel.
+     */
+    private final WritableByteChannel channel;
+
+    /**
+     * Creates new instance of {@link ChannelOutputStream} class.
+     *
+     * @param channel the underlying channel
+     *
+     * @throws IllegalArgumentException if channel is null or is a selectable channel in non-blocking mode
+     */
+    ChannelOutputStream(WritableByteChannel channel) {
+        CastorJAXBUtils.checkNotNull(channel, "channel");
+        if (isNonBlocking(channel)) {
+            throw new IllegalArgumentException("Argument 'channel' must be in blocking mode.");
+        }
+
+        this.channel = channel;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(int b) throws IOException {
+
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    /**
+     * Writes the bytes to the channel, waiting until all of them are written.
+     *
+     * @param b   the bytes
+     * @param off the offset of the first byte to write
+     * @param len the number of bytes to write
+     *
+     * @throws IOException if any error occurs when writing to the channel, or the channel has been switched to
+     *                     non-blocking mode and is not ready for writing
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+        while (buffer.hasRemaining()) {
+            if (channel.write(buffer) == 0 && isNonBlocking(channel)) {
+                throw new IOException("The channel is in non-blocking mode and is not ready for writing.");
+            }
+        }
+    }
+
+    /**
+     * Checks whether the channel is a selectable channel in non-blocking mode.
+     *
+     * @param channel the channel
+     *
+     * @return true if the channel is in non-blocking mode, false otherwise
+     */
+    private static boolean isNonBlocking(WritableByteChannel channel) {
+        return channel instanceof SelectableChannel && !((SelectableChannel) channel).isBlocking();
+    }
+}
@@ -0,0 +1,321 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link Writer} encoding the characters as UTF-8 directly into a byte buffer, which is written to the underlying
+ * stream in blocks of {@link #BUFFER_SIZE} bytes. ASCII characters, the bulk of a typical document, are copied by a
+ * tight loop without any intermediate char to byte conversion.
+ * <p/>
+ * The buffers are pooled and shared by all the writers. A writer takes one on the first write and gives it back
+ * when it is {@link #close() closed} or {@link #release() released}, after which it can not be used anymore.
+ * Unpaired surrogates are written as '?'.
+ * <p/>
+ * This class is not thread safe.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+final class EncodingWriter extends Writer {
+
+    /**
+     * Represents the size of the buffers.
+     */
+    static final int BUFFER_SIZE = 16 * 1024;
+
+    /**
+     * Represents the maximum number of the idle pooled buffers.
+     */
+    private static final int MAX_IDLE_BUFFERS = TemplatePool.DEFAULT_MAX_IDLE;
+
+    /**
+     * Represents the byte written in place of an unpaired surrogate.
+     */
+    private static final byte REPLACEMENT = (byte) '?';
+
+    /**
+     * Represents the idle buffers.
+     */
+    private static final Queue<byte[]> IDLE_BUFFERS = new ConcurrentLinkedQueue<byte[]>();
+
+    /**
+     * Represents the number of idle buffers.
+     */
+    private static final AtomicInteger IDLE_BUFFER_COUNT = new AtomicInteger();
+
+    /**
+     * Represents the underlying stream.
+     */
+    private final OutputStream outputStream;
+
+    /**
+     * Represents the buffer, null before the first write and once the writer is released.
+     */
+    private byte[] buffer;
+
+    /**
+     * Represents the number of bytes in the buffer.
+     */
+    private int position;
+
+    /**
+     * Represents the high surrogate waiting for its low surrogate, 0 if there is none.
+     */
+    private char highSurrogate;
+
+    /**
+     * Represents whether the writer was released.
+     */
+    private boolean released;
+
+    /**
+     * Creates new instance of {@link EncodingWriter} class.
+     *
+     * @param outputStream the underlying stream
+     *
+     * @throws IllegalArgumentException if outputStream is null
+     */
+    EncodingWriter(OutputStream outputStream) {
+        CastorJAXBUtils.checkNotNull(outputStream, "outputStream");
+
+        this.outputStream = outputStream;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(int c) throws IOException {
+
+        ensureBuffer(4);
+        writeChar((char) c);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+
+        int end = off + len;
+        int i = off;
+        while (i < end) {
+            ensureBuffer(4);
+
+            // copies the run of ASCII characters fitting into the buffer
+            if (highSurrogate == 0) {
+                byte[] bytes = buffer;
+                int pos = position;
+                int limit = Math.min(end, i + bytes.length - pos);
+                char c;
+                while (i < limit && (c = cbuf[i]) < 0x80) {
+                    bytes[pos++] = (byte) c;
+                    i++;
+                }
+                position = pos;
+
+                if (i == end) {
+                    break;
+                }
+                ensureBuffer(4);
+            }
+
+            writeChar(cbuf[i++]);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+
+        int end = off + len;
+        int i = off;
+        while (i < end) {
+            ensureBuffer(4);
+
+            // copies the run of ASCII characters fitting into the buffer
+            if (highSurrogate == 0) {
+                byte[] bytes = buffer;
+                int pos = position;
+                int limit = Math.min(end, i + bytes.length - pos);
+                char c;
+                while (i < limit && (c = str.charAt(i)) < 0x80) {
+                    bytes[pos++] = (byte) c;
+                    i++;
+                }
+                position = pos;
+
+                if (i == end) {
+                    break;
+                }
+                ensureBuffer(4);
+            }
+
+            writeChar(str.charAt(i++));
+        }
+    }
+
+    /**
+     * Writes the buffered bytes to the underlying stream and flushes it.
+     *
+     * @throws IOException if any error occurs when writing to the stream
+     */
+    @Override
+    public void flush() throws IOException {
+
+        ensureOpen();
+        flushBuffer();
+        outputStream.flush();
+    }
+
+    /**
+     * Flushes the writer, releases it and closes the underlying stream. Closing a closed writer has no effect.
+     *
+     * @throws IOException if any error occurs when writing to or closing the stream
+     */
+    @Override
+    public void close() throws IOException {
+
+        if (released) {
+            return;
+        }
+
+        try {
+            if (highSurrogate != 0) {
+                highSurrogate = 0;
+                ensureBuffer(1);
+                buffer[position++] = REPLACEMENT;
+            }
+            flush();
+        } finally {
+            release();
+            outputStream.close();
+        }
+    }
+
+    /**
+     * Gives the buffer back to the pool without writing its content and leaves the underlying stream open. Releasing
+     * a released writer has no effect.
+     */
+    void release() {
+
+        released = true;
+        if (buffer != null) {
+            if (IDLE_BUFFER_COUNT.incrementAndGet() <= MAX_IDLE_BUFFERS) {
+                IDLE_BUFFERS.offer(buffer);
+            } else {
+                IDLE_BUFFER_COUNT.decrementAndGet();
+            }
+            buffer = null;
+        }
+    }
+
+    /**
+     * Writes a single character, which fits into the buffer.
+     *
+     * @param c the character to write
+     */
+    private void writeChar(char c) {
+
+        if (highSurrogate != 0) {
+            char high = highSurrogate;
+            highSurrogate = 0;
+
+            if (Character.isLowSurrogate(c)) {
+                int codePoint = Character.toCodePoint(high, c);
+                buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+                return;
+            }
+            buffer[position++] = REPLACEMENT;
+            // the buffer was ensured for a supplementary character, so the current one still fits
+        }
+
+        if (c < 0x80) {
+            buffer[position++] = (byte) c;
+        } else if (c < 0x800) {
+            buffer[position++] = (byte) (0xC0 | (c >> 6));
+            buffer[position++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            buffer[position++] = REPLACEMENT;
+        } else {
+            buffer[position++] = (byte) (0xE0 | (c >> 12));
+            buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buffer[position++] = (byte) (0x80 | (c & 0x3F));
+        }
+    }
+
+    /**
+     * Ensures that the buffer has room for the given number of bytes, writing its content to the stream if needed.
+     *
+     * @param length the number of bytes
+     *
+     * @throws IOException if the writer was released or any error occurs when writing to the stream
+     */
+    private void ensureBuffer(int length) throws IOException {
+
+        if (buffer == null) {
+            ensureOpen();
+            buffer = IDLE_BUFFERS.poll();
+            if (buffer != null) {
+                IDLE_BUFFER_COUNT.decrementAndGet();
+            } else {
+                buffer = new byte[BUFFER_SIZE];
+            }
+            position = 0;
+        } else if (buffer.length - position < length) {
+            flushBuffer();
+        }
+    }
+
+    /**
+     * Writes the content of the buffer to the stream.
+     *
+     * @throws IOException if any error occurs when writing to the stream
+     */
+    private void flushBuffer() throws IOException {
+
+        if (buffer != null && position > 0) {
+            outputStream.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    /**
+     * Checks that the writer was not released.
+     *
+     * @throws IOException if the writer was released
+     */
+    private void ensureOpen() throws IOException {
+
+        if (released) {
+            throw new IOException("The writer was closed.");
+        }
+    }
+}
@@ -0,0 +1,450 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb;
+
+import org.w3c.dom.Node;
+import org.xml.sax.ContentHandler;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.transform.Result;
+import javax.xml.validation.Schema;
+import java.io.File;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+/**
+ * An immutable marshaller that can be shared by any number of threads. Its properties, listener and schema are
+ * fixed when it is created by {@link CastorJAXBContext#createMarshallerTemplate(Map, Marshaller.Listener, Schema)}.
+ * <p/>
+ * Every call borrows a configured {@link CastorMarshaller}, which keeps its backend marshaller across the calls,
+ * from an internal pool and returns it when done. The pool never blocks and holds at most a few idle marshallers,
+ * so no thread local state is involved.
+ * <p/>
+ * The listener is invoked concurrently when the template is used by several threads at the same time, so it has to
+ * be thread safe.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+public final class MarshallerTemplate {
+
+    /**
+     * Represents the instance of {@link CastorJAXBContext} that created this template.
+     */
+    private final CastorJAXBContext context;
+
+    /**
+     * Represents the marshaller properties.
+     */
+    private final Map<String, Object> properties;
+
+    /**
+     * Represents the marshal listener.
+     */
+    private final Marshaller.Listener listener;
+
+    /**
+     * Represents the {@link Schema} instance against which marshalled result will be validated.
+     */
+    private final Schema schema;
+
+    /**
+     * Represents the pool of the configured marshallers.
+     */
+    private final TemplatePool<Marshaller> pool = new TemplatePool<Marshaller>(TemplatePool.DEFAULT_MAX_IDLE) {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected Marshaller create() throws JAXBException {
+            return createMarshaller();
+        }
+    };
+
+    /**
+     * Creates new instance of {@link MarshallerTemplate} class. The properties are validated by creating the first
+     * pooled marshaller.
+     *
+     * @param context    the {@link CastorJAXBContext} to use
+     * @param properties the marshaller properties, may be null
+     * @param listener   the marshal listener, may be null
+     * @param schema     the schema against which the result will be validated, may be null
+     *
+     * @throws IllegalArgumentException if context is null
+     * @throws JAXBException            if any of the properties is not supported
+     */
+    MarshallerTemplate(CastorJAXBContext context, Map<String, ?> properties, Marshaller.Listener listener,
+                       Schema schema) throws JAXBException {
+        // checks input
+        CastorJAXBUtils.checkNotNull(context, "context");
+
+        // assigns the fields
+        this.context = context;
+        this.properties = properties != null ? Collections.unmodifiableMap(new HashMap<String, Object>(properties))
+                : Collections.<String, Object>emptyMap();
+        this.listener = listener;
+        this.schema = schema;
+
+        pool.release(createMarshaller());
+    }
+
+    /**
+     * Marshals the object into the given {@link Result}.
+     *
+     * @param jaxbElement the object to marshal
+     * @param result      the output
+     *
+     * @throws JAXBException if any error occurs during marshalling
+     * @see Marshaller#marshal(Object, Result)
+     */
+    public void marshal(Object jaxbElement, Result result) throws JAXBException {
+
+        Marshaller marshaller = pool.borrow();
+        try {
+            marshaller.marshal(jaxbElement, result);
+        } finally {
+            pool.release(marshaller);
+        }
+    }
+
+    /**
+     * Marshals the object into the given {@link OutputStream}.
+     *
+     * @param jaxbElement the object to marshal
+     * @param os          the output
+     *
+     * @throws JAXBException if any error occurs during marshalling
+     * @see Marshaller#marshal(Object, OutputStream)
+     */
+    public void marshal(Object jaxbElement, OutputStream os) throws JAXBException {
+
+        Marshaller marshaller = pool.borrow();
+        try {
+            marshaller.marshal(jaxbElement, os);
+        } finally {
+            pool.release(marshaller);
+        }
+    }
+
+    /**
+     * Marshals the object into the given {@link File}.
+     *
+     * @param jaxbElement the object to marshal
+     * @param output      the output
+     *
+     * @throws JAXBException if any error occurs during marshalling
+     * @see Marshaller#marshal(Object, File)
+     */
+    public void marshal(Object jaxbElement, File output) throws JAXBException {
+
+        Marshaller marshaller = pool.borrow();
+        try {
+            marshaller.marshal(jaxbElement, output);
+        } finally {
+            pool.release(marshaller);
+        }
+    }
+
+    /**
+     * Marshals the object into the given {@link Writer}.
+     *
+     * @param jaxbElement the object to marshal
+     * @param writer      the output
+     *
+     * @throws JAXBException if any error occurs during marshalling
+     * @see Marshaller#marshal(Object, Writer)
+     */
+    public void marshal(Object jaxbElement, Writer writer) throws JAXBException {
+
+        Marshaller marshaller = pool.borrow();
+        try {
+            marshaller.marshal(jaxbElement, writer);
+        } finally {
+            pool.release(marshaller);
+        }
+    }
+
+    /**
+     * Marshals the object into the given {@link ContentHandler}.
+     *
+     * @param jaxbElement the object to marshal
+     * @param handler     the output
+     *
+     * @throws JAXBException if any error occurs during marshalling
+     * @see Marshaller#marshal(Object, ContentHandler)
+     */
+    public void marshal(Object jaxbElement, ContentHandler handler) throws JAXBException {
+
+        Marshaller marshaller = pool.borrow();
+        try {
+            marshaller.marshal(jaxbElement, handler);
+        } finally {
+            pool.release(marshaller);
+        }
+    }
+
+    /**
+     * Marshals the object into the given {@link Node}.
+     *
+     * @param jaxbElement the object to marshal
+     * @param node        the output
+     *
+     * @throws JAXBException if any error occurs during marshalling
+     * @see Marshaller#marshal(Object, Node)
+     */
+    public void marshal(Object jaxbElement, Node node) throws JAXBException {
+
+        Marshaller marshaller = pool.borrow();
+        try {
+            marshaller.marshal(jaxbElement, node);
+        } finally {
+            pool.release(marshaller);
+        }
+    }
+
+    /**
+     * Marshals the object into the given {@link XMLStreamWriter}.
+     *
+     * @param jaxbElement the object to marshal
+     * @param writer      the output
+     *
+     * @throws JAXBException if any error occurs during marshalling
+     * @see Marshaller#marshal(Object, XMLStreamWriter)
+     */
+    public void marshal(Object jaxbElement, XMLStreamWriter writer) throws JAXBException {
+
+        Marshaller marshaller = pool.borrow();
+        try {
+            marshaller.marshal(jaxbElement, writer);
+        } finally {
+            pool.release(marshaller);
+        }
+    }
+
+    /**
+     * Marshals the object into the given {@link XMLEventWriter}.
+     *
+     * @param jaxbElement the object to marshal
+     * @param writer      the output
+     *
+     * @throws JAXBException if any error occurs during marshalling
+     * @see Marshaller#marshal(Object, XMLEventWriter)
+     */
+    public void marshal(Object jaxbElement, XMLEventWriter writer) throws JAXBException {
+
+        Marshaller marshaller = pool.borrow();
+        try {
+            marshaller.marshal(jaxbElement, writer);
+        } finally {
+            pool.release(marshaller);
+        }
+    }
+
+    /**
+     * Marshals the object into the given {@link OutputStream} asynchronously, with the default executor.
+     *
+     * @param jaxbElement the object to marshal
+     * @param os          the output
+     *
+     * @return the future completed when the object is marshalled
+     *
+     * @see #marshalAsync(Object, OutputStream, Executor)
+     */
+    public Future<Void> marshalAsync(Object jaxbElement, OutputStream os) {
+        return marshalAsync(jaxbElement, os, AsyncExecutors.getDefaultExecutor());
+    }
+
+    /**
+     * Marshals the object into the given {@link OutputStream} asynchronously. The output must not be used until the
+     * returned future is done; an error is reported by the future as the cause of its {@link
+     * java.util.concurrent.ExecutionException}.
+     *
+     * @param jaxbElement the object to marshal
+     * @param os          the output
+     * @param executor    the executor to run the marshalling with
+     *
+     * @return the future completed when the object is marshalled
+     *
+     * @throws IllegalArgumentException if executor is null
+     * @throws java.util.concurrent.RejectedExecutionException
+     *                                  if the executor does not accept the task
+     */
+    public Future<Void> marshalAsync(final Object jaxbElement, final OutputStream os, Executor executor) {
+
+        return AsyncExecutors.submit(new Callable<Void>() {
+            public Void call() throws JAXBException {
+                marshal(jaxbElement, os);
+                return null;
+            }
+        }, executor);
+    }
+
+    /**
+     * Marshals the object into the given {@link Writer} asynchronously, with the default executor.
+     *
+     * @param jaxbElement the object to marshal
+     * @param writer      the output
+     *
+     * @return the future completed when the object is marshalled
+     *
+     * @see #marshalAsync(Object, Writer, Executor)
+     */
+    public Future<Void> marshalAsync(Object jaxbElement, Writer writer) {
+        return marshalAsync(jaxbElement, writer, AsyncExecutors.getDefaultExecutor());
+    }
+
+    /**
+     * Marshals the object into the given {@link Writer} asynchronously. The output must not be used until the
+     * returned future is done; an error is reported by the future as the cause of its {@link
+     * java.util.concurrent.ExecutionException}.
+     *
+     * @param jaxbElement the object to marshal
+     * @param writer      the output
+     * @param executor    the executor to run the marshalling with
+     *
+     * @return the future completed when the object is marshalled
+     *
+     * @throws IllegalArgumentException if executor is null
+     * @throws java.util.concurrent.RejectedExecutionException
+     *                                  if the executor does not accept the task
+     */
+    public Future<Void> marshalAsync(final Object jaxbElement, final Writer writer, Executor executor) {
+
+        return AsyncExecutors.submit(new Callable<Void>() {
+            public Void call() throws JAXBException {
+                marshal(jaxbElement, writer);
+                return null;
+            }
+        }, executor);
+    }
+
+    /**
+     * Marshals the object into the given {@link Result} asynchronously, with the default executor.
+     *
+     * @param jaxbElement the object to marshal
+     * @param result      the output
+     *
+     * @return the future completed when the object is marshalled
+     *
+     * @see #marshalAsync(Object, Result, Executor)
+     */
+    public Future<Void> marshalAsync(Object jaxbElement, Result result) {
+        return marshalAsync(jaxbElement, result, AsyncExecutors.getDefaultExecutor());
+    }
+
+    /**
+     * Marshals the object into the given {@link Result} asynchronously. The output must not be used until the
+     * returned future is done; an error is reported by the future as the cause of its {@link
+     * java.util.concurrent.ExecutionException}.
+     *
+     * @param jaxbElement the object to marshal
+     * @param result      the output
+     * @param executor    the executor to run the marshalling with
+     *
+     * @return the future completed when the object is marshalled
+     *
+     * @throws IllegalArgumentException if executor is null
+     * @throws java.util.concurrent.RejectedExecutionException
+     *                                  if the executor does not accept the task
+     */
+    public Future<Void> marshalAsync(final Object jaxbElement, final Result result, Executor executor) {
+
+        return AsyncExecutors.submit(new Callable<Void>() {
+            public Void call() throws JAXBException {
+                marshal(jaxbElement, result);
+                return null;
+            }
+        }, executor);
+    }
+
+    /**
+     * Retrieves the value of the given property.
+     *
+     * @param name the property name
+     *
+     * @return the property value, or null if the property is not set
+     */
+    public Object getProperty(String name) {
+        return properties.get(name);
+    }
+
+    /**
+     * Retrieves the properties.
+     *
+     * @return the unmodifiable map of the properties
+     */
+    public Map<String, Object> getProperties() {
+        return properties;
+    }
+
+    /**
+     * Retrieves the marshal listener.
+     *
+     * @return the marshal listener, or null if none was set
+     */
+    public Marshaller.Listener getListener() {
+        return listener;
+    }
+
+    /**
+     * Retrieves the schema against which the result is validated.
+     *
+     * @return the schema, or null if none was set
+     */
+    public Schema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Retrieves the number of the idle pooled marshallers.
+     *
+     * @return the number of the idle pooled marshallers
+     */
+    int getIdleCount() {
+        return pool.getIdleCount();
+    }
+
+    /**
+     * Creates a marshaller configured by this template.
+     *
+     * @return the newly created marshaller
+     *
+     * @throws JAXBException if any of the properties is not supported
+     */
+    private Marshaller createMarshaller() throws JAXBException {
+
+        Marshaller marshaller = new CastorMarshaller(context);
+        marshaller.setProperty(CastorMarshaller.REUSE_MARSHALLER_PROPERTY, Boolean.TRUE);
+
+        for (Map.Entry<String, Object> property : properties.entrySet()) {
+            marshaller.setProperty(property.getKey(), property.getValue());
+        }
+        marshaller.setListener(listener);
+        marshaller.setSchema(schema);
+
+        return marshaller;
+    }
+}
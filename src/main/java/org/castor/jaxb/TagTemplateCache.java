@@ -0,0 +1,180 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb;
+
+import org.exolab.castor.xml.XMLClassDescriptor;
+import org.exolab.castor.xml.XMLFieldDescriptor;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Caches the {@link TagTemplate tag templates} of the element and attribute names of a context. The templates of
+ * the names known from the class descriptors are built up front by {@link #addDescriptors(Collection)}, the others
+ * on their first use. The number of cached templates is bounded, the templates of the names above the bound are
+ * built on every use.
+ * <p/>
+ * This class is thread safe.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+final class TagTemplateCache {
+
+    /**
+     * Represents the maximum number of cached templates.
+     */
+    static final int MAX_SIZE = 4096;
+
+    /**
+     * Represents the templates, by qualified name.
+     */
+    private final ConcurrentMap<String, TagTemplate> templates = new ConcurrentHashMap<String, TagTemplate>();
+
+    /**
+     * Retrieves the template of the given qualified name.
+     *
+     * @param qName the qualified name
+     *
+     * @return the template
+     */
+    TagTemplate getTemplate(String qName) {
+
+        TagTemplate template = templates.get(qName);
+        if (template == null) {
+            template = new TagTemplate(qName);
+            if (templates.size() < MAX_SIZE) {
+                templates.putIfAbsent(qName, template);
+            }
+        }
+        return template;
+    }
+
+    /**
+     * Builds the templates of the names of the given class descriptors and of their element and attribute fields.
+     *
+     * @param descriptors the class descriptors
+     */
+    void addDescriptors(Collection<XMLClassDescriptor> descriptors) {
+
+        for (XMLClassDescriptor descriptor : descriptors) {
+            addName(descriptor.getNameSpacePrefix(), descriptor.getXMLName());
+
+            addFields(descriptor.getElementDescriptors());
+            addFields(descriptor.getAttributeDescriptors());
+        }
+    }
+
+    /**
+     * Retrieves the number of cached templates.
+     *
+     * @return the number of cached templates
+     */
+    int size() {
+        return templates.size();
+    }
+
+    /**
+     * Builds the templates of the names of the given fields.
+     *
+     * @param fields the field descriptors
+     */
+    private void addFields(XMLFieldDescriptor[] fields) {
+
+        if (fields != null) {
+            for (XMLFieldDescriptor field : fields) {
+                addName(field.getNameSpacePrefix(), field.getXMLName());
+            }
+        }
+    }
+
+    /**
+     * Builds the template of the given name.
+     *
+     * @param prefix    the namespace prefix, may be null
+     * @param localName the local name, may be null
+     */
+    private void addName(String prefix, String localName) {
+
+        if (localName != null && localName.length() > 0) {
+            getTemplate(prefix != null && prefix.length() > 0 ? prefix + ":" + localName : localName);
+        }
+    }
+
+    /**
+     * The ready to write markup of a single element or attribute name. The names need no escaping, so the markup is
+     * built once and copied to the output in bulk.
+     *
+     * @author Jakub Narloch, jmnarloch AT gmail DOT org
+     * @version 1.0
+     */
+    static final class TagTemplate {
+
+        /**
+         * Represents the opening of the start tag, <code>&lt;name</code>.
+         */
+        private final char[] startTag;
+
+        /**
+         * Represents the end tag, <code>&lt;/name&gt;</code>.
+         */
+        private final char[] endTag;
+
+        /**
+         * Represents the attribute up to its value, <code> name="</code>.
+         */
+        private final char[] attributePrefix;
+
+        /**
+         * Creates new instance of {@link TagTemplate} class.
+         *
+         * @param qName the qualified name
+         */
+        private TagTemplate(String qName) {
+            this.startTag = ("<" + qName).toCharArray();
+            this.endTag = ("</" + qName + ">").toCharArray();
+            this.attributePrefix = (" " + qName + "=\"").toCharArray();
+        }
+
+        /**
+         * Retrieves the opening of the start tag.
+         *
+         * @return the opening of the start tag, which must not be modified
+         */
+        char[] getStartTag() {
+            return startTag;
+        }
+
+        /**
+         * Retrieves the end tag.
+         *
+         * @return the end tag, which must not be modified
+         */
+        char[] getEndTag() {
+            return endTag;
+        }
+
+        /**
+         * Retrieves the attribute up to its value.
+         *
+         * @return the attribute up to its value, which must not be modified
+         */
+        char[] getAttributePrefix() {
+            return attributePrefix;
+        }
+    }
+}
@@ -0,0 +1,374 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb;
+
+import org.castor.jaxb.TagTemplateCache.TagTemplate;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link ContentHandler} writing the events as XML into a {@link Writer}. The element and attribute names are
+ * written from the {@link TagTemplate tag templates} of a {@link TagTemplateCache}, only the text and the attribute
+ * values are escaped, and the runs of characters that need no escaping are written in bulk.
+ * <p/>
+ * The output is not indented and the characters are written as they are, so the writer has to be able to encode
+ * any character. The namespace mappings are written as attributes of the next element. An element without content
+ * is written as an empty element tag.
+ * <p/>
+ * This class is not thread safe.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+final class TagTemplateSerializer implements ContentHandler {
+
+    /**
+     * Represents the end of an empty element tag.
+     */
+    private static final char[] EMPTY_TAG_END = "/>".toCharArray();
+
+    /**
+     * Represents the underlying writer.
+     */
+    private final Writer writer;
+
+    /**
+     * Represents the templates of the names.
+     */
+    private final TagTemplateCache templates;
+
+    /**
+     * Represents the encoding written to the XML declaration, null if the declaration is omitted.
+     */
+    private final String encoding;
+
+    /**
+     * Represents the namespace mappings waiting for the next element, as pairs of prefix and uri.
+     */
+    private final List<String> pendingMappings = new ArrayList<String>();
+
+    /**
+     * Represents whether the start tag of the current element was not closed yet.
+     */
+    private boolean startTagOpen;
+
+    /**
+     * Creates new instance of {@link TagTemplateSerializer} class.
+     *
+     * @param writer    the underlying writer
+     * @param templates the templates of the names
+     * @param encoding  the encoding written to the XML declaration, null to omit the declaration
+     *
+     * @throws IllegalArgumentException if writer or templates is null
+     */
+    TagTemplateSerializer(Writer writer, TagTemplateCache templates, String encoding) {
+        CastorJAXBUtils.checkNotNull(writer, "writer");
+        CastorJAXBUtils.checkNotNull(templates, "templates");
+
+        this.writer = writer;
+        this.templates = templates;
+        this.encoding = encoding;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setDocumentLocator(Locator locator) {
+        // empty method
+    }
+
+    /**
+     * Writes the XML declaration, unless it is omitted.
+     *
+     * @throws SAXException if any error occurs when writing
+     */
+    public void startDocument() throws SAXException {
+
+        if (encoding != null) {
+            try {
+                writer.write("<?xml version=\"1.0\" encoding=\"" + encoding + "\"?>\n");
+            } catch (IOException e) {
+                throw new SAXException(e);
+            }
+        }
+    }
+
+    /**
+     * Flushes the writer.
+     *
+     * @throws SAXException if any error occurs when flushing
+     */
+    public void endDocument() throws SAXException {
+
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void startPrefixMapping(String prefix, String uri) {
+
+        pendingMappings.add(prefix != null ? prefix : "");
+        pendingMappings.add(uri != null ? uri : "");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void endPrefixMapping(String prefix) {
+        // empty method
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+
+        try {
+            closeStartTag();
+            write(templates.getTemplate(getName(localName, qName)).getStartTag());
+
+            for (int i = 0; i < pendingMappings.size(); i += 2) {
+                String prefix = pendingMappings.get(i);
+                writer.write(prefix.length() == 0 ? " xmlns" : " xmlns:" + prefix);
+                writer.write("=\"");
+                writeEscaped(pendingMappings.get(i + 1), true);
+                writer.write('"');
+            }
+            pendingMappings.clear();
+
+            if (atts != null) {
+                for (int i = 0; i < atts.getLength(); i++) {
+                    write(templates.getTemplate(getName(atts.getLocalName(i), atts.getQName(i)))
+                            .getAttributePrefix());
+                    writeEscaped(atts.getValue(i), true);
+                    writer.write('"');
+                }
+            }
+
+            startTagOpen = true;
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+
+        try {
+            if (startTagOpen) {
+                startTagOpen = false;
+                write(EMPTY_TAG_END);
+            } else {
+                write(templates.getTemplate(getName(localName, qName)).getEndTag());
+            }
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void characters(char[] ch, int start, int length) throws SAXException {
+
+        try {
+            closeStartTag();
+
+            int end = start + length;
+            int runStart = start;
+            for (int i = start; i < end; i++) {
+                String replacement = getReplacement(ch[i], false);
+                if (replacement != null) {
+                    writer.write(ch, runStart, i - runStart);
+                    writer.write(replacement);
+                    runStart = i + 1;
+                }
+            }
+            writer.write(ch, runStart, end - runStart);
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+        characters(ch, start, length);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void processingInstruction(String target, String data) throws SAXException {
+
+        try {
+            closeStartTag();
+            writer.write("<?");
+            writer.write(target);
+            if (data != null && data.length() > 0) {
+                writer.write(' ');
+                writer.write(data);
+            }
+            writer.write("?>");
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void skippedEntity(String name) throws SAXException {
+
+        try {
+            closeStartTag();
+            writer.write('&');
+            writer.write(name);
+            writer.write(';');
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    /**
+     * Closes the start tag of the current element, if it is still open.
+     *
+     * @throws IOException if any error occurs when writing
+     */
+    private void closeStartTag() throws IOException {
+
+        if (startTagOpen) {
+            startTagOpen = false;
+            writer.write('>');
+        }
+    }
+
+    /**
+     * Writes the whole array.
+     *
+     * @param chars the characters to write
+     *
+     * @throws IOException if any error occurs when writing
+     */
+    private void write(char[] chars) throws IOException {
+        writer.write(chars, 0, chars.length);
+    }
+
+    /**
+     * Writes the escaped text.
+     *
+     * @param text      the text to write
+     * @param attribute whether the text is an attribute value
+     *
+     * @throws IOException  if any error occurs when writing
+     * @throws SAXException if the text contains a character that can not appear in an XML document
+     */
+    private void writeEscaped(String text, boolean attribute) throws IOException, SAXException {
+
+        int length = text.length();
+        int runStart = 0;
+        for (int i = 0; i < length; i++) {
+            String replacement = getReplacement(text.charAt(i), attribute);
+            if (replacement != null) {
+                writer.write(text, runStart, i - runStart);
+                writer.write(replacement);
+                runStart = i + 1;
+            }
+        }
+        writer.write(text, runStart, length - runStart);
+    }
+
+    /**
+     * Retrieves the replacement of the character that has to be escaped.
+     *
+     * @param c         the character
+     * @param attribute whether the character is a part of an attribute value
+     *
+     * @return the replacement, or null if the character is written as it is
+     *
+     * @throws SAXException if the character can not appear in an XML document, even escaped
+     */
+    private static String getReplacement(char c, boolean attribute) throws SAXException {
+
+        if (c > '>') {
+            if (c == '\uFFFE' || c == '\uFFFF') {
+                throw invalidCharacter(c);
+            }
+            return null;
+        }
+
+        switch (c) {
+            case '&':
+                return "&amp;";
+            case '<':
+                return "&lt;";
+            case '>':
+                return "&gt;";
+            case '\r':
+                return "&#13;";
+            case '"':
+                return attribute ? "&quot;" : null;
+            case '\n':
+                return attribute ? "&#10;" : null;
+            case '\t':
+                return attribute ? "&#9;" : null;
+            default:
+                if (c < ' ') {
+                    throw invalidCharacter(c);
+                }
+                return null;
+        }
+    }
+
+    /**
+     * Creates the exception reporting a character that can not appear in an XML document.
+     *
+     * @param c the character
+     *
+     * @return the exception to throw
+     */
+    private static SAXException invalidCharacter(char c) {
+        return new SAXException("The character '\\u" + Integer.toHexString(0x10000 | c).substring(1).toUpperCase()
+                + "' is an invalid XML character.");
+    }
+
+    /**
+     * Retrieves the name to write, the qualified name if it is known, otherwise the local name.
+     *
+     * @param localName the local name
+     * @param qName     the qualified name
+     *
+     * @return the name to write
+     */
+    private static String getName(String localName, String qName) {
+        return qName != null && qName.length() > 0 ? qName : localName;
+    }
+}
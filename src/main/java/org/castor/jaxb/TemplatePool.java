@@ -0,0 +1,118 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb;
+
+import javax.xml.bind.JAXBException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A lock free pool of the instances used by the templates for a single call. An instance is borrowed by one thread
+ * at a time; when the pool is empty a new one is created, and the instances returned to a full pool are dropped.
+ * The pool never blocks, so it suits any number of threads, pooled or not.
+ *
+ * @param <T> the type of the pooled instances
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+abstract class TemplatePool<T> {
+
+    /**
+     * Represents the default maximum number of idle instances.
+     */
+    static final int DEFAULT_MAX_IDLE = Runtime.getRuntime().availableProcessors() * 2;
+
+    /**
+     * Represents the idle instances.
+     */
+    private final Queue<T> idle = new ConcurrentLinkedQueue<T>();
+
+    /**
+     * Represents the number of idle instances.
+     */
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    /**
+     * Represents the maximum number of idle instances.
+     */
+    private final int maxIdle;
+
+    /**
+     * Creates new instance of {@link TemplatePool} class.
+     *
+     * @param maxIdle the maximum number of idle instances
+     *
+     * @throws IllegalArgumentException if maxIdle is negative
+     */
+    TemplatePool(int maxIdle) {
+        if (maxIdle < 0) {
+            throw new IllegalArgumentException("Argument 'maxIdle' can not be negative.");
+        }
+
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * Borrows an instance from the pool, creating a new one if there is no idle instance.
+     *
+     * @return the borrowed instance
+     *
+     * @throws JAXBException if the instance can not be created
+     */
+    T borrow() throws JAXBException {
+
+        T instance = idle.poll();
+        if (instance != null) {
+            idleCount.decrementAndGet();
+            return instance;
+        }
+
+        return create();
+    }
+
+    /**
+     * Returns the borrowed instance to the pool.
+     *
+     * @param instance the borrowed instance
+     */
+    void release(T instance) {
+
+        if (idleCount.incrementAndGet() <= maxIdle) {
+            idle.offer(instance);
+        } else {
+            idleCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * Retrieves the number of idle instances.
+     *
+     * @return the number of idle instances
+     */
+    int getIdleCount() {
+        return idleCount.get();
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @return the newly created instance
+     *
+     * @throws JAXBException if the instance can not be created
+     */
+    protected abstract T create() throws JAXBException;
+}
@@ -0,0 +1,600 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb;
+
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.Source;
+import javax.xml.validation.Schema;
+import java.io.File;
+import java.io.InputStream;
+import java.io.Reader;
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+/**
+ * An immutable unmarshaller that can be shared by any number of threads. Its properties, listener and schema are
+ * fixed when it is created by {@link CastorJAXBContext#createUnmarshallerTemplate(Map, Unmarshaller.Listener,
+ * Schema)}.
+ * <p/>
+ * Every call borrows a configured {@link CastorUnmarshaller} from an internal pool and returns it when done. The
+ * pool never blocks and holds at most a few idle unmarshallers, so no thread local state is involved.
+ * <p/>
+ * The listener is invoked concurrently when the template is used by several threads at the same time, so it has to
+ * be thread safe.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+public final class UnmarshallerTemplate {
+
+    /**
+     * Represents the instance of {@link CastorJAXBContext} that created this template.
+     */
+    private final CastorJAXBContext context;
+
+    /**
+     * Represents the unmarshaller properties.
+     */
+    private final Map<String, Object> properties;
+
+    /**
+     * Represents the unmarshal listener.
+     */
+    private final Unmarshaller.Listener listener;
+
+    /**
+     * Represents the {@link Schema} instance used for validating the input.
+     */
+    private final Schema schema;
+
+    /**
+     * Represents the pool of the configured unmarshallers.
+     */
+    private final TemplatePool<Unmarshaller> pool =
+            new TemplatePool<Unmarshaller>(TemplatePool.DEFAULT_MAX_IDLE) {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected Unmarshaller create() throws JAXBException {
+            return createUnmarshaller();
+        }
+    };
+
+    /**
+     * Creates new instance of {@link UnmarshallerTemplate} class. The properties are validated by creating the first
+     * pooled unmarshaller.
+     *
+     * @param context    the {@link CastorJAXBContext} to use
+     * @param properties the unmarshaller properties, may be null
+     * @param listener   the unmarshal listener, may be null
+     * @param schema     the schema against which the input will be validated, may be null
+     *
+     * @throws IllegalArgumentException if context is null
+     * @throws JAXBException            if any of the properties is not supported
+     */
+    UnmarshallerTemplate(CastorJAXBContext context, Map<String, ?> properties, Unmarshaller.Listener listener,
+                         Schema schema) throws JAXBException {
+        // checks input
+        CastorJAXBUtils.checkNotNull(context, "context");
+
+        // assigns the fields
+        this.context = context;
+        this.properties = properties != null ? Collections.unmodifiableMap(new HashMap<String, Object>(properties))
+                : Collections.<String, Object>emptyMap();
+        this.listener = listener;
+        this.schema = schema;
+
+        pool.release(createUnmarshaller());
+    }
+
+    /**
+     * Unmarshals the given {@link File}.
+     *
+     * @param f the input
+     *
+     * @return the unmarshalled object
+     *
+     * @throws JAXBException if any error occurs during unmarshalling
+     * @see Unmarshaller#unmarshal(File)
+     */
+    public Object unmarshal(File f) throws JAXBException {
+
+        Unmarshaller unmarshaller = pool.borrow();
+        try {
+            return unmarshaller.unmarshal(f);
+        } finally {
+            pool.release(unmarshaller);
+        }
+    }
+
+    /**
+     * Unmarshals the given {@link InputStream}.
+     *
+     * @param is the input
+     *
+     * @return the unmarshalled object
+     *
+     * @throws JAXBException if any error occurs during unmarshalling
+     * @see Unmarshaller#unmarshal(InputStream)
+     */
+    public Object unmarshal(InputStream is) throws JAXBException {
+
+        Unmarshaller unmarshaller = pool.borrow();
+        try {
+            return unmarshaller.unmarshal(is);
+        } finally {
+            pool.release(unmarshaller);
+        }
+    }
+
+    /**
+     * Unmarshals the given {@link Reader}.
+     *
+     * @param reader the input
+     *
+     * @return the unmarshalled object
+     *
+     * @throws JAXBException if any error occurs during unmarshalling
+     * @see Unmarshaller#unmarshal(Reader)
+     */
+    public Object unmarshal(Reader reader) throws JAXBException {
+
+        Unmarshaller unmarshaller = pool.borrow();
+        try {
+            return unmarshaller.unmarshal(reader);
+        } finally {
+            pool.release(unmarshaller);
+        }
+    }
+
+    /**
+     * Unmarshals the given {@link URL}.
+     *
+     * @param url the input
+     *
+     * @return the unmarshalled object
+     *
+     * @throws JAXBException if any error occurs during unmarshalling
+     * @see Unmarshaller#unmarshal(URL)
+     */
+    public Object unmarshal(URL url) throws JAXBException {
+
+        Unmarshaller unmarshaller = pool.borrow();
+        try {
+            return unmarshaller.unmarshal(url);
+        } finally {
+            pool.release(unmarshaller);
+        }
+    }
+
+    /**
+     * Unmarshals the given {@link InputSource}.
+     *
+     * @param source the input
+     *
+     * @return the unmarshalled object
+     *
+     * @throws JAXBException if any error occurs during unmarshalling
+     * @see Unmarshaller#unmarshal(InputSource)
+     */
+    public Object unmarshal(InputSource source) throws JAXBException {
+
+        Unmarshaller unmarshaller = pool.borrow();
+        try {
+            return unmarshaller.unmarshal(source);
+        } finally {
+            pool.release(unmarshaller);
+        }
+    }
+
+    /**
+     * Unmarshals the given {@link Node}.
+     *
+     * @param node the input
+     *
+     * @return the unmarshalled object
+     *
+     * @throws JAXBException if any error occurs during unmarshalling
+     * @see Unmarshaller#unmarshal(Node)
+     */
+    public Object unmarshal(Node node) throws JAXBException {
+
+        Unmarshaller unmarshaller = pool.borrow();
+        try {
+            return unmarshaller.unmarshal(node);
+        } finally {
+            pool.release(unmarshaller);
+        }
+    }
+
+    /**
+     * Unmarshals the given {@link Node} into an instance of the declared type.
+     *
+     * @param node         the input
+     * @param declaredType the expected class of the unmarshalled object
+     * @param <T>          the type of expected object
+     *
+     * @return the unmarshalled object
+     *
+     * @throws JAXBException if any error occurs during unmarshalling
+     * @see Unmarshaller#unmarshal(Node, Class)
+     */
+    public <T> JAXBElement<T> unmarshal(Node node, Class<T> declaredType) throws JAXBException {
+
+        Unmarshaller unmarshaller = pool.borrow();
+        try {
+            return unmarshaller.unmarshal(node, declaredType);
+        } finally {
+            pool.release(unmarshaller);
+        }
+    }
+
+    /**
+     * Unmarshals the given {@link Source}.
+     *
+     * @param source the input
+     *
+     * @return the unmarshalled object
+     *
+     * @throws JAXBException if any error occurs during unmarshalling
+     * @see Unmarshaller#unmarshal(Source)
+     */
+    public Object unmarshal(Source source) throws JAXBException {
+
+        Unmarshaller unmarshaller = pool.borrow();
+        try {
+            return unmarshaller.unmarshal(source);
+        } finally {
+            pool.release(unmarshaller);
+        }
+    }
+
+    /**
+     * Unmarshals the given {@link Source} into an instance of the declared type.
+     *
+     * @param source       the input
+     * @param declaredType the expected class of the unmarshalled object
+     * @param <T>          the type of expected object
+     *
+     * @return the unmarshalled object
+     *
+     * @throws JAXBException if any error occurs during unmarshalling
+     * @see Unmarshaller#unmarshal(Source, Class)
+     */
+    public <T> JAXBElement<T> unmarshal(Source source, Class<T> declaredType) throws JAXBException {
+
+        Unmarshaller unmarshaller = pool.borrow();
+        try {
+            return unmarshaller.unmarshal(source, declaredType);
+        } finally {
+            pool.release(unmarshaller);
+        }
+    }
+
+    /**
+     * Unmarshals the given {@link XMLStreamReader}.
+     *
+     * @param reader the input
+     *
+     * @return the unmarshalled object
+     *
+     * @throws JAXBException if any error occurs during unmarshalling
+     * @see Unmarshaller#unmarshal(XMLStreamReader)
+     */
+    public Object unmarshal(XMLStreamReader reader) throws JAXBException {
+
+        Unmarshaller unmarshaller = pool.borrow();
+        try {
+            return unmarshaller.unmarshal(reader);
+        } finally {
+            pool.release(unmarshaller);
+        }
+    }
+
+    /**
+     * Unmarshals the given {@link XMLStreamReader} into an instance of the declared type.
+     *
+     * @param reader       the input
+     * @param declaredType the expected class of the unmarshalled object
+     * @param <T>          the type of expected object
+     *
+     * @return the unmarshalled object
+     *
+     * @throws JAXBException if any error occurs during unmarshalling
+     * @see Unmarshaller#unmarshal(XMLStreamReader, Class)
+     */
+    public <T> JAXBElement<T> unmarshal(XMLStreamReader reader, Class<T> declaredType) throws JAXBException {
+
+        Unmarshaller unmarshaller = pool.borrow();
+        try {
+            return unmarshaller.unmarshal(reader, declaredType);
+        } finally {
+            pool.release(unmarshaller);
+        }
+    }
+
+    /**
+     * Unmarshals the given {@link XMLEventReader}.
+     *
+     * @param reader the input
+     *
+     * @return the unmarshalled object
+     *
+     * @throws JAXBException if any error occurs during unmarshalling
+     * @see Unmarshaller#unmarshal(XMLEventReader)
+     */
+    public Object unmarshal(XMLEventReader reader) throws JAXBException {
+
+        Unmarshaller unmarshaller = pool.borrow();
+        try {
+            return unmarshaller.unmarshal(reader);
+        } finally {
+            pool.release(unmarshaller);
+        }
+    }
+
+    /**
+     * Unmarshals the given {@link XMLEventReader} into an instance of the declared type.
+     *
+     * @param reader       the input
+     * @param declaredType the expected class of the unmarshalled object
+     * @param <T>          the type of expected object
+     *
+     * @return the unmarshalled object
+     *
+     * @throws JAXBException if any error occurs during unmarshalling
+     * @see Unmarshaller#unmarshal(XMLEventReader, Class)
+     */
+    public <T> JAXBElement<T> unmarshal(XMLEventReader reader, Class<T> declaredType) throws JAXBException {
+
+        Unmarshaller unmarshaller = pool.borrow();
+        try {
+            return unmarshaller.unmarshal(reader, declaredType);
+        } finally {
+            pool.release(unmarshaller);
+        }
+    }
+
+    /**
+     * Unmarshals the object from the given {@link InputStream} asynchronously, with the default executor.
+     *
+     * @param is the input
+     *
+     * @return the future unmarshalled object
+     *
+     * @see #unmarshalAsync(InputStream, Executor)
+     */
+    public Future<Object> unmarshalAsync(InputStream is) {
+        return unmarshalAsync(is, AsyncExecutors.getDefaultExecutor());
+    }
+
+    /**
+     * Unmarshals the object from the given {@link InputStream} asynchronously. The input must not be used until the
+     * returned future is done; an error is reported by the future as the cause of its {@link
+     * java.util.concurrent.ExecutionException}.
+     *
+     * @param is       the input
+     * @param executor the executor to run the unmarshalling with
+     *
+     * @return the future unmarshalled object
+     *
+     * @throws IllegalArgumentException if executor is null
+     * @throws java.util.concurrent.RejectedExecutionException
+     *                                  if the executor does not accept the task
+     */
+    public Future<Object> unmarshalAsync(final InputStream is, Executor executor) {
+
+        return AsyncExecutors.submit(new Callable<Object>() {
+            public Object call() throws JAXBException {
+                return unmarshal(is);
+            }
+        }, executor);
+    }
+
+    /**
+     * Unmarshals the object from the given {@link Reader} asynchronously, with the default executor.
+     *
+     * @param reader the input
+     *
+     * @return the future unmarshalled object
+     *
+     * @see #unmarshalAsync(Reader, Executor)
+     */
+    public Future<Object> unmarshalAsync(Reader reader) {
+        return unmarshalAsync(reader, AsyncExecutors.getDefaultExecutor());
+    }
+
+    /**
+     * Unmarshals the object from the given {@link Reader} asynchronously. The input must not be used until the
+     * returned future is done; an error is reported by the future as the cause of its {@link
+     * java.util.concurrent.ExecutionException}.
+     *
+     * @param reader   the input
+     * @param executor the executor to run the unmarshalling with
+     *
+     * @return the future unmarshalled object
+     *
+     * @throws IllegalArgumentException if executor is null
+     * @throws java.util.concurrent.RejectedExecutionException
+     *                                  if the executor does not accept the task
+     */
+    public Future<Object> unmarshalAsync(final Reader reader, Executor executor) {
+
+        return AsyncExecutors.submit(new Callable<Object>() {
+            public Object call() throws JAXBException {
+                return unmarshal(reader);
+            }
+        }, executor);
+    }
+
+    /**
+     * Unmarshals the object from the given {@link Source} asynchronously, with the default executor.
+     *
+     * @param source the input
+     *
+     * @return the future unmarshalled object
+     *
+     * @see #unmarshalAsync(Source, Executor)
+     */
+    public Future<Object> unmarshalAsync(Source source) {
+        return unmarshalAsync(source, AsyncExecutors.getDefaultExecutor());
+    }
+
+    /**
+     * Unmarshals the object from the given {@link Source} asynchronously. The input must not be used until the
+     * returned future is done; an error is reported by the future as the cause of its {@link
+     * java.util.concurrent.ExecutionException}.
+     *
+     * @param source   the input
+     * @param executor the executor to run the unmarshalling with
+     *
+     * @return the future unmarshalled object
+     *
+     * @throws IllegalArgumentException if executor is null
+     * @throws java.util.concurrent.RejectedExecutionException
+     *                                  if the executor does not accept the task
+     */
+    public Future<Object> unmarshalAsync(final Source source, Executor executor) {
+
+        return AsyncExecutors.submit(new Callable<Object>() {
+            public Object call() throws JAXBException {
+                return unmarshal(source);
+            }
+        }, executor);
+    }
+
+    /**
+     * Unmarshals the object of the given type from the {@link Source} asynchronously, with the default executor.
+     *
+     * @param source       the input
+     * @param declaredType the type of the object
+     * @param <T>          the type of the object
+     *
+     * @return the future unmarshalled element
+     *
+     * @see #unmarshalAsync(Source, Class, Executor)
+     */
+    public <T> Future<JAXBElement<T>> unmarshalAsync(Source source, Class<T> declaredType) {
+        return unmarshalAsync(source, declaredType, AsyncExecutors.getDefaultExecutor());
+    }
+
+    /**
+     * Unmarshals the object of the given type from the {@link Source} asynchronously. The input must not be used
+     * until the returned future is done; an error is reported by the future as the cause of its {@link
+     * java.util.concurrent.ExecutionException}.
+     *
+     * @param source       the input
+     * @param declaredType the type of the object
+     * @param executor     the executor to run the unmarshalling with
+     * @param <T>          the type of the object
+     *
+     * @return the future unmarshalled element
+     *
+     * @throws IllegalArgumentException if executor is null
+     * @throws java.util.concurrent.RejectedExecutionException
+     *                                  if the executor does not accept the task
+     */
+    public <T> Future<JAXBElement<T>> unmarshalAsync(final Source source, final Class<T> declaredType,
+                                                     Executor executor) {
+
+        return AsyncExecutors.submit(new Callable<JAXBElement<T>>() {
+            public JAXBElement<T> call() throws JAXBException {
+                return unmarshal(source, declaredType);
+            }
+        }, executor);
+    }
+
+    /**
+     * Retrieves the value of the given property.
+     *
+     * @param name the property name
+     *
+     * @return the property value, or null if the property is not set
+     */
+    public Object getProperty(String name) {
+        return properties.get(name);
+    }
+
+    /**
+     * Retrieves the properties.
+     *
+     * @return the unmodifiable map of the properties
+     */
+    public Map<String, Object> getProperties() {
+        return properties;
+    }
+
+    /**
+     * Retrieves the unmarshal listener.
+     *
+     * @return the unmarshal listener, or null if none was set
+     */
+    public Unmarshaller.Listener getListener() {
+        return listener;
+    }
+
+    /**
+     * Retrieves the schema against which the input is validated.
+     *
+     * @return the schema, or null if none was set
+     */
+    public Schema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Retrieves the number of the idle pooled unmarshallers.
+     *
+     * @return the number of the idle pooled unmarshallers
+     */
+    int getIdleCount() {
+        return pool.getIdleCount();
+    }
+
+    /**
+     * Creates an unmarshaller configured by this template.
+     *
+     * @return the newly created unmarshaller
+     *
+     * @throws JAXBException if any of the properties is not supported
+     */
+    private Unmarshaller createUnmarshaller() throws JAXBException {
+
+        Unmarshaller unmarshaller = new CastorUnmarshaller(context);
+
+        for (Map.Entry<String, Object> property : properties.entrySet()) {
+            unmarshaller.setProperty(property.getKey(), property.getValue());
+        }
+        unmarshaller.setListener(listener);
+        unmarshaller.setSchema(schema);
+
+        return unmarshaller;
+    }
+}
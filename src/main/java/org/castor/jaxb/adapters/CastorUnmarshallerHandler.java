@@ -17,6 +17,7 @@
 package org.castor.jaxb.adapters;
 
 import org.castor.jaxb.CastorJAXBUtils;
+import org.castor.jaxb.resolver.JAXBAdapterRegistry;
 import org.exolab.castor.xml.UnmarshalHandler;
 import org.springframework.stereotype.Component;
 import org.xml.sax.Attributes;
@@ -25,9 +26,14 @@ import org.xml.sax.SAXException;
 
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.UnmarshallerHandler;
+import javax.xml.bind.annotation.adapters.XmlAdapter;
+import java.util.Map;
 
 /**
  * Implementation of {@link UnmarshallerHandler} that internally delegates to Castor {UnmarshalHandler}.
+ * <p/>
+ * The adapters of the unmarshaller that created the handler are bound to the current thread while the elements are
+ * handled, as the values are converted then.
  *
  * @author Jakub Narloch, jmnarloch AT gmail DOT org
  * @version 1.0
@@ -39,6 +45,16 @@ public class CastorUnmarshallerHandler implements UnmarshallerHandler {
      */
     private final UnmarshalHandler unmarshalHandler;
 
+    /**
+     * The adapter registry of the context, null if no adapters are bound.
+     */
+    private final JAXBAdapterRegistry adapterRegistry;
+
+    /**
+     * The adapters of the unmarshaller, by adapter class.
+     */
+    private final Map<Class, XmlAdapter> adapters;
+
     /**
      * Creates new instance of {@link CastorUnmarshallerHandler} class.
      *
@@ -47,11 +63,27 @@ public class CastorUnmarshallerHandler implements UnmarshallerHandler {
      * @throws IllegalArgumentException if unmarshalHandler is null
      */
     public CastorUnmarshallerHandler(UnmarshalHandler unmarshalHandler) {
+        this(unmarshalHandler, null, null);
+    }
+
+    /**
+     * Creates new instance of {@link CastorUnmarshallerHandler} class.
+     *
+     * @param unmarshalHandler the {@link UnmarshalHandler} to use
+     * @param adapterRegistry  the adapter registry of the context, may be null
+     * @param adapters         the adapters of the unmarshaller, by adapter class
+     *
+     * @throws IllegalArgumentException if unmarshalHandler is null
+     */
+    public CastorUnmarshallerHandler(UnmarshalHandler unmarshalHandler, JAXBAdapterRegistry adapterRegistry,
+                                     Map<Class, XmlAdapter> adapters) {
         // checks the input
         CastorJAXBUtils.checkNotNull(unmarshalHandler, "unmarshalHandler");
 
         // sets the handler
         this.unmarshalHandler = unmarshalHandler;
+        this.adapterRegistry = adapterRegistry;
+        this.adapters = adapters;
     }
 
     /**
@@ -79,7 +111,12 @@ public class CastorUnmarshallerHandler implements UnmarshallerHandler {
      * {@inheritDoc}
      */
     public void endDocument() throws SAXException {
-        unmarshalHandler.endDocument();
+        Map<Class, XmlAdapter> previousAdapters = bindAdapters();
+        try {
+            unmarshalHandler.endDocument();
+        } finally {
+            restoreAdapters(previousAdapters);
+        }
     }
 
     /**
@@ -100,14 +137,24 @@ public class CastorUnmarshallerHandler implements UnmarshallerHandler {
      * {@inheritDoc}
      */
     public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
-        unmarshalHandler.startElement(uri, localName, qName, atts);
+        Map<Class, XmlAdapter> previousAdapters = bindAdapters();
+        try {
+            unmarshalHandler.startElement(uri, localName, qName, atts);
+        } finally {
+            restoreAdapters(previousAdapters);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
     public void endElement(String uri, String localName, String qName) throws SAXException {
-        unmarshalHandler.endElement(uri, localName, qName);
+        Map<Class, XmlAdapter> previousAdapters = bindAdapters();
+        try {
+            unmarshalHandler.endElement(uri, localName, qName);
+        } finally {
+            restoreAdapters(previousAdapters);
+        }
     }
 
     /**
@@ -137,4 +184,24 @@ public class CastorUnmarshallerHandler implements UnmarshallerHandler {
     public void skippedEntity(String name) throws SAXException {
         unmarshalHandler.skippedEntity(name);
     }
+
+    /**
+     * Binds the adapters of the unmarshaller to the current thread.
+     *
+     * @return the adapters previously bound to the current thread
+     */
+    private Map<Class, XmlAdapter> bindAdapters() {
+        return adapterRegistry != null ? adapterRegistry.bindAdapters(adapters) : null;
+    }
+
+    /**
+     * Restores the adapters bound to the current thread before {@link #bindAdapters()} was called.
+     *
+     * @param previousAdapters the adapters returned by {@link #bindAdapters()}
+     */
+    private void restoreAdapters(Map<Class, XmlAdapter> previousAdapters) {
+        if (adapterRegistry != null) {
+            adapterRegistry.restoreAdapters(previousAdapters);
+        }
+    }
 }
@@ -0,0 +1,281 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb.adapters;
+
+import org.castor.jaxb.CastorJAXBUtils;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * A {@link ContentHandler} writing a sequence of marshalled fragments into a single wrapper element of the output.
+ * <p/>
+ * The namespace declarations are shared: the wrapper declares its own namespace and the namespaces the first
+ * fragment declares on its root, and these declarations are dropped from all the fragments. A fragment may still
+ * declare other namespaces, or redeclare a shared prefix, and those declarations are passed unchanged.
+ * <p/>
+ * The handler keeps no state for the fragments it has passed, so the memory it uses does not depend on their count.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+public class FragmentSequenceHandler implements ContentHandler {
+
+    /**
+     * Represents the output handler.
+     */
+    private final ContentHandler contentHandler;
+
+    /**
+     * Represents the name of the wrapper element.
+     */
+    private final QName wrapper;
+
+    /**
+     * Represents the namespaces declared by the wrapper element, by prefix.
+     */
+    private final Map<String, String> sharedNamespaces = new HashMap<String, String>();
+
+    /**
+     * Represents, by prefix, whether the open declarations of the fragments were passed to the output.
+     */
+    private final Map<String, LinkedList<Boolean>> declarations = new HashMap<String, LinkedList<Boolean>>();
+
+    /**
+     * Represents whether the start of the wrapper element was written.
+     */
+    private boolean wrapperStarted;
+
+    /**
+     * Creates new instance of {@link FragmentSequenceHandler} class.
+     *
+     * @param contentHandler the output handler
+     * @param wrapper        the name of the wrapper element
+     *
+     * @throws IllegalArgumentException if contentHandler or wrapper is null
+     */
+    public FragmentSequenceHandler(ContentHandler contentHandler, QName wrapper) {
+        // checks the input
+        CastorJAXBUtils.checkNotNull(contentHandler, "contentHandler");
+        CastorJAXBUtils.checkNotNull(wrapper, "wrapper");
+
+        this.contentHandler = contentHandler;
+        this.wrapper = wrapper;
+    }
+
+    /**
+     * Starts the sequence. The wrapper element itself is written with the first fragment, so that it can declare
+     * the namespaces of the fragment.
+     *
+     * @param document whether the sequence is written as a whole document
+     *
+     * @throws SAXException if the output fails
+     */
+    public void startSequence(boolean document) throws SAXException {
+
+        if (document) {
+            contentHandler.startDocument();
+        }
+
+        if (!XMLConstants.NULL_NS_URI.equals(wrapper.getNamespaceURI())) {
+            declareShared(wrapper.getPrefix(), wrapper.getNamespaceURI());
+        }
+    }
+
+    /**
+     * Ends the sequence, closing the wrapper element.
+     *
+     * @param document whether the sequence is written as a whole document
+     *
+     * @throws SAXException if the output fails
+     */
+    public void endSequence(boolean document) throws SAXException {
+
+        startWrapper();
+        contentHandler.endElement(wrapper.getNamespaceURI(), wrapper.getLocalPart(), getQualifiedName(wrapper));
+        for (String prefix : sharedNamespaces.keySet()) {
+            contentHandler.endPrefixMapping(prefix);
+        }
+
+        if (document) {
+            contentHandler.endDocument();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setDocumentLocator(Locator locator) {
+        contentHandler.setDocumentLocator(locator);
+    }
+
+    /**
+     * Ignored, the fragments are not documents.
+     */
+    public void startDocument() {
+        // empty method
+    }
+
+    /**
+     * Ignored, the fragments are not documents.
+     */
+    public void endDocument() {
+        // empty method
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void startPrefixMapping(String prefix, String uri) throws SAXException {
+
+        if (!wrapperStarted && !sharedNamespaces.containsKey(prefix) && !prefix.equals(wrapper.getPrefix())) {
+            // the declaration is moved to the wrapper, unless it would change the namespace of the wrapper
+            declareShared(prefix, uri);
+            getDeclarations(prefix).addFirst(Boolean.FALSE);
+            return;
+        }
+
+        LinkedList<Boolean> prefixDeclarations = getDeclarations(prefix);
+        if (uri.equals(sharedNamespaces.get(prefix)) && !prefixDeclarations.contains(Boolean.TRUE)) {
+            // the prefix is already bound to the uri by the wrapper
+            prefixDeclarations.addFirst(Boolean.FALSE);
+        } else {
+            startWrapper();
+            prefixDeclarations.addFirst(Boolean.TRUE);
+            contentHandler.startPrefixMapping(prefix, uri);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void endPrefixMapping(String prefix) throws SAXException {
+
+        LinkedList<Boolean> prefixDeclarations = declarations.get(prefix);
+        if (prefixDeclarations == null || prefixDeclarations.isEmpty() || prefixDeclarations.removeFirst()) {
+            contentHandler.endPrefixMapping(prefix);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+        startWrapper();
+        contentHandler.startElement(uri, localName, qName, atts);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+        contentHandler.endElement(uri, localName, qName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void characters(char[] ch, int start, int length) throws SAXException {
+        contentHandler.characters(ch, start, length);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+        contentHandler.ignorableWhitespace(ch, start, length);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void processingInstruction(String target, String data) throws SAXException {
+        contentHandler.processingInstruction(target, data);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void skippedEntity(String name) throws SAXException {
+        contentHandler.skippedEntity(name);
+    }
+
+    /**
+     * Declares the namespace on the wrapper element.
+     *
+     * @param prefix the prefix
+     * @param uri    the namespace uri
+     *
+     * @throws SAXException if the output fails
+     */
+    private void declareShared(String prefix, String uri) throws SAXException {
+
+        sharedNamespaces.put(prefix, uri);
+        contentHandler.startPrefixMapping(prefix, uri);
+    }
+
+    /**
+     * Writes the start of the wrapper element, unless it was already written.
+     *
+     * @throws SAXException if the output fails
+     */
+    private void startWrapper() throws SAXException {
+
+        if (!wrapperStarted) {
+            wrapperStarted = true;
+            contentHandler.startElement(wrapper.getNamespaceURI(), wrapper.getLocalPart(),
+                    getQualifiedName(wrapper), new AttributesImpl());
+        }
+    }
+
+    /**
+     * Retrieves the open declarations of the given prefix.
+     *
+     * @param prefix the prefix
+     *
+     * @return the open declarations, the innermost first
+     */
+    private LinkedList<Boolean> getDeclarations(String prefix) {
+
+        LinkedList<Boolean> prefixDeclarations = declarations.get(prefix);
+        if (prefixDeclarations == null) {
+            prefixDeclarations = new LinkedList<Boolean>();
+            declarations.put(prefix, prefixDeclarations);
+        }
+        return prefixDeclarations;
+    }
+
+    /**
+     * Retrieves the qualified name of the element.
+     *
+     * @param name the element name
+     *
+     * @return the qualified name
+     */
+    private static String getQualifiedName(QName name) {
+
+        return XMLConstants.DEFAULT_NS_PREFIX.equals(name.getPrefix()) ? name.getLocalPart()
+                : name.getPrefix() + ":" + name.getLocalPart();
+    }
+}
@@ -0,0 +1,349 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb.adapters;
+
+import org.castor.jaxb.CastorJAXBUtils;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link ContentHandler} recording the events it receives, so that they can be {@link #replay(ContentHandler)
+ * replayed} later. The character data of all the events is kept in a single growing array. The document locator is
+ * not recorded.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+public class SAXEventBuffer implements ContentHandler {
+
+    /**
+     * Represents the initial capacity of the character data array.
+     */
+    private static final int INITIAL_TEXT_CAPACITY = 1024;
+
+    /**
+     * Represents the recorded events.
+     */
+    private final List<Event> events = new ArrayList<Event>();
+
+    /**
+     * Represents the character data of the recorded events.
+     */
+    private char[] text = new char[INITIAL_TEXT_CAPACITY];
+
+    /**
+     * Represents the length of the character data.
+     */
+    private int textLength;
+
+    /**
+     * Replays the recorded events to the given handler.
+     *
+     * @param contentHandler the handler to replay the events to
+     *
+     * @throws IllegalArgumentException if contentHandler is null
+     * @throws SAXException             if the handler fails
+     */
+    public void replay(ContentHandler contentHandler) throws SAXException {
+        CastorJAXBUtils.checkNotNull(contentHandler, "contentHandler");
+
+        for (Event event : events) {
+            switch (event.type) {
+                case START_DOCUMENT:
+                    contentHandler.startDocument();
+                    break;
+                case END_DOCUMENT:
+                    contentHandler.endDocument();
+                    break;
+                case START_PREFIX_MAPPING:
+                    contentHandler.startPrefixMapping(event.name, event.value);
+                    break;
+                case END_PREFIX_MAPPING:
+                    contentHandler.endPrefixMapping(event.name);
+                    break;
+                case START_ELEMENT:
+                    contentHandler.startElement(event.uri, event.name, event.value, event.attributes);
+                    break;
+                case END_ELEMENT:
+                    contentHandler.endElement(event.uri, event.name, event.value);
+                    break;
+                case CHARACTERS:
+                    contentHandler.characters(text, event.start, event.length);
+                    break;
+                case IGNORABLE_WHITESPACE:
+                    contentHandler.ignorableWhitespace(text, event.start, event.length);
+                    break;
+                case PROCESSING_INSTRUCTION:
+                    contentHandler.processingInstruction(event.name, event.value);
+                    break;
+                default:
+                    contentHandler.skippedEntity(event.name);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Discards the recorded events.
+     */
+    public void clear() {
+        events.clear();
+        textLength = 0;
+    }
+
+    /**
+     * Retrieves the number of the recorded events.
+     *
+     * @return the number of the recorded events
+     */
+    public int size() {
+        return events.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setDocumentLocator(Locator locator) {
+        // the locator is meaningless once the events are replayed
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void startDocument() {
+        events.add(new Event(EventType.START_DOCUMENT));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void endDocument() {
+        events.add(new Event(EventType.END_DOCUMENT));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void startPrefixMapping(String prefix, String uri) {
+        Event event = new Event(EventType.START_PREFIX_MAPPING);
+        event.name = prefix;
+        event.value = uri;
+        events.add(event);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void endPrefixMapping(String prefix) {
+        Event event = new Event(EventType.END_PREFIX_MAPPING);
+        event.name = prefix;
+        events.add(event);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void startElement(String uri, String localName, String qName, Attributes atts) {
+        Event event = new Event(EventType.START_ELEMENT);
+        event.uri = uri;
+        event.name = localName;
+        event.value = qName;
+        event.attributes = new AttributesImpl(atts);
+        events.add(event);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void endElement(String uri, String localName, String qName) {
+        Event event = new Event(EventType.END_ELEMENT);
+        event.uri = uri;
+        event.name = localName;
+        event.value = qName;
+        events.add(event);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void characters(char[] ch, int start, int length) {
+        events.add(createTextEvent(EventType.CHARACTERS, ch, start, length));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void ignorableWhitespace(char[] ch, int start, int length) {
+        events.add(createTextEvent(EventType.IGNORABLE_WHITESPACE, ch, start, length));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void processingInstruction(String target, String data) {
+        Event event = new Event(EventType.PROCESSING_INSTRUCTION);
+        event.name = target;
+        event.value = data;
+        events.add(event);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void skippedEntity(String name) {
+        Event event = new Event(EventType.SKIPPED_ENTITY);
+        event.name = name;
+        events.add(event);
+    }
+
+    /**
+     * Creates the event of the given character data, which is appended to the text array.
+     *
+     * @param type   the event type
+     * @param ch     the characters
+     * @param start  the start position in the array
+     * @param length the number of characters to use
+     *
+     * @return the created event
+     */
+    private Event createTextEvent(EventType type, char[] ch, int start, int length) {
+
+        if (textLength + length > text.length) {
+            char[] newText = new char[Math.max(text.length * 2, textLength + length)];
+            System.arraycopy(text, 0, newText, 0, textLength);
+            text = newText;
+        }
+        System.arraycopy(ch, start, text, textLength, length);
+
+        Event event = new Event(type);
+        event.start = textLength;
+        event.length = length;
+        textLength += length;
+        return event;
+    }
+
+    /**
+     * The types of the recorded events.
+     */
+    private enum EventType {
+
+        /**
+         * The start of the document.
+         */
+        START_DOCUMENT,
+
+        /**
+         * The end of the document.
+         */
+        END_DOCUMENT,
+
+        /**
+         * The start of a prefix mapping.
+         */
+        START_PREFIX_MAPPING,
+
+        /**
+         * The end of a prefix mapping.
+         */
+        END_PREFIX_MAPPING,
+
+        /**
+         * The start of an element.
+         */
+        START_ELEMENT,
+
+        /**
+         * The end of an element.
+         */
+        END_ELEMENT,
+
+        /**
+         * The character data.
+         */
+        CHARACTERS,
+
+        /**
+         * The ignorable white space.
+         */
+        IGNORABLE_WHITESPACE,
+
+        /**
+         * The processing instruction.
+         */
+        PROCESSING_INSTRUCTION,
+
+        /**
+         * The skipped entity.
+         */
+        SKIPPED_ENTITY
+    }
+
+    /**
+     * A single recorded event. The fields are used as required by the event type.
+     */
+    private static final class Event {
+
+        /**
+         * Represents the event type.
+         */
+        private final EventType type;
+
+        /**
+         * Represents the namespace uri.
+         */
+        private String uri;
+
+        /**
+         * Represents the local name, the prefix, the target or the entity name.
+         */
+        private String name;
+
+        /**
+         * Represents the qualified name, the namespace uri of the prefix or the data.
+         */
+        private String value;
+
+        /**
+         * Represents the attributes.
+         */
+        private Attributes attributes;
+
+        /**
+         * Represents the start of the character data in the text array.
+         */
+        private int start;
+
+        /**
+         * Represents the length of the character data.
+         */
+        private int length;
+
+        /**
+         * Creates new instance of {@link Event} class.
+         *
+         * @param type the event type
+         */
+        private Event(EventType type) {
+            this.type = type;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb.adapters;
+
+import org.castor.jaxb.CastorJAXBUtils;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+
+import javax.xml.validation.ValidatorHandler;
+
+/**
+ * A {@link ContentHandler} passing every event to a {@link ValidatorHandler} and then to the output handler, so
+ * that a single marshalling both validates and writes the document. An event failing the validation never reaches
+ * the output.
+ * <p/>
+ * The validator always sees a whole document, even if only a fragment is marshalled. The validation is completed by
+ * {@link #endValidation()}, which has to be called once the marshalling is done.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+public class ValidatingContentHandler implements ContentHandler {
+
+    /**
+     * Represents the validator.
+     */
+    private final ValidatorHandler validatorHandler;
+
+    /**
+     * Represents the output handler.
+     */
+    private final ContentHandler contentHandler;
+
+    /**
+     * Represents whether the validator has received the start of the document.
+     */
+    private boolean validationStarted;
+
+    /**
+     * Represents whether the validator has received the end of the document.
+     */
+    private boolean validationEnded;
+
+    /**
+     * Creates new instance of {@link ValidatingContentHandler} class.
+     *
+     * @param validatorHandler the validator
+     * @param contentHandler   the output handler
+     *
+     * @throws IllegalArgumentException if validatorHandler or contentHandler is null
+     */
+    public ValidatingContentHandler(ValidatorHandler validatorHandler, ContentHandler contentHandler) {
+        // checks the input
+        CastorJAXBUtils.checkNotNull(validatorHandler, "validatorHandler");
+        CastorJAXBUtils.checkNotNull(contentHandler, "contentHandler");
+
+        // sets the handlers
+        this.validatorHandler = validatorHandler;
+        this.contentHandler = contentHandler;
+    }
+
+    /**
+     * Completes the validation, ending the document for the validator if the marshalled fragment did not.
+     *
+     * @throws SAXException if the document is not valid
+     */
+    public void endValidation() throws SAXException {
+
+        if (!validationEnded) {
+            startValidation();
+            validationEnded = true;
+            validatorHandler.endDocument();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setDocumentLocator(Locator locator) {
+        validatorHandler.setDocumentLocator(locator);
+        contentHandler.setDocumentLocator(locator);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void startDocument() throws SAXException {
+        startValidation();
+        contentHandler.startDocument();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void endDocument() throws SAXException {
+        endValidation();
+        contentHandler.endDocument();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void startPrefixMapping(String prefix, String uri) throws SAXException {
+        startValidation();
+        validatorHandler.startPrefixMapping(prefix, uri);
+        contentHandler.startPrefixMapping(prefix, uri);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void endPrefixMapping(String prefix) throws SAXException {
+        validatorHandler.endPrefixMapping(prefix);
+        contentHandler.endPrefixMapping(prefix);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+        startValidation();
+        validatorHandler.startElement(uri, localName, qName, atts);
+        contentHandler.startElement(uri, localName, qName, atts);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+        validatorHandler.endElement(uri, localName, qName);
+        contentHandler.endElement(uri, localName, qName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void characters(char[] ch, int start, int length) throws SAXException {
+        validatorHandler.characters(ch, start, length);
+        contentHandler.characters(ch, start, length);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+        validatorHandler.ignorableWhitespace(ch, start, length);
+        contentHandler.ignorableWhitespace(ch, start, length);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void processingInstruction(String target, String data) throws SAXException {
+        validatorHandler.processingInstruction(target, data);
+        contentHandler.processingInstruction(target, data);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void skippedEntity(String name) throws SAXException {
+        validatorHandler.skippedEntity(name);
+        contentHandler.skippedEntity(name);
+    }
+
+    /**
+     * Starts the document for the validator, unless it was already started.
+     *
+     * @throws SAXException if any error occurs during validation
+     */
+    private void startValidation() throws SAXException {
+
+        if (!validationStarted) {
+            validationStarted = true;
+            validatorHandler.startDocument();
+        }
+    }
+}
@@ -25,6 +25,9 @@ import org.xml.sax.SAXParseException;
 /**
  * Adapter between Castor (which uses org.xml.sax.ErrorHandler) and 
  * JAXB (javax.xml.bin.ValidationEventHandler).
+ * <p/>
+ * The validation stops, by rethrowing the exception, when the handler returns false. Without a handler the
+ * validation stops on the first error and ignores the warnings, as the default JAXB handler does.
  * 
  * @author Joachim Grueneis, jgrueneis AT codehaus DOT org
  * @version $Id$
@@ -43,33 +46,44 @@ public class ValidationEventHandlerAdapter implements ErrorHandler {
         super();
     }
 
+    /**
+     * Creates new instance of {@link ValidationEventHandlerAdapter} class with given handler.
+     * @param handler the ValidationEventHandler to call, may be null
+     */
+    public ValidationEventHandlerAdapter(final ValidationEventHandler handler) {
+        this._handler = handler;
+    }
+
     /**
      * ErrorHandler callback method.
      * @param e SAX parser exception that had been thrown
+     * @throws SAXParseException the passed exception, if the validation should stop
      */
-    public void error(final SAXParseException e) {
-        if (_handler != null) {
-            _handler.handleEvent(getValidationEvent(ValidationEvent.ERROR, e));
+    public void error(final SAXParseException e) throws SAXParseException {
+        if (_handler == null || !_handler.handleEvent(getValidationEvent(ValidationEvent.ERROR, e))) {
+            throw e;
         }
     }
 
     /**
      * ErrorHandler callback method.
      * @param e SAX parser exception that had been thrown
+     * @throws SAXParseException the passed exception, if the validation should stop
      */
-    public void fatalError(final SAXParseException e) {
-        if (_handler != null) {
-            _handler.handleEvent(getValidationEvent(ValidationEvent.FATAL_ERROR, e));
+    public void fatalError(final SAXParseException e) throws SAXParseException {
+        if (_handler == null || !_handler.handleEvent(getValidationEvent(ValidationEvent.FATAL_ERROR, e))) {
+            throw e;
         }
     }
 
     /**
      * ErrorHandler callback method.
      * @param e SAX parser exception that had been thrown
+     * @throws SAXParseException the passed exception, if the validation should stop
      */
-    public void warning(final SAXParseException e) {
-        if (_handler != null) {
-            _handler.handleEvent(getValidationEvent(ValidationEvent.WARNING, e));
+    public void warning(final SAXParseException e) throws SAXParseException {
+        if (_handler != null && !_handler.handleEvent(getValidationEvent(ValidationEvent.WARNING, e))) {
+            throw e;
         }
     }
 
@@ -0,0 +1,282 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb.apt;
+
+import org.castor.jaxb.reflection.accessor.JAXBAccessor;
+import org.castor.jaxb.reflection.accessor.JAXBAccessorFactory;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes the source of the {@link JAXBAccessorFactory} of a single bound class. The generated accessors read and
+ * write the non private fields and the non private get and set methods of the class directly, without using
+ * reflection.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+final class JAXBAccessorSourceWriter {
+
+    /**
+     * Represents the name of the accessor interface.
+     */
+    private static final String ACCESSOR = JAXBAccessor.class.getName();
+
+    /**
+     * Represents the processing environment.
+     */
+    private final ProcessingEnvironment processingEnv;
+
+    /**
+     * Creates new instance of {@link JAXBAccessorSourceWriter} class.
+     *
+     * @param processingEnv the processing environment
+     */
+    JAXBAccessorSourceWriter(ProcessingEnvironment processingEnv) {
+        this.processingEnv = processingEnv;
+    }
+
+    /**
+     * Checks whether the accessors of the given class can be generated, which requires the class to be visible
+     * from its package.
+     *
+     * @param typeElement the class
+     *
+     * @return true if the accessors can be generated, false otherwise
+     */
+    boolean isSupported(TypeElement typeElement) {
+
+        Element element = typeElement;
+        while (element.getKind().isClass() || element.getKind().isInterface()) {
+            if (element.getModifiers().contains(Modifier.PRIVATE)) {
+                return false;
+            }
+            element = element.getEnclosingElement();
+        }
+        return element.getKind() == ElementKind.PACKAGE;
+    }
+
+    /**
+     * Writes the accessor factory of the given class.
+     *
+     * @param typeElement the class
+     *
+     * @return the number of generated accessors
+     *
+     * @throws IOException if any error occurs when writing the source
+     */
+    int write(TypeElement typeElement) throws IOException {
+
+        PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(typeElement);
+        String binaryName = processingEnv.getElementUtils().getBinaryName(typeElement).toString();
+        String factoryName = binaryName + JAXBAccessorFactory.CLASS_NAME_SUFFIX;
+        String simpleName = factoryName.substring(factoryName.lastIndexOf('.') + 1);
+        String typeName = getTypeName(typeElement.asType());
+
+        List<String> statements = new ArrayList<String>();
+        for (Element member : typeElement.getEnclosedElements()) {
+            if (member.getKind() == ElementKind.FIELD && isAccessible(member)
+                    && !member.getModifiers().contains(Modifier.FINAL)) {
+                String name = member.getSimpleName().toString();
+                TypeMirror type = member.asType();
+
+                statements.add(buildRegistration("FIELDS", name, "((" + typeName + ") object)." + name,
+                        "((" + typeName + ") object)." + name + " = " + getCast(type) + " value;"));
+            } else if (member.getKind() == ElementKind.METHOD && isAccessible(member)) {
+                ExecutableElement getMethod = (ExecutableElement) member;
+                String propertyName = getPropertyName(getMethod);
+                if (propertyName == null) {
+                    continue;
+                }
+
+                String getter = "((" + typeName + ") object)." + getMethod.getSimpleName() + "()";
+                ExecutableElement setMethod = findSetMethod(typeElement, propertyName, getMethod.getReturnType());
+                if (setMethod != null) {
+                    statements.add(buildRegistration("METHODS", getMethod.getSimpleName() + "/"
+                            + setMethod.getSimpleName(), getter, "((" + typeName + ") object)."
+                            + setMethod.getSimpleName() + "(" + getCast(getMethod.getReturnType()) + " value);"));
+                }
+
+                statements.add(buildRegistration("METHODS", getMethod.getSimpleName() + "/", getter,
+                        "throw new IllegalStateException(\"Property " + propertyName + " is read only.\");"));
+            }
+        }
+
+        JavaFileObject sourceFile = processingEnv.getFiler().createSourceFile(factoryName, typeElement);
+        PrintWriter writer = new PrintWriter(sourceFile.openWriter());
+        try {
+            if (!packageElement.isUnnamed()) {
+                writer.println("package " + packageElement.getQualifiedName() + ";");
+                writer.println();
+            }
+            writer.println("/**");
+            writer.println(" * The accessors of {@link " + typeName + "}.");
+            writer.println(" * <p/>");
+            writer.println(" * Generated by " + JAXBIndexProcessor.class.getName() + ", do not edit.");
+            writer.println(" */");
+            writer.println("@SuppressWarnings({\"unchecked\", \"rawtypes\"})");
+            writer.println("public final class " + simpleName + " implements "
+                    + JAXBAccessorFactory.class.getName() + " {");
+            writer.println();
+            writer.println("    private static final java.util.Map<String, " + ACCESSOR + "> FIELDS =");
+            writer.println("            new java.util.HashMap<String, " + ACCESSOR + ">();");
+            writer.println();
+            writer.println("    private static final java.util.Map<String, " + ACCESSOR + "> METHODS =");
+            writer.println("            new java.util.HashMap<String, " + ACCESSOR + ">();");
+            writer.println();
+            writer.println("    static {");
+            for (String statement : statements) {
+                writer.println(statement);
+            }
+            writer.println("    }");
+            writer.println();
+            writer.println("    public " + ACCESSOR + " getFieldAccessor(String fieldName) {");
+            writer.println("        return FIELDS.get(fieldName);");
+            writer.println("    }");
+            writer.println();
+            writer.println("    public " + ACCESSOR + " getMethodAccessor(String getMethodName,");
+            writer.println("            String setMethodName) {");
+            writer.println("        return METHODS.get(getMethodName + \"/\"");
+            writer.println("                + (setMethodName != null ? setMethodName : \"\"));");
+            writer.println("    }");
+            writer.println("}");
+        } finally {
+            writer.close();
+        }
+
+        return statements.size();
+    }
+
+    /**
+     * Builds the statement registering a single accessor.
+     *
+     * @param map    the name of the map to register the accessor in
+     * @param key    the key of the accessor
+     * @param getter the expression reading the property
+     * @param setter the statement writing the property
+     *
+     * @return the source of the statement
+     */
+    private static String buildRegistration(String map, String key, String getter, String setter) {
+        return "        " + map + ".put(\"" + key + "\", new " + ACCESSOR + "() {\n"
+                + "            public Object getValue(Object object) {\n"
+                + "                return " + getter + ";\n"
+                + "            }\n"
+                + "\n"
+                + "            public void setValue(Object object, Object value) {\n"
+                + "                " + setter + "\n"
+                + "            }\n"
+                + "        });";
+    }
+
+    /**
+     * Retrieves the name of the property read by the given method.
+     *
+     * @param method the method
+     *
+     * @return the property name, or null if the method is not a get method
+     */
+    private static String getPropertyName(ExecutableElement method) {
+
+        String name = method.getSimpleName().toString();
+        if (!method.getParameters().isEmpty() || method.getReturnType().getKind() == TypeKind.VOID) {
+            return null;
+        } else if (name.startsWith("get") && name.length() > "get".length()) {
+            return name.substring("get".length());
+        } else if (name.startsWith("is") && name.length() > "is".length()) {
+            return name.substring("is".length());
+        }
+        return null;
+    }
+
+    /**
+     * Finds the set method of the given property.
+     *
+     * @param typeElement  the class declaring the property
+     * @param propertyName the property name
+     * @param type         the property type
+     *
+     * @return the set method, or null if there is none
+     */
+    private ExecutableElement findSetMethod(TypeElement typeElement, String propertyName, TypeMirror type) {
+
+        for (Element member : typeElement.getEnclosedElements()) {
+            if (member.getKind() == ElementKind.METHOD && isAccessible(member)
+                    && member.getSimpleName().contentEquals("set" + propertyName)) {
+                List<? extends VariableElement> parameters = ((ExecutableElement) member).getParameters();
+
+                if (parameters.size() == 1 && processingEnv.getTypeUtils().isSameType(
+                        processingEnv.getTypeUtils().erasure(parameters.get(0).asType()),
+                        processingEnv.getTypeUtils().erasure(type))) {
+                    return (ExecutableElement) member;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether the generated code can access the given instance member.
+     *
+     * @param member the member
+     *
+     * @return true if the member is accessible, false otherwise
+     */
+    private static boolean isAccessible(Element member) {
+        return !member.getModifiers().contains(Modifier.PRIVATE) && !member.getModifiers().contains(Modifier.STATIC);
+    }
+
+    /**
+     * Retrieves the cast of a value to the given type. Primitive values are cast to their wrappers and unboxed.
+     *
+     * @param type the type
+     *
+     * @return the cast
+     */
+    private String getCast(TypeMirror type) {
+
+        if (type.getKind().isPrimitive()) {
+            return "(" + processingEnv.getTypeUtils().boxedClass((PrimitiveType) type).getQualifiedName() + ")";
+        }
+        return "(" + getTypeName(type) + ")";
+    }
+
+    /**
+     * Retrieves the source name of the erasure of the given type.
+     *
+     * @param type the type
+     *
+     * @return the type name
+     */
+    private String getTypeName(TypeMirror type) {
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+}
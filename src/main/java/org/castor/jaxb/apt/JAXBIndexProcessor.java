@@ -0,0 +1,462 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb.apt;
+
+import org.castor.jaxb.reflection.index.ClassIndex;
+import org.castor.jaxb.reflection.index.ClassIndexEntry;
+import org.castor.jaxb.reflection.index.ClassIndexMember;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * An annotation processor generating the {@link ClassIndex} of the compiled classes annotated with {@link
+ * javax.xml.bind.annotation.XmlRootElement} or {@link javax.xml.bind.annotation.XmlType}.
+ * <p/>
+ * The processor is shipped in the <code>processor</code> artifact of this build and is registered as a service, so
+ * it is enough to put that artifact on the compiler class path. The index is written to {@link
+ * ClassIndex#INDEX_LOCATION} of the class output directory, from where it is picked up at run time.
+ * <p/>
+ * Every entry carries the checksum of the class file it describes, so the index is written only once javac has
+ * generated all the indexed classes. The class files are tracked through the javac task listener API, which is
+ * looked up reflectively; with a compiler that does not provide it no index is written.
+ * <p/>
+ * For every bound class visible from its package the processor also generates a {@link
+ * org.castor.jaxb.reflection.accessor.JAXBAccessorFactory} that reads and writes the non private members of the
+ * class without reflection. The generation can be turned off with the {@link #ACCESSORS_OPTION} option set to
+ * <code>false</code>.
+ * <p/>
+ * The processor never claims the annotations, so it does not interfere with other processors.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+@SupportedAnnotationTypes({"javax.xml.bind.annotation.XmlRootElement", "javax.xml.bind.annotation.XmlType"})
+@SupportedOptions(JAXBIndexProcessor.ACCESSORS_OPTION)
+public class JAXBIndexProcessor extends AbstractProcessor {
+
+    /**
+     * Represents the name of the processor option controlling the generation of the accessors.
+     */
+    public static final String ACCESSORS_OPTION = "castor.jaxb.accessors";
+
+    /**
+     * Represents the name of the javac task class.
+     */
+    private static final String JAVAC_TASK_CLASS = "com.sun.source.util.JavacTask";
+
+    /**
+     * Represents the name of the javac task listener interface.
+     */
+    private static final String TASK_LISTENER_CLASS = "com.sun.source.util.TaskListener";
+
+    /**
+     * Represents the kind of the javac task event sent when a class file has been generated.
+     */
+    private static final String GENERATE_EVENT = "GENERATE";
+
+    /**
+     * Represents the index built over all the processing rounds.
+     */
+    private final ClassIndex index = new ClassIndex();
+
+    /**
+     * Represents the names of the classes whose accessors were already generated.
+     */
+    private final Set<String> generatedAccessors = new HashSet<String>();
+
+    /**
+     * Represents the names of the indexed classes whose class file checksum is known.
+     */
+    private final Set<String> checksummedClasses = new HashSet<String>();
+
+    /**
+     * Represents whether the class file checksums can be computed.
+     */
+    private boolean checksumsAvailable;
+
+    /**
+     * Represents whether the last processing round is over.
+     */
+    private boolean processingOver;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+
+        checksumsAvailable = addGenerateListener();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+
+        if (roundEnv.processingOver()) {
+            processingOver = true;
+
+            if (index.size() > 0 && !checksumsAvailable) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                        "Castor JAXB class index not written, the compiler does not report the generated classes.");
+            } else if (index.size() > 0) {
+                writeIndexIfComplete();
+            }
+        } else {
+            for (TypeElement annotation : annotations) {
+                for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                    if (element.getKind() == ElementKind.CLASS) {
+                        index.addEntry(buildEntry((TypeElement) element));
+
+                        if (isAccessorsEnabled()) {
+                            writeAccessors((TypeElement) element);
+                        }
+                    }
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Builds the index entry of the given class.
+     *
+     * @param typeElement the class
+     *
+     * @return the index entry
+     */
+    private ClassIndexEntry buildEntry(TypeElement typeElement) {
+
+        ClassIndexEntry entry = new ClassIndexEntry(processingEnv.getElementUtils().getBinaryName(typeElement)
+                .toString());
+
+        for (Element member : typeElement.getEnclosedElements()) {
+            Set<Modifier> modifiers = member.getModifiers();
+
+            if (member.getKind() == ElementKind.FIELD && !modifiers.contains(Modifier.STATIC)
+                    && !modifiers.contains(Modifier.TRANSIENT)) {
+                VariableElement field = (VariableElement) member;
+
+                entry.addField(new ClassIndexMember(field.getSimpleName().toString(), null, isAnnotated(field)));
+            } else if (member.getKind() == ElementKind.METHOD && !modifiers.contains(Modifier.STATIC)
+                    && ClassIndexEntry.isAccessorName(member.getSimpleName().toString())) {
+                ExecutableElement method = (ExecutableElement) member;
+
+                List<? extends VariableElement> parameters = method.getParameters();
+                String[] parameterTypes = new String[parameters.size()];
+                for (int i = 0; i < parameterTypes.length; i++) {
+                    parameterTypes[i] = getTypeName(parameters.get(i).asType());
+                }
+
+                entry.addMethod(new ClassIndexMember(method.getSimpleName().toString(), parameterTypes,
+                        isAnnotated(method)));
+            }
+        }
+
+        return entry;
+    }
+
+    /**
+     * Checks whether the generation of the accessors is enabled.
+     *
+     * @return true if the accessors should be generated, false otherwise
+     */
+    private boolean isAccessorsEnabled() {
+        return !"false".equalsIgnoreCase(processingEnv.getOptions().get(ACCESSORS_OPTION));
+    }
+
+    /**
+     * Writes the accessors of the given class, unless they were already written or can not be generated.
+     *
+     * @param typeElement the class
+     */
+    private void writeAccessors(TypeElement typeElement) {
+
+        JAXBAccessorSourceWriter sourceWriter = new JAXBAccessorSourceWriter(processingEnv);
+        if (!sourceWriter.isSupported(typeElement)
+                || !generatedAccessors.add(typeElement.getQualifiedName().toString())) {
+            return;
+        }
+
+        try {
+            sourceWriter.write(typeElement);
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    "Unable to write the Castor JAXB accessors, reflection will be used: " + e.getMessage(),
+                    typeElement);
+        }
+    }
+
+    /**
+     * Registers the listener of the generated class files with the javac task.
+     *
+     * @return true if the listener was registered, false if the compiler does not support it
+     */
+    private boolean addGenerateListener() {
+
+        try {
+            ClassLoader classLoader = processingEnv.getClass().getClassLoader();
+            Class<?> taskClass = Class.forName(JAVAC_TASK_CLASS, true, classLoader);
+            Class<?> listenerClass = Class.forName(TASK_LISTENER_CLASS, true, classLoader);
+
+            Object task = taskClass.getMethod("instance", ProcessingEnvironment.class).invoke(null, processingEnv);
+            Object listener = Proxy.newProxyInstance(classLoader, new Class<?>[]{listenerClass},
+                    new GenerateListener());
+            taskClass.getMethod("addTaskListener", listenerClass).invoke(task, listener);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Records the checksum of the class file of the given class, if the class is indexed.
+     *
+     * @param typeElement the generated class
+     */
+    private void classGenerated(TypeElement typeElement) {
+
+        String className = processingEnv.getElementUtils().getBinaryName(typeElement).toString();
+        ClassIndexEntry entry = index.getEntry(className);
+        if (entry == null || !checksumsAvailable || !checksummedClasses.add(className)) {
+            return;
+        }
+
+        try {
+            entry.setChecksum(readChecksum(typeElement, className));
+        } catch (IOException e) {
+            checksumsAvailable = false;
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    "Unable to read the class file, the Castor JAXB class index will not be written: "
+                            + e.getMessage(), typeElement);
+            return;
+        }
+
+        if (processingOver) {
+            writeIndexIfComplete();
+        }
+    }
+
+    /**
+     * Computes the checksum of the class file of the given class.
+     *
+     * @param typeElement the class
+     * @param className   the binary name of the class
+     *
+     * @return the checksum of the class file
+     *
+     * @throws IOException if the class file can not be read
+     */
+    private long readChecksum(TypeElement typeElement, String className) throws IOException {
+
+        PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(typeElement);
+        String packageName = packageElement.getQualifiedName().toString();
+        String relativeName = packageName.length() == 0 ? className : className.substring(packageName.length() + 1);
+
+        FileObject classFile = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, packageName,
+                relativeName + ".class");
+        InputStream inputStream = classFile.openInputStream();
+        try {
+            return ClassIndex.computeChecksum(inputStream);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Writes the index once the checksums of all the indexed classes are known.
+     */
+    private void writeIndexIfComplete() {
+
+        if (checksumsAvailable && checksummedClasses.size() == index.size()) {
+            writeIndex();
+        }
+    }
+
+    /**
+     * Writes the index to the class output.
+     */
+    private void writeIndex() {
+
+        try {
+            FileObject resource = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+                    ClassIndex.INDEX_LOCATION);
+
+            OutputStream outputStream = resource.openOutputStream();
+            try {
+                index.write(outputStream);
+            } finally {
+                outputStream.close();
+            }
+
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                    "Castor JAXB class index of " + index.size() + " classes written to " + resource.toUri());
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Unable to write the Castor JAXB class index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Checks whether the member carries any annotation.
+     *
+     * @param member the member to check
+     *
+     * @return true if the member is annotated, false otherwise
+     */
+    private static boolean isAnnotated(Element member) {
+        return !member.getAnnotationMirrors().isEmpty();
+    }
+
+    /**
+     * Retrieves the name of the erasure of the given type, in the form returned by {@link Class#getName()}.
+     *
+     * @param type the type
+     *
+     * @return the type name
+     */
+    private String getTypeName(TypeMirror type) {
+
+        TypeMirror erasure = processingEnv.getTypeUtils().erasure(type);
+        if (erasure.getKind().isPrimitive()) {
+            return erasure.getKind().name().toLowerCase(Locale.ENGLISH);
+        } else if (erasure instanceof ArrayType) {
+            return "[" + getDescriptor(((ArrayType) erasure).getComponentType());
+        }
+
+        return getBinaryName(erasure);
+    }
+
+    /**
+     * Retrieves the descriptor of the erasure of the given type, as used for the array component types by {@link
+     * Class#getName()}.
+     *
+     * @param type the type
+     *
+     * @return the type descriptor
+     */
+    private String getDescriptor(TypeMirror type) {
+
+        TypeMirror erasure = processingEnv.getTypeUtils().erasure(type);
+        switch (erasure.getKind()) {
+            case BOOLEAN:
+                return "Z";
+            case BYTE:
+                return "B";
+            case CHAR:
+                return "C";
+            case SHORT:
+                return "S";
+            case INT:
+                return "I";
+            case LONG:
+                return "J";
+            case FLOAT:
+                return "F";
+            case DOUBLE:
+                return "D";
+            case ARRAY:
+                return "[" + getDescriptor(((ArrayType) erasure).getComponentType());
+            default:
+                return "L" + getBinaryName(erasure) + ";";
+        }
+    }
+
+    /**
+     * Retrieves the binary name of the given declared type.
+     *
+     * @param type the declared type
+     *
+     * @return the binary name
+     */
+    private String getBinaryName(TypeMirror type) {
+
+        TypeElement typeElement = (TypeElement) processingEnv.getTypeUtils().asElement(type);
+        return processingEnv.getElementUtils().getBinaryName(typeElement).toString();
+    }
+
+    /**
+     * Listens to the javac task events and passes the generated classes to {@link #classGenerated(TypeElement)}.
+     * It implements the javac task listener interface through a {@link Proxy}, so that the processor does not
+     * depend on the compiler classes.
+     *
+     * @author Jakub Narloch, jmnarloch AT gmail DOT org
+     * @version 1.0
+     */
+    private final class GenerateListener implements InvocationHandler {
+
+        /**
+         * {@inheritDoc}
+         */
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+            if ("finished".equals(method.getName())) {
+                Object event = args[0];
+                Object kind = event.getClass().getMethod("getKind").invoke(event);
+                Object typeElement = event.getClass().getMethod("getTypeElement").invoke(event);
+
+                if (GENERATE_EVENT.equals(String.valueOf(kind)) && typeElement != null) {
+                    classGenerated((TypeElement) typeElement);
+                }
+            } else if ("equals".equals(method.getName())) {
+                return proxy == args[0];
+            } else if ("hashCode".equals(method.getName())) {
+                return System.identityHashCode(proxy);
+            } else if ("toString".equals(method.getName())) {
+                return getClass().getName();
+            }
+            return null;
+        }
+    }
+}
@@ -29,6 +29,7 @@ import javax.xml.bind.annotation.adapters.XmlAdapter;
 import org.apache.commons.lang3.StringUtils;
 import org.castor.jaxb.exceptions.ReflectionException;
 import org.castor.jaxb.naming.JAXBXmlNaming;
+import org.castor.jaxb.reflection.accessor.JAXBAccessors;
 import org.castor.jaxb.reflection.info.ClassInfo;
 import org.castor.jaxb.reflection.info.FieldInfo;
 import org.castor.jaxb.reflection.info.JaxbClassNature;
@@ -38,7 +39,6 @@ import org.castor.jaxb.reflection.info.JaxbPackageNature.NamespaceInfo;
 import org.castor.jaxb.resolver.JAXBAdapterRegistry;
 import org.castor.xml.XMLNaming;
 import org.exolab.castor.mapping.CollectionHandler;
-import org.exolab.castor.mapping.FieldHandler;
 import org.exolab.castor.mapping.MappingException;
 import org.exolab.castor.mapping.loader.CollectionHandlers;
 import org.exolab.castor.mapping.loader.TypeInfo;
@@ -99,6 +99,16 @@ public final class ClassDescriptorBuilder {
         this.xmlNaming = xmlNaming;
     }
 
+    /**
+     * To set the registry from which the field handlers retrieve their adapter instances.
+     *
+     * @param jaxbAdapterRegistry
+     *            the {@link JAXBAdapterRegistry} to use
+     */
+    public void setJaxbAdapterRegistry(final JAXBAdapterRegistry jaxbAdapterRegistry) {
+        this.jaxbAdapterRegistry = jaxbAdapterRegistry;
+    }
+
     /**
      * Builds a XMLClassDescriptor from the class information collected in
      * ClassInfo.
@@ -204,15 +214,27 @@ public final class ClassDescriptorBuilder {
             xmlName = getXMLName(jaxbFieldNature); // fieldInfo.getElementName();
         }
         
+        Class<?> type = getType(jaxbFieldNature);
+        JAXBFieldHandlerImpl fieldHandler = buildFieldHandler(jaxbFieldNature,
+                saveMapKeys);
+        // single values without adapter are handed to Castor in their
+        // precomputed lexical form
+        if (!jaxbFieldNature.isMultivalue()
+                && fieldHandler.getXmlAdapterClass() == null) {
+            JAXBLexicalForm lexicalForm = JAXBLexicalForm.forType(type);
+            if (lexicalForm != null) {
+                fieldHandler.setLexicalForm(lexicalForm);
+                type = lexicalForm.getBoundType(type);
+            }
+        }
+
         JAXBFieldDescriptorImpl fieldDescriptor = new JAXBFieldDescriptorImpl(
-                getType(jaxbFieldNature), fieldName, xmlName, nodeType);
+                type, fieldName, xmlName, nodeType);
         fieldDescriptor.setMultivalued(jaxbFieldNature.isMultivalue());
         if (jaxbFieldNature.isMultivalue()) {
             fieldDescriptor.setFieldType(jaxbFieldNature.getGenericType()
                     .getClass());
         }
-        FieldHandler fieldHandler = buildFieldHandler(jaxbFieldNature,
-                saveMapKeys);
         fieldDescriptor.setHandler(fieldHandler);
         
         if (jaxbFieldNature.hasXmlElementWrapper()) {
@@ -249,7 +271,7 @@ public final class ClassDescriptorBuilder {
      * @HACK no idea what this is good for...
      * @return the field handler for the field
      */
-    private FieldHandler buildFieldHandler(
+    private JAXBFieldHandlerImpl buildFieldHandler(
             final JaxbFieldNature jaxbFieldNature, final boolean saveMapKeys) {
         if (jaxbFieldNature == null) {
             IllegalArgumentException e = new IllegalArgumentException(
@@ -270,9 +292,12 @@ public final class ClassDescriptorBuilder {
 
         if (jaxbFieldNature.isPureField()) {
             fieldHandler.setField(jaxbFieldNature.getField());
+            fieldHandler.setAccessor(JAXBAccessors.getAccessor(jaxbFieldNature.getField()));
         } else {
             fieldHandler.setMethods(jaxbFieldNature.getMethodGet(),
                     jaxbFieldNature.getMethodSet());
+            fieldHandler.setAccessor(JAXBAccessors.getAccessor(jaxbFieldNature.getMethodGet(),
+                    jaxbFieldNature.getMethodSet()));
         }
         // if (fieldInfo.getMethodAdd() != null) {
         // fieldHandler.setAddMethod(fieldInfo.getMethodAdd());
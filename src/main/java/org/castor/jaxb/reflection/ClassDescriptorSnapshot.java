@@ -0,0 +1,540 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb.reflection;
+
+import org.castor.jaxb.reflection.accessor.JAXBAccessors;
+import org.castor.jaxb.resolver.JAXBAdapterRegistry;
+import org.exolab.castor.mapping.FieldDescriptor;
+import org.exolab.castor.mapping.FieldHandler;
+import org.exolab.castor.xml.NodeType;
+import org.exolab.castor.xml.XMLClassDescriptor;
+import org.exolab.castor.xml.XMLFieldDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.bind.annotation.adapters.XmlAdapter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Writes the class descriptors built by the {@link ClassDescriptorBuilder} to a stream and restores them, so that a
+ * later JVM does not need to introspect the bound classes again.
+ * <p/>
+ * The snapshot holds everything the builder sets on the descriptors: the XML names, the namespaces, the node types
+ * and the order of the fields, and the members, adapters and lexical forms used by the field handlers. Together
+ * with the descriptors it stores the CRC32 checksum of the class file of every class they were built from, and of
+ * its package-info class. A snapshot is rejected as a whole if any of these class files changed, or can no longer
+ * be found.
+ * <p/>
+ * Only the descriptors built by this implementation are written, any other descriptor is skipped.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+public final class ClassDescriptorSnapshot {
+
+    /**
+     * Logger used by this class.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(ClassDescriptorSnapshot.class);
+
+    /**
+     * Represents the magic number starting the snapshot.
+     */
+    private static final int MAGIC = 0xCA570122;
+
+    /**
+     * Represents the version of the snapshot format.
+     */
+    private static final short VERSION = 2;
+
+    /**
+     * Represents the size of the buffer used when computing the checksums.
+     */
+    private static final int BUFFER_SIZE = 4096;
+
+    /**
+     * Represents the primitive types, which can not be loaded by name.
+     */
+    private static final Map<String, Class<?>> PRIMITIVE_TYPES = new HashMap<String, Class<?>>();
+
+    static {
+        Class<?>[] primitiveTypes = new Class<?>[]{Boolean.TYPE, Byte.TYPE, Character.TYPE, Short.TYPE,
+                Integer.TYPE, Long.TYPE, Float.TYPE, Double.TYPE, Void.TYPE};
+        for (Class<?> primitiveType : primitiveTypes) {
+            PRIMITIVE_TYPES.put(primitiveType.getName(), primitiveType);
+        }
+    }
+
+    /**
+     * Creates new instance of {@link ClassDescriptorSnapshot} class. Private constructor prevents from
+     * instantiation outside this class.
+     */
+    private ClassDescriptorSnapshot() {
+        // empty constructor
+    }
+
+    /**
+     * Writes the given descriptors to the stream. The stream is not closed.
+     *
+     * @param descriptors  the descriptors to write
+     * @param outputStream the stream to write to
+     *
+     * @return the number of written descriptors
+     *
+     * @throws IOException if any error occurs when writing the snapshot
+     */
+    public static int write(Collection<XMLClassDescriptor> descriptors, OutputStream outputStream)
+            throws IOException {
+
+        List<JAXBClassDescriptorImpl> written = new ArrayList<JAXBClassDescriptorImpl>();
+        Map<String, Long> checksums = new LinkedHashMap<String, Long>();
+
+        for (XMLClassDescriptor descriptor : descriptors) {
+            if (isSupported(descriptor) && addChecksums(checksums, (JAXBClassDescriptorImpl) descriptor)) {
+                written.add((JAXBClassDescriptorImpl) descriptor);
+            } else if (LOG.isDebugEnabled()) {
+                LOG.debug("Descriptor of " + descriptor.getJavaClass() + " can not be written to the snapshot.");
+            }
+        }
+
+        DataOutputStream output = new DataOutputStream(outputStream);
+        output.writeInt(MAGIC);
+        output.writeShort(VERSION);
+
+        output.writeInt(checksums.size());
+        for (Map.Entry<String, Long> checksum : checksums.entrySet()) {
+            output.writeUTF(checksum.getKey());
+            output.writeLong(checksum.getValue());
+        }
+
+        output.writeInt(written.size());
+        for (JAXBClassDescriptorImpl descriptor : written) {
+            writeClassDescriptor(output, descriptor);
+        }
+        output.flush();
+
+        return written.size();
+    }
+
+    /**
+     * Reads the descriptors from the stream. The stream is not closed.
+     *
+     * @param inputStream         the stream to read from
+     * @param classLoader         the class loader to load the described classes with
+     * @param jaxbAdapterRegistry the adapter registry used by the field handlers
+     *
+     * @return the read descriptors, or null if the snapshot is out of date
+     *
+     * @throws IOException if any error occurs when reading the snapshot or the stream does not hold a valid
+     *                     snapshot
+     */
+    public static List<XMLClassDescriptor> read(InputStream inputStream, ClassLoader classLoader,
+                                                JAXBAdapterRegistry jaxbAdapterRegistry) throws IOException {
+
+        DataInputStream input = new DataInputStream(inputStream);
+        if (input.readInt() != MAGIC) {
+            throw new IOException("The stream does not contain a descriptor snapshot.");
+        }
+
+        short version = input.readShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported descriptor snapshot version " + version + ", expected " + VERSION
+                    + ".");
+        }
+
+        int checksumCount = input.readInt();
+        for (int i = 0; i < checksumCount; i++) {
+            String resourceName = input.readUTF();
+            long checksum = input.readLong();
+
+            Long current = getChecksum(classLoader, resourceName);
+            if (current == null || current != checksum) {
+                LOG.info("Descriptor snapshot is out of date, " + resourceName + " has changed.");
+                return null;
+            }
+        }
+
+        try {
+            int count = input.readInt();
+            List<XMLClassDescriptor> descriptors = new ArrayList<XMLClassDescriptor>(count);
+            for (int i = 0; i < count; i++) {
+                descriptors.add(readClassDescriptor(input, classLoader, jaxbAdapterRegistry));
+            }
+            return descriptors;
+        } catch (ClassNotFoundException e) {
+            LOG.info("Descriptor snapshot is out of date, " + e.getMessage() + " can not be loaded.");
+        } catch (NoSuchFieldException e) {
+            LOG.info("Descriptor snapshot is out of date, field " + e.getMessage() + " does not exist.");
+        } catch (NoSuchMethodException e) {
+            LOG.info("Descriptor snapshot is out of date, method " + e.getMessage() + " does not exist.");
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether the given descriptor can be written to the snapshot.
+     *
+     * @param descriptor the descriptor
+     *
+     * @return true if the descriptor can be written, false otherwise
+     */
+    private static boolean isSupported(XMLClassDescriptor descriptor) {
+
+        if (!(descriptor instanceof JAXBClassDescriptorImpl) || descriptor.getJavaClass().getClassLoader() == null) {
+            return false;
+        }
+
+        for (FieldDescriptor fieldDescriptor : descriptor.getFields()) {
+            if (!(fieldDescriptor instanceof JAXBFieldDescriptorImpl)
+                    || !(fieldDescriptor.getHandler() instanceof JAXBFieldHandlerImpl)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds the checksums of the class files the given descriptor was built from.
+     *
+     * @param checksums  the checksums, by resource name
+     * @param descriptor the descriptor
+     *
+     * @return true if all the checksums could be computed, false otherwise
+     *
+     * @throws IOException if any error occurs when reading a class file
+     */
+    private static boolean addChecksums(Map<String, Long> checksums, JAXBClassDescriptorImpl descriptor)
+            throws IOException {
+
+        List<Class<?>> types = new ArrayList<Class<?>>();
+        types.add(descriptor.getJavaClass());
+        for (FieldDescriptor fieldDescriptor : descriptor.getFields()) {
+            JAXBFieldHandlerImpl fieldHandler = (JAXBFieldHandlerImpl) fieldDescriptor.getHandler();
+
+            if (fieldHandler.getField() != null) {
+                types.add(fieldHandler.getField().getDeclaringClass());
+            }
+            if (fieldHandler.getGetMethod() != null) {
+                types.add(fieldHandler.getGetMethod().getDeclaringClass());
+            }
+            if (fieldHandler.getSetMethod() != null) {
+                types.add(fieldHandler.getSetMethod().getDeclaringClass());
+            }
+            // the lexical forms of the enum constants are read from the enum class
+            JAXBLexicalForm lexicalForm = fieldHandler.getLexicalForm();
+            if (lexicalForm != null && lexicalForm.getValueType().isEnum()
+                    && lexicalForm.getValueType().getClassLoader() != null) {
+                types.add(lexicalForm.getValueType());
+            }
+        }
+
+        ClassLoader classLoader = descriptor.getJavaClass().getClassLoader();
+        for (Class<?> type : types) {
+            String resourceName = type.getName().replace('.', '/') + ".class";
+            if (!checksums.containsKey(resourceName)) {
+                Long checksum = getChecksum(classLoader, resourceName);
+                if (checksum == null) {
+                    return false;
+                }
+                checksums.put(resourceName, checksum);
+            }
+
+            // the namespaces may be defined on the package level
+            String packageInfoName = resourceName.substring(0, resourceName.lastIndexOf('/') + 1)
+                    + "package-info.class";
+            if (!checksums.containsKey(packageInfoName)) {
+                Long checksum = getChecksum(classLoader, packageInfoName);
+                if (checksum != null) {
+                    checksums.put(packageInfoName, checksum);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Computes the CRC32 checksum of the given class loader resource.
+     *
+     * @param classLoader  the class loader
+     * @param resourceName the resource name
+     *
+     * @return the checksum, or null if the resource does not exist
+     *
+     * @throws IOException if any error occurs when reading the resource
+     */
+    private static Long getChecksum(ClassLoader classLoader, String resourceName) throws IOException {
+
+        InputStream inputStream = classLoader.getResourceAsStream(resourceName);
+        if (inputStream == null) {
+            return null;
+        }
+
+        try {
+            CRC32 crc = new CRC32();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+            return crc.getValue();
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Writes a single class descriptor.
+     *
+     * @param output     the stream to write to
+     * @param descriptor the descriptor to write
+     *
+     * @throws IOException if any error occurs when writing the descriptor
+     */
+    private static void writeClassDescriptor(DataOutputStream output, JAXBClassDescriptorImpl descriptor)
+            throws IOException {
+
+        output.writeUTF(descriptor.getJavaClass().getName());
+        writeString(output, descriptor.getXMLName());
+        writeString(output, descriptor.getNameSpacePrefix());
+        writeString(output, descriptor.getNameSpaceURI());
+        output.writeBoolean(descriptor.isTransientClass());
+
+        FieldDescriptor[] fields = descriptor.getFields();
+        output.writeInt(fields.length);
+        for (FieldDescriptor field : fields) {
+            JAXBFieldDescriptorImpl fieldDescriptor = (JAXBFieldDescriptorImpl) field;
+            JAXBFieldHandlerImpl fieldHandler = (JAXBFieldHandlerImpl) fieldDescriptor.getHandler();
+
+            output.writeUTF(fieldDescriptor.getDeclaredFieldType().getName());
+            output.writeUTF(fieldDescriptor.getFieldType().getName());
+            output.writeUTF(fieldDescriptor.getFieldName());
+            writeString(output, fieldDescriptor.getXMLName());
+            output.writeUTF(fieldDescriptor.getNodeType().toString());
+            output.writeBoolean(fieldDescriptor.isMultivalued());
+            writeString(output, fieldDescriptor.getLocationPath());
+            output.writeBoolean(fieldDescriptor.isTransient());
+            output.writeBoolean(fieldDescriptor.isContainer());
+
+            Field fieldMember = fieldHandler.getField();
+            writeString(output, fieldMember != null ? fieldMember.getDeclaringClass().getName() : null);
+            writeString(output, fieldMember != null ? fieldMember.getName() : null);
+            writeMethod(output, fieldHandler.getGetMethod());
+            writeMethod(output, fieldHandler.getSetMethod());
+
+            Class<? extends XmlAdapter> adapterClass = fieldHandler.getXmlAdapterClass();
+            writeString(output, adapterClass != null ? adapterClass.getName() : null);
+
+            JAXBLexicalForm lexicalForm = fieldHandler.getLexicalForm();
+            writeString(output, lexicalForm != null ? lexicalForm.getValueType().getName() : null);
+        }
+    }
+
+    /**
+     * Reads a single class descriptor.
+     *
+     * @param input               the stream to read from
+     * @param classLoader         the class loader to load the classes with
+     * @param jaxbAdapterRegistry the adapter registry used by the field handlers
+     *
+     * @return the read descriptor
+     *
+     * @throws IOException            if any error occurs when reading the descriptor
+     * @throws ClassNotFoundException if any of the classes can not be loaded
+     * @throws NoSuchFieldException   if any of the fields no longer exists
+     * @throws NoSuchMethodException  if any of the methods no longer exists
+     */
+    @SuppressWarnings("unchecked")
+    private static XMLClassDescriptor readClassDescriptor(DataInputStream input, ClassLoader classLoader,
+                                                          JAXBAdapterRegistry jaxbAdapterRegistry)
+            throws IOException, ClassNotFoundException, NoSuchFieldException, NoSuchMethodException {
+
+        JAXBClassDescriptorImpl descriptor = new JAXBClassDescriptorImpl();
+        descriptor.setJavaClass(loadClass(input.readUTF(), classLoader));
+        descriptor.setXMLName(readString(input));
+        descriptor.setNameSpacePrefix(readString(input));
+        descriptor.setNameSpaceURI(readString(input));
+        descriptor.setTransientClass(input.readBoolean());
+
+        int fieldCount = input.readInt();
+        for (int i = 0; i < fieldCount; i++) {
+            Class<?> declaredFieldType = loadClass(input.readUTF(), classLoader);
+            Class<?> fieldType = loadClass(input.readUTF(), classLoader);
+            String fieldName = input.readUTF();
+            String xmlName = readString(input);
+            NodeType nodeType = NodeType.getNodeType(input.readUTF());
+
+            JAXBFieldDescriptorImpl fieldDescriptor = new JAXBFieldDescriptorImpl(declaredFieldType, fieldName,
+                    xmlName, nodeType);
+            fieldDescriptor.setMultivalued(input.readBoolean());
+            if (fieldType != declaredFieldType) {
+                fieldDescriptor.setFieldType(fieldType);
+            }
+            String locationPath = readString(input);
+            if (locationPath != null) {
+                fieldDescriptor.setLocationPath(locationPath);
+            }
+            fieldDescriptor.setTransient(input.readBoolean());
+            fieldDescriptor.setContainer(input.readBoolean());
+
+            JAXBFieldHandlerImpl fieldHandler = new JAXBFieldHandlerImpl();
+            fieldHandler.setJaxbAdapterRegistry(jaxbAdapterRegistry);
+
+            String fieldClassName = readString(input);
+            String fieldMemberName = readString(input);
+            Method getMethod = readMethod(input, classLoader);
+            Method setMethod = readMethod(input, classLoader);
+            if (fieldClassName != null) {
+                Field field = loadClass(fieldClassName, classLoader).getDeclaredField(fieldMemberName);
+                fieldHandler.setField(field);
+                fieldHandler.setAccessor(JAXBAccessors.getAccessor(field));
+            }
+            if (getMethod != null || setMethod != null) {
+                fieldHandler.setMethods(getMethod, setMethod);
+                fieldHandler.setAccessor(JAXBAccessors.getAccessor(getMethod, setMethod));
+            }
+
+            String adapterClassName = readString(input);
+            if (adapterClassName != null) {
+                fieldHandler.setXmlAdapterClass(
+                        (Class<? extends XmlAdapter>) loadClass(adapterClassName, classLoader));
+            }
+
+            String valueTypeName = readString(input);
+            if (valueTypeName != null) {
+                fieldHandler.setLexicalForm(JAXBLexicalForm.forType(loadClass(valueTypeName, classLoader)));
+            }
+
+            fieldDescriptor.setHandler(fieldHandler);
+            descriptor.addFieldDescriptor(fieldDescriptor);
+        }
+
+        return descriptor;
+    }
+
+    /**
+     * Writes the given method, which may be null.
+     *
+     * @param output the stream to write to
+     * @param method the method to write
+     *
+     * @throws IOException if any error occurs when writing the method
+     */
+    private static void writeMethod(DataOutputStream output, Method method) throws IOException {
+
+        output.writeBoolean(method != null);
+        if (method != null) {
+            output.writeUTF(method.getDeclaringClass().getName());
+            output.writeUTF(method.getName());
+
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            output.writeInt(parameterTypes.length);
+            for (Class<?> parameterType : parameterTypes) {
+                output.writeUTF(parameterType.getName());
+            }
+        }
+    }
+
+    /**
+     * Reads a method written by {@link #writeMethod(DataOutputStream, Method)}.
+     *
+     * @param input       the stream to read from
+     * @param classLoader the class loader to load the classes with
+     *
+     * @return the method, may be null
+     *
+     * @throws IOException            if any error occurs when reading the method
+     * @throws ClassNotFoundException if any of the classes can not be loaded
+     * @throws NoSuchMethodException  if the method no longer exists
+     */
+    private static Method readMethod(DataInputStream input, ClassLoader classLoader)
+            throws IOException, ClassNotFoundException, NoSuchMethodException {
+
+        if (!input.readBoolean()) {
+            return null;
+        }
+
+        Class<?> declaringClass = loadClass(input.readUTF(), classLoader);
+        String name = input.readUTF();
+        Class<?>[] parameterTypes = new Class<?>[input.readInt()];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            parameterTypes[i] = loadClass(input.readUTF(), classLoader);
+        }
+
+        return declaringClass.getDeclaredMethod(name, parameterTypes);
+    }
+
+    /**
+     * Writes the given string, which may be null.
+     *
+     * @param output the stream to write to
+     * @param value  the string to write
+     *
+     * @throws IOException if any error occurs when writing the string
+     */
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+
+        output.writeBoolean(value != null);
+        if (value != null) {
+            output.writeUTF(value);
+        }
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(DataOutputStream, String)}.
+     *
+     * @param input the stream to read from
+     *
+     * @return the string, may be null
+     *
+     * @throws IOException if any error occurs when reading the string
+     */
+    private static String readString(DataInputStream input) throws IOException {
+        return input.readBoolean() ? input.readUTF() : null;
+    }
+
+    /**
+     * Loads the class of the given name.
+     *
+     * @param className   the class name
+     * @param classLoader the class loader to use
+     *
+     * @return the loaded class
+     *
+     * @throws ClassNotFoundException if the class can not be loaded
+     */
+    private static Class<?> loadClass(String className, ClassLoader classLoader) throws ClassNotFoundException {
+
+        Class<?> primitiveType = PRIMITIVE_TYPES.get(className);
+        if (primitiveType != null) {
+            return primitiveType;
+        }
+
+        return Class.forName(className, false, classLoader);
+    }
+}
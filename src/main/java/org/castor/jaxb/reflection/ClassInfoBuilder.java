@@ -16,12 +16,16 @@
 package org.castor.jaxb.reflection;
 
 import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.castor.core.annotationprocessing.AnnotationProcessingService;
 import org.castor.jaxb.reflection.info.ClassInfo;
@@ -33,6 +37,8 @@ import org.castor.jaxb.reflection.info.OoClassNature;
 import org.castor.jaxb.reflection.info.OoFieldNature;
 import org.castor.jaxb.reflection.info.OoPackageNature;
 import org.castor.jaxb.reflection.info.PackageInfo;
+import org.castor.jaxb.reflection.index.ClassIndexEntry;
+import org.castor.jaxb.reflection.index.ClassIndexMember;
 import org.castor.xml.JavaNaming;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -53,6 +59,11 @@ import org.springframework.stereotype.Component;
 public final class ClassInfoBuilder {
     public final Logger LOG = LoggerFactory.getLogger(this.getClass());
 
+    /**
+     * The annotations of a member that has none.
+     */
+    private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
     /**
      * The service to process class level annotations.
      */
@@ -106,16 +117,7 @@ public final class ClassInfoBuilder {
             LOG.info("Now starting to build ClassInfo for: " + type);
         }
 
-        ClassInfo classInfo = createClassInfo(javaNaming.getClassName(type));
-        JaxbClassNature jaxbClassNature = new JaxbClassNature(classInfo);
-
-        jaxbClassNature.setType(type);
-        jaxbClassNature.setSupertype(type.getSuperclass());
-        jaxbClassNature.setInterfaces(type.getInterfaces());
-        jaxbClassNature.setHasPublicEmptyConstructor(hasPublicEmptyConstructor(type));
-
-        Annotation[] unprocessedClassAnnotations = this.classAnnotationProcessingService.processAnnotations(
-                jaxbClassNature, type.getAnnotations());
+        ClassInfo classInfo = buildTypeClassInfo(type);
         for (Field field : type.getDeclaredFields()) {
             if (LOG.isInfoEnabled()) {
                 LOG.info("Now evaluating field: " + field);
@@ -150,6 +152,133 @@ public final class ClassInfoBuilder {
         return classInfo;
     }
 
+    /**
+     * Build the ClassInfo representation for a Class using the members listed
+     * by its build time index entry, instead of evaluating all the declared
+     * members. The annotations are read only for the members the index marks
+     * as annotated. The index entry is trusted, it has to be checked against
+     * the class file as {@link org.castor.jaxb.reflection.index.ClassIndexLoader}
+     * does.
+     * 
+     * @param type
+     *            the Class to introspect
+     * @param indexEntry
+     *            the index entry of the Class
+     * @return ClassInfo build from the Class, or null if the Class cannot be
+     *         described or the index entry does not match the Class
+     */
+    public ClassInfo buildClassInfo(final Class<?> type, final ClassIndexEntry indexEntry) {
+        if (type == null) {
+            String message = "Argument type must not be null.";
+            LOG.warn(message);
+            throw new IllegalArgumentException(message);
+        }
+        if (indexEntry == null) {
+            String message = "Argument indexEntry must not be null.";
+            LOG.warn(message);
+            throw new IllegalArgumentException(message);
+        }
+        if (!isDescribeable(type) || !type.getName().equals(indexEntry.getClassName())) {
+            return null;
+        }
+
+        // resolves all the members first, an entry not matching the class must not lead to a partial ClassInfo
+        Map<String, Field> declaredFields = new HashMap<String, Field>();
+        for (Field field : type.getDeclaredFields()) {
+            declaredFields.put(field.getName(), field);
+        }
+        List<ClassIndexMember> indexedFields = indexEntry.getFields();
+        Field[] fields = new Field[indexedFields.size()];
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = declaredFields.get(indexedFields.get(i).getSignature());
+            if (fields[i] == null) {
+                return staleIndexEntry(type, "field: " + indexedFields.get(i).getName() + " not found");
+            }
+        }
+        Map<String, Method> declaredMethods = new HashMap<String, Method>();
+        for (Method method : type.getDeclaredMethods()) {
+            declaredMethods.put(ClassIndexMember.getSignature(method), method);
+        }
+        List<ClassIndexMember> indexedMethods = indexEntry.getMethods();
+        Method[] methods = new Method[indexedMethods.size()];
+        for (int i = 0; i < methods.length; i++) {
+            methods[i] = declaredMethods.get(indexedMethods.get(i).getSignature());
+            if (methods[i] == null) {
+                return staleIndexEntry(type, "method: " + indexedMethods.get(i).getName() + " not found");
+            }
+        }
+
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Now starting to build ClassInfo for: " + type + " from the class index.");
+        }
+
+        ClassInfo classInfo = buildTypeClassInfo(type);
+        for (int i = 0; i < fields.length; i++) {
+            buildFieldInfo(classInfo, fields[i], getAnnotations(fields[i], indexedFields.get(i)));
+        }
+        for (int i = 0; i < methods.length; i++) {
+            if (isDescribeable(type, methods[i])) {
+                buildFieldInfo(classInfo, methods[i], getAnnotations(methods[i], indexedMethods.get(i)));
+            }
+        }
+        PackageInfo pi = buildPackageInfo(type.getPackage());
+        classInfo.setPackageInfo(pi);
+        if (LOG.isInfoEnabled()) {
+            LOG.info("ClassInfo for: " + type + " build is: " + classInfo);
+        }
+        return classInfo;
+    }
+
+    /**
+     * Logs that the index entry does not match the class.
+     * 
+     * @param type
+     *            the Class
+     * @param reason
+     *            how the Class differs from its index entry
+     * @return always null
+     */
+    private ClassInfo staleIndexEntry(final Class<?> type, final String reason) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Class index entry of: " + type + " does not match the class, " + reason + ".");
+        }
+        return null;
+    }
+
+    /**
+     * Reads the annotations of an indexed member, if it has any.
+     * 
+     * @param element
+     *            the Field or Method
+     * @param member
+     *            the index entry of the Field or Method
+     * @return the annotations of the member
+     */
+    private Annotation[] getAnnotations(final AnnotatedElement element, final ClassIndexMember member) {
+        return member.isAnnotated() ? element.getAnnotations() : NO_ANNOTATIONS;
+    }
+
+    /**
+     * Builds the ClassInfo of a Class without its fields and package, by
+     * processing the class level annotations.
+     * 
+     * @param type
+     *            the Class to introspect
+     * @return the ClassInfo of the Class
+     */
+    private ClassInfo buildTypeClassInfo(final Class<?> type) {
+        ClassInfo classInfo = createClassInfo(javaNaming.getClassName(type));
+        JaxbClassNature jaxbClassNature = new JaxbClassNature(classInfo);
+
+        jaxbClassNature.setType(type);
+        jaxbClassNature.setSupertype(type.getSuperclass());
+        jaxbClassNature.setInterfaces(type.getInterfaces());
+        jaxbClassNature.setHasPublicEmptyConstructor(hasPublicEmptyConstructor(type));
+
+        this.classAnnotationProcessingService.processAnnotations(jaxbClassNature, type.getAnnotations());
+        return classInfo;
+    }
+
     /**
      * Does the introspected class have a public empty constructor?
      * 
@@ -258,6 +387,20 @@ public final class ClassInfoBuilder {
      * @return the ClassInfo containing the FieldInfo build
      */
     private void buildFieldInfo(final ClassInfo classInfo, final Field field) {
+        buildFieldInfo(classInfo, field, field != null ? field.getAnnotations() : null);
+    }
+
+    /**
+     * Build the FieldInfo for a Field.
+     * 
+     * @param classInfo
+     *            the ClassInfo to check if this field already exists
+     * @param field
+     *            the Field to describe
+     * @param annotations
+     *            the annotations of the Field
+     */
+    private void buildFieldInfo(final ClassInfo classInfo, final Field field, final Annotation[] annotations) {
         if (classInfo == null) {
             String message = "Argument classInfo must not be null.";
             LOG.warn(message);
@@ -282,7 +425,7 @@ public final class ClassInfoBuilder {
             jaxbFieldNature.setMultivalued(true);
         }
         jaxbFieldNature.setGenericType(field.getGenericType());
-        fieldAnnotationProcessingService.processAnnotations(jaxbFieldNature, field.getAnnotations());
+        fieldAnnotationProcessingService.processAnnotations(jaxbFieldNature, annotations);
     }
 
     /**
@@ -295,6 +438,20 @@ public final class ClassInfoBuilder {
      * @return the ClassInfo containing the FieldInfo build
      */
     private void buildFieldInfo(final ClassInfo classInfo, final Method method) {
+        buildFieldInfo(classInfo, method, method != null ? method.getAnnotations() : null);
+    }
+
+    /**
+     * Build the FieldInfo for a Method.
+     * 
+     * @param classInfo
+     *            the ClassInfo to look in if this field already exists
+     * @param method
+     *            the Method to describe
+     * @param annotations
+     *            the annotations of the Method
+     */
+    private void buildFieldInfo(final ClassInfo classInfo, final Method method, final Annotation[] annotations) {
         if (classInfo == null) {
             String message = "Argument classInfo must not be null.";
             LOG.warn(message);
@@ -335,7 +492,7 @@ public final class ClassInfoBuilder {
                 LOG.debug(message);
             }
         }
-        fieldAnnotationProcessingService.processAnnotations(jaxbFieldNature, method.getAnnotations());
+        fieldAnnotationProcessingService.processAnnotations(jaxbFieldNature, annotations);
     }
 
     private void handleMultivaluedness(Class<?> fieldType, JaxbFieldNature fieldNature, Type type) {
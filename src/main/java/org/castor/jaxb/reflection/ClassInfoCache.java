@@ -0,0 +1,281 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb.reflection;
+
+import org.castor.jaxb.reflection.info.ClassInfo;
+import org.castor.jaxb.reflection.info.JaxbClassNature;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of the {@link ClassInfo} instances built by the {@link ClassInfoBuilder}, shared by all the contexts.
+ * <p/>
+ * The class infos are grouped by the class loader of the described class. The class loaders are referenced weakly
+ * and the class infos softly, so that they survive the garbage collections and are shared by all the contexts built
+ * for the same classes, including those of a web application. As the class infos refer to their classes, the class
+ * infos of a discarded class loader are kept until memory runs low, unless the {@link #clear(ClassLoader)} method
+ * drops them eagerly, once the class loader is no longer in use.
+ * <p/>
+ * The class descriptors themselves are not cached here, as they are bound to the adapters of their context.
+ * <p/>
+ * This class is thread safe.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+public final class ClassInfoCache {
+
+    /**
+     * Represents the name of the system property that allows to disable the cache.
+     */
+    public static final String DISABLED_PROPERTY = "org.castor.jaxb.classInfoCache.disabled";
+
+    /**
+     * Represents the cached class infos, by class loader and class name.
+     */
+    private final Map<ClassLoader, Map<String, CacheReference>> entries =
+            new WeakHashMap<ClassLoader, Map<String, CacheReference>>();
+
+    /**
+     * Represents the queue of the reclaimed class infos.
+     */
+    private final ReferenceQueue<ClassInfo> reclaimedClassInfos = new ReferenceQueue<ClassInfo>();
+
+    /**
+     * Represents the number of cache hits.
+     */
+    private final AtomicLong hitCount = new AtomicLong();
+
+    /**
+     * Represents the number of cache misses.
+     */
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Represents the number of evicted class infos.
+     */
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * Retrieves the class info cached for the given class.
+     *
+     * @param type the class
+     *
+     * @return the cached class info, or null if there is none
+     */
+    public synchronized ClassInfo get(Class<?> type) {
+        purgeReclaimedClassInfos();
+
+        Map<String, CacheReference> classInfos = entries.get(type.getClassLoader());
+        CacheReference reference = classInfos != null ? classInfos.get(type.getName()) : null;
+        ClassInfo classInfo = reference != null ? reference.get() : null;
+
+        // a class of the same name may have been redefined by the same class loader
+        if (classInfo != null && describes(classInfo, type)) {
+            hitCount.incrementAndGet();
+            return classInfo;
+        }
+
+        missCount.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Caches the class info built for the given class. If a class info has been cached meanwhile by another thread,
+     * that class info is kept and returned instead.
+     *
+     * @param type      the class
+     * @param classInfo the class info to cache
+     *
+     * @return the cached class info
+     */
+    public synchronized ClassInfo put(Class<?> type, ClassInfo classInfo) {
+        purgeReclaimedClassInfos();
+
+        Map<String, CacheReference> classInfos = entries.get(type.getClassLoader());
+        if (classInfos == null) {
+            classInfos = new HashMap<String, CacheReference>();
+            entries.put(type.getClassLoader(), classInfos);
+        }
+
+        CacheReference reference = classInfos.get(type.getName());
+        ClassInfo cached = reference != null ? reference.get() : null;
+        if (cached != null && describes(cached, type)) {
+            return cached;
+        }
+
+        classInfos.put(type.getName(), new CacheReference(type.getName(), classInfo, classInfos, reclaimedClassInfos));
+        return classInfo;
+    }
+
+    /**
+     * Removes all the cached class infos.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Removes all the class infos cached for the classes of the given class loader.
+     *
+     * @param classLoader the class loader
+     */
+    public synchronized void clear(ClassLoader classLoader) {
+        entries.remove(classLoader);
+    }
+
+    /**
+     * Retrieves the number of cached class infos.
+     *
+     * @return the number of cached class infos
+     */
+    public synchronized int size() {
+        purgeReclaimedClassInfos();
+
+        int size = 0;
+        for (Map<String, CacheReference> classInfos : entries.values()) {
+            size += classInfos.size();
+        }
+        return size;
+    }
+
+    /**
+     * Retrieves the number of class loaders with cached class infos.
+     *
+     * @return the number of class loaders
+     */
+    public synchronized int getClassLoaderCount() {
+        purgeReclaimedClassInfos();
+        return entries.size();
+    }
+
+    /**
+     * Retrieves the number of requests served from the cache.
+     *
+     * @return the number of cache hits
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Retrieves the number of requests that required building a new class info.
+     *
+     * @return the number of cache misses
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Retrieves the number of class infos reclaimed by the garbage collector, including those of the collected class
+     * loaders.
+     *
+     * @return the number of evicted class infos
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * Checks whether the class info describes the very given class.
+     *
+     * @param classInfo the class info
+     * @param type      the class
+     *
+     * @return true if the class info describes the class, false otherwise
+     */
+    private static boolean describes(ClassInfo classInfo, Class<?> type) {
+        return new JaxbClassNature(classInfo).getType() == type;
+    }
+
+    /**
+     * Removes the entries of all the class infos reclaimed by the garbage collector. The class loaders left without
+     * any entry are removed by the underlying map once they are collected.
+     */
+    private void purgeReclaimedClassInfos() {
+
+        Reference<? extends ClassInfo> reference;
+        while ((reference = reclaimedClassInfos.poll()) != null) {
+            CacheReference cacheReference = (CacheReference) reference;
+
+            // the entry may have been replaced in the meantime
+            if (cacheReference.getClassInfos().get(cacheReference.getClassName()) == cacheReference) {
+                cacheReference.getClassInfos().remove(cacheReference.getClassName());
+            }
+            evictionCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * A soft reference to a cached class info, which remembers its entry so that it can be removed once the class
+     * info is reclaimed.
+     *
+     * @author Jakub Narloch, jmnarloch AT gmail DOT org
+     * @version 1.0
+     */
+    private static final class CacheReference extends SoftReference<ClassInfo> {
+
+        /**
+         * Represents the name of the described class.
+         */
+        private final String className;
+
+        /**
+         * Represents the class infos of the class loader, holding this reference.
+         */
+        private final Map<String, CacheReference> classInfos;
+
+        /**
+         * Creates new instance of {@link CacheReference} class.
+         *
+         * @param className  the name of the described class
+         * @param classInfo  the cached class info
+         * @param classInfos the class infos of the class loader
+         * @param queue      the queue notified when the class info is reclaimed
+         */
+        CacheReference(String className, ClassInfo classInfo, Map<String, CacheReference> classInfos,
+                       ReferenceQueue<ClassInfo> queue) {
+            super(classInfo, queue);
+            this.className = className;
+            this.classInfos = classInfos;
+        }
+
+        /**
+         * Retrieves the name of the described class.
+         *
+         * @return the class name
+         */
+        String getClassName() {
+            return className;
+        }
+
+        /**
+         * Retrieves the class infos of the class loader.
+         *
+         * @return the class infos
+         */
+        Map<String, CacheReference> getClassInfos() {
+            return classInfos;
+        }
+    }
+}
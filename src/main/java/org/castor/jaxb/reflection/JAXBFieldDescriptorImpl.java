@@ -27,6 +27,9 @@ import org.exolab.castor.xml.util.XMLFieldDescriptorImpl;
  * @version $Id$
  */
 public class JAXBFieldDescriptorImpl extends XMLFieldDescriptorImpl implements XMLFieldDescriptor {
+    /** The field type given at construction, which setFieldType does not change. */
+    private final Class < ? > _declaredFieldType;
+
     /**
      * The constructor to use in the JAXB implementation.
      * 
@@ -39,5 +42,15 @@ public class JAXBFieldDescriptorImpl extends XMLFieldDescriptorImpl implements X
             final Class < ? > fieldType, final String fieldName,
             final String xmlName, final NodeType nodeType) {
         super(fieldType, fieldName, xmlName, nodeType);
+        _declaredFieldType = fieldType;
+    }
+
+    /**
+     * The field type this descriptor was constructed with.
+     *
+     * @return the field type given at construction
+     */
+    public Class < ? > getDeclaredFieldType() {
+        return _declaredFieldType;
     }
 }
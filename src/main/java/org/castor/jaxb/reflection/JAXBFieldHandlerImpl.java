@@ -16,6 +16,7 @@
 package org.castor.jaxb.reflection;
 
 import org.castor.jaxb.exceptions.AdapterException;
+import org.castor.jaxb.reflection.accessor.JAXBAccessor;
 import org.castor.jaxb.resolver.JAXBAdapterRegistry;
 import org.exolab.castor.mapping.FieldHandler;
 import org.exolab.castor.mapping.ValidityException;
@@ -48,6 +49,10 @@ public class JAXBFieldHandlerImpl implements FieldHandler {
     private Method _getMethod;
     /** Set Method to access the property. */
     private Method _setMethod;
+    /** Generated accessor of the property, used instead of the field or the methods when set. */
+    private JAXBAccessor _accessor;
+    /** Precomputed lexical form of the values, used instead of formatting them anew when set. */
+    private JAXBLexicalForm _lexicalForm;
 
     /**
      * The class that extends the {@link XmlAdapter} used for handling marshalling and unmarshalling of this
@@ -91,7 +96,16 @@ public class JAXBFieldHandlerImpl implements FieldHandler {
     throws IllegalStateException {
         Object value;
         // first step is to read the value from the parent
-        if (_getMethod != null) {
+        if (_accessor != null) {
+            try {
+                value = _accessor.getValue(parentOfField);
+            } catch (ClassCastException e) {
+                AdapterException ex = new AdapterException(
+                        "Call to JAXBAccessor.getValue failed", e);
+                LOG.warn(ex.toString());
+                throw ex;
+            }
+        } else if (_getMethod != null) {
             try {
                 if (!_getMethod.isAccessible()) {
                     _getMethod.setAccessible(true);
@@ -147,6 +161,9 @@ public class JAXBFieldHandlerImpl implements FieldHandler {
                 throw ex;
             }
         }
+        if (_lexicalForm != null) {
+            return _lexicalForm.print(value);
+        }
         return value;
     }
 
@@ -245,10 +262,21 @@ public class JAXBFieldHandlerImpl implements FieldHandler {
                 LOG.warn(ex.toString());
                 throw ex;
             }
+        } else if (_lexicalForm != null) {
+            marshalAbleValue = _lexicalForm.parse(value);
         } else {
             marshalAbleValue = value;
         }
-        if (_setMethod != null) {
+        if (_accessor != null) {
+            try {
+                _accessor.setValue(object, marshalAbleValue);
+            } catch (ClassCastException e) {
+                AdapterException ex = new AdapterException(
+                        "Call to JAXBAccessor.setValue failed", e);
+                LOG.warn(ex.toString());
+                throw ex;
+            }
+        } else if (_setMethod != null) {
             try {
                 if (!_setMethod.isAccessible()) {
                     _setMethod.setAccessible(true);
@@ -311,6 +339,33 @@ public class JAXBFieldHandlerImpl implements FieldHandler {
         _field = field;
     }
 
+    /**
+     * The Class.Field to work with.
+     *
+     * @return the Class.Field, or null if the property is accessed through methods
+     */
+    public Field getField() {
+        return _field;
+    }
+
+    /**
+     * The getter of the property.
+     *
+     * @return the getter, or null if the property is accessed through the field
+     */
+    public Method getGetMethod() {
+        return _getMethod;
+    }
+
+    /**
+     * The setter of the property.
+     *
+     * @return the setter, or null if there is none
+     */
+    public Method getSetMethod() {
+        return _setMethod;
+    }
+
     /**
      * The setter and getter of the property.
      *
@@ -322,6 +377,46 @@ public class JAXBFieldHandlerImpl implements FieldHandler {
         _setMethod = setMethod;
     }
 
+    /**
+     * The generated accessor of the property. When set it is used instead of
+     * the field or the methods, which are then accessed without reflection.
+     *
+     * @param accessor the generated accessor, may be null
+     */
+    public void setAccessor(final JAXBAccessor accessor) {
+        _accessor = accessor;
+    }
+
+    /**
+     * The precomputed lexical form of the values. When set the values are
+     * handed to Castor in their lexical form and converted back when set.
+     *
+     * @param lexicalForm the lexical form, may be null
+     */
+    void setLexicalForm(final JAXBLexicalForm lexicalForm) {
+        _lexicalForm = lexicalForm;
+    }
+
+    /**
+     * The precomputed lexical form of the values.
+     *
+     * @return the lexical form, or null if the values are handed to Castor as they are
+     */
+    JAXBLexicalForm getLexicalForm() {
+        return _lexicalForm;
+    }
+
+    /**
+     * The type of the values set through this handler, which differs from
+     * the type bound by Castor when the values are handed to Castor in their
+     * lexical form.
+     *
+     * @return the type of the values, or null if it is the bound type
+     */
+    public Class < ? > getValueType() {
+        return _lexicalForm != null ? _lexicalForm.getValueType() : null;
+    }
+
     /**
      * Sets the adapter class for this hanlder, that should be used for marshalling and unmarshalling.
      *
@@ -331,6 +426,15 @@ public class JAXBFieldHandlerImpl implements FieldHandler {
         this.adapterClass = adapterClass;
     }
 
+    /**
+     * Retrieves the adapter class of this handler.
+     *
+     * @return the {@link XmlAdapter} class, or null if there is none
+     */
+    public Class<? extends XmlAdapter> getXmlAdapterClass() {
+        return adapterClass;
+    }
+
     /**
      * Sets the instance of {@link JAXBAdapterRegistry} used to retrieve the adapter instance.
      * @param jaxbAdapterRegistry the {@link JAXBAdapterRegistry} used for retrieving the adapter instances.
@@ -0,0 +1,308 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb.reflection;
+
+import javax.xml.bind.annotation.XmlEnumValue;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Converts the values of a field to and from their lexical form, reusing precomputed strings instead of formatting
+ * the value anew every time it is marshalled.
+ * <p/>
+ * The lexical forms of the enum constants are computed once, when the form is created: it is the value of the
+ * {@link XmlEnumValue} annotation of the constant, or its name if there is none. The lexical forms of the integral
+ * values from {@link #MIN_CACHED_VALUE} to {@link #MAX_CACHED_VALUE} are shared by all the fields.
+ * <p/>
+ * This class is thread safe.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+abstract class JAXBLexicalForm {
+
+    /**
+     * Represents the lowest integral value whose lexical form is cached.
+     */
+    static final int MIN_CACHED_VALUE = -128;
+
+    /**
+     * Represents the highest integral value whose lexical form is cached.
+     */
+    static final int MAX_CACHED_VALUE = 1023;
+
+    /**
+     * Represents the cached lexical forms of the integral values, indexed by the value minus {@link
+     * #MIN_CACHED_VALUE}.
+     */
+    private static final String[] INTEGRAL_FORMS = new String[MAX_CACHED_VALUE - MIN_CACHED_VALUE + 1];
+
+    static {
+        for (int i = 0; i < INTEGRAL_FORMS.length; i++) {
+            INTEGRAL_FORMS[i] = Integer.toString(i + MIN_CACHED_VALUE).intern();
+        }
+    }
+
+    /**
+     * Creates the lexical form for the values of the given type.
+     *
+     * @param type the type of the values
+     *
+     * @return the lexical form, or null if the values of the type are formatted by Castor itself
+     */
+    static JAXBLexicalForm forType(Class<?> type) {
+
+        if (type == null) {
+            return null;
+        } else if (type.isEnum()) {
+            return new EnumForm(type);
+        } else if (type == Integer.TYPE || type == Integer.class || type == Long.TYPE || type == Long.class
+                || type == Short.TYPE || type == Short.class || type == Byte.TYPE || type == Byte.class) {
+            return new IntegralForm(type);
+        }
+
+        return null;
+    }
+
+    /**
+     * Retrieves the type of the values this form converts.
+     *
+     * @return the type of the values
+     */
+    abstract Class<?> getValueType();
+
+    /**
+     * Retrieves the type Castor should bind the field to, when this form is used.
+     *
+     * @param type the declared type of the field
+     *
+     * @return the type as seen by Castor
+     */
+    abstract Class<?> getBoundType(Class<?> type);
+
+    /**
+     * Converts the value of the field to its lexical form.
+     *
+     * @param value the value of the field, may be null
+     *
+     * @return the lexical form, or null if the value is null
+     */
+    abstract Object print(Object value);
+
+    /**
+     * Converts the lexical form back to the value of the field.
+     *
+     * @param value the lexical form or the already converted value, may be null
+     *
+     * @return the value of the field
+     *
+     * @throws IllegalArgumentException if the lexical form does not denote any value
+     */
+    abstract Object parse(Object value);
+
+    /**
+     * The form of the integral values. Castor binds the field as a string, so that a cached lexical form is not
+     * marshalled with an explicit <code>xsi:type</code>.
+     *
+     * @author Jakub Narloch, jmnarloch AT gmail DOT org
+     * @version 1.0
+     */
+    private static final class IntegralForm extends JAXBLexicalForm {
+
+        /**
+         * Represents the integral type.
+         */
+        private final Class<?> integralType;
+
+        /**
+         * Creates new instance of {@link IntegralForm} class.
+         *
+         * @param integralType the integral type
+         */
+        private IntegralForm(Class<?> integralType) {
+            this.integralType = integralType;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        Class<?> getValueType() {
+            return integralType;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        Class<?> getBoundType(Class<?> type) {
+            return String.class;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        Object print(Object value) {
+
+            if (value instanceof Number) {
+                long number = ((Number) value).longValue();
+                if (number >= MIN_CACHED_VALUE && number <= MAX_CACHED_VALUE) {
+                    return INTEGRAL_FORMS[(int) number - MIN_CACHED_VALUE];
+                }
+                return Long.toString(number);
+            }
+            return value;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        Object parse(Object value) {
+
+            if (value instanceof String) {
+                String lexicalForm = ((String) value).trim();
+                if (integralType == Integer.TYPE || integralType == Integer.class) {
+                    return Integer.valueOf(lexicalForm);
+                } else if (integralType == Long.TYPE || integralType == Long.class) {
+                    return Long.valueOf(lexicalForm);
+                } else if (integralType == Short.TYPE || integralType == Short.class) {
+                    return Short.valueOf(lexicalForm);
+                }
+                return Byte.valueOf(lexicalForm);
+            }
+            return value;
+        }
+    }
+
+    /**
+     * The form of the constants of a single enum. Castor binds the field as a string, so that the constants are
+     * resolved here rather than by {@link Enum#valueOf(Class, String)}.
+     *
+     * @author Jakub Narloch, jmnarloch AT gmail DOT org
+     * @version 1.0
+     */
+    private static final class EnumForm extends JAXBLexicalForm {
+
+        /**
+         * Represents the enum type.
+         */
+        private final Class<?> enumType;
+
+        /**
+         * Represents the lexical forms of the constants, indexed by their ordinal.
+         */
+        private final String[] forms;
+
+        /**
+         * Represents the constants, by lexical form.
+         */
+        private final Map<String, Object> constants = new HashMap<String, Object>();
+
+        /**
+         * Creates new instance of {@link EnumForm} class.
+         *
+         * @param enumType the enum type
+         */
+        private EnumForm(Class<?> enumType) {
+            this.enumType = enumType;
+
+            Object[] values = enumType.getEnumConstants();
+            forms = new String[values.length];
+            for (int i = 0; i < values.length; i++) {
+                Enum<?> constant = (Enum<?>) values[i];
+                forms[constant.ordinal()] = getLexicalForm(constant);
+                constants.put(forms[constant.ordinal()], constant);
+            }
+
+            // the names are accepted as well, so that documents written before the lexical forms were honoured
+            // can still be read
+            for (Object value : values) {
+                Enum<?> constant = (Enum<?>) value;
+                if (!constants.containsKey(constant.name())) {
+                    constants.put(constant.name(), constant);
+                }
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        Class<?> getValueType() {
+            return enumType;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        Class<?> getBoundType(Class<?> type) {
+            return String.class;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        Object print(Object value) {
+
+            if (value instanceof Enum<?>) {
+                return forms[((Enum<?>) value).ordinal()];
+            }
+            return value;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        Object parse(Object value) {
+
+            if (value instanceof String) {
+                Object constant = constants.get(((String) value).trim());
+                if (constant == null) {
+                    throw new IllegalArgumentException("No constant of enum " + enumType.getName()
+                            + " has the lexical form '" + value + "'.");
+                }
+                return constant;
+            }
+            return value;
+        }
+
+        /**
+         * Retrieves the lexical form of the given constant.
+         *
+         * @param constant the enum constant
+         *
+         * @return the value of the {@link XmlEnumValue} annotation of the constant, or its name
+         */
+        private String getLexicalForm(Enum<?> constant) {
+
+            try {
+                XmlEnumValue enumValue = constant.getDeclaringClass().getField(constant.name())
+                        .getAnnotation(XmlEnumValue.class);
+                if (enumValue != null) {
+                    return enumValue.value();
+                }
+            } catch (NoSuchFieldException e) {
+                // every constant is a public field of its enum, fall back to its name
+            }
+            return constant.name();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb.reflection.accessor;
+
+/**
+ * Reads and writes a single property of a bound class without reflection. Implementations are generated at build
+ * time by the {@link org.castor.jaxb.apt.JAXBIndexProcessor} annotation processor.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+public interface JAXBAccessor {
+
+    /**
+     * Retrieves the value of the property.
+     *
+     * @param object the object holding the property
+     *
+     * @return the value of the property
+     */
+    Object getValue(Object object);
+
+    /**
+     * Sets the value of the property.
+     *
+     * @param object the object holding the property
+     * @param value  the new value of the property
+     *
+     * @throws IllegalStateException if the property is read only
+     */
+    void setValue(Object object, Object value);
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb.reflection.accessor;
+
+/**
+ * Provides the {@link JAXBAccessor accessors} of the properties of a single bound class. An implementation is
+ * generated at build time for every bound class, under the name of the class followed by {@link #CLASS_NAME_SUFFIX}.
+ * <p/>
+ * Only the members visible from the package of the class can be accessed by generated code, so the factory
+ * returns null for private members, which are then accessed through reflection.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+public interface JAXBAccessorFactory {
+
+    /**
+     * Represents the suffix appended to the name of the bound class to form the name of its generated factory.
+     */
+    String CLASS_NAME_SUFFIX = "$$JAXBAccessors";
+
+    /**
+     * Retrieves the accessor of the given field.
+     *
+     * @param fieldName the field name
+     *
+     * @return the accessor of the field, or null if there is none
+     */
+    JAXBAccessor getFieldAccessor(String fieldName);
+
+    /**
+     * Retrieves the accessor of the property accessed through the given methods.
+     *
+     * @param getMethodName the name of the get method
+     * @param setMethodName the name of the set method, null if the property is read only
+     *
+     * @return the accessor of the property, or null if there is none
+     */
+    JAXBAccessor getMethodAccessor(String getMethodName, String setMethodName);
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb.reflection.accessor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Looks up the {@link JAXBAccessor accessors} generated for the bound classes.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+public final class JAXBAccessors {
+
+    /**
+     * Logger used by this class.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(JAXBAccessors.class);
+
+    /**
+     * Represents the name of the system property that allows to disable the use of the generated accessors.
+     */
+    public static final String DISABLED_PROPERTY = "org.castor.jaxb.accessors.disabled";
+
+    /**
+     * Represents the cached result of a lookup that found no accessor factory.
+     */
+    private static final Reference<JAXBAccessorFactory> NO_FACTORY = new WeakReference<JAXBAccessorFactory>(null);
+
+    /**
+     * Represents the accessor factories already looked up, by class. Both the keys and the factories are held
+     * weakly, since a factory refers to the class loader of its class and would otherwise keep it loaded. A
+     * collected factory is simply looked up again.
+     */
+    private static final Map<Class<?>, Reference<JAXBAccessorFactory>> FACTORIES =
+            Collections.synchronizedMap(new WeakHashMap<Class<?>, Reference<JAXBAccessorFactory>>());
+
+    /**
+     * Creates new instance of {@link JAXBAccessors} class. Private constructor prevents from instantiation outside
+     * this class.
+     */
+    private JAXBAccessors() {
+        // empty constructor
+    }
+
+    /**
+     * Retrieves the generated accessor of the given field.
+     *
+     * @param field the field, may be null
+     *
+     * @return the generated accessor, or null if there is none
+     */
+    public static JAXBAccessor getAccessor(Field field) {
+
+        if (field == null) {
+            return null;
+        }
+
+        JAXBAccessorFactory factory = getFactory(field.getDeclaringClass());
+        return factory != null ? factory.getFieldAccessor(field.getName()) : null;
+    }
+
+    /**
+     * Retrieves the generated accessor of the property accessed through the given methods. The set method, if
+     * present, must accept exactly the type returned by the get method.
+     *
+     * @param getMethod the get method, may be null
+     * @param setMethod the set method, may be null
+     *
+     * @return the generated accessor, or null if there is none
+     */
+    public static JAXBAccessor getAccessor(Method getMethod, Method setMethod) {
+
+        if (getMethod == null) {
+            return null;
+        }
+
+        String setMethodName = null;
+        if (setMethod != null) {
+            if (setMethod.getDeclaringClass() != getMethod.getDeclaringClass()
+                    || setMethod.getParameterTypes().length != 1
+                    || setMethod.getParameterTypes()[0] != getMethod.getReturnType()) {
+                return null;
+            }
+            setMethodName = setMethod.getName();
+        }
+
+        JAXBAccessorFactory factory = getFactory(getMethod.getDeclaringClass());
+        return factory != null ? factory.getMethodAccessor(getMethod.getName(), setMethodName) : null;
+    }
+
+    /**
+     * Retrieves the generated accessor factory of the given class. The result of the lookup, including the absence
+     * of a factory, is cached per class.
+     *
+     * @param type the class
+     *
+     * @return the accessor factory, or null if none was generated for the class
+     */
+    public static JAXBAccessorFactory getFactory(Class<?> type) {
+
+        if (type.getClassLoader() == null || Boolean.getBoolean(DISABLED_PROPERTY)) {
+            return null;
+        }
+
+        Reference<JAXBAccessorFactory> cached = FACTORIES.get(type);
+        if (cached == NO_FACTORY) {
+            return null;
+        }
+
+        JAXBAccessorFactory factory = cached != null ? cached.get() : null;
+        if (factory == null) {
+            factory = loadFactory(type);
+            FACTORIES.put(type, factory != null ? new WeakReference<JAXBAccessorFactory>(factory) : NO_FACTORY);
+        }
+        return factory;
+    }
+
+    /**
+     * Loads and instantiates the generated accessor factory of the given class.
+     *
+     * @param type the class
+     *
+     * @return the accessor factory, or null if none was generated for the class or it could not be created
+     */
+    private static JAXBAccessorFactory loadFactory(Class<?> type) {
+
+        try {
+            Class<?> factoryClass = Class.forName(type.getName() + JAXBAccessorFactory.CLASS_NAME_SUFFIX, true,
+                    type.getClassLoader());
+
+            return (JAXBAccessorFactory) factoryClass.newInstance();
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (LinkageError e) {
+            LOG.warn("Unable to load the generated accessors of " + type.getName() + ", reflection will be used.", e);
+        } catch (InstantiationException e) {
+            LOG.warn("Unable to create the generated accessors of " + type.getName() + ", reflection will be used.", e);
+        } catch (IllegalAccessException e) {
+            LOG.warn("Unable to create the generated accessors of " + type.getName() + ", reflection will be used.", e);
+        } catch (ClassCastException e) {
+            LOG.warn("Invalid generated accessors of " + type.getName() + ", reflection will be used.", e);
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb.reflection.index;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * An index of the bound classes, generated at build time by the {@link org.castor.jaxb.apt.JAXBIndexProcessor}
+ * annotation processor and stored at {@link #INDEX_LOCATION}.
+ * <p/>
+ * The index lists, for every class annotated with {@link javax.xml.bind.annotation.XmlRootElement} or {@link
+ * javax.xml.bind.annotation.XmlType}, the members the {@link org.castor.jaxb.reflection.ClassInfoBuilder} needs to
+ * look at, together with the information whether they are annotated at all. This allows to skip scanning all the
+ * declared members of the class and reading the annotations of the members that have none. Every entry carries the
+ * CRC32 checksum of the class file it describes, so that an entry left over by a recompilation without the processor
+ * is detected by {@link ClassIndexLoader} and never used.
+ * <p/>
+ * The index is stored in a compact binary form:
+ * <pre>
+ * index   := MAGIC VERSION count:int entry*
+ * entry   := className:utf checksum:long fieldCount:int member* methodCount:int member*
+ * member  := name:utf annotated:boolean parameterCount:int parameterType:utf*
+ * </pre>
+ * The fields are stored with a parameter count of -1.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+public final class ClassIndex {
+
+    /**
+     * Represents the location of the index within the class path.
+     */
+    public static final String INDEX_LOCATION = "META-INF/castor-jaxb/class.index";
+
+    /**
+     * Represents the magic number starting the index.
+     */
+    private static final int MAGIC = 0xCA570121;
+
+    /**
+     * Represents the version of the index format.
+     */
+    private static final short VERSION = 2;
+
+    /**
+     * Represents the size of the buffer used to compute the checksums.
+     */
+    private static final int BUFFER_SIZE = 4096;
+
+    /**
+     * Represents the indexed classes, by class name.
+     */
+    private final Map<String, ClassIndexEntry> entries = new LinkedHashMap<String, ClassIndexEntry>();
+
+    /**
+     * Adds the entry to the index, replacing any entry of the same class.
+     *
+     * @param entry the entry to add
+     */
+    public void addEntry(ClassIndexEntry entry) {
+        entries.put(entry.getClassName(), entry);
+    }
+
+    /**
+     * Adds all the entries of the given index to this index. The entries already present are kept.
+     *
+     * @param index the index to merge
+     */
+    public void merge(ClassIndex index) {
+
+        for (ClassIndexEntry entry : index.getEntries()) {
+            if (!entries.containsKey(entry.getClassName())) {
+                addEntry(entry);
+            }
+        }
+    }
+
+    /**
+     * Retrieves the entry of the given class.
+     *
+     * @param className the class name
+     *
+     * @return the entry of the class, or null if the class is not indexed
+     */
+    public ClassIndexEntry getEntry(String className) {
+        return entries.get(className);
+    }
+
+    /**
+     * Retrieves all the entries.
+     *
+     * @return the unmodifiable collection of the entries
+     */
+    public Collection<ClassIndexEntry> getEntries() {
+        return Collections.unmodifiableCollection(entries.values());
+    }
+
+    /**
+     * Retrieves the number of indexed classes.
+     *
+     * @return the number of indexed classes
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Writes the index to the given stream. The stream is not closed.
+     *
+     * @param outputStream the stream to write to
+     *
+     * @throws IOException if any error occurs when writing the index
+     */
+    public void write(OutputStream outputStream) throws IOException {
+
+        DataOutputStream output = new DataOutputStream(outputStream);
+        output.writeInt(MAGIC);
+        output.writeShort(VERSION);
+        output.writeInt(entries.size());
+
+        for (ClassIndexEntry entry : entries.values()) {
+            output.writeUTF(entry.getClassName());
+            output.writeLong(entry.getChecksum());
+            writeMembers(output, entry.getFields());
+            writeMembers(output, entry.getMethods());
+        }
+        output.flush();
+    }
+
+    /**
+     * Reads the index from the given stream. The stream is not closed.
+     *
+     * @param inputStream the stream to read from
+     *
+     * @return the read index
+     *
+     * @throws IOException if any error occurs when reading the index or the stream does not hold a valid index
+     */
+    public static ClassIndex read(InputStream inputStream) throws IOException {
+
+        DataInputStream input = new DataInputStream(inputStream);
+        if (input.readInt() != MAGIC) {
+            throw new IOException("The stream does not contain a class index.");
+        }
+
+        short version = input.readShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported class index version " + version + ", expected " + VERSION + ".");
+        }
+
+        ClassIndex index = new ClassIndex();
+        int count = input.readInt();
+        for (int i = 0; i < count; i++) {
+            ClassIndexEntry entry = new ClassIndexEntry(input.readUTF());
+            entry.setChecksum(input.readLong());
+
+            int fieldCount = input.readInt();
+            for (int j = 0; j < fieldCount; j++) {
+                entry.addField(readMember(input));
+            }
+
+            int methodCount = input.readInt();
+            for (int j = 0; j < methodCount; j++) {
+                entry.addMethod(readMember(input));
+            }
+
+            index.addEntry(entry);
+        }
+
+        return index;
+    }
+
+    /**
+     * Computes the CRC32 checksum of a class file, as stored in the index entries. The stream is not closed.
+     *
+     * @param inputStream the stream to read the class file from
+     *
+     * @return the checksum of the class file
+     *
+     * @throws IOException if any error occurs when reading the stream
+     */
+    public static long computeChecksum(InputStream inputStream) throws IOException {
+
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            crc.update(buffer, 0, read);
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Writes the members to the given stream.
+     *
+     * @param output  the stream to write to
+     * @param members the members to write
+     *
+     * @throws IOException if any error occurs when writing the members
+     */
+    private static void writeMembers(DataOutputStream output, List<ClassIndexMember> members) throws IOException {
+
+        output.writeInt(members.size());
+        for (ClassIndexMember member : members) {
+            output.writeUTF(member.getName());
+            output.writeBoolean(member.isAnnotated());
+
+            String[] parameterTypes = member.getParameterTypes();
+            if (parameterTypes == null) {
+                output.writeInt(-1);
+            } else {
+                output.writeInt(parameterTypes.length);
+                for (String parameterType : parameterTypes) {
+                    output.writeUTF(parameterType);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a single member from the given stream.
+     *
+     * @param input the stream to read from
+     *
+     * @return the read member
+     *
+     * @throws IOException if any error occurs when reading the member
+     */
+    private static ClassIndexMember readMember(DataInputStream input) throws IOException {
+
+        String name = input.readUTF();
+        boolean annotated = input.readBoolean();
+
+        String[] parameterTypes = null;
+        int parameterCount = input.readInt();
+        if (parameterCount >= 0) {
+            parameterTypes = new String[parameterCount];
+            for (int i = 0; i < parameterCount; i++) {
+                parameterTypes[i] = input.readUTF();
+            }
+        }
+
+        return new ClassIndexMember(name, parameterTypes, annotated);
+    }
+}
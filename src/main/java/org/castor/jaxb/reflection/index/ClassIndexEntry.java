@@ -0,0 +1,152 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb.reflection.index;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The indexed members of a single class: the fields that may be described and the methods that may be property
+ * accessors, in their declaration order, together with the checksum of the class file they were read from.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+public final class ClassIndexEntry {
+
+    /**
+     * Represents the prefixes of the names of the methods that may be property accessors.
+     */
+    private static final String[] ACCESSOR_PREFIXES = new String[]{"get", "is", "set", "add", "create"};
+
+    /**
+     * Represents the name of the class, as returned by {@link Class#getName()}.
+     */
+    private final String className;
+
+    /**
+     * Represents the CRC32 checksum of the class file.
+     */
+    private long checksum;
+
+    /**
+     * Represents the indexed fields.
+     */
+    private final List<ClassIndexMember> fields = new ArrayList<ClassIndexMember>();
+
+    /**
+     * Represents the indexed methods.
+     */
+    private final List<ClassIndexMember> methods = new ArrayList<ClassIndexMember>();
+
+    /**
+     * Creates new instance of {@link ClassIndexEntry} class.
+     *
+     * @param className the name of the class
+     *
+     * @throws IllegalArgumentException if className is null
+     */
+    public ClassIndexEntry(String className) {
+        if (className == null) {
+            throw new IllegalArgumentException("Argument 'className' can not be null.");
+        }
+
+        this.className = className;
+    }
+
+    /**
+     * Checks whether the method name may denote a property accessor, that is whether a method of that name is
+     * indexed.
+     *
+     * @param name the method name
+     *
+     * @return true if the name may denote a property accessor, false otherwise
+     */
+    public static boolean isAccessorName(String name) {
+
+        for (String prefix : ACCESSOR_PREFIXES) {
+            if (name.startsWith(prefix) && name.length() > prefix.length()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Retrieves the name of the class.
+     *
+     * @return the name of the class
+     */
+    public String getClassName() {
+        return className;
+    }
+
+    /**
+     * Retrieves the CRC32 checksum of the class file the entry was built from. The entry describes a class only if
+     * the checksum of its class file matches.
+     *
+     * @return the checksum of the class file
+     */
+    public long getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * Sets the CRC32 checksum of the class file the entry was built from.
+     *
+     * @param checksum the checksum of the class file
+     */
+    public void setChecksum(long checksum) {
+        this.checksum = checksum;
+    }
+
+    /**
+     * Adds the field to the entry.
+     *
+     * @param field the field to add
+     */
+    public void addField(ClassIndexMember field) {
+        fields.add(field);
+    }
+
+    /**
+     * Adds the method to the entry.
+     *
+     * @param method the method to add
+     */
+    public void addMethod(ClassIndexMember method) {
+        methods.add(method);
+    }
+
+    /**
+     * Retrieves the indexed fields.
+     *
+     * @return the unmodifiable list of the indexed fields
+     */
+    public List<ClassIndexMember> getFields() {
+        return Collections.unmodifiableList(fields);
+    }
+
+    /**
+     * Retrieves the indexed methods.
+     *
+     * @return the unmodifiable list of the indexed methods
+     */
+    public List<ClassIndexMember> getMethods() {
+        return Collections.unmodifiableList(methods);
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb.reflection.index;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Loads the {@link ClassIndex class indexes} visible to a class loader. All the indexes found at {@link
+ * ClassIndex#INDEX_LOCATION} are merged, and the result is cached per class loader. The class loaders are
+ * referenced weakly, so that the cache never prevents them from being collected.
+ * <p/>
+ * An entry is returned only if the checksum of the class file it was built from matches the class file actually
+ * loaded, so a stale index can not lead to a wrong description of a class. Once checked, the entry is trusted.
+ * <p/>
+ * This class is thread safe.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+public final class ClassIndexLoader {
+
+    /**
+     * Logger used by this class.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(ClassIndexLoader.class);
+
+    /**
+     * Represents the name of the system property that allows to disable the use of the class indexes.
+     */
+    public static final String DISABLED_PROPERTY = "org.castor.jaxb.classIndex.disabled";
+
+    /**
+     * Represents the loaded indexes, by class loader.
+     */
+    private static final Map<ClassLoader, ClassIndex> INDEXES = new WeakHashMap<ClassLoader, ClassIndex>();
+
+    /**
+     * Creates new instance of {@link ClassIndexLoader} class. Private constructor prevents from instantiation
+     * outside this class.
+     */
+    private ClassIndexLoader() {
+        // empty constructor
+    }
+
+    /**
+     * Retrieves the index entry of the given class.
+     *
+     * @param type the class
+     *
+     * @return the index entry of the class, or null if the class is not indexed or its entry is out of date
+     */
+    public static ClassIndexEntry getEntry(Class<?> type) {
+
+        if (type.getClassLoader() == null || Boolean.getBoolean(DISABLED_PROPERTY)) {
+            return null;
+        }
+
+        ClassIndexEntry entry = getIndex(type.getClassLoader()).getEntry(type.getName());
+        if (entry != null && !isUpToDate(type, entry)) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Class index entry of " + type.getName()
+                        + " is out of date, the class will be introspected.");
+            }
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Checks whether the index entry was built from the class file of the given class.
+     *
+     * @param type  the class
+     * @param entry the index entry of the class
+     *
+     * @return true if the checksum of the class file matches the entry, false otherwise
+     */
+    private static boolean isUpToDate(Class<?> type, ClassIndexEntry entry) {
+
+        InputStream inputStream = type.getClassLoader().getResourceAsStream(type.getName().replace('.', '/')
+                + ".class");
+        if (inputStream == null) {
+            return false;
+        }
+
+        try {
+            try {
+                return ClassIndex.computeChecksum(inputStream) == entry.getChecksum();
+            } finally {
+                inputStream.close();
+            }
+        } catch (IOException e) {
+            LOG.warn("Unable to read the class file of " + type.getName() + ", the class will be introspected.", e);
+            return false;
+        }
+    }
+
+    /**
+     * Retrieves the merged index of all the indexes visible to the given class loader.
+     *
+     * @param classLoader the class loader
+     *
+     * @return the merged index, empty if there is none
+     */
+    public static ClassIndex getIndex(ClassLoader classLoader) {
+
+        synchronized (INDEXES) {
+            ClassIndex index = INDEXES.get(classLoader);
+
+            if (index == null) {
+                index = loadIndex(classLoader);
+                INDEXES.put(classLoader, index);
+            }
+
+            return index;
+        }
+    }
+
+    /**
+     * Loads and merges all the indexes visible to the given class loader. An index that can not be read is
+     * ignored, so the classes it lists are introspected as if they were not indexed.
+     *
+     * @param classLoader the class loader
+     *
+     * @return the merged index
+     */
+    private static ClassIndex loadIndex(ClassLoader classLoader) {
+
+        ClassIndex index = new ClassIndex();
+
+        try {
+            Enumeration<URL> resources = classLoader.getResources(ClassIndex.INDEX_LOCATION);
+            while (resources.hasMoreElements()) {
+                URL resource = resources.nextElement();
+
+                try {
+                    index.merge(readIndex(resource));
+                } catch (IOException e) {
+                    LOG.warn("Unable to read the class index " + resource + ", it will be ignored.", e);
+                }
+            }
+        } catch (IOException e) {
+            LOG.warn("Unable to look up the class indexes, the classes will be introspected.", e);
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Loaded class index of " + index.size() + " classes for " + classLoader + ".");
+        }
+        return index;
+    }
+
+    /**
+     * Reads the index from the given location.
+     *
+     * @param resource the location of the index
+     *
+     * @return the read index
+     *
+     * @throws IOException if any error occurs when reading the index
+     */
+    private static ClassIndex readIndex(URL resource) throws IOException {
+
+        InputStream inputStream = new BufferedInputStream(resource.openStream());
+        try {
+            return ClassIndex.read(inputStream);
+        } finally {
+            inputStream.close();
+        }
+    }
+}
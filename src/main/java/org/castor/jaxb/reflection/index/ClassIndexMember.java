@@ -0,0 +1,138 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb.reflection.index;
+
+import java.lang.reflect.Method;
+
+/**
+ * A field or a method of an indexed class. Methods are identified by their name and the names of their parameter
+ * types, as returned by {@link Class#getName()}.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+public final class ClassIndexMember {
+
+    /**
+     * Represents the member name.
+     */
+    private final String name;
+
+    /**
+     * Represents the names of the parameter types, null for a field.
+     */
+    private final String[] parameterTypes;
+
+    /**
+     * Represents whether the member is annotated.
+     */
+    private final boolean annotated;
+
+    /**
+     * Creates new instance of {@link ClassIndexMember} class.
+     *
+     * @param name           the member name
+     * @param parameterTypes the names of the parameter types, null for a field
+     * @param annotated      whether the member is annotated
+     *
+     * @throws IllegalArgumentException if name is null
+     */
+    public ClassIndexMember(String name, String[] parameterTypes, boolean annotated) {
+        if (name == null) {
+            throw new IllegalArgumentException("Argument 'name' can not be null.");
+        }
+
+        this.name = name;
+        this.parameterTypes = parameterTypes != null ? parameterTypes.clone() : null;
+        this.annotated = annotated;
+    }
+
+    /**
+     * Retrieves the member name.
+     *
+     * @return the member name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Retrieves the names of the parameter types.
+     *
+     * @return the names of the parameter types, null for a field
+     */
+    public String[] getParameterTypes() {
+        return parameterTypes != null ? parameterTypes.clone() : null;
+    }
+
+    /**
+     * Retrieves whether the member is annotated. The annotations of members that are not annotated do not need to
+     * be read at all.
+     *
+     * @return true if the member is annotated, false otherwise
+     */
+    public boolean isAnnotated() {
+        return annotated;
+    }
+
+    /**
+     * Retrieves the signature of this member: the name of a field, or the name of a method followed by the names of
+     * its parameter types.
+     *
+     * @return the signature of the member
+     */
+    public String getSignature() {
+        return parameterTypes != null ? getSignature(name, parameterTypes) : name;
+    }
+
+    /**
+     * Retrieves the signature of the given method, in the form returned by {@link #getSignature()}.
+     *
+     * @param method the method
+     *
+     * @return the signature of the method
+     */
+    public static String getSignature(Method method) {
+
+        Class<?>[] types = method.getParameterTypes();
+        String[] typeNames = new String[types.length];
+        for (int i = 0; i < types.length; i++) {
+            typeNames[i] = types[i].getName();
+        }
+
+        return getSignature(method.getName(), typeNames);
+    }
+
+    /**
+     * Builds the signature of a method.
+     *
+     * @param name           the method name
+     * @param parameterTypes the names of the parameter types
+     *
+     * @return the signature of the method
+     */
+    private static String getSignature(String name, String[] parameterTypes) {
+
+        StringBuilder signature = new StringBuilder(name).append('(');
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (i > 0) {
+                signature.append(',');
+            }
+            signature.append(parameterTypes[i]);
+        }
+        return signature.append(')').toString();
+    }
+}
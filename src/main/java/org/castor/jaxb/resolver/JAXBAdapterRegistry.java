@@ -19,11 +19,15 @@ package org.castor.jaxb.resolver;
 import org.springframework.stereotype.Component;
 
 import javax.xml.bind.annotation.adapters.XmlAdapter;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Stores all the registered adapters for the given marshaller.
+ * <p/>
+ * The adapters registered on a single marshaller or unmarshaller are bound to the current thread for the time it
+ * runs, through {@link #bindAdapters(Map)}, and take precedence over the adapters of the registry itself. This keeps
+ * them private to that marshaller even if the context is shared.
  *
  * @author Jakub Narloch, jmnarloch AT gmail DOT org
  * @version 1.0
@@ -34,17 +38,26 @@ public class JAXBAdapterRegistry {
     /**
      * Represents a map of adapter, where in entry is stored the adapter class and the registered instance.
      */
-    private final Map<Class, XmlAdapter> adapters = new HashMap<Class, XmlAdapter>();
+    private final Map<Class, XmlAdapter> adapters = new ConcurrentHashMap<Class, XmlAdapter>();
+
+    /**
+     * Represents the adapters bound to the current thread.
+     */
+    private final ThreadLocal<Map<Class, XmlAdapter>> boundAdapters = new ThreadLocal<Map<Class, XmlAdapter>>();
 
     /**
      * Adds the {@link XmlAdapter} instance to the registry.
      *
      * @param adapterClass the class of the adapter
-     * @param xmlAdapter the {@link XmlAdapter} instance
+     * @param xmlAdapter the {@link XmlAdapter} instance, or null to remove the registered instance
      */
     public void setAdapter(Class adapterClass, XmlAdapter xmlAdapter) {
 
-        adapters.put(adapterClass, xmlAdapter);
+        if (xmlAdapter == null) {
+            adapters.remove(adapterClass);
+        } else {
+            adapters.put(adapterClass, xmlAdapter);
+        }
     }
 
     /**
@@ -56,6 +69,42 @@ public class JAXBAdapterRegistry {
      */
     public XmlAdapter getAdapter(Class clazz) {
 
+        Map<Class, XmlAdapter> bound = boundAdapters.get();
+        if (bound != null) {
+            XmlAdapter xmlAdapter = bound.get(clazz);
+            if (xmlAdapter != null) {
+                return xmlAdapter;
+            }
+        }
         return adapters.get(clazz);
     }
+
+    /**
+     * Binds the adapters of a marshaller or unmarshaller to the current thread. The caller must restore the
+     * returned adapters with {@link #restoreAdapters(Map)} once it is done.
+     *
+     * @param xmlAdapters the adapters to bind, by adapter class
+     *
+     * @return the adapters previously bound to the current thread, may be null
+     */
+    public Map<Class, XmlAdapter> bindAdapters(Map<Class, XmlAdapter> xmlAdapters) {
+
+        Map<Class, XmlAdapter> previous = boundAdapters.get();
+        boundAdapters.set(xmlAdapters);
+        return previous;
+    }
+
+    /**
+     * Restores the adapters bound to the current thread before {@link #bindAdapters(Map)} was called.
+     *
+     * @param previous the adapters returned by {@link #bindAdapters(Map)}
+     */
+    public void restoreAdapters(Map<Class, XmlAdapter> previous) {
+
+        if (previous == null) {
+            boundAdapters.remove();
+        } else {
+            boundAdapters.set(previous);
+        }
+    }
 }
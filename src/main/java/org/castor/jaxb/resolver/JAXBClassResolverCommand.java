@@ -20,6 +20,10 @@ import java.util.Map;
 
 import org.castor.jaxb.reflection.ClassDescriptorBuilder;
 import org.castor.jaxb.reflection.ClassInfoBuilder;
+import org.castor.jaxb.reflection.ClassInfoCache;
+import org.castor.jaxb.reflection.index.ClassIndexEntry;
+import org.castor.jaxb.reflection.index.ClassIndexLoader;
+import org.castor.jaxb.reflection.info.ClassInfo;
 import org.exolab.castor.xml.ResolverException;
 import org.exolab.castor.xml.XMLClassDescriptor;
 import org.exolab.castor.xml.util.ResolverClassCommand;
@@ -59,6 +63,16 @@ public class JAXBClassResolverCommand implements ResolverClassCommand {
         this.classDescriptorBuilder = classDescriptorBuilder;
     }
 
+    /**
+     * The report recording the timings, may be null.
+     */
+    private JAXBStartupReport startupReport;
+
+    /**
+     * The cache of the class infos shared by the contexts, may be null.
+     */
+    private ClassInfoCache classInfoCache;
+
     /**
      * @param classInfoBuilder
      *            The Castor JAXB ClassInfo builder.
@@ -70,6 +84,24 @@ public class JAXBClassResolverCommand implements ResolverClassCommand {
         this.classInfoBuilder = classInfoBuilder;
     }
 
+    /**
+     * @param classInfoCache
+     *            The cache of the class infos shared by the contexts, may be
+     *            null.
+     */
+    public void setClassInfoCache(final ClassInfoCache classInfoCache) {
+        this.classInfoCache = classInfoCache;
+    }
+
+    /**
+     * @param startupReport
+     *            The report recording the time spent building every class
+     *            info and class descriptor, may be null.
+     */
+    public void setStartupReport(final JAXBStartupReport startupReport) {
+        this.startupReport = startupReport;
+    }
+
     /**
      * The one and only purpose resolver commands are good for ;-) . It can be
      * called with className and clazz set, so the command decides which suites
@@ -94,13 +126,51 @@ public class JAXBClassResolverCommand implements ResolverClassCommand {
         Class<?> clazz;
         try {
             clazz = Class.forName(clazzName);
-            XMLClassDescriptor cd = classDescriptorBuilder.buildClassDescriptor(classInfoBuilder.buildClassInfo(clazz),
-                    false);
-            hm.put(clazzName, cd);
+            hm.put(clazzName, resolve(clazz));
         } catch (ClassNotFoundException e) {
             String message = "Unable to load class for introspection. Exception: " + e;
             LOG.warn(message);
         }
         return hm;
     }
+
+    /**
+     * Builds the descriptor of an already loaded class. Unlike {@link #resolve(String, Map)} it does not need to
+     * load the class, so it works for the classes of any class loader. The class members are taken from the build
+     * time class index if the class is indexed, otherwise the class is introspected. The class info is shared
+     * with the other contexts through the class info cache, if there is one.
+     *
+     * @param clazz
+     *            the class to resolve
+     * @return the built XMLClassDescriptor
+     * @throws IllegalArgumentException
+     *             if clazz is null
+     */
+    public XMLClassDescriptor resolve(final Class<?> clazz) {
+        if (clazz == null) {
+            throw new IllegalArgumentException("Class to resolve must not be null.");
+        }
+        long start = System.nanoTime();
+        ClassInfo classInfo = classInfoCache != null ? classInfoCache.get(clazz) : null;
+        if (classInfo == null) {
+            ClassIndexEntry indexEntry = ClassIndexLoader.getEntry(clazz);
+            if (indexEntry != null) {
+                classInfo = classInfoBuilder.buildClassInfo(clazz, indexEntry);
+            }
+            if (classInfo == null) {
+                // the class is not indexed or its index entry is out of date
+                classInfo = classInfoBuilder.buildClassInfo(clazz);
+            }
+            if (classInfoCache != null) {
+                classInfo = classInfoCache.put(clazz, classInfo);
+            }
+        }
+        long classInfoEnd = System.nanoTime();
+        XMLClassDescriptor descriptor = classDescriptorBuilder.buildClassDescriptor(classInfo, false);
+        if (startupReport != null) {
+            startupReport.record(JAXBStartupReport.Phase.CLASS_INFO, clazz, classInfoEnd - start);
+            startupReport.record(JAXBStartupReport.Phase.CLASS_DESCRIPTOR, clazz, System.nanoTime() - classInfoEnd);
+        }
+        return descriptor;
+    }
 }
@@ -0,0 +1,379 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.castor.jaxb.resolver;
+
+import org.exolab.castor.xml.ResolverException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlElements;
+import javax.xml.bind.annotation.XmlSeeAlso;
+import javax.xml.bind.annotation.XmlTransient;
+import javax.xml.bind.annotation.adapters.XmlAdapter;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds, ahead of the first marshalling, the descriptors of all the classes reachable from a set of bound classes,
+ * and stores them in a {@link JAXBDescriptorRegistry}.
+ * <p/>
+ * The reachable classes are the bound classes, their super classes, the types of their fields and properties
+ * (including the element types of the collections and arrays), the classes listed by {@link XmlSeeAlso}, {@link
+ * XmlElement#type()} and {@link XmlElements}, and the types converted by the {@link XmlJavaTypeAdapter adapters}. The
+ * JDK classes, primitives, enums and interfaces are not described by descriptors and are skipped.
+ * <p/>
+ * The descriptors are built concurrently on the passed executor.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+public class JAXBDescriptorPrewarmer {
+
+    /**
+     * Logger used by this class.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(JAXBDescriptorPrewarmer.class);
+
+    /**
+     * Represents the command used for building the descriptors.
+     */
+    private final JAXBClassResolverCommand classResolverCommand;
+
+    /**
+     * Represents the registry to which the built descriptors are added.
+     */
+    private final JAXBDescriptorRegistry descriptorRegistry;
+
+    /**
+     * Creates new instance of {@link JAXBDescriptorPrewarmer} class.
+     *
+     * @param classResolverCommand the command used for building the descriptors
+     * @param descriptorRegistry   the registry to which the built descriptors are added
+     *
+     * @throws IllegalArgumentException if any of the arguments is null
+     */
+    public JAXBDescriptorPrewarmer(JAXBClassResolverCommand classResolverCommand,
+                                   JAXBDescriptorRegistry descriptorRegistry) {
+        if (classResolverCommand == null) {
+            throw new IllegalArgumentException("Argument 'classResolverCommand' can not be null.");
+        }
+        if (descriptorRegistry == null) {
+            throw new IllegalArgumentException("Argument 'descriptorRegistry' can not be null.");
+        }
+
+        this.classResolverCommand = classResolverCommand;
+        this.descriptorRegistry = descriptorRegistry;
+    }
+
+    /**
+     * Builds the descriptors of all the classes reachable from the given classes, which are not yet registered.
+     *
+     * @param classes  the bound classes
+     * @param executor the executor running the descriptor building
+     *
+     * @return the number of built descriptors
+     *
+     * @throws IllegalArgumentException if classes or executor is null
+     * @throws ResolverException        if building any of the descriptors fails
+     */
+    public int prewarm(Collection<Class<?>> classes, ExecutorService executor) throws ResolverException {
+        if (classes == null) {
+            throw new IllegalArgumentException("Argument 'classes' can not be null.");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("Argument 'executor' can not be null.");
+        }
+
+        List<Future<Object>> futures = new ArrayList<Future<Object>>();
+        for (final Class<?> clazz : collectBoundClasses(classes)) {
+            if (!descriptorRegistry.hasDescriptor(clazz.getName())) {
+                futures.add(executor.submit(new Callable<Object>() {
+                    public Object call() throws Exception {
+                        return descriptorRegistry.addDescriptor(clazz.getName(), classResolverCommand.resolve(clazz));
+                    }
+                }));
+            }
+        }
+
+        try {
+            for (Future<Object> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            cancel(futures);
+            throw new ResolverException("Error occurred when pre-warming the class descriptors.", e.getCause());
+        } catch (InterruptedException e) {
+            cancel(futures);
+            Thread.currentThread().interrupt();
+            throw new ResolverException("Interrupted when pre-warming the class descriptors.", e);
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Built " + futures.size() + " class descriptors ahead of time.");
+        }
+        return futures.size();
+    }
+
+    /**
+     * Creates an executor suitable for pre-warming, running on daemon threads, so that it never prevents the JVM
+     * from exiting.
+     *
+     * @param threads the number of threads
+     *
+     * @return the newly created executor
+     *
+     * @throws IllegalArgumentException if threads is not positive
+     */
+    public static ExecutorService createExecutor(int threads) {
+        return createExecutor(threads, "castor-jaxb-prewarm");
+    }
+
+    /**
+     * Creates an executor running on daemon threads, so that it never prevents the JVM from exiting.
+     *
+     * @param threads    the number of threads
+     * @param threadName the prefix of the thread names, followed by the thread number
+     *
+     * @return the newly created executor
+     *
+     * @throws IllegalArgumentException if threads is not positive
+     */
+    public static ExecutorService createExecutor(int threads, final String threadName) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Argument 'threads' must be positive.");
+        }
+
+        return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+            /**
+             * Represents the number of the created threads.
+             */
+            private final AtomicInteger count = new AtomicInteger();
+
+            /**
+             * {@inheritDoc}
+             */
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, threadName + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Collects all the classes reachable from the given classes that are described by class descriptors.
+     *
+     * @param classes the bound classes
+     *
+     * @return the set of reachable classes, in the order they have been discovered
+     */
+    public static Set<Class<?>> collectBoundClasses(Collection<Class<?>> classes) {
+
+        Set<Class<?>> boundClasses = new LinkedHashSet<Class<?>>();
+        LinkedList<Type> pending = new LinkedList<Type>(classes);
+
+        while (!pending.isEmpty()) {
+            Type type = pending.removeFirst();
+
+            if (type instanceof Class) {
+                Class<?> clazz = (Class<?>) type;
+
+                if (clazz.isArray()) {
+                    pending.add(clazz.getComponentType());
+                } else if (isDescribable(clazz) && boundClasses.add(clazz)) {
+                    collectReferencedTypes(clazz, pending);
+                }
+            } else if (type instanceof ParameterizedType) {
+                ParameterizedType parameterizedType = (ParameterizedType) type;
+                pending.add(parameterizedType.getRawType());
+                addAll(pending, parameterizedType.getActualTypeArguments());
+            } else if (type instanceof GenericArrayType) {
+                pending.add(((GenericArrayType) type).getGenericComponentType());
+            } else if (type instanceof WildcardType) {
+                addAll(pending, ((WildcardType) type).getUpperBounds());
+            } else if (type instanceof TypeVariable) {
+                addAll(pending, ((TypeVariable) type).getBounds());
+            }
+        }
+
+        return boundClasses;
+    }
+
+    /**
+     * Adds to the pending types all the types referenced by the given class.
+     *
+     * @param clazz   the class
+     * @param pending the pending types
+     */
+    private static void collectReferencedTypes(Class<?> clazz, List<Type> pending) {
+
+        if (clazz.getSuperclass() != null) {
+            pending.add(clazz.getSuperclass());
+        }
+
+        collectAnnotatedTypes(clazz, pending);
+
+        for (Field field : clazz.getDeclaredFields()) {
+            int modifiers = field.getModifiers();
+            if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !field.isSynthetic()
+                    && !field.isAnnotationPresent(XmlTransient.class)) {
+                pending.add(field.getGenericType());
+                collectAnnotatedTypes(field, pending);
+            }
+        }
+
+        for (Method method : clazz.getDeclaredMethods()) {
+            if (isGetter(method) && !method.isAnnotationPresent(XmlTransient.class)) {
+                pending.add(method.getGenericReturnType());
+                collectAnnotatedTypes(method, pending);
+            }
+        }
+    }
+
+    /**
+     * Adds to the pending types the types referenced by the JAXB annotations of the given element.
+     *
+     * @param element the annotated class, field or method
+     * @param pending the pending types
+     */
+    private static void collectAnnotatedTypes(AnnotatedElement element, List<Type> pending) {
+
+        XmlSeeAlso xmlSeeAlso = element.getAnnotation(XmlSeeAlso.class);
+        if (xmlSeeAlso != null) {
+            addAll(pending, xmlSeeAlso.value());
+        }
+
+        XmlElement xmlElement = element.getAnnotation(XmlElement.class);
+        if (xmlElement != null && xmlElement.type() != XmlElement.DEFAULT.class) {
+            pending.add(xmlElement.type());
+        }
+
+        XmlElements xmlElements = element.getAnnotation(XmlElements.class);
+        if (xmlElements != null) {
+            for (XmlElement typedElement : xmlElements.value()) {
+                if (typedElement.type() != XmlElement.DEFAULT.class) {
+                    pending.add(typedElement.type());
+                }
+            }
+        }
+
+        XmlJavaTypeAdapter xmlJavaTypeAdapter = element.getAnnotation(XmlJavaTypeAdapter.class);
+        if (xmlJavaTypeAdapter != null) {
+            addAll(pending, getAdaptedTypes(xmlJavaTypeAdapter.value()));
+        }
+    }
+
+    /**
+     * Retrieves the types converted by the given adapter, both the value and the bound type.
+     *
+     * @param adapterClass the adapter class
+     *
+     * @return the adapted types, empty if they can not be determined
+     */
+    private static Type[] getAdaptedTypes(Class<?> adapterClass) {
+
+        Class<?> clazz = adapterClass;
+        while (clazz != null && clazz != Object.class) {
+            Type superclass = clazz.getGenericSuperclass();
+
+            if (superclass instanceof ParameterizedType
+                    && ((ParameterizedType) superclass).getRawType() == XmlAdapter.class) {
+                return ((ParameterizedType) superclass).getActualTypeArguments();
+            }
+            clazz = clazz.getSuperclass();
+        }
+
+        return new Type[0];
+    }
+
+    /**
+     * Checks whether the method is a property getter.
+     *
+     * @param method the method to check
+     *
+     * @return true if the method is a property getter, false otherwise
+     */
+    private static boolean isGetter(Method method) {
+
+        String name = method.getName();
+        return !Modifier.isStatic(method.getModifiers()) && !method.isSynthetic() && !method.isBridge()
+                && method.getParameterTypes().length == 0 && method.getReturnType() != Void.TYPE
+                && (name.startsWith("get") && name.length() > 3 || name.startsWith("is") && name.length() > 2);
+    }
+
+    /**
+     * Checks whether the class is described by a class descriptor.
+     *
+     * @param clazz the class to check
+     *
+     * @return true if the class is described by a class descriptor, false otherwise
+     */
+    private static boolean isDescribable(Class<?> clazz) {
+
+        String name = clazz.getName();
+        return !clazz.isPrimitive() && !clazz.isInterface() && !clazz.isEnum() && !clazz.isAnonymousClass()
+                && !clazz.isLocalClass() && !name.startsWith("java.") && !name.startsWith("javax.");
+    }
+
+    /**
+     * Adds all the types to the pending types.
+     *
+     * @param pending the pending types
+     * @param types   the types to add
+     */
+    private static void addAll(List<Type> pending, Type[] types) {
+
+        for (Type type : types) {
+            pending.add(type);
+        }
+    }
+
+    /**
+     * Cancels all the pending tasks.
+     *
+     * @param futures the futures of the tasks
+     */
+    private static void cancel(List<Future<Object>> futures) {
+
+        for (Future<Object> future : futures) {
+            future.cancel(true);
+        }
+    }
+}
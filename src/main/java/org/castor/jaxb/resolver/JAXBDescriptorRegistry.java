@@ -0,0 +1,109 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.castor.jaxb.resolver;
+
+import org.exolab.castor.xml.XMLClassDescriptor;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Stores the class descriptors already built for a single context, keyed by the class name. The
+ * {@link JAXBResolverStrategy} consults the registry before building a descriptor, so that the descriptors built
+ * ahead of time, for instance by the {@link JAXBDescriptorPrewarmer}, are never built again.
+ * <p/>
+ * This class is thread safe.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+public class JAXBDescriptorRegistry {
+
+    /**
+     * Represents the map of the registered descriptors, where the key is the described class name.
+     */
+    private final ConcurrentMap<String, XMLClassDescriptor> descriptors =
+            new ConcurrentHashMap<String, XMLClassDescriptor>();
+
+    /**
+     * Adds the descriptor to the registry, unless a descriptor for the same class has already been registered.
+     *
+     * @param className  the name of the described class
+     * @param descriptor the descriptor to add
+     *
+     * @return the descriptor registered for the class
+     *
+     * @throws IllegalArgumentException if className or descriptor is null
+     */
+    public XMLClassDescriptor addDescriptor(String className, XMLClassDescriptor descriptor) {
+        if (className == null) {
+            throw new IllegalArgumentException("Argument 'className' can not be null.");
+        }
+        if (descriptor == null) {
+            throw new IllegalArgumentException("Argument 'descriptor' can not be null.");
+        }
+
+        XMLClassDescriptor registered = descriptors.putIfAbsent(className, descriptor);
+        return registered != null ? registered : descriptor;
+    }
+
+    /**
+     * Retrieves the descriptor registered for the given class name or null if there is none.
+     *
+     * @param className the name of the described class
+     *
+     * @return the registered descriptor or null
+     */
+    public XMLClassDescriptor getDescriptor(String className) {
+
+        return className != null ? descriptors.get(className) : null;
+    }
+
+    /**
+     * Checks whether a descriptor has been registered for the given class name.
+     *
+     * @param className the name of the described class
+     *
+     * @return true if the descriptor has been registered, false otherwise
+     */
+    public boolean hasDescriptor(String className) {
+
+        return className != null && descriptors.containsKey(className);
+    }
+
+    /**
+     * Retrieves all the registered descriptors.
+     *
+     * @return the unmodifiable view of the registered descriptors
+     */
+    public Collection<XMLClassDescriptor> getDescriptors() {
+
+        return Collections.unmodifiableCollection(descriptors.values());
+    }
+
+    /**
+     * Retrieves the number of registered descriptors.
+     *
+     * @return the number of registered descriptors
+     */
+    public int size() {
+
+        return descriptors.size();
+    }
+}
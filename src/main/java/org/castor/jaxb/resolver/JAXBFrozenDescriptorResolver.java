@@ -0,0 +1,483 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb.resolver;
+
+import org.castor.xml.InternalContext;
+import org.exolab.castor.mapping.ClassDescriptor;
+import org.exolab.castor.mapping.MappingLoader;
+import org.exolab.castor.xml.Introspector;
+import org.exolab.castor.xml.ResolverException;
+import org.exolab.castor.xml.XMLClassDescriptor;
+import org.exolab.castor.xml.XMLClassDescriptorResolver;
+import org.exolab.castor.xml.util.ResolverStrategy;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link XMLClassDescriptorResolver} serving the descriptors of a context whose set of descriptors no longer
+ * changes. The descriptors are copied into immutable open addressed tables, keyed by the described class and by its
+ * name, which are read without any synchronization.
+ * <p/>
+ * A class that is not in the tables is either rejected with a {@link ResolverException}, when the resolver is
+ * strict, or resolved by the wrapped resolver. The number of such misses and the time spent resolving them are
+ * recorded separately, so that an incomplete table can be spotted. The resolution by the XML name is always
+ * delegated to the wrapped resolver.
+ * <p/>
+ * The frozen resolver does not accept any new classes or packages.
+ * <p/>
+ * This class is thread safe.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+public class JAXBFrozenDescriptorResolver implements XMLClassDescriptorResolver {
+
+    /**
+     * Represents the wrapped resolver.
+     */
+    private final XMLClassDescriptorResolver resolver;
+
+    /**
+     * Represents the descriptors by the described class.
+     */
+    private final DescriptorTable classTable;
+
+    /**
+     * Represents the descriptors by the described class name.
+     */
+    private final DescriptorTable nameTable;
+
+    /**
+     * Represents whether the classes missing from the tables are rejected.
+     */
+    private final boolean strict;
+
+    /**
+     * Represents the number of lookups that missed the tables.
+     */
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Represents the time in nanoseconds spent resolving the lookups that missed the tables.
+     */
+    private final AtomicLong missTime = new AtomicLong();
+
+    /**
+     * Creates new instance of {@link JAXBFrozenDescriptorResolver} class.
+     *
+     * @param resolver    the wrapped resolver
+     * @param descriptors the descriptors to serve
+     * @param strict      whether the classes missing from the descriptors should be rejected
+     *
+     * @throws IllegalArgumentException if resolver or descriptors is null
+     */
+    public JAXBFrozenDescriptorResolver(XMLClassDescriptorResolver resolver,
+                                        Collection<XMLClassDescriptor> descriptors, boolean strict) {
+        if (resolver == null) {
+            throw new IllegalArgumentException("Argument 'resolver' can not be null.");
+        }
+        if (descriptors == null) {
+            throw new IllegalArgumentException("Argument 'descriptors' can not be null.");
+        }
+
+        this.resolver = resolver;
+        this.strict = strict;
+
+        classTable = new DescriptorTable(descriptors.size());
+        nameTable = new DescriptorTable(descriptors.size());
+        for (XMLClassDescriptor descriptor : descriptors) {
+            classTable.put(descriptor.getJavaClass(), descriptor);
+            nameTable.put(descriptor.getJavaClass().getName(), descriptor);
+        }
+    }
+
+    /**
+     * Retrieves the wrapped resolver.
+     *
+     * @return the wrapped resolver
+     */
+    public XMLClassDescriptorResolver getResolver() {
+        return resolver;
+    }
+
+    /**
+     * Retrieves whether the classes missing from the tables are rejected.
+     *
+     * @return true if the resolver is strict, false otherwise
+     */
+    public boolean isStrict() {
+        return strict;
+    }
+
+    /**
+     * Retrieves the number of the frozen descriptors.
+     *
+     * @return the number of the frozen descriptors
+     */
+    public int size() {
+        return classTable.size();
+    }
+
+    /**
+     * Retrieves the number of lookups that missed the frozen descriptors.
+     *
+     * @return the number of misses
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Retrieves the time spent resolving the lookups that missed the frozen descriptors.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getMissTime() {
+        return missTime.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public ClassDescriptor resolve(Class<?> type) throws ResolverException {
+
+        if (type == null) {
+            return null;
+        }
+
+        XMLClassDescriptor descriptor = classTable.get(type);
+        if (descriptor != null) {
+            return descriptor;
+        }
+
+        checkMiss(type.getName());
+        long start = System.nanoTime();
+        try {
+            return resolver.resolve(type);
+        } finally {
+            recordMiss(start);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public XMLClassDescriptor resolve(String className) throws ResolverException {
+        return resolve(className, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The class loader is only used for the classes missing from the frozen descriptors.
+     */
+    public XMLClassDescriptor resolve(String className, ClassLoader loader) throws ResolverException {
+
+        if (className == null) {
+            return null;
+        }
+
+        XMLClassDescriptor descriptor = nameTable.get(className);
+        if (descriptor != null) {
+            return descriptor;
+        }
+
+        checkMiss(className);
+        long start = System.nanoTime();
+        try {
+            return resolver.resolve(className, loader);
+        } finally {
+            recordMiss(start);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public XMLClassDescriptor resolveByXMLName(String xmlName, String namespaceURI, ClassLoader loader)
+            throws ResolverException {
+        return resolver.resolveByXMLName(xmlName, namespaceURI, loader);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Iterator<ClassDescriptor> resolveAllByXMLName(String xmlName, String namespaceURI, ClassLoader loader)
+            throws ResolverException {
+        return resolver.resolveAllByXMLName(xmlName, namespaceURI, loader);
+    }
+
+    /**
+     * Rejects the class missing from the frozen descriptors if the resolver is strict.
+     *
+     * @param className the name of the missing class
+     *
+     * @throws ResolverException if the resolver is strict
+     */
+    private void checkMiss(String className) throws ResolverException {
+
+        if (strict) {
+            throw new ResolverException("Class " + className + " is not bound to the frozen context.");
+        }
+    }
+
+    /**
+     * Records a lookup that missed the frozen descriptors.
+     *
+     * @param start the time the lookup started at, in nanoseconds
+     */
+    private void recordMiss(long start) {
+
+        missCount.incrementAndGet();
+        missTime.addAndGet(System.nanoTime() - start);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setInternalContext(InternalContext internalContext) {
+        resolver.setInternalContext(internalContext);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setUseIntrospection(boolean enable) {
+        resolver.setUseIntrospection(enable);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setLoadPackageMappings(boolean enable) {
+        resolver.setLoadPackageMappings(enable);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setClassLoader(ClassLoader loader) {
+        resolver.setClassLoader(loader);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setResolverStrategy(ResolverStrategy resolverStrategy) {
+        resolver.setResolverStrategy(resolverStrategy);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setIntrospector(Introspector introspector) {
+        resolver.setIntrospector(introspector);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public MappingLoader getMappingLoader() {
+        return resolver.getMappingLoader();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setMappingLoader(MappingLoader mappingLoader) {
+        resolver.setMappingLoader(mappingLoader);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void addClass(String className) throws ResolverException {
+        throw frozen();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void addClasses(String[] classNames) throws ResolverException {
+        throw frozen();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void addClass(Class<?> clazz) throws ResolverException {
+        throw frozen();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void addClasses(Class<?>[] clazzes) throws ResolverException {
+        throw frozen();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void addPackage(String packageName) throws ResolverException {
+        throw frozen();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void addPackages(String[] packageNames) throws ResolverException {
+        throw frozen();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @deprecated the resolver interface deprecates this method, use {@link #addPackage(String)} instead
+     */
+    @Deprecated
+    public void loadClassDescriptors(String packageName) throws ResolverException {
+        throw frozen();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void cleanDescriptorCache() {
+        resolver.cleanDescriptorCache();
+    }
+
+    /**
+     * Creates the exception thrown when adding the classes to the frozen resolver.
+     *
+     * @return the created exception
+     */
+    private static IllegalStateException frozen() {
+        return new IllegalStateException("The descriptors are frozen, no classes can be added.");
+    }
+
+    /**
+     * An immutable open addressed hash table of the descriptors, using linear probing. The keys are compared with
+     * {@link Object#equals(Object)}, which for the classes is the identity.
+     */
+    private static final class DescriptorTable {
+
+        /**
+         * Represents the keys, null marking a free slot.
+         */
+        private final Object[] keys;
+
+        /**
+         * Represents the descriptors, at the slots of their keys.
+         */
+        private final XMLClassDescriptor[] values;
+
+        /**
+         * Represents the mask of the slot index, the table length being a power of two.
+         */
+        private final int mask;
+
+        /**
+         * Represents the number of the stored descriptors.
+         */
+        private int size;
+
+        /**
+         * Creates new instance of {@link DescriptorTable} class, large enough to keep its load factor at most one
+         * half.
+         *
+         * @param expectedSize the expected number of descriptors
+         */
+        private DescriptorTable(int expectedSize) {
+
+            int capacity = 2;
+            while (capacity < expectedSize * 2) {
+                capacity <<= 1;
+            }
+
+            keys = new Object[capacity];
+            values = new XMLClassDescriptor[capacity];
+            mask = capacity - 1;
+        }
+
+        /**
+         * Stores the descriptor, unless the key is already present. Called only while the table is being built.
+         *
+         * @param key        the key
+         * @param descriptor the descriptor
+         */
+        private void put(Object key, XMLClassDescriptor descriptor) {
+
+            int index = indexOf(key);
+            while (keys[index] != null) {
+                if (keys[index].equals(key)) {
+                    return;
+                }
+                index = (index + 1) & mask;
+            }
+
+            keys[index] = key;
+            values[index] = descriptor;
+            size++;
+        }
+
+        /**
+         * Retrieves the descriptor stored under the given key.
+         *
+         * @param key the key
+         *
+         * @return the descriptor, or null if there is none
+         */
+        private XMLClassDescriptor get(Object key) {
+
+            int index = indexOf(key);
+            Object candidate;
+            while ((candidate = keys[index]) != null) {
+                if (candidate == key || candidate.equals(key)) {
+                    return values[index];
+                }
+                index = (index + 1) & mask;
+            }
+            return null;
+        }
+
+        /**
+         * Retrieves the number of the stored descriptors.
+         *
+         * @return the number of the stored descriptors
+         */
+        private int size() {
+            return size;
+        }
+
+        /**
+         * Retrieves the home slot of the given key.
+         *
+         * @param key the key
+         *
+         * @return the slot index
+         */
+        private int indexOf(Object key) {
+
+            int hash = key.hashCode();
+            // mixes the hash code, so that similar ones, like those of the related class names, do not cluster
+            hash ^= (hash >>> 16);
+            return (hash * 0x9E3779B9) & mask;
+        }
+    }
+}
@@ -15,24 +15,24 @@
  */
 package org.castor.jaxb.resolver;
 
-import java.io.File;
 import java.io.IOException;
-import java.net.URISyntaxException;
-import java.net.URL;
 import java.util.ArrayList;
-import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
-import org.castor.jaxb.reflection.ClassDescriptorBuilder;
-import org.castor.jaxb.reflection.ClassInfoBuilder;
 import org.exolab.castor.xml.ResolverException;
 import org.exolab.castor.xml.XMLClassDescriptor;
 import org.exolab.castor.xml.util.ResolverPackageCommand;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 /**
@@ -43,34 +43,102 @@ public class JAXBPackageResolverCommand implements ResolverPackageCommand {
     public final Logger LOG = LoggerFactory.getLogger(this.getClass());
 
     /**
-     * Castor JAXB ClassDescriptor builder.
+     * The default minimal number of classes in a package for which the
+     * descriptors are built in parallel.
      */
-    private ClassDescriptorBuilder classDescriptorBuilder;
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 16;
+
+    /**
+     * The command building the descriptor of every package class.
+     */
+    @Autowired
+    private JAXBClassResolverCommand classResolverCommand;
+
+    /**
+     * The executor building the descriptors of the package classes, may be null.
+     */
+    private ExecutorService executor;
+
+    /**
+     * The number of threads building the descriptors if no executor is set.
+     */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The minimal number of classes in a package for which the descriptors are
+     * built in parallel.
+     */
+    private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+    /**
+     * The class loader to load the package classes with, may be null.
+     */
+    private ClassLoader classLoader;
+
     /**
-     * Castor JAXB ClassInfo builder.
+     * The report recording the timings, may be null.
      */
-    private ClassInfoBuilder classInfoBuilder;
+    private JAXBStartupReport startupReport;
 
     /**
-     * @param classDescriptorBuilder
-     *            The Castor JAXB ClassDescriptor builder.
+     * @param classResolverCommand
+     *            The command building the descriptor of every package class,
+     *            with its class info cache and startup report.
      */
-    public void setClassDescriptorBuilder(final ClassDescriptorBuilder classDescriptorBuilder) {
-        if (classDescriptorBuilder == null) {
-            throw new IllegalArgumentException("ClassDescriptorBuilder must not be set to null.");
+    public void setClassResolverCommand(final JAXBClassResolverCommand classResolverCommand) {
+        if (classResolverCommand == null) {
+            throw new IllegalArgumentException("ClassResolverCommand must not be set to null.");
         }
-        this.classDescriptorBuilder = classDescriptorBuilder;
+        this.classResolverCommand = classResolverCommand;
     }
 
     /**
-     * @param classInfoBuilder
-     *            The Castor JAXB ClassInfo builder.
+     * @param executor
+     *            The executor building the descriptors of the package classes.
+     *            It is not shut down by this command. If null, a thread pool is
+     *            created for every package large enough to be built in parallel.
      */
-    public void setClassInfoBuilder(final ClassInfoBuilder classInfoBuilder) {
-        if (classInfoBuilder == null) {
-            throw new IllegalArgumentException("ClassInfoBuilder must not be set to null.");
+    public void setExecutor(final ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @param threads
+     *            The number of threads building the descriptors if no executor
+     *            is set, 1 to build them in the calling thread.
+     */
+    public void setThreads(final int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Threads must be positive.");
         }
-        this.classInfoBuilder = classInfoBuilder;
+        this.threads = threads;
+    }
+
+    /**
+     * @param parallelThreshold
+     *            The minimal number of classes in a package for which the
+     *            descriptors are built in parallel.
+     */
+    public void setParallelThreshold(final int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * @param classLoader
+     *            The class loader to load the package classes with. If null,
+     *            the context class loader of the current thread is used.
+     */
+    public void setClassLoader(final ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * @param startupReport
+     *            The report recording the time spent scanning the packages,
+     *            may be null.
+     */
+    public void setStartupReport(final JAXBStartupReport startupReport) {
+        this.startupReport = startupReport;
     }
 
     /**
@@ -90,13 +158,31 @@ public class JAXBPackageResolverCommand implements ResolverPackageCommand {
      */
     public Map<String, XMLClassDescriptor> resolve(final String packageName, final Map properties)
             throws ResolverException {
+        return resolve(packageName, properties, null);
+    }
+
+    /**
+     * Resolves the package like {@link #resolve(String, Map)}, but takes the
+     * descriptors of the classes already in the given registry from there
+     * instead of building them again.
+     * 
+     * @param packageName
+     *            the name of the package to resolve
+     * @param properties
+     *            the Properties to be used at resolve
+     * @param descriptorRegistry
+     *            the registry of the descriptors already built, may be null
+     * 
+     * @return a Map of className and XMLClassDescriptor
+     * 
+     * @throws ResolverException
+     *             in case that resolving fails fatally
+     */
+    public Map<String, XMLClassDescriptor> resolve(final String packageName, final Map properties,
+            final JAXBDescriptorRegistry descriptorRegistry) throws ResolverException {
 
-        String className;
-        String fileName;
-        String dirName;
         String packageToken;
-        Class clazz;
-        Enumeration<URL> resources;
+        List<Class<?>> classes = new ArrayList<Class<?>>();
         Map<String, XMLClassDescriptor> result = new HashMap<String, XMLClassDescriptor>();
 
         if ((packageName == null) || (packageName.length() == 0)) {
@@ -108,48 +194,123 @@ public class JAXBPackageResolverCommand implements ResolverPackageCommand {
 
         try {
             StringTokenizer packages = new StringTokenizer(packageName, ":");
-            ClassLoader classLoader = getClass().getClassLoader();
+            ClassLoader loader = getClassLoader();
+            long start = System.nanoTime();
             while (packages.hasMoreTokens()) {
-                packageToken = packages.nextToken();
-                dirName = packageToken.replace('.', '/');
-
-                resources = classLoader.getResources(dirName);
+                packageToken = packages.nextToken().trim();
 
-                List<File> dirs = new ArrayList<File>();
-                while (resources.hasMoreElements()) {
-                    URL resourceUrl = resources.nextElement();
-                    dirs.add(new File(resourceUrl.toURI()));
+                if (packageToken.length() > 0) {
+                    classes.addAll(JAXBPackageScanner.getClasses(packageToken, loader));
                 }
+            }
+            if (startupReport != null) {
+                startupReport.record(JAXBStartupReport.Phase.PACKAGE_SCAN, System.nanoTime() - start);
+            }
 
-                for (File dir : dirs) {
-                    for (File file : dir.listFiles()) {
-
-                        if (file.getName().endsWith(".class")) {
-                            fileName = file.getName();
-                            className = new StringBuffer().append(packageName).append('.')
-                                    .append(fileName.substring(0, fileName.length() - 6)).toString();
-
-                            clazz = Class.forName(className);
-
-                            XMLClassDescriptor descriptor = classDescriptorBuilder.buildClassDescriptor(
-                                    classInfoBuilder.buildClassInfo(clazz), false);
-
-                            result.put(className, descriptor);
-                        }
+            if (descriptorRegistry != null) {
+                for (Iterator<Class<?>> iterator = classes.iterator(); iterator.hasNext();) {
+                    String className = iterator.next().getName();
+                    XMLClassDescriptor descriptor = descriptorRegistry.getDescriptor(className);
+                    if (descriptor != null) {
+                        result.put(className, descriptor);
+                        iterator.remove();
                     }
                 }
             }
+            result.putAll(buildDescriptors(classes));
 
             return result;
         } catch (IOException e) {
 
-            throw new ResolverException("Exception occurred when resolving package: " + packageName, e);
-        } catch (URISyntaxException e) {
-
             throw new ResolverException("Exception occurred when resolving package: " + packageName, e);
         } catch (ClassNotFoundException e) {
 
             throw new ResolverException("Exception occurred when resolving package: " + packageName, e);
         }
     }
+
+    /**
+     * Retrieves the class loader to load the package classes with.
+     *
+     * @return the configured class loader, the context class loader of the
+     *         current thread or the class loader of this class, in that order
+     */
+    private ClassLoader getClassLoader() {
+        if (classLoader != null) {
+            return classLoader;
+        }
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        return contextClassLoader != null ? contextClassLoader : getClass().getClassLoader();
+    }
+
+    /**
+     * Builds the descriptors of the given classes. The classes are built
+     * concurrently, in the configured executor, unless there are fewer of them
+     * than the parallel threshold or a single thread is configured.
+     *
+     * @param classes
+     *            the classes to build the descriptors of
+     *
+     * @return a Map of className and XMLClassDescriptor
+     *
+     * @throws ResolverException
+     *             in case that building any descriptor fails
+     */
+    private Map<String, XMLClassDescriptor> buildDescriptors(final List<Class<?>> classes)
+            throws ResolverException {
+
+        Map<String, XMLClassDescriptor> result = new HashMap<String, XMLClassDescriptor>();
+
+        if (classes.size() < parallelThreshold || (executor == null && threads == 1)) {
+            for (Class<?> clazz : classes) {
+                result.put(clazz.getName(), classResolverCommand.resolve(clazz));
+            }
+            return result;
+        }
+
+        ExecutorService service = executor != null ? executor
+                : JAXBDescriptorPrewarmer.createExecutor(threads, "castor-jaxb-package");
+        List<Future<XMLClassDescriptor>> futures = new ArrayList<Future<XMLClassDescriptor>>(classes.size());
+        try {
+            for (final Class<?> clazz : classes) {
+                futures.add(service.submit(new Callable<XMLClassDescriptor>() {
+                    public XMLClassDescriptor call() {
+                        return classResolverCommand.resolve(clazz);
+                    }
+                }));
+            }
+
+            for (int i = 0; i < classes.size(); i++) {
+                result.put(classes.get(i).getName(), futures.get(i).get());
+            }
+        } catch (ExecutionException e) {
+            cancel(futures);
+            throw new ResolverException("Exception occurred when building descriptors in parallel.", e.getCause());
+        } catch (InterruptedException e) {
+            cancel(futures);
+            Thread.currentThread().interrupt();
+            throw new ResolverException("Interrupted when building descriptors in parallel.", e);
+        } finally {
+            if (service != executor) {
+                service.shutdown();
+            }
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Built " + result.size() + " descriptors in parallel.");
+        }
+        return result;
+    }
+
+    /**
+     * Cancels all the pending tasks.
+     *
+     * @param futures
+     *            the futures of the tasks
+     */
+    private static void cancel(final List<Future<XMLClassDescriptor>> futures) {
+        for (Future<XMLClassDescriptor> future : futures) {
+            future.cancel(true);
+        }
+    }
 }
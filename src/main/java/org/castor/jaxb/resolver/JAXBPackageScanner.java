@@ -0,0 +1,392 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb.resolver;
+
+import org.castor.jaxb.reflection.accessor.JAXBAccessorFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.bind.JAXBElement;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Lists the classes of a package, as bound by a JAXB context path.
+ * <p/>
+ * The classes are taken, in that order, from:
+ * <ol>
+ * <li>the <code>jaxb.index</code> resource of the package, listing the class names relative to the package, one per
+ * line,</li>
+ * <li>the <code>ObjectFactory</code> class of the package, whose factory methods return the bound classes,</li>
+ * <li>the class files of the package, found in both directories and jar files.</li>
+ * </ol>
+ * Only the first two sources are used when the package provides any of them, otherwise the package is scanned. The
+ * listing is cached per class loader, which is referenced weakly, so that the cache never prevents it from being
+ * collected.
+ * <p/>
+ * This class is thread safe.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+public final class JAXBPackageScanner {
+
+    /**
+     * Logger used by this class.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(JAXBPackageScanner.class);
+
+    /**
+     * Represents the name of the index resource.
+     */
+    public static final String INDEX_NAME = "jaxb.index";
+
+    /**
+     * Represents the simple name of the object factory class.
+     */
+    public static final String OBJECT_FACTORY_NAME = "ObjectFactory";
+
+    /**
+     * Represents the suffix of the class files.
+     */
+    private static final String CLASS_SUFFIX = ".class";
+
+    /**
+     * Represents the name of the package-info class.
+     */
+    private static final String PACKAGE_INFO_NAME = "package-info";
+
+    /**
+     * Represents the listed class names, by class loader and package name.
+     */
+    private static final Map<ClassLoader, Map<String, List<String>>> CACHE =
+            new WeakHashMap<ClassLoader, Map<String, List<String>>>();
+
+    /**
+     * Creates new instance of {@link JAXBPackageScanner} class. Private constructor prevents from instantiation
+     * outside this class.
+     */
+    private JAXBPackageScanner() {
+        // empty constructor
+    }
+
+    /**
+     * Retrieves the classes of the given package.
+     *
+     * @param packageName the package name
+     * @param classLoader the class loader to use
+     *
+     * @return the list of the classes of the package
+     *
+     * @throws IOException            if any error occurs when reading the package resources
+     * @throws ClassNotFoundException if any of the listed classes can not be loaded
+     */
+    public static List<Class<?>> getClasses(String packageName, ClassLoader classLoader)
+            throws IOException, ClassNotFoundException {
+
+        List<Class<?>> classes = new ArrayList<Class<?>>();
+        for (String className : getClassNames(packageName, classLoader)) {
+            classes.add(Class.forName(className, true, classLoader));
+        }
+        return classes;
+    }
+
+    /**
+     * Retrieves the names of the classes of the given package.
+     *
+     * @param packageName the package name
+     * @param classLoader the class loader to use
+     *
+     * @return the unmodifiable list of the class names
+     *
+     * @throws IOException if any error occurs when reading the package resources
+     */
+    public static List<String> getClassNames(String packageName, ClassLoader classLoader) throws IOException {
+        if (packageName == null) {
+            throw new IllegalArgumentException("Argument 'packageName' can not be null.");
+        }
+        if (classLoader == null) {
+            throw new IllegalArgumentException("Argument 'classLoader' can not be null.");
+        }
+
+        synchronized (CACHE) {
+            Map<String, List<String>> packages = CACHE.get(classLoader);
+            List<String> classNames = packages != null ? packages.get(packageName) : null;
+            if (classNames != null) {
+                return classNames;
+            }
+        }
+
+        // the package is listed outside of the lock, concurrent listings of the same package yield the same result
+        List<String> classNames = Collections.unmodifiableList(listClassNames(packageName, classLoader));
+
+        synchronized (CACHE) {
+            Map<String, List<String>> packages = CACHE.get(classLoader);
+            if (packages == null) {
+                packages = new HashMap<String, List<String>>();
+                CACHE.put(classLoader, packages);
+            }
+            packages.put(packageName, classNames);
+        }
+        return classNames;
+    }
+
+    /**
+     * Clears the cached listings.
+     */
+    public static void clearCache() {
+
+        synchronized (CACHE) {
+            CACHE.clear();
+        }
+    }
+
+    /**
+     * Lists the names of the classes of the given package.
+     *
+     * @param packageName the package name
+     * @param classLoader the class loader to use
+     *
+     * @return the list of the class names
+     *
+     * @throws IOException if any error occurs when reading the package resources
+     */
+    private static List<String> listClassNames(String packageName, ClassLoader classLoader) throws IOException {
+
+        Set<String> classNames = new LinkedHashSet<String>();
+        String path = packageName.replace('.', '/');
+
+        readIndex(classNames, packageName, classLoader.getResource(path + '/' + INDEX_NAME));
+        readObjectFactory(classNames, packageName, classLoader);
+
+        if (classNames.isEmpty()) {
+            Enumeration<URL> resources = classLoader.getResources(path);
+            while (resources.hasMoreElements()) {
+                scan(classNames, packageName, path, resources.nextElement());
+            }
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Found " + classNames.size() + " classes in package " + packageName + ".");
+        }
+        return new ArrayList<String>(classNames);
+    }
+
+    /**
+     * Reads the class names listed by the given index.
+     *
+     * @param classNames  the class names to add to
+     * @param packageName the package name
+     * @param index       the location of the index, may be null
+     *
+     * @throws IOException if any error occurs when reading the index
+     */
+    private static void readIndex(Set<String> classNames, String packageName, URL index) throws IOException {
+
+        if (index == null) {
+            return;
+        }
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(openStream(index), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int comment = line.indexOf('#');
+                String name = (comment != -1 ? line.substring(0, comment) : line).trim();
+
+                if (name.length() > 0) {
+                    // nested classes are listed with their canonical names
+                    classNames.add(packageName + '.' + name.replace('.', '$'));
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Reads the classes created by the object factory of the package, if there is one.
+     *
+     * @param classNames  the class names to add to
+     * @param packageName the package name
+     * @param classLoader the class loader to use
+     */
+    private static void readObjectFactory(Set<String> classNames, String packageName, ClassLoader classLoader) {
+
+        Class<?> objectFactory;
+        try {
+            objectFactory = Class.forName(packageName + '.' + OBJECT_FACTORY_NAME, false, classLoader);
+        } catch (ClassNotFoundException e) {
+            return;
+        }
+
+        for (Method method : objectFactory.getDeclaredMethods()) {
+            Class<?> returnType = method.getReturnType();
+
+            if (Modifier.isPublic(method.getModifiers()) && method.getName().startsWith("create")
+                    && method.getParameterTypes().length == 0 && !returnType.isPrimitive()
+                    && !JAXBElement.class.isAssignableFrom(returnType)) {
+                classNames.add(returnType.getName());
+            }
+        }
+    }
+
+    /**
+     * Scans the class files of the package found at the given location.
+     *
+     * @param classNames  the class names to add to
+     * @param packageName the package name
+     * @param path        the path of the package
+     * @param resource    the location of the package
+     *
+     * @throws IOException if any error occurs when scanning the location
+     */
+    private static void scan(Set<String> classNames, String packageName, String path, URL resource)
+            throws IOException {
+
+        if ("file".equals(resource.getProtocol())) {
+            File[] files;
+            try {
+                files = new File(resource.toURI()).listFiles();
+            } catch (URISyntaxException e) {
+                throw new IOException("Invalid package location " + resource + ": " + e.getMessage());
+            }
+
+            if (files != null) {
+                for (File file : files) {
+                    if (file.isFile()) {
+                        addClassName(classNames, packageName, file.getName());
+                    }
+                }
+            }
+        } else {
+            URLConnection connection = resource.openConnection();
+            if (connection instanceof JarURLConnection) {
+                scanJar(classNames, packageName, path, (JarURLConnection) connection);
+            } else {
+                LOG.warn("Unable to scan package " + packageName + " at " + resource + ", unsupported location.");
+            }
+        }
+    }
+
+    /**
+     * Scans the class files of the package found in a jar file.
+     *
+     * @param classNames  the class names to add to
+     * @param packageName the package name
+     * @param path        the path of the package
+     * @param connection  the connection to the package location in the jar file
+     *
+     * @throws IOException if any error occurs when reading the jar file
+     */
+    private static void scanJar(Set<String> classNames, String packageName, String path,
+                                JarURLConnection connection) throws IOException {
+
+        // caching is disabled so that closing the file does not affect the class loader reading from it
+        connection.setUseCaches(false);
+        JarFile jarFile = connection.getJarFile();
+        try {
+            String prefix = path + '/';
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                String name = entries.nextElement().getName();
+
+                if (name.startsWith(prefix) && name.indexOf('/', prefix.length()) == -1) {
+                    addClassName(classNames, packageName, name.substring(prefix.length()));
+                }
+            }
+        } finally {
+            jarFile.close();
+        }
+    }
+
+    /**
+     * Adds the name of the class stored in the given file, unless it is not a class which may be bound, such as the
+     * accessors generated for the bound classes.
+     *
+     * @param classNames  the class names to add to
+     * @param packageName the package name
+     * @param fileName    the file name, relative to the package
+     */
+    private static void addClassName(Set<String> classNames, String packageName, String fileName) {
+
+        if (!fileName.endsWith(CLASS_SUFFIX)) {
+            return;
+        }
+
+        String simpleName = fileName.substring(0, fileName.length() - CLASS_SUFFIX.length());
+        if (PACKAGE_INFO_NAME.equals(simpleName) || isAnonymous(simpleName)
+                || simpleName.endsWith(JAXBAccessorFactory.CLASS_NAME_SUFFIX)) {
+            return;
+        }
+        classNames.add(packageName + '.' + simpleName);
+    }
+
+    /**
+     * Checks whether the given binary simple name denotes an anonymous or a local class.
+     *
+     * @param simpleName the simple name
+     *
+     * @return true if the class is anonymous or local, false otherwise
+     */
+    private static boolean isAnonymous(String simpleName) {
+
+        int index = simpleName.indexOf('$');
+        while (index != -1) {
+            if (index + 1 < simpleName.length() && Character.isDigit(simpleName.charAt(index + 1))) {
+                return true;
+            }
+            index = simpleName.indexOf('$', index + 1);
+        }
+        return false;
+    }
+
+    /**
+     * Opens the stream of the given resource, bypassing the URL caches.
+     *
+     * @param resource the resource
+     *
+     * @return the stream of the resource
+     *
+     * @throws IOException if any error occurs when opening the stream
+     */
+    private static InputStream openStream(URL resource) throws IOException {
+
+        URLConnection connection = resource.openConnection();
+        connection.setUseCaches(false);
+        return connection.getInputStream();
+    }
+}
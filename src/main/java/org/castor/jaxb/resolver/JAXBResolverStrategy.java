@@ -46,6 +46,11 @@ public class JAXBResolverStrategy implements ResolverStrategy {
     @Autowired
     private JAXBPackageResolverCommand packageResolverCommand;
 
+    /**
+     * The registry of the descriptors already built for the context, may be null.
+     */
+    private JAXBDescriptorRegistry descriptorRegistry;
+
     /**
      * {@inheritDoc}
      */
@@ -64,14 +69,23 @@ public class JAXBResolverStrategy implements ResolverStrategy {
         }
         XMLClassDescriptor descriptor = null;
 
+        if (descriptorRegistry != null) {
+            descriptor = descriptorRegistry.getDescriptor(className);
+            if (descriptor != null) {
+                resolverResults.addDescriptor(className, descriptor);
+                return descriptor;
+            }
+        }
+
 //        resolverResults.addAllDescriptors(new ByDescriptorClass().resolve(className, _properties));
 //        descriptor = resolverResults.getDescriptor(className);
 //        if (descriptor != null) {
 //            return descriptor;
 //        }
 
-        resolverResults.addAllDescriptors(
-                classResolverCommand.resolve(className, properties));
+        Map<String, XMLClassDescriptor> descriptors = classResolverCommand.resolve(className, properties);
+        register(descriptors);
+        resolverResults.addAllDescriptors(descriptors);
         descriptor = resolverResults.getDescriptor(className);
 
         return descriptor;
@@ -93,8 +107,23 @@ public class JAXBResolverStrategy implements ResolverStrategy {
             LOG.warn(message);
             throw new IllegalArgumentException(message);
         }
-        resolverResults.addAllDescriptors(
-                packageResolverCommand.resolve(packageName, properties));
+        Map<String, XMLClassDescriptor> descriptors = packageResolverCommand.resolve(packageName, properties,
+                descriptorRegistry);
+        register(descriptors);
+        resolverResults.addAllDescriptors(descriptors);
+    }
+
+    /**
+     * Adds the resolved descriptors to the descriptor registry, if there is one.
+     *
+     * @param descriptors the resolved descriptors
+     */
+    private void register(final Map<String, XMLClassDescriptor> descriptors) {
+        if (descriptorRegistry != null) {
+            for (Map.Entry<String, XMLClassDescriptor> entry : descriptors.entrySet()) {
+                descriptorRegistry.addDescriptor(entry.getKey(), entry.getValue());
+            }
+        }
     }
 
     /**
@@ -111,4 +140,34 @@ public class JAXBResolverStrategy implements ResolverStrategy {
     public void setPackageResolverCommand(JAXBPackageResolverCommand packageResolverCommand) {
         this.packageResolverCommand = packageResolverCommand;
     }
+
+    /**
+     * @param descriptorRegistry
+     *            The registry consulted before a descriptor is built and
+     *            filled with every descriptor built.
+     */
+    public void setDescriptorRegistry(JAXBDescriptorRegistry descriptorRegistry) {
+        this.descriptorRegistry = descriptorRegistry;
+    }
+
+    /**
+     * @return The registry of the descriptors already built, may be null.
+     */
+    public JAXBDescriptorRegistry getDescriptorRegistry() {
+        return descriptorRegistry;
+    }
+
+    /**
+     * @return The command used for resolving a single class.
+     */
+    public JAXBClassResolverCommand getClassResolverCommand() {
+        return classResolverCommand;
+    }
+
+    /**
+     * @return The command used for resolving a package.
+     */
+    public JAXBPackageResolverCommand getPackageResolverCommand() {
+        return packageResolverCommand;
+    }
 }
@@ -0,0 +1,351 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb.resolver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Collects the time spent in the phases of the creation of a context, and the time spent introspecting every
+ * single bound class.
+ * <p/>
+ * The times of the phases running in several threads, like building the class infos and the class descriptors, are
+ * cumulative over all the threads, so they may exceed the elapsed time of the phase containing them.
+ * <p/>
+ * This class is thread safe.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+public final class JAXBStartupReport {
+
+    /**
+     * The phases of the creation of a context.
+     */
+    public static enum Phase {
+
+        /**
+         * Construction of the context.
+         */
+        CONTEXT_CREATION("context"),
+
+        /**
+         * Restoring the descriptor snapshot.
+         */
+        SNAPSHOT_RESTORE("snapshot"),
+
+        /**
+         * Binding the classes.
+         */
+        SET_CLASSES("classes"),
+
+        /**
+         * Binding the context path.
+         */
+        SET_CONTEXT_PATH("context path"),
+
+        /**
+         * Listing the classes of the context path packages.
+         */
+        PACKAGE_SCAN("package scan"),
+
+        /**
+         * Building the class infos.
+         */
+        CLASS_INFO("class info"),
+
+        /**
+         * Building the class descriptors.
+         */
+        CLASS_DESCRIPTOR("class descriptor"),
+
+        /**
+         * Pre-warming the descriptors.
+         */
+        PREWARM("prewarm"),
+
+        /**
+         * Warming up the marshalling and unmarshalling of the sample instances.
+         */
+        WARM_UP("warm-up");
+
+        /**
+         * Represents the name of the phase used in the summary.
+         */
+        private final String label;
+
+        /**
+         * Creates new instance of {@link Phase} enum.
+         *
+         * @param label the name of the phase used in the summary
+         */
+        private Phase(String label) {
+            this.label = label;
+        }
+
+        /**
+         * Retrieves the name of the phase used in the summary.
+         *
+         * @return the name of the phase
+         */
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    /**
+     * Represents the number of the slowest classes listed in the summary.
+     */
+    private static final int SUMMARY_CLASSES = 3;
+
+    /**
+     * Represents the number of nanoseconds in a millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1000000d;
+
+    /**
+     * Represents the total times of the phases, in nanoseconds, by phase ordinal.
+     */
+    private final AtomicLongArray times = new AtomicLongArray(Phase.values().length);
+
+    /**
+     * Represents the number of times every phase was recorded, by phase ordinal.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(Phase.values().length);
+
+    /**
+     * Represents the timings of the classes, by class name.
+     */
+    private final ConcurrentMap<String, ClassTiming> classTimings = new ConcurrentHashMap<String, ClassTiming>();
+
+    /**
+     * Records the time spent in the given phase.
+     *
+     * @param phase the phase
+     * @param nanos the time, in nanoseconds
+     */
+    public void record(Phase phase, long nanos) {
+
+        times.addAndGet(phase.ordinal(), nanos);
+        counts.incrementAndGet(phase.ordinal());
+    }
+
+    /**
+     * Records the time spent in the given phase for a single class. Only the {@link Phase#CLASS_INFO} and {@link
+     * Phase#CLASS_DESCRIPTOR} phases are tracked per class, any other phase is recorded as a whole.
+     *
+     * @param phase the phase
+     * @param type  the class
+     * @param nanos the time, in nanoseconds
+     */
+    public void record(Phase phase, Class<?> type, long nanos) {
+
+        record(phase, nanos);
+
+        if (phase == Phase.CLASS_INFO || phase == Phase.CLASS_DESCRIPTOR) {
+            ClassTiming classTiming = classTimings.get(type.getName());
+            if (classTiming == null) {
+                ClassTiming newClassTiming = new ClassTiming(type.getName());
+                classTiming = classTimings.putIfAbsent(type.getName(), newClassTiming);
+                if (classTiming == null) {
+                    classTiming = newClassTiming;
+                }
+            }
+
+            if (phase == Phase.CLASS_INFO) {
+                classTiming.classInfoTime.addAndGet(nanos);
+            } else {
+                classTiming.classDescriptorTime.addAndGet(nanos);
+            }
+        }
+    }
+
+    /**
+     * Retrieves the total time spent in the given phase.
+     *
+     * @param phase the phase
+     *
+     * @return the time, in nanoseconds
+     */
+    public long getTime(Phase phase) {
+        return times.get(phase.ordinal());
+    }
+
+    /**
+     * Retrieves the number of times the given phase was recorded, for instance the number of built class infos.
+     *
+     * @param phase the phase
+     *
+     * @return the number of times the phase was recorded
+     */
+    public long getCount(Phase phase) {
+        return counts.get(phase.ordinal());
+    }
+
+    /**
+     * Retrieves the timing of the given class.
+     *
+     * @param className the class name
+     *
+     * @return the timing of the class, or null if the class was not introspected
+     */
+    public ClassTiming getClassTiming(String className) {
+        return classTimings.get(className);
+    }
+
+    /**
+     * Retrieves the timings of all the introspected classes, the most expensive first.
+     *
+     * @return the list of the class timings
+     */
+    public List<ClassTiming> getClassTimings() {
+
+        List<ClassTiming> result = new ArrayList<ClassTiming>(classTimings.values());
+        Collections.sort(result, new Comparator<ClassTiming>() {
+            public int compare(ClassTiming timing1, ClassTiming timing2) {
+                long time1 = timing1.getTotalTime();
+                long time2 = timing2.getTotalTime();
+                return time1 > time2 ? -1 : (time1 == time2 ? 0 : 1);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Retrieves a single line summary of the report, listing the time of every recorded phase and the slowest
+     * classes.
+     *
+     * @return the summary
+     */
+    public String getSummary() {
+
+        StringBuilder summary = new StringBuilder("Castor JAXB context startup:");
+        String separator = " ";
+        for (Phase phase : Phase.values()) {
+            if (getCount(phase) > 0) {
+                summary.append(separator).append(phase.getLabel()).append(' ').append(toMillis(getTime(phase)));
+                if (phase == Phase.CLASS_INFO || phase == Phase.CLASS_DESCRIPTOR) {
+                    summary.append(" (").append(getCount(phase)).append(')');
+                }
+                separator = ", ";
+            }
+        }
+
+        List<ClassTiming> slowest = getClassTimings();
+        if (!slowest.isEmpty()) {
+            summary.append("; slowest classes:");
+            separator = " ";
+            for (ClassTiming classTiming : slowest.subList(0, Math.min(SUMMARY_CLASSES, slowest.size()))) {
+                summary.append(separator).append(classTiming.getClassName()).append(' ')
+                        .append(toMillis(classTiming.getTotalTime()));
+                separator = ", ";
+            }
+        }
+        return summary.toString();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return getSummary();
+    }
+
+    /**
+     * Formats the given time in milliseconds.
+     *
+     * @param nanos the time, in nanoseconds
+     *
+     * @return the formatted time
+     */
+    private static String toMillis(long nanos) {
+        return String.format(Locale.ENGLISH, "%.3f ms", nanos / NANOS_PER_MILLI);
+    }
+
+    /**
+     * The time spent introspecting a single class.
+     */
+    public static final class ClassTiming {
+
+        /**
+         * Represents the class name.
+         */
+        private final String className;
+
+        /**
+         * Represents the time spent building the class info, in nanoseconds.
+         */
+        private final AtomicLong classInfoTime = new AtomicLong();
+
+        /**
+         * Represents the time spent building the class descriptor, in nanoseconds.
+         */
+        private final AtomicLong classDescriptorTime = new AtomicLong();
+
+        /**
+         * Creates new instance of {@link ClassTiming} class.
+         *
+         * @param className the class name
+         */
+        private ClassTiming(String className) {
+            this.className = className;
+        }
+
+        /**
+         * Retrieves the class name.
+         *
+         * @return the class name
+         */
+        public String getClassName() {
+            return className;
+        }
+
+        /**
+         * Retrieves the time spent building the class info.
+         *
+         * @return the time, in nanoseconds
+         */
+        public long getClassInfoTime() {
+            return classInfoTime.get();
+        }
+
+        /**
+         * Retrieves the time spent building the class descriptor.
+         *
+         * @return the time, in nanoseconds
+         */
+        public long getClassDescriptorTime() {
+            return classDescriptorTime.get();
+        }
+
+        /**
+         * Retrieves the total time spent introspecting the class.
+         *
+         * @return the time, in nanoseconds
+         */
+        public long getTotalTime() {
+            return getClassInfoTime() + getClassDescriptorTime();
+        }
+    }
+}
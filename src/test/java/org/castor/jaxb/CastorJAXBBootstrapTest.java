@@ -0,0 +1,108 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.castor.jaxb.resolver.JAXBAdapterRegistry;
+import org.junit.Test;
+
+/**
+ * Tests the {@link CastorJAXBBootstrap} class.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+public class CastorJAXBBootstrapTest {
+
+    /**
+     * Tests the {@link CastorJAXBBootstrap#getInstance()} method.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testGetInstance() throws Exception {
+
+        CastorJAXBBootstrap bootstrap = CastorJAXBBootstrap.getInstance();
+
+        assertNotNull("Bootstrap has no java naming.", bootstrap.getJavaNaming());
+        assertNotNull("Bootstrap has no xml naming.", bootstrap.getXmlNaming());
+        assertNotNull("Bootstrap has no class info builder.", bootstrap.getClassInfoBuilder());
+        assertSame("Bootstrap was built more than once.", bootstrap, CastorJAXBBootstrap.getInstance());
+    }
+
+    /**
+     * Tests the {@link CastorJAXBBootstrap#getInstance()} method when called concurrently.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testGetInstanceConcurrently() throws Exception {
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Callable<CastorJAXBBootstrap> task = new Callable<CastorJAXBBootstrap>() {
+                public CastorJAXBBootstrap call() throws Exception {
+                    return CastorJAXBBootstrap.getInstance();
+                }
+            };
+
+            Future<CastorJAXBBootstrap> first = executor.submit(task);
+            Future<CastorJAXBBootstrap> second = executor.submit(task);
+
+            assertSame("Bootstrap was built more than once.", first.get(), second.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Tests the {@link CastorJAXBBootstrap#createResolverStrategy(JAXBAdapterRegistry)} method.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testCreateResolverStrategy() throws Exception {
+
+        CastorJAXBBootstrap bootstrap = CastorJAXBBootstrap.getInstance();
+
+        assertNotSame("Resolver strategy must be created per context.",
+                bootstrap.createResolverStrategy(new JAXBAdapterRegistry()),
+                bootstrap.createResolverStrategy(new JAXBAdapterRegistry()));
+    }
+
+    /**
+     * Tests that every context gets its own adapter registry.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testAdapterRegistryPerContext() throws Exception {
+
+        CastorJAXBContext first = new CastorJAXBContext();
+        CastorJAXBContext second = new CastorJAXBContext();
+
+        assertNotSame("Contexts must not share the adapter registry.",
+                first.getJaxbAdapterRegistry(), second.getJaxbAdapterRegistry());
+    }
+}
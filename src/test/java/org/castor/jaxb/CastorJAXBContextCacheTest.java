@@ -0,0 +1,260 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.Marshaller;
+
+import org.castor.entities.Entity;
+import org.castor.jaxb.test.functional.fieldAdapter.CustomType;
+import org.castor.jaxb.test.functional.fieldAdapter.CustomTypeAdapter;
+import org.castor.jaxb.test.functional.fieldAdapter.ElementWithAdapter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link CastorJAXBContextCache} class.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+public class CastorJAXBContextCacheTest {
+
+    /**
+     * Represents the instance of the tested class.
+     */
+    private CastorJAXBContextCache instance;
+
+    /**
+     * Represents the properties used by the tests.
+     */
+    private Map<String, Object> properties;
+
+    /**
+     * Sets up the test environment.
+     *
+     * @throws Exception if any error occurs
+     */
+    @Before
+    public void setUp() throws Exception {
+        instance = new CastorJAXBContextCache(2);
+        properties = new HashMap<String, Object>();
+    }
+
+    /**
+     * Tears down the test environment.
+     *
+     * @throws Exception if any error occurs
+     */
+    @After
+    public void tearDown() throws Exception {
+        CastorJAXBContextFactory.disableContextCache();
+    }
+
+    /**
+     * Tests the {@link CastorJAXBContextCache#CastorJAXBContextCache(int)} constructor when maxSize is not positive.
+     * {@link IllegalArgumentException} is expected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testCtorInvalidSize() {
+        new CastorJAXBContextCache(0);
+    }
+
+    /**
+     * Tests caching of the contexts created from classes.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testGetClasses() throws Exception {
+
+        Class[] classes = new Class[]{Entity.class};
+        JAXBContext context = new CastorJAXBContext();
+
+        assertNull("No context should be cached.", instance.get(classes, properties));
+        assertSame("Invalid context cached.", context, instance.put(classes, properties, context));
+        assertSame("Invalid context returned.", context,
+                instance.get(new Class[]{Entity.class}, new HashMap<String, Object>()));
+
+        assertEquals("Invalid hit count.", 1, instance.getHitCount());
+        assertEquals("Invalid miss count.", 1, instance.getMissCount());
+        assertEquals("Invalid size.", 1, instance.size());
+    }
+
+    /**
+     * Tests that the contexts with different properties are cached separately.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testGetDifferentProperties() throws Exception {
+
+        Class[] classes = new Class[]{Entity.class};
+        instance.put(classes, properties, new CastorJAXBContext());
+
+        Map<String, Object> other = new HashMap<String, Object>();
+        other.put("property", "value");
+
+        assertNull("Context with different properties should not be returned.", instance.get(classes, other));
+    }
+
+    /**
+     * Tests that the same class loaded by another class loader does not share the cached context.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testGetDifferentClassLoader() throws Exception {
+
+        URL location = Entity.class.getProtectionDomain().getCodeSource().getLocation();
+        ClassLoader classLoader = new URLClassLoader(new URL[]{location}, null);
+        Class otherEntity = classLoader.loadClass(Entity.class.getName());
+
+        instance.put(new Class[]{Entity.class}, properties, new CastorJAXBContext());
+
+        assertNull("Context of other class loader should not be returned.",
+                instance.get(new Class[]{otherEntity}, properties));
+
+        instance.put(new Class[]{otherEntity}, properties, new CastorJAXBContext());
+        instance.clear(classLoader);
+
+        assertEquals("Contexts of the class loader were not removed.", 1, instance.size());
+    }
+
+    /**
+     * Tests that the least recently used context is evicted when the cache is full.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testEviction() throws Exception {
+
+        ClassLoader classLoader = getClass().getClassLoader();
+        JAXBContext first = new CastorJAXBContext();
+
+        instance.put("org.castor.entities", classLoader, properties, first);
+        instance.put("org.castor.jaxb", classLoader, properties, new CastorJAXBContext());
+        // accesses the first context, so that the second one is the least recently used
+        assertSame("Invalid context returned.", first, instance.get("org.castor.entities", classLoader, properties));
+        instance.put("org.castor.jaxb.entities", classLoader, properties, new CastorJAXBContext());
+
+        assertEquals("Invalid size.", 2, instance.size());
+        assertEquals("Invalid eviction count.", 1, instance.getEvictionCount());
+        assertSame("Invalid context returned.", first, instance.get("org.castor.entities", classLoader, properties));
+        assertNull("Context should have been evicted.", instance.get("org.castor.jaxb", classLoader, properties));
+    }
+
+    /**
+     * Tests the {@link CastorJAXBContextFactory#enableContextCache(int)} method.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testFactoryCache() throws Exception {
+
+        Class[] classes = new Class[]{Entity.class};
+        assertNotSame("Contexts should not be cached by default.",
+                CastorJAXBContextFactory.createContext(classes, properties),
+                CastorJAXBContextFactory.createContext(classes, properties));
+
+        CastorJAXBContextCache cache = CastorJAXBContextFactory.enableContextCache(10);
+
+        assertSame("Context should be cached.",
+                CastorJAXBContextFactory.createContext(classes, properties),
+                CastorJAXBContextFactory.createContext(classes, properties));
+        assertEquals("Invalid hit count.", 1, cache.getHitCount());
+        assertEquals("Invalid miss count.", 1, cache.getMissCount());
+    }
+
+    /**
+     * Tests that the context of a class loader that is not an ancestor of the library class loader is held softly, so
+     * that it survives the garbage collections, and that it is dropped by {@link
+     * CastorJAXBContextCache#clear(ClassLoader)}.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testChildClassLoaderContextHeldSoftly() throws Exception {
+
+        URL location = Entity.class.getProtectionDomain().getCodeSource().getLocation();
+        ClassLoader classLoader = new URLClassLoader(new URL[]{location}, null);
+        Class[] classes = new Class[]{classLoader.loadClass(Entity.class.getName())};
+
+        JAXBContext context = new CastorJAXBContext();
+        instance.put(classes, properties, context);
+
+        WeakReference<JAXBContext> reference = new WeakReference<JAXBContext>(context);
+        context = null;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertNotNull("Context should survive the garbage collection.", reference.get());
+        assertSame("Invalid context returned.", reference.get(), instance.get(classes, properties));
+
+        instance.clear(classLoader);
+        assertNull("Cleared context should not be returned.", instance.get(classes, properties));
+    }
+
+    /**
+     * Tests that the adapters registered on a marshaller of a cached context are not seen by the other marshallers
+     * of the context.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testSetAdapterOnCachedContext() throws Exception {
+
+        CastorJAXBContextFactory.enableContextCache(10);
+        Class[] classes = new Class[]{ElementWithAdapter.class};
+        JAXBContext context = CastorJAXBContextFactory.createContext(classes, properties);
+        assertSame("Context should be cached.", context, CastorJAXBContextFactory.createContext(classes, properties));
+
+        CustomTypeAdapter adapter = new CustomTypeAdapter();
+        Marshaller adaptedMarshaller = context.createMarshaller();
+        adaptedMarshaller.setAdapter(adapter);
+        Marshaller marshaller = context.createMarshaller();
+        assertSame(adapter, adaptedMarshaller.getAdapter(CustomTypeAdapter.class));
+        assertNull("Adapter of another marshaller returned.", marshaller.getAdapter(CustomTypeAdapter.class));
+
+        ElementWithAdapter element = new ElementWithAdapter();
+        element.setCustomType(new CustomType());
+        element.getCustomType().setValue("custom");
+
+        marshaller.marshal(element, new StringWriter());
+        assertFalse("Adapter of another marshaller used.", adapter.isUnmarshalled());
+
+        adaptedMarshaller.marshal(element, new StringWriter());
+        assertTrue("Registered adapter not used.", adapter.isUnmarshalled());
+    }
+}
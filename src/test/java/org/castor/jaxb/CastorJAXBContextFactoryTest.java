@@ -16,6 +16,7 @@
 package org.castor.jaxb;
 
 import org.castor.entities.Entity;
+import org.castor.jaxb.reflection.ClassInfoCache;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -187,4 +188,23 @@ public class CastorJAXBContextFactoryTest {
         assertNotNull("CastorJAXBContextFactory created null context.", jaxbContext);
         assertTrue("CastorJAXBContextFactory was not registered.", jaxbContext instanceof CastorJAXBContext);
     }
+
+    /**
+     * Tests the {@link CastorJAXBContextFactory#getClassInfoCache()} method.
+     *
+     * @throws Exception
+     *             if any error occurs during test
+     */
+    @Test
+    public void testClassInfoCache() throws Exception {
+
+        ClassInfoCache cache = CastorJAXBContextFactory.getClassInfoCache();
+        assertNotNull("Class info cache should be enabled by default.", cache);
+
+        CastorJAXBContextFactory.createContext(new Class[]{Entity.class}, new HashMap<String, Object>());
+        long hitCount = cache.getHitCount();
+        CastorJAXBContextFactory.createContext(new Class[]{Entity.class}, new HashMap<String, Object>());
+
+        assertTrue("Class info should be shared by the contexts.", cache.getHitCount() > hitCount);
+    }
 }
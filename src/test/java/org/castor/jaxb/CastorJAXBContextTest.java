@@ -17,6 +17,16 @@
 package org.castor.jaxb;
 
 import org.castor.entities.Entity;
+import org.castor.jaxb.resolver.JAXBStartupReport;
+import org.castor.jaxb.test.functional.attribute.AttributeWithExplicitName;
+import org.castor.jaxb.test.functional.elementWrapper.ElementWithAnnotationWithExplicitNameWithWrapper;
+import org.castor.jaxb.test.functional.enumValue.ElementWithValues;
+import org.castor.jaxb.test.functional.enumValue.Shape;
+import org.castor.jaxb.test.functional.fieldAdapter.CustomType;
+import org.castor.jaxb.test.functional.fieldAdapter.ElementWithAdapter;
+import org.castor.jaxb.test.functional.fieldTransient.EntityWithTransientChild;
+import org.castor.jaxb.test.functional.fieldTransient.TransientChild;
+import org.exolab.castor.xml.XMLClassDescriptor;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -28,10 +38,19 @@ import javax.xml.bind.JAXBException;
 import javax.xml.bind.JAXBIntrospector;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilenameFilter;
+import java.io.InputStream;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
 
+import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
 import static org.custommonkey.xmlunit.XMLAssert.assertXMLEqual;
 
 /**
@@ -102,4 +121,253 @@ public class CastorJAXBContextTest {
 
         assertNotNull("JAXBContext created null introspector.", jaxbIntrospector);
     }
+
+    /**
+     * Tests the pre-warming of the descriptors enabled through {@link CastorJAXBContext#PREWARM_PROPERTY}.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testPrewarm() throws Exception {
+
+        Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put(CastorJAXBContext.PREWARM_PROPERTY, "true");
+        properties.put(CastorJAXBContext.PREWARM_THREADS_PROPERTY, 2);
+
+        CastorJAXBContext prewarmedContext = (CastorJAXBContext) CastorJAXBContextFactory.createContext(
+                new Class[]{EntityWithTransientChild.class}, properties);
+
+        assertTrue("Descriptor of the bound class was not built.", prewarmedContext.getDescriptorRegistry()
+                .hasDescriptor(EntityWithTransientChild.class.getName()));
+        assertTrue("Descriptor of the referenced class was not built.", prewarmedContext.getDescriptorRegistry()
+                .hasDescriptor(TransientChild.class.getName()));
+
+        Writer writer = new StringWriter();
+        prewarmedContext.createMarshaller().marshal(new EntityWithTransientChild(), writer);
+        assertXMLEqual("Marshaller written invalid result.", "<entityWithTransientChild/>", writer.toString());
+    }
+
+    /**
+     * Tests restoring the descriptors from the snapshot file set through {@link CastorJAXBContext#SNAPSHOT_PROPERTY}.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testSnapshot() throws Exception {
+
+        final File snapshotFile = File.createTempFile("castor-jaxb", ".snapshot");
+        assertTrue(snapshotFile.delete());
+        try {
+            Map<String, Object> properties = new HashMap<String, Object>();
+            properties.put(CastorJAXBContext.PREWARM_PROPERTY, Boolean.TRUE);
+            properties.put(CastorJAXBContext.SNAPSHOT_PROPERTY, snapshotFile.getAbsolutePath());
+            Class[] classes = new Class[]{AttributeWithExplicitName.class,
+                    ElementWithAnnotationWithExplicitNameWithWrapper.class, ElementWithAdapter.class};
+
+            CastorJAXBContext writingContext = (CastorJAXBContext) CastorJAXBContextFactory.createContext(classes,
+                    properties);
+            assertTrue("Snapshot was not written.", snapshotFile.isFile());
+            assertEquals("Temporary snapshot file was not renamed.", 0,
+                    snapshotFile.getParentFile().list(new FilenameFilter() {
+                        public boolean accept(File dir, String name) {
+                            return name.startsWith(snapshotFile.getName()) && name.endsWith(".tmp");
+                        }
+                    }).length);
+
+            CastorJAXBContext restoredContext = new CastorJAXBContext();
+            InputStream inputStream = new FileInputStream(snapshotFile);
+            try {
+                assertTrue("Snapshot was not restored.",
+                        restoredContext.restoreSnapshot(inputStream, getClass().getClassLoader()));
+            } finally {
+                inputStream.close();
+            }
+            assertEquals("Not all descriptors were restored.", writingContext.getDescriptorRegistry().size(),
+                    restoredContext.getDescriptorRegistry().size());
+            restoredContext.setClasses(classes);
+
+            AttributeWithExplicitName attribute = new AttributeWithExplicitName();
+            attribute.setName("test");
+            ElementWithAnnotationWithExplicitNameWithWrapper element =
+                    new ElementWithAnnotationWithExplicitNameWithWrapper();
+            element.setName("test");
+            ElementWithAdapter elementWithAdapter = new ElementWithAdapter();
+            elementWithAdapter.setCustomType(new CustomType());
+            elementWithAdapter.getCustomType().setValue("test");
+
+            for (Object entity : new Object[]{attribute, element, elementWithAdapter}) {
+                Writer expected = new StringWriter();
+                writingContext.createMarshaller().marshal(entity, expected);
+                Writer actual = new StringWriter();
+                restoredContext.createMarshaller().marshal(entity, actual);
+
+                assertXMLEqual("Restored descriptor written invalid result.", expected.toString(),
+                        actual.toString());
+            }
+
+            // a context created with the existing snapshot restores it
+            CastorJAXBContext snapshotContext = (CastorJAXBContext) CastorJAXBContextFactory.createContext(classes,
+                    properties);
+            assertEquals(writingContext.getDescriptorRegistry().size(),
+                    snapshotContext.getDescriptorRegistry().size());
+        } finally {
+            snapshotFile.delete();
+        }
+    }
+
+    /**
+     * Tests that a context path restored from the snapshot file does not build the descriptors again.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testSnapshotContextPath() throws Exception {
+
+        File snapshotFile = File.createTempFile("castor-jaxb", ".snapshot");
+        assertTrue(snapshotFile.delete());
+        try {
+            Map<String, Object> properties = new HashMap<String, Object>();
+            properties.put(CastorJAXBContext.SNAPSHOT_PROPERTY, snapshotFile.getAbsolutePath());
+            String contextPath = EntityWithTransientChild.class.getPackage().getName();
+
+            CastorJAXBContext writingContext = (CastorJAXBContext) CastorJAXBContextFactory.createContext(
+                    contextPath, getClass().getClassLoader(), properties);
+            assertTrue("Snapshot was not written.", snapshotFile.isFile());
+            assertTrue("Class info building was not recorded.",
+                    writingContext.getStartupReport().getCount(JAXBStartupReport.Phase.CLASS_INFO) > 0);
+
+            CastorJAXBContext restoredContext = (CastorJAXBContext) CastorJAXBContextFactory.createContext(
+                    contextPath, getClass().getClassLoader(), properties);
+            assertEquals("Snapshot was not restored.", 1,
+                    restoredContext.getStartupReport().getCount(JAXBStartupReport.Phase.SNAPSHOT_RESTORE));
+            assertEquals("Class info was built for a restored descriptor.", 0,
+                    restoredContext.getStartupReport().getCount(JAXBStartupReport.Phase.CLASS_INFO));
+            assertEquals(writingContext.getDescriptorRegistry().size(),
+                    restoredContext.getDescriptorRegistry().size());
+        } finally {
+            snapshotFile.delete();
+        }
+    }
+
+    /**
+     * Tests the {@link CastorJAXBContext#getStartupReport()} method.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testStartupReport() throws Exception {
+
+        CastorJAXBContext reportedContext = (CastorJAXBContext) CastorJAXBContextFactory.createContext(
+                new Class[]{EntityWithTransientChild.class}, new HashMap<String, Object>());
+
+        JAXBStartupReport startupReport = reportedContext.getStartupReport();
+        assertEquals(1, startupReport.getCount(JAXBStartupReport.Phase.CONTEXT_CREATION));
+        assertEquals(1, startupReport.getCount(JAXBStartupReport.Phase.SET_CLASSES));
+        assertTrue("Class info building was not recorded.",
+                startupReport.getCount(JAXBStartupReport.Phase.CLASS_INFO) > 0);
+        assertNotNull("Bound class timing was not recorded.",
+                startupReport.getClassTiming(EntityWithTransientChild.class.getName()));
+        assertTrue("Summary does not name the bound class.",
+                startupReport.getSummary().contains(EntityWithTransientChild.class.getName()));
+    }
+
+    /**
+     * Tests freezing the descriptors through {@link CastorJAXBContext#FREEZE_PROPERTY}.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testFreeze() throws Exception {
+
+        Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put(CastorJAXBContext.PREWARM_PROPERTY, Boolean.TRUE);
+        properties.put(CastorJAXBContext.FREEZE_PROPERTY, "true");
+
+        CastorJAXBContext frozenContext = (CastorJAXBContext) CastorJAXBContextFactory.createContext(
+                new Class[]{EntityWithTransientChild.class}, properties);
+
+        assertTrue("Context was not frozen.", frozenContext.isFrozen());
+        assertEquals(frozenContext.getDescriptorRegistry().size(), frozenContext.getFrozenResolver().size());
+
+        Writer writer = new StringWriter();
+        frozenContext.createMarshaller().marshal(new EntityWithTransientChild(), writer);
+        assertXMLEqual("Marshaller written invalid result.", "<entityWithTransientChild/>", writer.toString());
+
+        try {
+            frozenContext.setClasses(new Class[]{Entity.class});
+            fail("IllegalStateException expected.");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Tests the {@link CastorJAXBContext#warmUp(int)} method.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testWarmUp() throws Exception {
+
+        Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put(CastorJAXBContext.PREWARM_PROPERTY, Boolean.TRUE);
+        CastorJAXBContext warmedContext = (CastorJAXBContext) CastorJAXBContextFactory.createContext(
+                new Class[]{AttributeWithExplicitName.class, EntityWithTransientChild.class}, properties);
+
+        assertEquals("Not all classes were warmed up.", 2, warmedContext.warmUp(2));
+        assertEquals(1, warmedContext.getStartupReport().getCount(JAXBStartupReport.Phase.WARM_UP));
+    }
+
+    /**
+     * Tests that the warm-up samples have the properties bound in their lexical form set.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testWarmUpSample() throws Exception {
+
+        Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put(CastorJAXBContext.PREWARM_PROPERTY, Boolean.TRUE);
+        CastorJAXBContext warmedContext = (CastorJAXBContext) CastorJAXBContextFactory.createContext(
+                new Class[]{ElementWithValues.class}, properties);
+
+        Map<Class<?>, XMLClassDescriptor> descriptorsByClass = new HashMap<Class<?>, XMLClassDescriptor>();
+        for (XMLClassDescriptor descriptor : warmedContext.getDescriptorRegistry().getDescriptors()) {
+            descriptorsByClass.put(descriptor.getJavaClass(), descriptor);
+        }
+
+        ElementWithValues sample = (ElementWithValues) CastorJAXBWarmUp.createSample(
+                descriptorsByClass.get(ElementWithValues.class), descriptorsByClass, 0);
+        assertEquals(Shape.values()[0], sample.getShape());
+        assertEquals(Shape.values()[0], sample.getShapeAttribute());
+        assertEquals(1, sample.getCount());
+        assertEquals(1L, sample.getTotal());
+    }
+
+    /**
+     * Tests the warm-up enabled through {@link CastorJAXBContext#WARM_UP_PROPERTY}.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testWarmUpProperty() throws Exception {
+
+        Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put(CastorJAXBContext.WARM_UP_PROPERTY, "1");
+        CastorJAXBContext warmedContext = (CastorJAXBContext) CastorJAXBContextFactory.createContext(
+                new Class[]{AttributeWithExplicitName.class}, properties);
+
+        assertEquals(1, warmedContext.getStartupReport().getCount(JAXBStartupReport.Phase.WARM_UP));
+    }
+
+    /**
+     * Tests the {@link CastorJAXBContext#warmUp(int)} method, when passed invalid number of iterations.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testWarmUpInvalidIterations() throws Exception {
+
+        ((CastorJAXBContext) context).warmUp(0);
+    }
 }
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.castor.entities.Entity;
+import org.castor.jaxb.reflection.ClassDescriptorBuilder;
+import org.castor.jaxb.reflection.ClassInfoBuilder;
+import org.castor.jaxb.resolver.JAXBAdapterRegistry;
+import org.castor.jaxb.resolver.JAXBClassResolverCommand;
+import org.exolab.castor.xml.XMLClassDescriptor;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link CastorJAXBRuntimeBuilder} class.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+public class CastorJAXBRuntimeBuilderTest {
+
+    /**
+     * Represents the instance of the tested class.
+     */
+    private CastorJAXBRuntimeBuilder instance;
+
+    /**
+     * Sets up the test environment.
+     *
+     * @throws Exception if any error occurs
+     */
+    @Before
+    public void setUp() throws Exception {
+        instance = new CastorJAXBRuntimeBuilder();
+    }
+
+    /**
+     * Tests the {@link CastorJAXBRuntimeBuilder#buildClassInfoBuilder(org.castor.xml.JavaNaming)} method when
+     * java naming is null. {@link IllegalArgumentException} is expected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuildClassInfoBuilderNull() {
+        instance.buildClassInfoBuilder(null);
+    }
+
+    /**
+     * Tests the {@link CastorJAXBRuntimeBuilder#buildResolverStrategy(ClassInfoBuilder, org.castor.xml.XMLNaming,
+     * JAXBAdapterRegistry)} method when adapter registry is null. {@link IllegalArgumentException} is expected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuildResolverStrategyNull() {
+        instance.buildResolverStrategy(instance.buildClassInfoBuilder(instance.buildJavaNaming()),
+                instance.buildXmlNaming(), null);
+    }
+
+    /**
+     * Tests that the programmatic wiring produces the same descriptor as the Spring wiring.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testSameDescriptorAsSpringWiring() throws Exception {
+
+        CastorJAXBBootstrap springBootstrap = CastorJAXBBootstrap.create(CastorJAXBBootstrap.WIRING_SPRING);
+        CastorJAXBBootstrap programmaticBootstrap =
+                CastorJAXBBootstrap.create(CastorJAXBBootstrap.WIRING_PROGRAMMATIC);
+
+        XMLClassDescriptor expected = resolve(springBootstrap);
+        XMLClassDescriptor actual = resolve(programmaticBootstrap);
+
+        assertNotNull("Descriptor was not created.", actual);
+        assertEquals("Invalid xml name.", expected.getXMLName(), actual.getXMLName());
+        assertEquals("Invalid element count.", expected.getElementDescriptors().length,
+                actual.getElementDescriptors().length);
+        assertEquals("Invalid element name.", expected.getElementDescriptors()[0].getXMLName(),
+                actual.getElementDescriptors()[0].getXMLName());
+        assertEquals("Invalid attribute count.", expected.getAttributeDescriptors().length,
+                actual.getAttributeDescriptors().length);
+    }
+
+    /**
+     * Tests the {@link CastorJAXBBootstrap#create(String)} method when the wiring is not supported.
+     * {@link IllegalArgumentException} is expected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testCreateUnsupportedWiring() {
+        CastorJAXBBootstrap.create("unknown");
+    }
+
+    /**
+     * Resolves the descriptor of the {@link Entity} class using the graph of the given bootstrap.
+     *
+     * @param bootstrap the bootstrap to use
+     *
+     * @return the resolved descriptor
+     *
+     * @throws Exception if any error occurs
+     */
+    private XMLClassDescriptor resolve(CastorJAXBBootstrap bootstrap) throws Exception {
+
+        ClassDescriptorBuilder classDescriptorBuilder = new ClassDescriptorBuilder();
+        classDescriptorBuilder.setXMLNaming(bootstrap.getXmlNaming());
+        classDescriptorBuilder.setJaxbAdapterRegistry(new JAXBAdapterRegistry());
+
+        JAXBClassResolverCommand command = new JAXBClassResolverCommand();
+        command.setClassInfoBuilder(bootstrap.getClassInfoBuilder());
+        command.setClassDescriptorBuilder(classDescriptorBuilder);
+
+        Map descriptors = command.resolve(Entity.class.getName(), new HashMap<String, Object>());
+        return (XMLClassDescriptor) descriptors.get(Entity.class.getName());
+    }
+}
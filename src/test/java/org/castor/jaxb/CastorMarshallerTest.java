@@ -17,14 +17,28 @@
 package org.castor.jaxb;
 
 import static org.custommonkey.xmlunit.XMLAssert.assertXMLEqual;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.*;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.Pipe;
+import java.nio.channels.WritableByteChannel;
 
 import javax.xml.XMLConstants;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
+import javax.xml.bind.PropertyException;
+import javax.xml.bind.ValidationEvent;
+import javax.xml.bind.ValidationEventHandler;
 import javax.xml.namespace.QName;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -43,6 +57,14 @@ import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import org.castor.entities.Entity;
 import org.junit.Before;
@@ -782,6 +804,26 @@ public class CastorMarshallerTest {
         marshallStreamResult2(createEntity());
     }
 
+    /**
+     * Tests the {@link CastorMarshaller#marshal(Object, javax.xml.transform.Result)} method with a validated stream
+     * result and an encoding other than UTF-8.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testMarshallStreamResult2ValidationEncoding() throws Exception {
+
+        marshaller.setSchema(loadSchema(SCHEMA_FILE));
+        marshaller.setProperty(Marshaller.JAXB_ENCODING, "ISO-8859-1");
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        marshaller.marshal(createEntity(), new StreamResult(outputStream));
+
+        String result = new String(outputStream.toByteArray(), "ISO-8859-1");
+        assertTrue("Encoding has not been written.", result.contains("ISO-8859-1"));
+        assertXMLEqual("Marshaller written invalid result.", EXPECTED_XML, result.replace("ISO-8859-1", "UTF-8"));
+    }
+
     /**
      * Tests the {@link CastorMarshaller#marshal(Object, java.io.OutputStream)} method when validation fails.
      * <p/>
@@ -833,6 +875,656 @@ public class CastorMarshallerTest {
         marshallStreamResult2(createJAXBEntity());
     }
 
+    /**
+     * Tests the {@link CastorMarshaller#marshal(Object, java.io.File)} method.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testMarshalFile() throws Exception {
+
+        File file = File.createTempFile("entity", ".xml");
+        try {
+            marshaller.marshal(createEntity(), file);
+
+            byte[] content = new byte[(int) file.length()];
+            DataInputStream inputStream = new DataInputStream(new FileInputStream(file));
+            try {
+                inputStream.readFully(content);
+            } finally {
+                inputStream.close();
+            }
+            assertXMLEqual("Marshaller written invalid result.", EXPECTED_XML, new String(content, "UTF-8"));
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Tests the {@link CastorMarshaller#marshal(Object, java.io.OutputStream)} method with the encoding set by the
+     * {@link Marshaller#JAXB_ENCODING} property.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testMarshalOutputStreamEncoding() throws Exception {
+
+        Entity entity = new Entity();
+        entity.setName("T\u00e9st \u20ac");
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        marshaller.marshal(entity, outputStream);
+        assertXMLEqual("<Entity><Name>T\u00e9st \u20ac</Name></Entity>", outputStream.toString("UTF-8"));
+
+        marshaller.setProperty(Marshaller.JAXB_ENCODING, "ISO-8859-15");
+        outputStream = new ByteArrayOutputStream();
+        marshaller.marshal(entity, outputStream);
+        String xml = outputStream.toString("ISO-8859-15");
+        assertTrue("The declaration should name the encoding.", xml.contains("ISO-8859-15"));
+        assertXMLEqual("<Entity><Name>T\u00e9st \u20ac</Name></Entity>", xml);
+    }
+
+    /**
+     * Tests the {@link CastorMarshaller#marshal(Object, java.io.OutputStream)} method with an unsupported encoding.
+     * </p> {@link JAXBException} is expected.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test(expected = JAXBException.class)
+    public void testMarshalOutputStreamUnsupportedEncoding() throws Exception {
+
+        marshaller.setProperty(Marshaller.JAXB_ENCODING, "no-such-encoding");
+        marshaller.marshal(createEntity(), new ByteArrayOutputStream());
+    }
+
+    /**
+     * Tests that the validated object is marshalled only once.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testMarshallWithValidationSinglePass() throws Exception {
+
+        final int[] count = new int[1];
+        marshaller.setListener(new Marshaller.Listener() {
+            @Override
+            public void beforeMarshal(Object source) {
+                if (source instanceof Entity) {
+                    count[0]++;
+                }
+            }
+        });
+        marshaller.setSchema(loadSchema(SCHEMA_FILE));
+
+        marshallWriter(createEntity());
+
+        assertEquals("The object should be marshalled once.", 1, count[0]);
+    }
+
+    /**
+     * Tests that nothing is written when validation fails with the buffered validation output.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testMarshallWithValidationErrorBuffered() throws Exception {
+
+        marshaller.setSchema(loadSchema(INVALID_SCHEMA_FILE));
+
+        StringWriter writer = new StringWriter();
+        try {
+            marshaller.marshal(createEntity(), writer);
+            fail("JAXBException expected.");
+        } catch (JAXBException e) {
+            // expected
+        }
+        assertEquals("Nothing should be written.", "", writer.toString());
+    }
+
+    /**
+     * Tests the validation with the streamed validation output.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testMarshallWithValidationStreamed() throws Exception {
+
+        marshaller.setProperty(CastorMarshaller.VALIDATION_OUTPUT_PROPERTY, "streamed");
+        assertEquals("streamed", marshaller.getProperty(CastorMarshaller.VALIDATION_OUTPUT_PROPERTY));
+
+        marshaller.setSchema(loadSchema(SCHEMA_FILE));
+        marshallWriter(createEntity());
+        marshallNode(createEntity());
+
+        marshaller.setSchema(loadSchema(INVALID_SCHEMA_FILE));
+        try {
+            marshallWriter(createEntity());
+            fail("JAXBException expected.");
+        } catch (JAXBException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Tests setting an invalid validation output. </p> {@link javax.xml.bind.PropertyException} is expected.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test(expected = PropertyException.class)
+    public void testSetValidationOutputInvalid() throws Exception {
+
+        marshaller.setProperty(CastorMarshaller.VALIDATION_OUTPUT_PROPERTY, "eventually");
+    }
+
+    /**
+     * Tests that the validation errors are reported to the event handler, which lets the marshalling continue.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testMarshallWithEventHandler() throws Exception {
+
+        final List<ValidationEvent> events = new ArrayList<ValidationEvent>();
+        ValidationEventHandler eventHandler = new ValidationEventHandler() {
+            public boolean handleEvent(ValidationEvent event) {
+                events.add(event);
+                return true;
+            }
+        };
+        marshaller.setEventHandler(eventHandler);
+        marshaller.setSchema(loadSchema(INVALID_SCHEMA_FILE));
+
+        assertSame(eventHandler, marshaller.getEventHandler());
+        marshallWriter(createEntity());
+        assertFalse("The validation errors should be reported.", events.isEmpty());
+        assertEquals(ValidationEvent.ERROR, events.get(0).getSeverity());
+    }
+
+    /**
+     * Tests marshalling a validated fragment.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testMarshallFragmentWithValidation() throws Exception {
+
+        marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+        marshaller.setSchema(loadSchema(SCHEMA_FILE));
+
+        StringWriter writer = new StringWriter();
+        marshaller.marshal(createEntity(), writer);
+
+        assertFalse("Fragment should not have the xml declaration.", writer.toString().startsWith("<?xml"));
+        assertXMLEqual(EXPECTED_XML, writer.toString());
+    }
+
+    /**
+     * Tests reusing the backend marshaller enabled through {@link CastorMarshaller#REUSE_MARSHALLER_PROPERTY}.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testReuseMarshaller() throws Exception {
+
+        marshaller.setProperty(CastorMarshaller.REUSE_MARSHALLER_PROPERTY, Boolean.TRUE);
+
+        marshallWriter(createEntity());
+        marshallNode(createEntity());
+        marshallOutputStream(createEntity());
+        marshallWriter(createEntity());
+    }
+
+    /**
+     * Tests that a failed marshalling does not affect the following ones when the backend marshaller is reused.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testReuseMarshallerAfterError() throws Exception {
+
+        marshaller.setProperty(CastorMarshaller.REUSE_MARSHALLER_PROPERTY, "true");
+        marshaller.setSchema(loadSchema(INVALID_SCHEMA_FILE));
+        try {
+            marshallWriter(createEntity());
+            fail("JAXBException expected.");
+        } catch (JAXBException e) {
+            // expected
+        }
+
+        marshaller.setSchema(null);
+        marshallWriter(createEntity());
+    }
+
+    /**
+     * Tests that the properties changed between the calls are applied to the reused backend marshaller.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testReuseMarshallerFragment() throws Exception {
+
+        marshaller.setProperty(CastorMarshaller.REUSE_MARSHALLER_PROPERTY, Boolean.TRUE);
+        marshallWriter(createEntity());
+
+        marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+        StringWriter writer = new StringWriter();
+        marshaller.marshal(createEntity(), writer);
+        assertFalse("Fragment should not have the xml declaration.", writer.toString().startsWith("<?xml"));
+
+        marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.FALSE);
+        writer = new StringWriter();
+        marshaller.marshal(createEntity(), writer);
+        assertTrue("Document should have the xml declaration.", writer.toString().startsWith("<?xml"));
+    }
+
+    /**
+     * Tests that the reused backend marshaller does not keep the output of the last call reachable.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testReuseMarshallerReleasesOutput() throws Exception {
+
+        marshaller.setProperty(CastorMarshaller.REUSE_MARSHALLER_PROPERTY, Boolean.TRUE);
+
+        StringWriter writer = new StringWriter();
+        marshaller.marshal(createEntity(), writer);
+        StringWriter resultWriter = new StringWriter();
+        marshaller.marshal(createEntity(), new StreamResult(resultWriter));
+        assertXMLEqual(EXPECTED_XML, resultWriter.toString());
+
+        WeakReference<Writer> writerReference = new WeakReference<Writer>(writer);
+        WeakReference<Writer> resultWriterReference = new WeakReference<Writer>(resultWriter);
+        writer = null;
+        resultWriter = null;
+
+        for (int i = 0; i < 10 && (writerReference.get() != null || resultWriterReference.get() != null); i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertNull("Writer is still referenced by the marshaller.", writerReference.get());
+        assertNull("Result is still referenced by the marshaller.", resultWriterReference.get());
+        marshallWriter(createEntity());
+    }
+
+    /**
+     * Tests marshalling a value with a character that can not appear in an XML document. </p> {@link JAXBException}
+     * is expected.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test(expected = JAXBException.class)
+    public void testMarshallInvalidCharacter() throws Exception {
+
+        Entity entity = new Entity();
+        entity.setName("Test\u0001");
+        marshaller.marshal(entity, new StringWriter());
+    }
+
+    /**
+     * Tests the {@link CastorMarshaller#marshal(Object, WritableByteChannel)} method when channel is null. </p>
+     * {@link IllegalArgumentException} is expected.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testMarshallChannelNull() throws Exception {
+
+        ((CastorMarshaller) marshaller).marshal(createEntity(), (WritableByteChannel) null);
+    }
+
+    /**
+     * Tests the {@link CastorMarshaller#marshal(Object, WritableByteChannel)} method when channel is in non-blocking
+     * mode. </p> {@link IllegalArgumentException} is expected.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testMarshallChannelNonBlocking() throws Exception {
+
+        Pipe pipe = Pipe.open();
+        try {
+            pipe.sink().configureBlocking(false);
+            ((CastorMarshaller) marshaller).marshal(createEntity(), pipe.sink());
+        } finally {
+            pipe.sink().close();
+            pipe.source().close();
+        }
+    }
+
+    /**
+     * Tests the {@link CastorMarshaller#marshal(Object, WritableByteChannel)} method.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testMarshallChannel() throws Exception {
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ((CastorMarshaller) marshaller).marshal(createEntity(), Channels.newChannel(outputStream));
+
+        assertXMLEqual("Marshaller written invalid result.", EXPECTED_XML,
+                new String(outputStream.toByteArray(), "UTF-8"));
+    }
+
+    /**
+     * Tests the {@link CastorMarshaller#marshal(Object, WritableByteChannel)} method with a channel that accepts a
+     * single byte per write.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testMarshallChannelPartialWrites() throws Exception {
+
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        WritableByteChannel channel = new WritableByteChannel() {
+
+            public int write(ByteBuffer src) {
+                outputStream.write(src.get());
+                return 1;
+            }
+
+            public boolean isOpen() {
+                return true;
+            }
+
+            public void close() {
+                // empty method
+            }
+        };
+        ((CastorMarshaller) marshaller).marshal(createEntity(), channel);
+
+        assertXMLEqual("Marshaller written invalid result.", EXPECTED_XML,
+                new String(outputStream.toByteArray(), "UTF-8"));
+    }
+
+    /**
+     * Tests the {@link CastorMarshaller#marshal(Object, ByteBuffer)} method with a heap buffer.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testMarshallHeapByteBuffer() throws Exception {
+
+        marshallByteBuffer(ByteBuffer.allocate(1024));
+    }
+
+    /**
+     * Tests the {@link CastorMarshaller#marshal(Object, ByteBuffer)} method with a direct buffer.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testMarshallDirectByteBuffer() throws Exception {
+
+        marshallByteBuffer(ByteBuffer.allocateDirect(1024));
+    }
+
+    /**
+     * Tests the {@link CastorMarshaller#marshal(Object, ByteBuffer)} method when the output does not fit into the
+     * buffer.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testMarshallByteBufferOverflow() throws Exception {
+
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        buffer.position(2);
+        try {
+            ((CastorMarshaller) marshaller).marshal(createEntity(), buffer);
+            fail("JAXBException expected.");
+        } catch (JAXBException e) {
+            // expected
+        }
+
+        assertEquals("The position should be left unchanged.", 2, buffer.position());
+    }
+
+    /**
+     * Tests the {@link CastorMarshaller#marshalSequence(QName, java.util.Iterator, Writer)} method.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testMarshalSequenceWriter() throws Exception {
+
+        StringWriter writer = new StringWriter();
+        int count = ((CastorMarshaller) marshaller).marshalSequence(new QName("Entities"),
+                createEntities(3).iterator(), writer);
+
+        assertEquals("Invalid number of marshalled items.", 3, count);
+        assertTrue("Document should have the xml declaration.", writer.toString().startsWith("<?xml"));
+        assertXMLEqual("Marshaller written invalid result.", "<Entities><Entity><Name>Test</Name></Entity>"
+                + "<Entity><Name>Test</Name></Entity><Entity><Name>Test</Name></Entity></Entities>",
+                writer.toString());
+    }
+
+    /**
+     * Tests the {@link CastorMarshaller#marshalSequence(QName, java.util.Iterator, Writer)} method when there are no
+     * items.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testMarshalSequenceEmpty() throws Exception {
+
+        StringWriter writer = new StringWriter();
+        int count = ((CastorMarshaller) marshaller).marshalSequence(new QName("Entities"),
+                new ArrayList<Entity>().iterator(), writer);
+
+        assertEquals("Invalid number of marshalled items.", 0, count);
+        assertXMLEqual("Marshaller written invalid result.", "<Entities/>", writer.toString());
+    }
+
+    /**
+     * Tests marshalling a sequence of {@link JAXBElement}s as a fragment into a namespace qualified wrapper, with the
+     * backend marshaller reused afterwards.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testMarshalSequenceFragment() throws Exception {
+
+        marshaller.setProperty(CastorMarshaller.REUSE_MARSHALLER_PROPERTY, Boolean.TRUE);
+        marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+
+        List<Object> items = new ArrayList<Object>();
+        items.add(createJAXBEntity());
+        items.add(createEntity());
+
+        StringWriter writer = new StringWriter();
+        ((CastorMarshaller) marshaller).marshalSequence(new QName("urn:entities", "Entities", "e"), items.iterator(),
+                writer);
+
+        String xml = writer.toString();
+        assertFalse("Fragment should not have the xml declaration.", xml.startsWith("<?xml"));
+        assertEquals("The namespace should be declared once.", xml.indexOf("xmlns:e="), xml.lastIndexOf("xmlns:e="));
+        assertXMLEqual("Marshaller written invalid result.", "<e:Entities xmlns:e=\"urn:entities\">"
+                + "<Entity><Name>Test</Name></Entity><Entity><Name>Test</Name></Entity></e:Entities>", xml);
+
+        marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.FALSE);
+        writer = new StringWriter();
+        marshaller.marshal(createEntity(), writer);
+        assertTrue("Document should have the xml declaration.", writer.toString().startsWith("<?xml"));
+        assertXMLEqual(EXPECTED_XML, writer.toString());
+    }
+
+    /**
+     * Tests marshalling a large sequence into an {@link OutputStream} flushed every few items.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testMarshalSequenceOutputStream() throws Exception {
+
+        marshaller.setProperty(CastorMarshaller.SEQUENCE_FLUSH_INTERVAL_PROPERTY, "10");
+
+        final int[] flushes = new int[1];
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream() {
+            @Override
+            public void flush() {
+                flushes[0]++;
+            }
+        };
+        int count = ((CastorMarshaller) marshaller).marshalSequence(new QName("Entities"),
+                createEntities(1000).iterator(), outputStream);
+
+        assertEquals("Invalid number of marshalled items.", 1000, count);
+        assertTrue("The output should be flushed periodically.", flushes[0] >= 100);
+
+        DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        Node root = builder.parse(new ByteArrayInputStream(outputStream.toByteArray())).getDocumentElement();
+        assertEquals("Entities", root.getNodeName());
+        assertEquals(1000, root.getChildNodes().getLength());
+    }
+
+    /**
+     * Tests that a validated sequence reports the wrapper not declared by the schema.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test(expected = JAXBException.class)
+    public void testMarshalSequenceWithValidationError() throws Exception {
+
+        marshaller.setSchema(loadSchema(SCHEMA_FILE));
+        ((CastorMarshaller) marshaller).marshalSequence(new QName("Entities"), createEntities(2).iterator(),
+                new StringWriter());
+    }
+
+    /**
+     * Tests marshalling a sequence in parallel chunks, which has to keep the order of the items.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testMarshalSequenceParallel() throws Exception {
+
+        marshaller.setProperty(CastorMarshaller.SEQUENCE_PARALLELISM_PROPERTY, Integer.valueOf(4));
+        marshaller.setProperty(CastorMarshaller.SEQUENCE_CHUNK_SIZE_PROPERTY, "7");
+        marshaller.setProperty(CastorMarshaller.SEQUENCE_FLUSH_INTERVAL_PROPERTY, Integer.valueOf(20));
+
+        List<Entity> entities = new ArrayList<Entity>();
+        StringBuilder expected = new StringBuilder("<e:Entities xmlns:e=\"urn:entities\">");
+        for (int i = 0; i < 500; i++) {
+            Entity entity = new Entity();
+            entity.setName("Test" + i);
+            entities.add(entity);
+            expected.append("<Entity><Name>Test").append(i).append("</Name></Entity>");
+        }
+        expected.append("</e:Entities>");
+
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            marshaller.setProperty(CastorMarshaller.SEQUENCE_EXECUTOR_PROPERTY, executorService);
+
+            StringWriter writer = new StringWriter();
+            int count = ((CastorMarshaller) marshaller).marshalSequence(new QName("urn:entities", "Entities", "e"),
+                    entities.iterator(), writer);
+
+            assertEquals("Invalid number of marshalled items.", 500, count);
+            assertXMLEqual("Marshaller written invalid result.", expected.toString(), writer.toString());
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * Tests that a sequence marshalled in parallel chunks is validated.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test(expected = JAXBException.class)
+    public void testMarshalSequenceParallelWithValidationError() throws Exception {
+
+        marshaller.setProperty(CastorMarshaller.SEQUENCE_PARALLELISM_PROPERTY, Integer.valueOf(2));
+        marshaller.setProperty(CastorMarshaller.SEQUENCE_CHUNK_SIZE_PROPERTY, Integer.valueOf(10));
+        marshaller.setSchema(loadSchema(SCHEMA_FILE));
+
+        ((CastorMarshaller) marshaller).marshalSequence(new QName("Entities"), createEntities(100).iterator(),
+                new StringWriter());
+    }
+
+    /**
+     * Tests that a sequence marshalled in parallel chunks by an executor that rejects them fails with a {@link
+     * JAXBException}.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testMarshalSequenceParallelRejected() throws Exception {
+
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        executorService.shutdown();
+
+        marshaller.setProperty(CastorMarshaller.SEQUENCE_PARALLELISM_PROPERTY, Integer.valueOf(2));
+        marshaller.setProperty(CastorMarshaller.SEQUENCE_CHUNK_SIZE_PROPERTY, Integer.valueOf(10));
+        marshaller.setProperty(CastorMarshaller.SEQUENCE_EXECUTOR_PROPERTY, executorService);
+        try {
+            ((CastorMarshaller) marshaller).marshalSequence(new QName("Entities"), createEntities(100).iterator(),
+                    new StringWriter());
+            fail("JAXBException expected.");
+        } catch (JAXBException e) {
+            assertTrue("Invalid cause.", e.getCause() instanceof RejectedExecutionException);
+        }
+    }
+
+    /**
+     * Tests marshalling sequences in parallel chunks from every thread of the default asynchronous executor, which
+     * must not wait for the chunks queued behind the sequences.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testMarshalSequenceParallelFromDefaultExecutor() throws Exception {
+
+        final JAXBContext context = JAXBContext.newInstance("org.castor.entities");
+        List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+        for (int i = 0; i <= Runtime.getRuntime().availableProcessors(); i++) {
+            results.add(AsyncExecutors.submit(new Callable<Integer>() {
+                public Integer call() throws Exception {
+                    Marshaller sequenceMarshaller = context.createMarshaller();
+                    sequenceMarshaller.setProperty(CastorMarshaller.SEQUENCE_PARALLELISM_PROPERTY, Integer.valueOf(2));
+                    sequenceMarshaller.setProperty(CastorMarshaller.SEQUENCE_CHUNK_SIZE_PROPERTY, Integer.valueOf(10));
+                    return ((CastorMarshaller) sequenceMarshaller).marshalSequence(new QName("Entities"),
+                            createEntities(100).iterator(), new StringWriter());
+                }
+            }, AsyncExecutors.getDefaultExecutor()));
+        }
+
+        for (Future<Integer> result : results) {
+            assertEquals("Invalid number of marshalled items.", Integer.valueOf(100),
+                    result.get(30, TimeUnit.SECONDS));
+        }
+    }
+
+    /**
+     * Tests setting an executor of a wrong type as the {@link CastorMarshaller#SEQUENCE_EXECUTOR_PROPERTY} property.
+     * <p/>
+     * {@link PropertyException} is expected.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test(expected = PropertyException.class)
+    public void testMarshalSequenceInvalidExecutor() throws Exception {
+
+        marshaller.setProperty(CastorMarshaller.SEQUENCE_EXECUTOR_PROPERTY, "executor");
+    }
+
+    /**
+     * Tests setting an invalid value of the {@link CastorMarshaller#SEQUENCE_FLUSH_INTERVAL_PROPERTY} property.
+     * <p/>
+     * {@link PropertyException} is expected.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test(expected = PropertyException.class)
+    public void testMarshalSequenceInvalidFlushInterval() throws Exception {
+
+        marshaller.setProperty(CastorMarshaller.SEQUENCE_FLUSH_INTERVAL_PROPERTY, Integer.valueOf(0));
+    }
+
     /**
      * Creates the instance of the {Entity}.
      *
@@ -844,6 +1536,21 @@ public class CastorMarshallerTest {
         return entity;
     }
 
+    /**
+     * Creates the given number of {@link Entity} instances.
+     *
+     * @param count the number of instances
+     *
+     * @return the list of {@link Entity} instances used for testing
+     */
+    private List<Entity> createEntities(int count) {
+        List<Entity> entities = new ArrayList<Entity>();
+        for (int i = 0; i < count; i++) {
+            entities.add(createEntity());
+        }
+        return entities;
+    }
+
     /**
      * Creates the {@link JAXBElement} from passed object.
      *
@@ -991,6 +1698,26 @@ public class CastorMarshallerTest {
         assertXMLEqual("Marshaller written invalid result.", EXPECTED_XML, writer.toString());
     }
 
+    /**
+     * Marshals the object into the given {@link ByteBuffer} after a few bytes already put into it.
+     *
+     * @param buffer the buffer to marshal into
+     *
+     * @throws Exception if any error occurs during marshalling
+     */
+    private void marshallByteBuffer(ByteBuffer buffer) throws Exception {
+        buffer.put((byte) 1).put((byte) 2);
+        ((CastorMarshaller) marshaller).marshal(createEntity(), buffer);
+
+        buffer.flip();
+        assertEquals("The existing content should be kept.", 1, buffer.get());
+        assertEquals("The existing content should be kept.", 2, buffer.get());
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+
+        assertXMLEqual("Marshaller written invalid result.", EXPECTED_XML, new String(bytes, "UTF-8"));
+    }
+
     /**
      * Marshals the object into a {@link StreamResult}.
      *
@@ -33,6 +33,8 @@ import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
 import javax.xml.bind.UnmarshallerHandler;
+import javax.xml.bind.ValidationEvent;
+import javax.xml.bind.ValidationEventHandler;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.SAXParserFactory;
@@ -41,16 +43,24 @@ import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.transform.Source;
 import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.sax.SAXSource;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.io.PrintStream;
 import java.io.Reader;
 import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 
 /**
  * Tests the {@link CastorUnmarshaller} class.
@@ -591,6 +601,136 @@ public class CastorUnmarshallerTest {
         testEntity(entity);
     }
 
+    /**
+     * Tests the {@link CastorUnmarshaller#unmarshal(Source)} method when the source carries its own {@link
+     * XMLReader} and a schema is set.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testUnmarshalSAXSourceXMLReaderWithValidation() throws Exception {
+        unmarshaller.setSchema(loadSchema(SCHEMA_FILE));
+        XMLReader xmlReader = createXMLReader();
+        Entity entity = (Entity) unmarshaller.unmarshal(new SAXSource(xmlReader,
+                new InputSource(new StringReader(INPUT_XML))));
+        testEntity(entity);
+    }
+
+    /**
+     * Tests that the validation errors are reported to the {@link ValidationEventHandler}, which allows to continue
+     * the unmarshalling.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testUnmarshalWithValidationEventHandler() throws Exception {
+        final List<ValidationEvent> events = new ArrayList<ValidationEvent>();
+        ValidationEventHandler eventHandler = new ValidationEventHandler() {
+            public boolean handleEvent(ValidationEvent event) {
+                events.add(event);
+                return true;
+            }
+        };
+        unmarshaller.setEventHandler(eventHandler);
+        unmarshaller.setSchema(loadSchema(INVALID_SCHEMA_FILE));
+
+        Entity entity = (Entity) unmarshaller.unmarshal(new StreamSource(new StringReader(INPUT_XML)));
+
+        testEntity(entity);
+        assertSame(eventHandler, unmarshaller.getEventHandler());
+        assertFalse("Validation errors were not reported.", events.isEmpty());
+        assertEquals(ValidationEvent.ERROR, events.get(0).getSeverity());
+        assertEquals(2, events.get(0).getLocator().getLineNumber());
+    }
+
+    /**
+     * Tests that the unmarshalling stops when the {@link ValidationEventHandler} rejects a validation error.
+     * <p/>
+     * {@link JAXBException} is expected.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test(expected = JAXBException.class)
+    public void testUnmarshalWithRejectingValidationEventHandler() throws Exception {
+        unmarshaller.setEventHandler(new ValidationEventHandler() {
+            public boolean handleEvent(ValidationEvent event) {
+                return false;
+            }
+        });
+        unmarshaller.setSchema(loadSchema(INVALID_SCHEMA_FILE));
+
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        DocumentBuilder builder = factory.newDocumentBuilder();
+        Node document = builder.parse(new InputSource(new StringReader(INPUT_XML)));
+        unmarshaller.unmarshal(new DOMSource(document));
+    }
+
+    /**
+     * Tests the {@link CastorUnmarshaller#unmarshal(Source)} method when the source carries its own {@link
+     * XMLReader}.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testUnmarshalSAXSourceXMLReader() throws Exception {
+        XMLReader xmlReader = createXMLReader();
+        Entity entity = (Entity) unmarshaller.unmarshal(new SAXSource(xmlReader,
+                new InputSource(new StringReader(INPUT_XML))));
+        testEntity(entity);
+    }
+
+    /**
+     * Tests the {@link CastorUnmarshaller#unmarshal(Source, Class)} method when the source carries its own {@link
+     * XMLReader}.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testUnmarshalSAXSourceXMLReaderJAXBElement() throws Exception {
+        XMLReader xmlReader = createXMLReader();
+        JAXBElement<Entity> element = unmarshaller.unmarshal(new SAXSource(xmlReader,
+                new InputSource(new StringReader(INPUT_XML))), Entity.class);
+        testJAXBElement(element);
+    }
+
+    /**
+     * Tests the {@link CastorUnmarshaller#unmarshal(Source)} method when the source carries its own {@link
+     * XMLReader} and the document is malformed.
+     * <p/>
+     * {@link JAXBException} is expected.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test(expected = JAXBException.class)
+    public void testUnmarshalSAXSourceXMLReaderMalformed() throws Exception {
+        XMLReader xmlReader = createXMLReader();
+        unmarshaller.unmarshal(new SAXSource(xmlReader, new InputSource(new StringReader("<Entity><Name>"))));
+    }
+
+    /**
+     * Tests that a malformed document validated against a schema is reported through the thrown exception only,
+     * without the parser printing the error.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testUnmarshalMalformedWithSchema() throws Exception {
+        unmarshaller.setSchema(loadSchema(SCHEMA_FILE));
+
+        PrintStream err = System.err;
+        ByteArrayOutputStream errOutput = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(errOutput));
+        try {
+            unmarshaller.unmarshal(new StreamSource(new StringReader("<Entity><Name>")));
+            fail("JAXBException expected.");
+        } catch (JAXBException e) {
+            // expected
+        } finally {
+            System.setErr(err);
+        }
+        assertEquals("The parser printed the error.", "", errOutput.toString());
+    }
+
     /**
      * Tests the {@link CastorUnmarshaller#unmarshal(Source)} method.
      *
@@ -817,6 +957,21 @@ public class CastorUnmarshallerTest {
         testEntity(jaxbElement.getValue());
     }
 
+    /**
+     * Creates a namespace aware {@link XMLReader}.
+     *
+     * @return the created {@link XMLReader}
+     *
+     * @throws Exception if any error occurs when creating the reader
+     */
+    private XMLReader createXMLReader() throws Exception {
+
+        SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
+        saxParserFactory.setNamespaceAware(true);
+
+        return saxParserFactory.newSAXParser().getXMLReader();
+    }
+
     /**
      * Loads the schema for the {@link Entity} class.
      *
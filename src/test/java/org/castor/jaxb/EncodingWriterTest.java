@@ -0,0 +1,144 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the {@link EncodingWriter} class.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+public class EncodingWriterTest {
+
+    /**
+     * Represents the text mixing one, two, three and four byte characters.
+     */
+    private static final String TEXT = "<Entity>Test \u00e9\u00df \u20ac\u4e2d \ud83d\ude00</Entity>";
+
+    /**
+     * Tests writing the strings.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testWriteString() throws Exception {
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        EncodingWriter writer = new EncodingWriter(outputStream);
+        writer.write(TEXT);
+        writer.flush();
+
+        assertArrayEquals(TEXT.getBytes("UTF-8"), outputStream.toByteArray());
+    }
+
+    /**
+     * Tests writing the characters one by one, splitting the surrogate pair between the calls.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testWriteChars() throws Exception {
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        EncodingWriter writer = new EncodingWriter(outputStream);
+        char[] chars = TEXT.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            if (i % 2 == 0) {
+                writer.write(chars[i]);
+            } else {
+                writer.write(chars, i, 1);
+            }
+        }
+        writer.close();
+
+        assertArrayEquals(TEXT.getBytes("UTF-8"), outputStream.toByteArray());
+    }
+
+    /**
+     * Tests writing more than a single buffer.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testWriteLarge() throws Exception {
+
+        StringBuilder text = new StringBuilder();
+        while (text.length() < EncodingWriter.BUFFER_SIZE * 3) {
+            text.append(TEXT);
+        }
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        EncodingWriter writer = new EncodingWriter(outputStream);
+        writer.write(text.toString().toCharArray());
+        writer.write(text.toString());
+        writer.close();
+
+        byte[] expected = text.toString().getBytes("UTF-8");
+        byte[] actual = outputStream.toByteArray();
+        assertEquals(expected.length * 2, actual.length);
+        for (int i = 0; i < actual.length; i++) {
+            assertEquals("Invalid byte at " + i + ".", expected[i % expected.length], actual[i]);
+        }
+    }
+
+    /**
+     * Tests writing the unpaired surrogates.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testWriteUnpairedSurrogates() throws Exception {
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        EncodingWriter writer = new EncodingWriter(outputStream);
+        writer.write("a\udc00b\ud800c\ud800");
+        writer.close();
+
+        assertEquals("a?b?c?", outputStream.toString("UTF-8"));
+    }
+
+    /**
+     * Tests that the released writer can not be used anymore.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testWriteReleased() throws Exception {
+
+        EncodingWriter writer = new EncodingWriter(new ByteArrayOutputStream());
+        writer.write(TEXT);
+        writer.release();
+
+        try {
+            writer.write(TEXT);
+            assertTrue("IOException expected.", false);
+        } catch (IOException e) {
+            // expected
+        }
+
+        // closing the released writer has no effect
+        writer.close();
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb;
+
+import org.castor.entities.Entity;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import javax.xml.XMLConstants;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.validation.SchemaFactory;
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.custommonkey.xmlunit.XMLAssert.assertXMLEqual;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the {@link MarshallerTemplate} class.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(locations = {"classpath:/castor-jaxb-test-context.xml"})
+public class MarshallerTemplateTest {
+
+    /**
+     * Represents the expected xml.
+     */
+    private static final String EXPECTED_XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<Entity><Name>Test</Name></Entity>";
+
+    /**
+     * Represents the path to the schema file.
+     */
+    private static final String INVALID_SCHEMA_FILE = "/org/castor/entities/InvalidEntity.xsd";
+
+    /**
+     * Represents the number of threads used by the concurrency test.
+     */
+    private static final int THREADS = 8;
+
+    /**
+     * Represents the number of marshallings done by the concurrency test.
+     */
+    private static final int TASKS = 200;
+
+    /**
+     * Represents the context used for creating the templates.
+     */
+    private CastorJAXBContext context;
+
+    /**
+     * Sets up the test environment.
+     *
+     * @throws JAXBException if any error occurs
+     */
+    @Before
+    public void setUp() throws JAXBException {
+
+        context = (CastorJAXBContext) JAXBContext.newInstance("org.castor.entities");
+    }
+
+    /**
+     * Tests the {@link MarshallerTemplate#marshal(Object, java.io.Writer)} method.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testMarshal() throws Exception {
+
+        MarshallerTemplate template = context.createMarshallerTemplate(null, null, null);
+
+        assertXMLEqual(EXPECTED_XML, marshal(template));
+        assertXMLEqual(EXPECTED_XML, marshal(template));
+        assertEquals("The marshaller should be returned to the pool.", 1, template.getIdleCount());
+    }
+
+    /**
+     * Tests that the properties are fixed when the template is created.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testProperties() throws Exception {
+
+        Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+        MarshallerTemplate template = context.createMarshallerTemplate(properties, null, null);
+
+        properties.put(Marshaller.JAXB_FRAGMENT, Boolean.FALSE);
+
+        assertEquals(Boolean.TRUE, template.getProperty(Marshaller.JAXB_FRAGMENT));
+        assertFalse("Fragment should not have the xml declaration.", marshal(template).startsWith("<?xml"));
+        assertNull(template.getListener());
+        assertNull(template.getSchema());
+    }
+
+    /**
+     * Tests that the properties of the template can not be modified.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test(expected = UnsupportedOperationException.class)
+    public void testPropertiesUnmodifiable() throws Exception {
+
+        MarshallerTemplate template = context.createMarshallerTemplate(null, null, null);
+
+        template.getProperties().put(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+    }
+
+    /**
+     * Tests that the listener of the template is notified.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testListener() throws Exception {
+
+        final AtomicInteger count = new AtomicInteger();
+        MarshallerTemplate template = context.createMarshallerTemplate(null, new Marshaller.Listener() {
+            @Override
+            public void beforeMarshal(Object source) {
+                if (source instanceof Entity) {
+                    count.incrementAndGet();
+                }
+            }
+        }, null);
+
+        marshal(template);
+        marshal(template);
+
+        assertEquals(2, count.get());
+    }
+
+    /**
+     * Tests that the result is validated against the schema of the template. </p> {@link JAXBException} is
+     * expected.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test(expected = JAXBException.class)
+    public void testMarshalInvalidSchema() throws Exception {
+
+        SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+        MarshallerTemplate template = context.createMarshallerTemplate(null, null,
+                schemaFactory.newSchema(getClass().getResource(INVALID_SCHEMA_FILE)));
+
+        marshal(template);
+    }
+
+    /**
+     * Tests sharing the template by several threads.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testConcurrentMarshal() throws Exception {
+
+        final MarshallerTemplate template = context.createMarshallerTemplate(null, null, null);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<String>> results = new ArrayList<Future<String>>();
+            for (int i = 0; i < TASKS; i++) {
+                results.add(executorService.submit(new Callable<String>() {
+                    public String call() throws Exception {
+                        return marshal(template);
+                    }
+                }));
+            }
+
+            for (Future<String> result : results) {
+                assertXMLEqual(EXPECTED_XML, result.get());
+            }
+        } finally {
+            executorService.shutdown();
+        }
+
+        assertTrue("The pool should keep the idle marshallers.", template.getIdleCount() > 0);
+        assertTrue("The pool should be bounded.", template.getIdleCount() <= TemplatePool.DEFAULT_MAX_IDLE);
+    }
+
+    /**
+     * Tests the {@link MarshallerTemplate#marshalAsync(Object, java.io.Writer)} method.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testMarshalAsync() throws Exception {
+
+        MarshallerTemplate template = context.createMarshallerTemplate(null, null, null);
+
+        StringWriter writer = new StringWriter();
+        Future<Void> result = template.marshalAsync(createEntity(), writer);
+
+        assertNull(result.get());
+        assertXMLEqual(EXPECTED_XML, writer.toString());
+    }
+
+    /**
+     * Tests the {@link MarshallerTemplate#marshalAsync(Object, java.io.OutputStream, Executor)} method.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testMarshalAsyncExecutor() throws Exception {
+
+        MarshallerTemplate template = context.createMarshallerTemplate(null, null, null);
+
+        final AtomicInteger count = new AtomicInteger();
+        Executor executor = new Executor() {
+            public void execute(Runnable command) {
+                count.incrementAndGet();
+                new Thread(command).start();
+            }
+        };
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        template.marshalAsync(createEntity(), outputStream, executor).get();
+
+        assertEquals("The given executor should be used.", 1, count.get());
+        assertXMLEqual(EXPECTED_XML, new String(outputStream.toByteArray(), "UTF-8"));
+    }
+
+    /**
+     * Tests that the future reports the marshalling error.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testMarshalAsyncInvalidSchema() throws Exception {
+
+        SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+        MarshallerTemplate template = context.createMarshallerTemplate(null, null,
+                schemaFactory.newSchema(getClass().getResource(INVALID_SCHEMA_FILE)));
+
+        try {
+            template.marshalAsync(createEntity(), new StringWriter()).get();
+            fail("ExecutionException expected.");
+        } catch (ExecutionException e) {
+            assertTrue("The cause should be the marshalling error.", e.getCause() instanceof JAXBException);
+        }
+    }
+
+    /**
+     * Marshals the test entity with the given template.
+     *
+     * @param template the template to use
+     *
+     * @return the marshalled xml
+     *
+     * @throws JAXBException if any error occurs during marshalling
+     */
+    private static String marshal(MarshallerTemplate template) throws JAXBException {
+
+        StringWriter writer = new StringWriter();
+        template.marshal(createEntity(), writer);
+        return writer.toString();
+    }
+
+    /**
+     * Creates the test entity.
+     *
+     * @return the test entity
+     */
+    private static Entity createEntity() {
+
+        Entity entity = new Entity();
+        entity.setName("Test");
+        return entity;
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests the {@link TagTemplateSerializer} and {@link TagTemplateCache} classes.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+public class TagTemplateSerializerTest {
+
+    /**
+     * Represents the templates of the names.
+     */
+    private TagTemplateCache templates;
+
+    /**
+     * Represents the output.
+     */
+    private StringWriter writer;
+
+    /**
+     * Sets up the test environment.
+     */
+    @Before
+    public void setUp() {
+
+        templates = new TagTemplateCache();
+        writer = new StringWriter();
+    }
+
+    /**
+     * Tests writing a document with nested, empty and namespace qualified elements.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testDocument() throws Exception {
+
+        TagTemplateSerializer serializer = new TagTemplateSerializer(writer, templates, "UTF-8");
+        serializer.startDocument();
+        serializer.startPrefixMapping("e", "urn:entities");
+        serializer.startElement("urn:entities", "Entities", "e:Entities", new AttributesImpl());
+        serializer.startElement("", "Entity", "Entity", new AttributesImpl());
+        serializer.characters("Test".toCharArray(), 0, 4);
+        serializer.endElement("", "Entity", "Entity");
+        serializer.startElement("", "Entity", "Entity", null);
+        serializer.endElement("", "Entity", "Entity");
+        serializer.endElement("urn:entities", "Entities", "e:Entities");
+        serializer.endPrefixMapping("e");
+        serializer.endDocument();
+
+        assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<e:Entities xmlns:e=\"urn:entities\"><Entity>Test</Entity><Entity/></e:Entities>",
+                writer.toString());
+    }
+
+    /**
+     * Tests that the text and the attribute values are escaped.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testEscaping() throws Exception {
+
+        AttributesImpl attributes = new AttributesImpl();
+        attributes.addAttribute("", "name", "name", "CDATA", "a<b & \"c\"\n");
+
+        TagTemplateSerializer serializer = new TagTemplateSerializer(writer, templates, null);
+        serializer.startDocument();
+        char[] text = "x < y && y > \"z\"".toCharArray();
+        serializer.startElement("", "Entity", "", attributes);
+        serializer.characters(text, 0, text.length);
+        serializer.endElement("", "Entity", "");
+
+        assertEquals("<Entity name=\"a&lt;b &amp; &quot;c&quot;&#10;\">x &lt; y &amp;&amp; y &gt; \"z\"</Entity>",
+                writer.toString());
+    }
+
+    /**
+     * Tests that a character that can not appear in an XML document is rejected from the text. </p> {@link
+     * SAXException} is expected.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test(expected = SAXException.class)
+    public void testInvalidCharacter() throws Exception {
+
+        TagTemplateSerializer serializer = new TagTemplateSerializer(writer, templates, null);
+        serializer.startDocument();
+        char[] text = "a\u0001b".toCharArray();
+        serializer.startElement("", "Entity", "", new AttributesImpl());
+        serializer.characters(text, 0, text.length);
+    }
+
+    /**
+     * Tests that a character that can not appear in an XML document is rejected from an attribute value. </p> {@link
+     * SAXException} is expected.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test(expected = SAXException.class)
+    public void testInvalidAttributeCharacter() throws Exception {
+
+        AttributesImpl attributes = new AttributesImpl();
+        attributes.addAttribute("", "name", "name", "CDATA", "a\uFFFF");
+
+        TagTemplateSerializer serializer = new TagTemplateSerializer(writer, templates, null);
+        serializer.startDocument();
+        serializer.startElement("", "Entity", "", attributes);
+    }
+
+    /**
+     * Tests that the white space characters are accepted.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testWhiteSpaceCharacters() throws Exception {
+
+        TagTemplateSerializer serializer = new TagTemplateSerializer(writer, templates, null);
+        serializer.startDocument();
+        char[] text = "\t\n\r ".toCharArray();
+        serializer.startElement("", "Entity", "", new AttributesImpl());
+        serializer.characters(text, 0, text.length);
+        serializer.endElement("", "Entity", "");
+
+        assertEquals("<Entity>\t\n&#13; </Entity>", writer.toString());
+    }
+
+    /**
+     * Tests that the templates are built once per name.
+     */
+    @Test
+    public void testTemplateCache() {
+
+        TagTemplateCache.TagTemplate template = templates.getTemplate("e:Entity");
+
+        assertSame(template, templates.getTemplate("e:Entity"));
+        assertEquals("<e:Entity", new String(template.getStartTag()));
+        assertEquals("</e:Entity>", new String(template.getEndTag()));
+        assertEquals(" e:Entity=\"", new String(template.getAttributePrefix()));
+        assertEquals(1, templates.size());
+    }
+
+    /**
+     * Tests that the number of cached templates is bounded.
+     */
+    @Test
+    public void testTemplateCacheBounded() {
+
+        for (int i = 0; i < TagTemplateCache.MAX_SIZE + 10; i++) {
+            templates.getTemplate("Entity" + i);
+        }
+
+        assertEquals(TagTemplateCache.MAX_SIZE, templates.size());
+        assertEquals("<Entity0", new String(templates.getTemplate("Entity0").getStartTag()));
+    }
+}
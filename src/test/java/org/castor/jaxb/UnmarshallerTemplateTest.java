@@ -0,0 +1,259 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb;
+
+import org.castor.entities.Entity;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import javax.xml.XMLConstants;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.SchemaFactory;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the {@link UnmarshallerTemplate} class.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(locations = {"classpath:/castor-jaxb-test-context.xml"})
+public class UnmarshallerTemplateTest {
+
+    /**
+     * Represents the input xml.
+     */
+    private static final String INPUT_XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<Entity><Name>Test</Name></Entity>";
+
+    /**
+     * Represents the path to the schema file.
+     */
+    private static final String INVALID_SCHEMA_FILE = "/org/castor/entities/InvalidEntity.xsd";
+
+    /**
+     * Represents the number of threads used by the concurrency test.
+     */
+    private static final int THREADS = 8;
+
+    /**
+     * Represents the number of unmarshallings done by the concurrency test.
+     */
+    private static final int TASKS = 200;
+
+    /**
+     * Represents the context used for creating the templates.
+     */
+    private CastorJAXBContext context;
+
+    /**
+     * Sets up the test environment.
+     *
+     * @throws JAXBException if any error occurs
+     */
+    @Before
+    public void setUp() throws JAXBException {
+
+        context = (CastorJAXBContext) JAXBContext.newInstance("org.castor.entities");
+    }
+
+    /**
+     * Tests the {@link UnmarshallerTemplate#unmarshal(java.io.Reader)} method.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testUnmarshal() throws Exception {
+
+        UnmarshallerTemplate template = context.createUnmarshallerTemplate(null, null, null);
+
+        testEntity((Entity) template.unmarshal(new StringReader(INPUT_XML)));
+        testEntity((Entity) template.unmarshal(new StringReader(INPUT_XML)));
+        assertEquals("The unmarshaller should be returned to the pool.", 1, template.getIdleCount());
+    }
+
+    /**
+     * Tests the {@link UnmarshallerTemplate#unmarshal(javax.xml.transform.Source, Class)} method.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testUnmarshalDeclaredType() throws Exception {
+
+        UnmarshallerTemplate template = context.createUnmarshallerTemplate(null, null, null);
+
+        JAXBElement<Entity> element = template.unmarshal(new StreamSource(new StringReader(INPUT_XML)),
+                Entity.class);
+
+        testEntity(element.getValue());
+    }
+
+    /**
+     * Tests that the listener of the template is notified.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testListener() throws Exception {
+
+        final AtomicInteger count = new AtomicInteger();
+        UnmarshallerTemplate template = context.createUnmarshallerTemplate(null, new Unmarshaller.Listener() {
+            @Override
+            public void afterUnmarshal(Object target, Object parent) {
+                if (target instanceof Entity) {
+                    count.incrementAndGet();
+                }
+            }
+        }, null);
+
+        template.unmarshal(new StringReader(INPUT_XML));
+        template.unmarshal(new StringReader(INPUT_XML));
+
+        assertEquals(2, count.get());
+    }
+
+    /**
+     * Tests that the input is validated against the schema of the template. </p> {@link JAXBException} is
+     * expected.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test(expected = JAXBException.class)
+    public void testUnmarshalInvalidSchema() throws Exception {
+
+        SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+        UnmarshallerTemplate template = context.createUnmarshallerTemplate(null, null,
+                schemaFactory.newSchema(getClass().getResource(INVALID_SCHEMA_FILE)));
+
+        template.unmarshal(new StreamSource(new StringReader(INPUT_XML)));
+    }
+
+    /**
+     * Tests sharing the template by several threads.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testConcurrentUnmarshal() throws Exception {
+
+        final UnmarshallerTemplate template = context.createUnmarshallerTemplate(null, null, null);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Object>> results = new ArrayList<Future<Object>>();
+            for (int i = 0; i < TASKS; i++) {
+                results.add(executorService.submit(new Callable<Object>() {
+                    public Object call() throws Exception {
+                        return template.unmarshal(new StringReader(INPUT_XML));
+                    }
+                }));
+            }
+
+            for (Future<Object> result : results) {
+                testEntity((Entity) result.get());
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * Tests the {@link UnmarshallerTemplate#unmarshalAsync(java.io.Reader)} method.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testUnmarshalAsync() throws Exception {
+
+        UnmarshallerTemplate template = context.createUnmarshallerTemplate(null, null, null);
+
+        testEntity((Entity) template.unmarshalAsync(new StringReader(INPUT_XML)).get());
+    }
+
+    /**
+     * Tests the {@link UnmarshallerTemplate#unmarshalAsync(javax.xml.transform.Source, Class,
+     * java.util.concurrent.Executor)} method.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testUnmarshalAsyncDeclaredType() throws Exception {
+
+        UnmarshallerTemplate template = context.createUnmarshallerTemplate(null, null, null);
+
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            Future<JAXBElement<Entity>> result = template.unmarshalAsync(
+                    new StreamSource(new StringReader(INPUT_XML)), Entity.class, executorService);
+
+            testEntity(result.get().getValue());
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * Tests that the future reports the unmarshalling error.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testUnmarshalAsyncInvalidSchema() throws Exception {
+
+        SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+        UnmarshallerTemplate template = context.createUnmarshallerTemplate(null, null,
+                schemaFactory.newSchema(getClass().getResource(INVALID_SCHEMA_FILE)));
+
+        try {
+            template.unmarshalAsync(new StreamSource(new StringReader(INPUT_XML))).get();
+            fail("ExecutionException expected.");
+        } catch (ExecutionException e) {
+            assertTrue("The cause should be the unmarshalling error.", e.getCause() instanceof JAXBException);
+        }
+    }
+
+    /**
+     * Tests the unmarshalled entity.
+     *
+     * @param entity the entity to test
+     */
+    private static void testEntity(Entity entity) {
+
+        assertNotNull("Entity is null.", entity);
+        assertEquals("Entity has invalid name.", "Test", entity.getName());
+    }
+}
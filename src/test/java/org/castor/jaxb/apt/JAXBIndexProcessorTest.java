@@ -0,0 +1,317 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb.apt;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.InputStream;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.castor.jaxb.reflection.accessor.JAXBAccessor;
+import org.castor.jaxb.reflection.accessor.JAXBAccessorFactory;
+import org.castor.jaxb.reflection.accessor.JAXBAccessors;
+import org.castor.jaxb.reflection.index.ClassIndex;
+import org.castor.jaxb.reflection.index.ClassIndexEntry;
+import org.castor.jaxb.reflection.index.ClassIndexLoader;
+import org.castor.jaxb.reflection.index.ClassIndexMember;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link JAXBIndexProcessor} class.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+public class JAXBIndexProcessorTest {
+
+    /**
+     * Represents the source of the compiled test class with private members.
+     */
+    private static final String ORDER_SOURCE = "package test;\n"
+            + "import java.util.List;\n"
+            + "import javax.xml.bind.annotation.*;\n"
+            + "@XmlRootElement(name = \"order\")\n"
+            + "public class Order {\n"
+            + "    private static final long serialVersionUID = 1L;\n"
+            + "    private transient String cache;\n"
+            + "    @XmlElement(name = \"id\")\n"
+            + "    private long id;\n"
+            + "    private List<String> items;\n"
+            + "    public List<String> getItems() { return items; }\n"
+            + "    public void setItems(List<String> items) { this.items = items; }\n"
+            + "    public void setCodes(int[] codes, String[][] names) { }\n"
+            + "    public void recalculate() { }\n"
+            + "    public static Order getInstance() { return null; }\n"
+            + "    public static class Line { private String text; }\n"
+            + "}\n";
+
+    /**
+     * Represents the source of the compiled test class with accessible members.
+     */
+    private static final String BOOK_SOURCE = "package test;\n"
+            + "import javax.xml.bind.annotation.*;\n"
+            + "@XmlRootElement\n"
+            + "public class Book {\n"
+            + "    String title;\n"
+            + "    int pages;\n"
+            + "    final String edition = \"first\";\n"
+            + "    private String isbn;\n"
+            + "    public String getIsbn() { return isbn; }\n"
+            + "    public void setIsbn(String isbn) { this.isbn = isbn; }\n"
+            + "    public boolean isAvailable() { return true; }\n"
+            + "    @XmlType public static class Chapter { String name; }\n"
+            + "    @XmlType private static class Note { String text; }\n"
+            + "}\n";
+
+    /**
+     * Represents the working directory of the test.
+     */
+    private File directory;
+
+    /**
+     * Sets up the test environment.
+     *
+     * @throws Exception if any error occurs
+     */
+    @Before
+    public void setUp() throws Exception {
+        directory = File.createTempFile("castor-jaxb-apt", "");
+        assertTrue(directory.delete());
+        assertTrue(directory.mkdirs());
+    }
+
+    /**
+     * Tears down the test environment.
+     *
+     * @throws Exception if any error occurs
+     */
+    @After
+    public void tearDown() throws Exception {
+        delete(directory);
+    }
+
+    /**
+     * Tests the generation of the class index.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testProcess() throws Exception {
+
+        compile("Order", ORDER_SOURCE);
+
+        File indexFile = new File(directory, ClassIndex.INDEX_LOCATION);
+        assertTrue("Class index was not written.", indexFile.isFile());
+
+        ClassIndex index;
+        InputStream inputStream = new FileInputStream(indexFile);
+        try {
+            index = ClassIndex.read(inputStream);
+        } finally {
+            inputStream.close();
+        }
+
+        assertEquals("Only annotated classes should be indexed.", 1, index.size());
+        assertNull("Class without annotations should not be indexed.", index.getEntry("test.Order$Line"));
+
+        ClassIndexEntry entry = index.getEntry("test.Order");
+        assertNotNull("Class was not indexed.", entry);
+
+        InputStream classStream = new FileInputStream(new File(directory, "test/Order.class"));
+        try {
+            assertEquals("Checksum of the class file was not indexed.", ClassIndex.computeChecksum(classStream),
+                    entry.getChecksum());
+        } finally {
+            classStream.close();
+        }
+
+        List<ClassIndexMember> fields = entry.getFields();
+        assertEquals("Static and transient fields should not be indexed.", 2, fields.size());
+        assertEquals("id", fields.get(0).getName());
+        assertTrue("Annotated field not marked.", fields.get(0).isAnnotated());
+        assertEquals("items", fields.get(1).getName());
+        assertFalse("Field marked as annotated.", fields.get(1).isAnnotated());
+
+        List<ClassIndexMember> methods = entry.getMethods();
+        assertEquals("Only the instance accessors should be indexed.", 3, methods.size());
+        assertEquals("getItems", methods.get(0).getName());
+        assertArrayEquals(new String[0], methods.get(0).getParameterTypes());
+        assertArrayEquals(new String[]{"java.util.List"}, methods.get(1).getParameterTypes());
+        assertArrayEquals(new String[]{"[I", "[[Ljava.lang.String;"}, methods.get(2).getParameterTypes());
+    }
+
+    /**
+     * Tests that the index entry of a class recompiled without the processor is not used.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testStaleIndex() throws Exception {
+
+        compile("Order", ORDER_SOURCE);
+
+        Class<?> orderClass = new URLClassLoader(new URL[]{directory.toURI().toURL()},
+                getClass().getClassLoader()).loadClass("test.Order");
+        assertNotNull("Class index entry was not loaded.", ClassIndexLoader.getEntry(orderClass));
+
+        compile("Order", ORDER_SOURCE.replace("private long id;", "private long id;\n    private String note;"),
+                "-proc:none");
+
+        Class<?> recompiledClass = new URLClassLoader(new URL[]{directory.toURI().toURL()},
+                getClass().getClassLoader()).loadClass("test.Order");
+        assertNull("Out of date index entry must not be used.", ClassIndexLoader.getEntry(recompiledClass));
+    }
+
+    /**
+     * Tests the generated accessors.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testAccessors() throws Exception {
+
+        compile("Book", BOOK_SOURCE);
+
+        ClassLoader classLoader = new URLClassLoader(new URL[]{directory.toURI().toURL()},
+                getClass().getClassLoader());
+        Class<?> bookClass = classLoader.loadClass("test.Book");
+        Object book = bookClass.newInstance();
+
+        JAXBAccessorFactory factory = JAXBAccessors.getFactory(bookClass);
+        assertNotNull("Accessors were not generated.", factory);
+        assertSame("Accessor factory was not cached.", factory, JAXBAccessors.getFactory(bookClass));
+        assertNull("Private field can not be accessed.", factory.getFieldAccessor("isbn"));
+        assertNull("Final field can not be written.", factory.getFieldAccessor("edition"));
+
+        JAXBAccessor title = JAXBAccessors.getAccessor(bookClass.getDeclaredField("title"));
+        title.setValue(book, "Castor");
+        assertEquals("Castor", title.getValue(book));
+
+        JAXBAccessor pages = factory.getFieldAccessor("pages");
+        pages.setValue(book, 10);
+        assertEquals(10, pages.getValue(book));
+
+        JAXBAccessor isbn = JAXBAccessors.getAccessor(bookClass.getMethod("getIsbn"),
+                bookClass.getMethod("setIsbn", String.class));
+        isbn.setValue(book, "83-01");
+        assertEquals("83-01", isbn.getValue(book));
+
+        JAXBAccessor available = factory.getMethodAccessor("isAvailable", null);
+        assertEquals(Boolean.TRUE, available.getValue(book));
+        try {
+            available.setValue(book, Boolean.FALSE);
+            fail("Read only property can not be written.");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        assertNotNull("Accessors of the nested class were not generated.",
+                JAXBAccessors.getFactory(classLoader.loadClass("test.Book$Chapter")));
+        assertNull("Accessors of the private nested class can not be generated.",
+                JAXBAccessors.getFactory(classLoader.loadClass("test.Book$Note")));
+    }
+
+    /**
+     * Tests that the generation of the accessors can be turned off.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testAccessorsDisabled() throws Exception {
+
+        compile("Book", BOOK_SOURCE, "-A" + JAXBIndexProcessor.ACCESSORS_OPTION + "=false");
+
+        assertTrue("Class index was not written.", new File(directory, ClassIndex.INDEX_LOCATION).isFile());
+        assertFalse("Accessors should not be generated.",
+                new File(directory, "test/Book" + JAXBAccessorFactory.CLASS_NAME_SUFFIX + ".class").exists());
+    }
+
+    /**
+     * Compiles the given source with the processor into the working directory.
+     *
+     * @param className the simple name of the compiled class
+     * @param source    the source to compile
+     * @param options   the additional compiler options
+     *
+     * @throws Exception if any error occurs
+     */
+    private void compile(String className, String source, String... options) throws Exception {
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Assume.assumeNotNull(compiler);
+
+        File sourceFile = new File(directory, className + ".java");
+        Writer writer = new FileWriter(sourceFile);
+        try {
+            writer.write(source);
+        } finally {
+            writer.close();
+        }
+
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+        try {
+            Iterable<? extends JavaFileObject> units = fileManager.getJavaFileObjects(sourceFile);
+            List<String> compilerOptions = new ArrayList<String>(Arrays.asList(options));
+            compilerOptions.addAll(Arrays.asList("-d", directory.getAbsolutePath(), "-s", directory.getAbsolutePath(),
+                    "-classpath", System.getProperty("java.class.path")));
+
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, null, compilerOptions, null, units);
+            task.setProcessors(Arrays.asList(new JAXBIndexProcessor()));
+            assertTrue("Compilation failed.", task.call());
+        } finally {
+            fileManager.close();
+        }
+    }
+
+    /**
+     * Deletes the file or the directory with all its contents.
+     *
+     * @param file the file to delete
+     */
+    private static void delete(File file) {
+
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb.benchmark;
+
+import java.util.HashMap;
+
+import org.castor.entities.Entity;
+import org.castor.jaxb.CastorJAXBContextFactory;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+/**
+ * Measures the latency of creating a {@link org.castor.jaxb.CastorJAXBContext}.
+ * <p/>
+ * The benchmark reports the cost of the first context (which builds the shared processing graph), the average
+ * cost of every following context and, for comparison, the cost of building the Spring application context that
+ * used to be created for every single context. Run it with:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=org.castor.jaxb.benchmark.ContextCreationBenchmark
+ * </pre>
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+public final class ContextCreationBenchmark {
+
+    /**
+     * Represents the number of measured iterations.
+     */
+    private static final int ITERATIONS = 50;
+
+    /**
+     * Represents the number of nanoseconds in a millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1000000d;
+
+    /**
+     * Creates new instance of {@link ContextCreationBenchmark} class.
+     */
+    private ContextCreationBenchmark() {
+        // empty constructor
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the command line arguments, the first one optionally overrides the number of iterations
+     *
+     * @throws Exception if any error occurs
+     */
+    public static void main(String[] args) throws Exception {
+
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : ITERATIONS;
+
+        long start = System.nanoTime();
+        createContext();
+        long first = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            createContext();
+        }
+        long shared = (System.nanoTime() - start) / iterations;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            new ClassPathXmlApplicationContext("classpath:/castor-jaxb-context.xml").close();
+            createContext();
+        }
+        long perContext = (System.nanoTime() - start) / iterations;
+
+        System.out.println(String.format("first context (builds shared graph): %10.3f ms", first / NANOS_PER_MILLI));
+        System.out.println(String.format("context with shared graph:           %10.3f ms", shared / NANOS_PER_MILLI));
+        System.out.println(String.format("context with Spring graph per context: %8.3f ms", perContext / NANOS_PER_MILLI));
+    }
+
+    /**
+     * Creates a single context bound to the {@link Entity} class.
+     *
+     * @throws Exception if any error occurs
+     */
+    private static void createContext() throws Exception {
+        CastorJAXBContextFactory.createContext(new Class[] {Entity.class}, new HashMap<String, Object>());
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb.benchmark;
+
+import org.castor.jaxb.reflection.JAXBFieldHandlerImpl;
+import org.castor.jaxb.reflection.accessor.JAXBAccessor;
+
+/**
+ * Compares the throughput of a {@link JAXBFieldHandlerImpl} accessing a property through reflection with one using a
+ * {@link JAXBAccessor} as generated by the {@link org.castor.jaxb.apt.JAXBIndexProcessor}. The accessor used here is
+ * written by hand in the form the processor generates, since the processor does not run on the test sources. Run it
+ * with:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=org.castor.jaxb.benchmark.FieldHandlerBenchmark
+ * </pre>
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+public final class FieldHandlerBenchmark {
+
+    /**
+     * Represents the number of measured invocations.
+     */
+    private static final int ITERATIONS = 10000000;
+
+    /**
+     * Represents the number of warm up rounds preceding the measurement.
+     */
+    private static final int WARM_UP_ROUNDS = 5;
+
+    /**
+     * Represents the number of nanoseconds in a millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1000000d;
+
+    /**
+     * Creates new instance of {@link FieldHandlerBenchmark} class.
+     */
+    private FieldHandlerBenchmark() {
+        // empty constructor
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the command line arguments, the first one optionally overrides the number of invocations
+     *
+     * @throws Exception if any error occurs
+     */
+    public static void main(String[] args) throws Exception {
+
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : ITERATIONS;
+
+        JAXBFieldHandlerImpl reflective = new JAXBFieldHandlerImpl();
+        reflective.setMethods(Item.class.getMethod("getName"), Item.class.getMethod("setName", String.class));
+
+        JAXBFieldHandlerImpl generated = new JAXBFieldHandlerImpl();
+        generated.setAccessor(new ItemNameAccessor());
+
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+            run(reflective, iterations);
+            run(generated, iterations);
+        }
+
+        long reflectiveTime = run(reflective, iterations);
+        long generatedTime = run(generated, iterations);
+
+        System.out.println(String.format("reflective handler: %10.3f ms (%6.2f ns/op)",
+                reflectiveTime / NANOS_PER_MILLI, (double) reflectiveTime / iterations));
+        System.out.println(String.format("generated accessor: %10.3f ms (%6.2f ns/op)",
+                generatedTime / NANOS_PER_MILLI, (double) generatedTime / iterations));
+    }
+
+    /**
+     * Sets and reads the property through the given handler.
+     *
+     * @param fieldHandler the field handler
+     * @param iterations   the number of invocations
+     *
+     * @return the elapsed time in nanoseconds
+     */
+    private static long run(JAXBFieldHandlerImpl fieldHandler, int iterations) {
+
+        Item item = new Item();
+        String value = "value";
+        int length = 0;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            fieldHandler.setValue(item, value);
+            length += ((String) fieldHandler.getValue(item)).length();
+        }
+        long time = System.nanoTime() - start;
+
+        if (length != iterations * value.length()) {
+            throw new IllegalStateException("Unexpected result " + length + ".");
+        }
+        return time;
+    }
+
+    /**
+     * The bound class used by the benchmark.
+     */
+    public static class Item {
+
+        /**
+         * Represents the name.
+         */
+        private String name;
+
+        /**
+         * Retrieves the name.
+         *
+         * @return the name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Sets the name.
+         *
+         * @param name the name
+         */
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * The accessor of the {@link Item} name, in the form generated by the processor.
+     */
+    private static class ItemNameAccessor implements JAXBAccessor {
+
+        /**
+         * {@inheritDoc}
+         */
+        public Object getValue(Object object) {
+            return ((Item) object).getName();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public void setValue(Object object, Object value) {
+            ((Item) object).setName((String) value);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb.benchmark;
+
+import org.castor.entities.Entity;
+import org.castor.jaxb.CastorMarshaller;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.Marshaller;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Compares the throughput and the allocation rate of a {@link Marshaller} creating a new Castor marshaller for every
+ * call with one reusing it, as enabled by {@link CastorMarshaller#REUSE_MARSHALLER_PROPERTY}. The allocated bytes
+ * are only reported on virtual machines able to measure them per thread. Run it with:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=org.castor.jaxb.benchmark.MarshallerReuseBenchmark
+ * </pre>
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+public final class MarshallerReuseBenchmark {
+
+    /**
+     * Represents the number of measured marshallings.
+     */
+    private static final int ITERATIONS = 100000;
+
+    /**
+     * Represents the number of warm up rounds preceding the measurement.
+     */
+    private static final int WARM_UP_ROUNDS = 5;
+
+    /**
+     * Represents the number of nanoseconds in a millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1000000d;
+
+    /**
+     * Creates new instance of {@link MarshallerReuseBenchmark} class.
+     */
+    private MarshallerReuseBenchmark() {
+        // empty constructor
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the command line arguments, the first one optionally overrides the number of marshallings
+     *
+     * @throws Exception if any error occurs
+     */
+    public static void main(String[] args) throws Exception {
+
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : ITERATIONS;
+
+        JAXBContext context = JAXBContext.newInstance(Entity.class);
+
+        Marshaller created = context.createMarshaller();
+
+        Marshaller reused = context.createMarshaller();
+        reused.setProperty(CastorMarshaller.REUSE_MARSHALLER_PROPERTY, Boolean.TRUE);
+
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+            run(created, iterations);
+            run(reused, iterations);
+        }
+
+        report("new marshaller   ", created, iterations);
+        report("reused marshaller", reused, iterations);
+    }
+
+    /**
+     * Measures and prints the results of the given marshaller.
+     *
+     * @param label      the label of the results
+     * @param marshaller the marshaller
+     * @param iterations the number of marshallings
+     *
+     * @throws Exception if any error occurs
+     */
+    private static void report(String label, Marshaller marshaller, int iterations) throws Exception {
+
+        long allocatedBefore = getAllocatedBytes();
+        long time = run(marshaller, iterations);
+        long allocatedAfter = getAllocatedBytes();
+
+        String allocation = allocatedBefore < 0 || allocatedAfter < 0 ? "n/a"
+                : String.format("%8.0f B/op", (double) (allocatedAfter - allocatedBefore) / iterations);
+        System.out.println(String.format("%s: %10.3f ms (%8.2f ns/op, %s)", label, time / NANOS_PER_MILLI,
+                (double) time / iterations, allocation));
+    }
+
+    /**
+     * Marshals the entity with the given marshaller.
+     *
+     * @param marshaller the marshaller
+     * @param iterations the number of marshallings
+     *
+     * @return the elapsed time in nanoseconds
+     *
+     * @throws Exception if any error occurs
+     */
+    private static long run(Marshaller marshaller, int iterations) throws Exception {
+
+        Entity entity = new Entity();
+        entity.setName("Test");
+        int length = 0;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            StringWriter writer = new StringWriter();
+            marshaller.marshal(entity, writer);
+            length += writer.getBuffer().length();
+        }
+        long time = System.nanoTime() - start;
+
+        if (length == 0) {
+            throw new IllegalStateException("Nothing was marshalled.");
+        }
+        return time;
+    }
+
+    /**
+     * Retrieves the number of bytes allocated by the current thread.
+     *
+     * @return the number of allocated bytes, or -1 if the virtual machine can not measure them
+     */
+    private static long getAllocatedBytes() {
+
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(
+                    Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb.reflection;
+
+import org.castor.jaxb.resolver.JAXBAdapterRegistry;
+import org.castor.jaxb.test.functional.enumValue.ElementWithValues;
+import org.castor.jaxb.test.functional.enumValue.Shape;
+import org.castor.jaxb.test.functional.fieldAdapter.CustomTypeAdapter;
+import org.castor.jaxb.test.functional.fieldAdapter.ElementWithAdapter;
+import org.exolab.castor.mapping.FieldDescriptor;
+import org.exolab.castor.xml.XMLClassDescriptor;
+import org.exolab.castor.xml.XMLFieldDescriptor;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests the {@link ClassDescriptorSnapshot} class.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(locations = {"classpath:/castor-jaxb-test-context.xml"})
+public class ClassDescriptorSnapshotTest {
+
+    /**
+     * Represents the class info builder.
+     */
+    @Autowired
+    private ClassInfoBuilder classInfoBuilder;
+
+    /**
+     * Represents the class descriptor builder.
+     */
+    @Autowired
+    private ClassDescriptorBuilder classDescriptorBuilder;
+
+    /**
+     * Represents the snapshot of the {@link ElementWithAdapter} descriptor.
+     */
+    private byte[] snapshot;
+
+    /**
+     * Sets up the test environment.
+     *
+     * @throws Exception if any error occurs
+     */
+    @Before
+    public void setUp() throws Exception {
+
+        XMLClassDescriptor descriptor = classDescriptorBuilder.buildClassDescriptor(
+                classInfoBuilder.buildClassInfo(ElementWithAdapter.class), true);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        assertEquals(1, ClassDescriptorSnapshot.write(Collections.singletonList(descriptor), outputStream));
+        snapshot = outputStream.toByteArray();
+    }
+
+    /**
+     * Tests restoring a snapshot.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testRead() throws Exception {
+
+        List<XMLClassDescriptor> descriptors = ClassDescriptorSnapshot.read(new ByteArrayInputStream(snapshot),
+                getClass().getClassLoader(), new JAXBAdapterRegistry());
+
+        assertNotNull("Snapshot was not restored.", descriptors);
+        assertEquals(1, descriptors.size());
+
+        XMLClassDescriptor descriptor = descriptors.get(0);
+        assertEquals(ElementWithAdapter.class, descriptor.getJavaClass());
+        assertEquals("element", descriptor.getXMLName());
+
+        FieldDescriptor[] fields = descriptor.getFields();
+        assertEquals(1, fields.length);
+        assertEquals("value", ((XMLFieldDescriptor) fields[0]).getXMLName());
+        assertEquals(CustomTypeAdapter.class, ((JAXBFieldHandlerImpl) fields[0].getHandler()).getXmlAdapterClass());
+        assertEquals(ElementWithAdapter.class.getMethod("getCustomType"),
+                ((JAXBFieldHandlerImpl) fields[0].getHandler()).getGetMethod());
+    }
+
+    /**
+     * Tests that the restored field handlers use the lexical forms of the values.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testReadLexicalForms() throws Exception {
+
+        XMLClassDescriptor descriptor = classDescriptorBuilder.buildClassDescriptor(
+                classInfoBuilder.buildClassInfo(ElementWithValues.class), true);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ClassDescriptorSnapshot.write(Collections.singletonList(descriptor), outputStream);
+        List<XMLClassDescriptor> descriptors = ClassDescriptorSnapshot.read(
+                new ByteArrayInputStream(outputStream.toByteArray()), getClass().getClassLoader(),
+                new JAXBAdapterRegistry());
+
+        assertNotNull("Snapshot was not restored.", descriptors);
+        ElementWithValues element = new ElementWithValues();
+        element.setShape(Shape.CIRCLE);
+        element.setCount(5);
+        for (FieldDescriptor field : descriptors.get(0).getFields()) {
+            assertEquals(String.class, field.getFieldType());
+            if ("shape".equals(field.getFieldName())) {
+                assertEquals("circle", field.getHandler().getValue(element));
+            } else if ("count".equals(field.getFieldName())) {
+                assertEquals("5", field.getHandler().getValue(element));
+            }
+        }
+    }
+
+    /**
+     * Tests that a snapshot built from a different class file is rejected.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testReadChangedClass() throws Exception {
+
+        ClassLoader classLoader = new ClassLoader(getClass().getClassLoader()) {
+            @Override
+            public InputStream getResourceAsStream(String name) {
+                if (name.equals(ElementWithAdapter.class.getName().replace('.', '/') + ".class")) {
+                    return new ByteArrayInputStream(new byte[]{(byte) 0xCA, (byte) 0xFE});
+                }
+                return super.getResourceAsStream(name);
+            }
+        };
+
+        assertNull("Out of date snapshot must be rejected.", ClassDescriptorSnapshot.read(
+                new ByteArrayInputStream(snapshot), classLoader, new JAXBAdapterRegistry()));
+    }
+
+    /**
+     * Tests reading a stream that does not hold a snapshot.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test(expected = IOException.class)
+    public void testReadInvalid() throws Exception {
+
+        ClassDescriptorSnapshot.read(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5, 6}),
+                getClass().getClassLoader(), new JAXBAdapterRegistry());
+    }
+}
@@ -23,6 +23,8 @@ import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlEnum;
 import javax.xml.bind.annotation.XmlRootElement;
 
+import org.castor.jaxb.reflection.index.ClassIndexEntry;
+import org.castor.jaxb.reflection.index.ClassIndexMember;
 import org.castor.jaxb.reflection.info.ClassInfo;
 import org.castor.jaxb.reflection.info.JaxbClassNature;
 import org.castor.jaxb.reflection.info.JaxbFieldNature;
@@ -118,6 +120,48 @@ public class ClassInfoBuilderTest {
         }
     }
     
+    /**
+     * Creates the up to date index entry of the Artist class.
+     */
+    private ClassIndexEntry createArtistEntry() {
+        ClassIndexEntry entry = new ClassIndexEntry(Artist.class.getName());
+        entry.addField(new ClassIndexMember("_name", null, false));
+        entry.addField(new ClassIndexMember("_birthday", null, false));
+        entry.addField(new ClassIndexMember("_biography", null, false));
+        entry.addMethod(new ClassIndexMember("getName", new String[0], true));
+        entry.addMethod(new ClassIndexMember("setName", new String[] {String.class.getName()}, false));
+        entry.addMethod(new ClassIndexMember("getBirthday", new String[0], true));
+        entry.addMethod(new ClassIndexMember("setBirthday", new String[] {Date.class.getName()}, false));
+        entry.addMethod(new ClassIndexMember("getBiography", new String[0], true));
+        entry.addMethod(new ClassIndexMember("setBiography", new String[] {String.class.getName()}, false));
+        return entry;
+    }
+
+    @Test
+    public final void testArtistFromClassIndex() {
+        ClassIndexEntry entry = createArtistEntry();
+
+        JaxbClassNature expected = new JaxbClassNature(classInfoBuilder.buildClassInfo(Artist.class));
+        JaxbClassNature ci = new JaxbClassNature(classInfoBuilder.buildClassInfo(Artist.class, entry));
+        Assert.assertEquals("Artist", ci.getRootElementName());
+        Assert.assertEquals(Artist.class, ci.getType());
+        Assert.assertEquals(expected.getFields().size(), ci.getFields().size());
+        for (int i = 0; i < ci.getFields().size(); i++) {
+            Assert.assertEquals(expected.getFields().get(i).getElementName(),
+                    ci.getFields().get(i).getElementName());
+            Assert.assertEquals(expected.getFields().get(i).getElementType(),
+                    ci.getFields().get(i).getElementType());
+        }
+    }
+
+    @Test
+    public final void testStaleClassIndex() {
+        ClassIndexEntry entry = new ClassIndexEntry(Artist.class.getName());
+        entry.addField(new ClassIndexMember("_removed", null, false));
+        Assert.assertNull("Out of date index entry must not be used",
+                classInfoBuilder.buildClassInfo(Artist.class, entry));
+    }
+
     /**
      * A class without any annotation.
      */
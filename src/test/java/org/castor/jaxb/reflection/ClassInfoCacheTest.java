@@ -0,0 +1,164 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb.reflection;
+
+import org.castor.entities.Entity;
+import org.castor.jaxb.reflection.info.ClassInfo;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests the {@link ClassInfoCache} class.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(locations = {"classpath:/castor-jaxb-test-context.xml"})
+public class ClassInfoCacheTest {
+
+    /**
+     * Represents the builder of the cached class infos.
+     */
+    @Autowired
+    private ClassInfoBuilder classInfoBuilder;
+
+    /**
+     * Represents the tested cache.
+     */
+    private ClassInfoCache instance;
+
+    /**
+     * Sets up the test environment.
+     */
+    @Before
+    public void setUp() {
+        instance = new ClassInfoCache();
+    }
+
+    /**
+     * Tests the {@link ClassInfoCache#get(Class)} and {@link ClassInfoCache#put(Class, ClassInfo)} methods.
+     */
+    @Test
+    public void testGetAndPut() {
+
+        assertNull("Class info should not be cached.", instance.get(Entity.class));
+
+        ClassInfo classInfo = classInfoBuilder.buildClassInfo(Entity.class);
+        assertSame(classInfo, instance.put(Entity.class, classInfo));
+        assertSame("Cached class info should be kept.", classInfo,
+                instance.put(Entity.class, classInfoBuilder.buildClassInfo(Entity.class)));
+        assertSame("Class info should be cached.", classInfo, instance.get(Entity.class));
+
+        assertEquals("Invalid size.", 1, instance.size());
+        assertEquals("Invalid hit count.", 1, instance.getHitCount());
+        assertEquals("Invalid miss count.", 1, instance.getMissCount());
+    }
+
+    /**
+     * Tests that the class infos of the classes of the same name are kept apart by their class loader.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testClassLoaders() throws Exception {
+
+        Class<?> otherEntity = loadEntity();
+        assertNotSame(Entity.class, otherEntity);
+
+        instance.put(Entity.class, classInfoBuilder.buildClassInfo(Entity.class));
+        assertNull("Class info of another class loader returned.", instance.get(otherEntity));
+
+        instance.put(otherEntity, classInfoBuilder.buildClassInfo(otherEntity));
+        assertEquals("Invalid class loader count.", 2, instance.getClassLoaderCount());
+
+        instance.clear(otherEntity.getClassLoader());
+        assertEquals("Invalid class loader count.", 1, instance.getClassLoaderCount());
+        assertNull(instance.get(otherEntity));
+    }
+
+    /**
+     * Tests that the cache does not prevent a class loader from being collected once its class infos are dropped.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testClassLoaderCollected() throws Exception {
+
+        Class<?> otherEntity = loadEntity();
+        instance.put(otherEntity, classInfoBuilder.buildClassInfo(otherEntity));
+
+        WeakReference<ClassLoader> classLoader = new WeakReference<ClassLoader>(otherEntity.getClassLoader());
+        instance.clear(classLoader.get());
+        otherEntity = null;
+
+        for (int i = 0; i < 10 && classLoader.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertNull("Class loader has not been collected.", classLoader.get());
+        assertEquals("Invalid class loader count.", 0, instance.getClassLoaderCount());
+    }
+
+    /**
+     * Tests that the class infos of a class loader other than the one of the cache survive the garbage collections.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testClassInfoSurvivesGarbageCollection() throws Exception {
+
+        Class<?> otherEntity = loadEntity();
+        instance.put(otherEntity, classInfoBuilder.buildClassInfo(otherEntity));
+        WeakReference<ClassInfo> classInfo = new WeakReference<ClassInfo>(instance.get(otherEntity));
+
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertSame("Class info has been reclaimed.", classInfo.get(), instance.get(otherEntity));
+        assertEquals("Invalid size.", 1, instance.size());
+        assertEquals("Invalid eviction count.", 0, instance.getEvictionCount());
+    }
+
+    /**
+     * Loads the {@link Entity} class through a new class loader.
+     *
+     * @return the loaded class
+     *
+     * @throws Exception if any error occurs when loading the class
+     */
+    private static Class<?> loadEntity() throws Exception {
+
+        URL location = Entity.class.getProtectionDomain().getCodeSource().getLocation();
+        return new URLClassLoader(new URL[]{location}, null).loadClass(Entity.class.getName());
+    }
+}
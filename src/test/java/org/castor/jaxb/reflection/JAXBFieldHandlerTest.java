@@ -18,6 +18,7 @@ package org.castor.jaxb.reflection;
 import org.castor.jaxb.resolver.JAXBAdapterRegistry;
 import org.junit.Assert;
 import org.castor.jaxb.exceptions.AdapterException;
+import org.castor.jaxb.reflection.accessor.JAXBAccessor;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -25,6 +26,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
+import javax.xml.bind.annotation.XmlEnumValue;
 import javax.xml.bind.annotation.adapters.XmlAdapter;
 import java.lang.reflect.Method;
 
@@ -184,6 +186,93 @@ public class JAXBFieldHandlerTest {
         Assert.assertNotNull(result);
     }
 
+    @Test
+    public void testAccessorGetValue() {
+        Artist a = new Artist();
+        Song s = new Song();
+        s.setArtist(a);
+        setMethodsIntoFieldHandler(_fh);
+        _fh.setAccessor(new SongArtistAccessor());
+        Assert.assertSame(a, _fh.getValue(s));
+    }
+
+    @Test
+    public void testAccessorSetValue() {
+        Song s = new Song();
+        _fh.setAccessor(new SongArtistAccessor());
+        _fh.setXmlAdapterClass(ArtistAdapter.class);
+        _fh.setValue(s, "Hugo");
+        Assert.assertEquals("Hugo", s.getArtist().getName());
+    }
+
+    @Test
+    public void testLexicalFormGetValue() {
+        Measure m = new Measure();
+        m.count = 42;
+        m.unit = Unit.METER;
+        Assert.assertEquals("42", fieldHandlerFor("count").getValue(m));
+        Assert.assertEquals("m", fieldHandlerFor("unit").getValue(m));
+        m.count = 1234567;
+        m.unit = Unit.FOOT;
+        Assert.assertEquals("1234567", fieldHandlerFor("count").getValue(m));
+        Assert.assertEquals("FOOT", fieldHandlerFor("unit").getValue(m));
+        m.unit = null;
+        Assert.assertNull(fieldHandlerFor("unit").getValue(m));
+    }
+
+    @Test
+    public void testLexicalFormSetValue() {
+        Measure m = new Measure();
+        fieldHandlerFor("count").setValue(m, "-7");
+        fieldHandlerFor("unit").setValue(m, "m");
+        Assert.assertEquals(-7, m.count);
+        Assert.assertSame(Unit.METER, m.unit);
+        fieldHandlerFor("unit").setValue(m, "FOOT");
+        Assert.assertSame(Unit.FOOT, m.unit);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLexicalFormUnknownValue() {
+        fieldHandlerFor("unit").setValue(new Measure(), "yard");
+    }
+
+    private enum Unit {
+        @XmlEnumValue("m")
+        METER,
+        FOOT
+    }
+
+    private static class Measure {
+        private int count;
+        private Unit unit;
+    }
+
+    private JAXBFieldHandlerImpl fieldHandlerFor(final String fieldName) {
+        try {
+            java.lang.reflect.Field field = Measure.class.getDeclaredField(fieldName);
+            _fh.setField(field);
+            _fh.setLexicalForm(JAXBLexicalForm.forType(field.getType()));
+            return _fh;
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test(expected = AdapterException.class)
+    public void testAccessorWrongType() {
+        _fh.setAccessor(new SongArtistAccessor());
+        _fh.setValue(new Song(), "Hugo");
+    }
+
+    private static class SongArtistAccessor implements JAXBAccessor {
+        public Object getValue(final Object object) {
+            return ((Song) object).getArtist();
+        }
+        public void setValue(final Object object, final Object value) {
+            ((Song) object).setArtist((Artist) value);
+        }
+    }
+
     private void setMethodsIntoFieldHandler(
             final JAXBFieldHandlerImpl fh) {
         Method getMethod = null;
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb.resolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlSeeAlso;
+import javax.xml.bind.annotation.XmlTransient;
+import javax.xml.bind.annotation.adapters.XmlAdapter;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+/**
+ * Tests the {@link JAXBDescriptorPrewarmer} class.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(locations = { "classpath:/castor-jaxb-test-context.xml" })
+public class JAXBDescriptorPrewarmerTest {
+
+    /**
+     * Represents the command used for building the descriptors.
+     */
+    @Autowired
+    private JAXBClassResolverCommand classResolverCommand;
+
+    /**
+     * Represents the registry filled by the tests.
+     */
+    private JAXBDescriptorRegistry descriptorRegistry;
+
+    /**
+     * Represents the executor used by the tests.
+     */
+    private ExecutorService executor;
+
+    /**
+     * Sets up the test environment.
+     *
+     * @throws Exception if any error occurs
+     */
+    @Before
+    public void setUp() throws Exception {
+        descriptorRegistry = new JAXBDescriptorRegistry();
+        executor = JAXBDescriptorPrewarmer.createExecutor(2);
+    }
+
+    /**
+     * Tears down the test environment.
+     *
+     * @throws Exception if any error occurs
+     */
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdown();
+    }
+
+    /**
+     * Tests the {@link JAXBDescriptorPrewarmer#collectBoundClasses(java.util.Collection)} method.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testCollectBoundClasses() throws Exception {
+
+        Set<Class<?>> classes = JAXBDescriptorPrewarmer.collectBoundClasses(
+                Collections.<Class<?>>singletonList(Order.class));
+
+        assertTrue("Bound class is missing.", classes.contains(Order.class));
+        assertTrue("Super class is missing.", classes.contains(BaseEntity.class));
+        assertTrue("Collection element type is missing.", classes.contains(Item.class));
+        assertTrue("Array component type is missing.", classes.contains(Note.class));
+        assertTrue("Class listed by XmlSeeAlso is missing.", classes.contains(SpecialOrder.class));
+        assertTrue("Type converted by adapter is missing.", classes.contains(Money.class));
+        assertFalse("Transient field type should be skipped.", classes.contains(Audit.class));
+        assertFalse("Enum should be skipped.", classes.contains(Status.class));
+        assertFalse("JDK class should be skipped.", classes.contains(String.class));
+        assertEquals("Invalid number of bound classes.", 6, classes.size());
+    }
+
+    /**
+     * Tests the {@link JAXBDescriptorPrewarmer#prewarm(java.util.Collection, ExecutorService)} method.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testPrewarm() throws Exception {
+
+        JAXBDescriptorPrewarmer prewarmer = new JAXBDescriptorPrewarmer(classResolverCommand, descriptorRegistry);
+
+        List<Class<?>> classes = Arrays.<Class<?>>asList(Order.class);
+        assertEquals("Invalid number of built descriptors.", 6, prewarmer.prewarm(classes, executor));
+        assertNotNull("Descriptor was not registered.", descriptorRegistry.getDescriptor(Item.class.getName()));
+
+        assertEquals("Registered descriptors should not be built again.", 0, prewarmer.prewarm(classes, executor));
+    }
+
+    /**
+     * Tests the {@link JAXBDescriptorPrewarmer#JAXBDescriptorPrewarmer(JAXBClassResolverCommand,
+     * JAXBDescriptorRegistry)} constructor when descriptor registry is null. {@link IllegalArgumentException} is
+     * expected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testCtorNull() {
+        new JAXBDescriptorPrewarmer(classResolverCommand, null);
+    }
+
+    /**
+     * A base class of the test entities.
+     */
+    public static class BaseEntity {
+        private long id;
+
+        public long getId() {
+            return id;
+        }
+
+        public void setId(long id) {
+            this.id = id;
+        }
+    }
+
+    /**
+     * The root entity of the tests.
+     */
+    @XmlRootElement
+    @XmlSeeAlso(SpecialOrder.class)
+    @XmlAccessorType(XmlAccessType.FIELD)
+    public static class Order extends BaseEntity {
+        private List<Item> items;
+        private Note[] notes;
+        private Status status;
+        private Map<String, Integer> quantities;
+        @XmlJavaTypeAdapter(MoneyAdapter.class)
+        private String total;
+        @XmlTransient
+        private Audit audit;
+    }
+
+    /**
+     * An entity listed by {@link XmlSeeAlso}.
+     */
+    public static class SpecialOrder extends Order {
+        private String reason;
+    }
+
+    /**
+     * A collection element.
+     */
+    public static class Item {
+        private String name;
+    }
+
+    /**
+     * An array component.
+     */
+    public static class Note {
+        private String text;
+    }
+
+    /**
+     * A type converted by an adapter.
+     */
+    public static class Money {
+        private String amount;
+    }
+
+    /**
+     * A type of a transient field.
+     */
+    public static class Audit {
+        private String user;
+    }
+
+    /**
+     * An enum.
+     */
+    public enum Status {
+        OPEN, CLOSED
+    }
+
+    /**
+     * An adapter.
+     */
+    public static class MoneyAdapter extends XmlAdapter<Money, String> {
+
+        @Override
+        public String unmarshal(Money value) {
+            return value.amount;
+        }
+
+        @Override
+        public Money marshal(String value) {
+            Money money = new Money();
+            money.amount = value;
+            return money;
+        }
+    }
+}
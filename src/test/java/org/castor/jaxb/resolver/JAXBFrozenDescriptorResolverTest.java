@@ -0,0 +1,135 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb.resolver;
+
+import org.castor.entities.Entity;
+import org.exolab.castor.xml.ResolverException;
+import org.exolab.castor.xml.XMLClassDescriptor;
+import org.exolab.castor.xml.XMLClassDescriptorResolver;
+import org.exolab.castor.xml.XMLContext;
+import org.exolab.castor.xml.util.XMLClassDescriptorImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the {@link JAXBFrozenDescriptorResolver} class.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+public class JAXBFrozenDescriptorResolverTest {
+
+    /**
+     * Represents the classes whose descriptors are frozen.
+     */
+    private static final Class<?>[] CLASSES = new Class<?>[]{Entity.class, Integer.class, Long.class, Short.class,
+            Byte.class, Double.class, Float.class, Character.class, Boolean.class, Number.class, Object.class};
+
+    /**
+     * Represents the wrapped resolver.
+     */
+    private XMLClassDescriptorResolver resolver;
+
+    /**
+     * Represents the frozen descriptors.
+     */
+    private List<XMLClassDescriptor> descriptors;
+
+    /**
+     * Sets up the test environment.
+     */
+    @Before
+    public void setUp() {
+
+        resolver = new XMLContext().getInternalContext().getXMLClassDescriptorResolver();
+
+        descriptors = new ArrayList<XMLClassDescriptor>();
+        for (Class<?> type : CLASSES) {
+            descriptors.add(new XMLClassDescriptorImpl(type));
+        }
+    }
+
+    /**
+     * Tests the {@link JAXBFrozenDescriptorResolver#resolve(Class)} method for the frozen classes.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testResolve() throws Exception {
+
+        JAXBFrozenDescriptorResolver frozenResolver = new JAXBFrozenDescriptorResolver(resolver, descriptors, true);
+
+        assertEquals(CLASSES.length, frozenResolver.size());
+        for (XMLClassDescriptor descriptor : descriptors) {
+            assertSame(descriptor, frozenResolver.resolve(descriptor.getJavaClass()));
+            assertSame(descriptor, frozenResolver.resolve(descriptor.getJavaClass().getName()));
+        }
+        assertEquals(0, frozenResolver.getMissCount());
+    }
+
+    /**
+     * Tests the {@link JAXBFrozenDescriptorResolver#resolve(Class)} method for a class that was not frozen.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testResolveMiss() throws Exception {
+
+        JAXBFrozenDescriptorResolver frozenResolver = new JAXBFrozenDescriptorResolver(resolver, descriptors, false);
+
+        frozenResolver.resolve(String.class);
+        frozenResolver.resolve(String.class.getName());
+
+        assertEquals(2, frozenResolver.getMissCount());
+        assertTrue(frozenResolver.getMissTime() > 0);
+    }
+
+    /**
+     * Tests the {@link JAXBFrozenDescriptorResolver#resolve(Class)} method for a class that was not frozen, when
+     * the resolver is strict.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test(expected = ResolverException.class)
+    public void testResolveMissStrict() throws Exception {
+
+        new JAXBFrozenDescriptorResolver(resolver, descriptors, true).resolve(String.class);
+    }
+
+    /**
+     * Tests the {@link JAXBFrozenDescriptorResolver#addClass(Class)} method.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testAddClass() throws Exception {
+
+        try {
+            new JAXBFrozenDescriptorResolver(resolver, descriptors, false).addClass(String.class);
+            fail("IllegalStateException expected.");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+}
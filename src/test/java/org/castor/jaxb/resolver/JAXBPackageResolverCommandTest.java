@@ -17,8 +17,13 @@ package org.castor.jaxb.resolver;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+import org.castor.jaxb.reflection.ClassInfoCache;
 import org.exolab.castor.xml.ResolverException;
+import org.exolab.castor.xml.XMLClassDescriptor;
 import org.junit.Assert;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -39,6 +44,9 @@ public class JAXBPackageResolverCommandTest {
     @Autowired
     private JAXBPackageResolverCommand command;
 
+    @Autowired
+    private JAXBClassResolverCommand classResolverCommand;
+
     private Map < String, Object > _propertiesMap = 
         new HashMap < String, Object > ();
 
@@ -69,4 +77,61 @@ public class JAXBPackageResolverCommandTest {
             // expected
         }
     }
+
+    @Test
+    public void testResolveInParallel() throws Exception {
+        String packageName = "org.castor.jaxb.test.functional.elementWrapper";
+        Map < String, XMLClassDescriptor > expected = command.resolve(packageName, _propertiesMap);
+        Assert.assertEquals(3, expected.size());
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(2, 2, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue < Runnable > ());
+        try {
+            command.setExecutor(executor);
+            command.setParallelThreshold(1);
+            Map < String, XMLClassDescriptor > descriptors = command.resolve(packageName, _propertiesMap);
+
+            Assert.assertEquals("Every class should be built in the executor", 3, executor.getTaskCount());
+            Assert.assertEquals(expected.keySet(), descriptors.keySet());
+            for (Map.Entry < String, XMLClassDescriptor > entry : expected.entrySet()) {
+                XMLClassDescriptor descriptor = descriptors.get(entry.getKey());
+                Assert.assertEquals(entry.getValue().getXMLName(), descriptor.getXMLName());
+                Assert.assertEquals(entry.getValue().getFields().length, descriptor.getFields().length);
+            }
+        } finally {
+            command.setExecutor(null);
+            command.setParallelThreshold(JAXBPackageResolverCommand.DEFAULT_PARALLEL_THRESHOLD);
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testResolveThroughClassResolverCommand() throws Exception {
+        JAXBStartupReport startupReport = new JAXBStartupReport();
+        ClassInfoCache classInfoCache = new ClassInfoCache();
+        classResolverCommand.setStartupReport(startupReport);
+        classResolverCommand.setClassInfoCache(classInfoCache);
+        try {
+            Map < String, XMLClassDescriptor > descriptors = command.resolve(
+                    "org.castor.jaxb.test.functional.elementWrapper", _propertiesMap);
+
+            Assert.assertEquals(3, descriptors.size());
+            Assert.assertEquals("Every class should be built by the class resolver command",
+                    3, startupReport.getCount(JAXBStartupReport.Phase.CLASS_DESCRIPTOR));
+            Assert.assertEquals("Every class info should be cached", 3, classInfoCache.size());
+        } finally {
+            classResolverCommand.setStartupReport(null);
+            classResolverCommand.setClassInfoCache(null);
+        }
+    }
+
+    @Test
+    public void testResolveContextPath() throws Exception {
+        Map < String, XMLClassDescriptor > descriptors = command.resolve(
+                "org.castor.jaxb.test.functional.elementWrapper:org.castor.jaxb.test.functional.attribute",
+                _propertiesMap);
+        Assert.assertEquals("Classes of both packages should be resolved", 5, descriptors.size());
+        Assert.assertTrue(descriptors.containsKey(
+                "org.castor.jaxb.test.functional.attribute.AttributeWithExplicitName"));
+    }
 }
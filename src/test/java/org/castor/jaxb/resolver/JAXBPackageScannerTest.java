@@ -0,0 +1,215 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb.resolver;
+
+import org.castor.jaxb.reflection.accessor.JAXBAccessorFactory;
+import org.castor.jaxb.test.functional.elementWrapper.ElementWithAnnotationWithExplicitNameWithWrapper;
+import org.castor.jaxb.test.functional.elementWrapper.ElementWithAnnotationWithWrapper;
+import org.castor.jaxb.test.functional.elementWrapper.ElementWithWrapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the {@link JAXBPackageScanner} class.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+public class JAXBPackageScannerTest {
+
+    /**
+     * Represents the name of the scanned package.
+     */
+    private static final String PACKAGE_NAME = ElementWithWrapper.class.getPackage().getName();
+
+    /**
+     * Represents the classes of the scanned package.
+     */
+    private static final Class<?>[] CLASSES = new Class<?>[]{ElementWithWrapper.class,
+            ElementWithAnnotationWithWrapper.class, ElementWithAnnotationWithExplicitNameWithWrapper.class};
+
+    /**
+     * Represents the jar file holding the package.
+     */
+    private File jarFile;
+
+    /**
+     * Sets up the test environment.
+     *
+     * @throws Exception if any error occurs
+     */
+    @Before
+    public void setUp() throws Exception {
+        JAXBPackageScanner.clearCache();
+        jarFile = File.createTempFile("castor-jaxb", ".jar");
+    }
+
+    /**
+     * Tears down the test environment.
+     *
+     * @throws Exception if any error occurs
+     */
+    @After
+    public void tearDown() throws Exception {
+        JAXBPackageScanner.clearCache();
+        jarFile.delete();
+    }
+
+    /**
+     * Tests scanning a package in a directory.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testScanDirectory() throws Exception {
+
+        List<String> classNames = JAXBPackageScanner.getClassNames(PACKAGE_NAME, getClass().getClassLoader());
+
+        assertEquals(getClassNames(), new HashSet<String>(classNames));
+        assertSame("Listing should be cached.", classNames,
+                JAXBPackageScanner.getClassNames(PACKAGE_NAME, getClass().getClassLoader()));
+    }
+
+    /**
+     * Tests scanning a package in a jar file.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testScanJar() throws Exception {
+
+        writeJar(null);
+        ClassLoader classLoader = new URLClassLoader(new URL[]{jarFile.toURI().toURL()}, null);
+
+        List<Class<?>> classes = JAXBPackageScanner.getClasses(PACKAGE_NAME, classLoader);
+
+        assertEquals(CLASSES.length, classes.size());
+        assertFalse("Generated accessors should be skipped.",
+                JAXBPackageScanner.getClassNames(PACKAGE_NAME, classLoader).contains(CLASSES[0].getName()
+                        + JAXBAccessorFactory.CLASS_NAME_SUFFIX));
+        for (Class<?> clazz : classes) {
+            assertTrue(getClassNames().contains(clazz.getName()));
+            assertSame("Class should be loaded from the jar.", classLoader, clazz.getClassLoader());
+        }
+    }
+
+    /**
+     * Tests reading the classes from the package index.
+     *
+     * @throws Exception if any error occurs during test
+     */
+    @Test
+    public void testIndex() throws Exception {
+
+        writeJar("# bound classes\n" + ElementWithWrapper.class.getSimpleName() + " # the only one\n\n");
+        ClassLoader classLoader = new URLClassLoader(new URL[]{jarFile.toURI().toURL()}, null);
+
+        assertEquals(Arrays.asList(ElementWithWrapper.class.getName()),
+                JAXBPackageScanner.getClassNames(PACKAGE_NAME, classLoader));
+    }
+
+    /**
+     * Retrieves the names of the classes of the scanned package.
+     *
+     * @return the set of the class names
+     */
+    private static Set<String> getClassNames() {
+
+        Set<String> classNames = new HashSet<String>();
+        for (Class<?> clazz : CLASSES) {
+            classNames.add(clazz.getName());
+        }
+        return classNames;
+    }
+
+    /**
+     * Writes the jar file holding the classes of the scanned package.
+     *
+     * @param index the content of the package index, null if the package has none
+     *
+     * @throws IOException if any error occurs
+     */
+    private void writeJar(String index) throws IOException {
+
+        String path = PACKAGE_NAME.replace('.', '/') + '/';
+        JarOutputStream outputStream = new JarOutputStream(new FileOutputStream(jarFile));
+        try {
+            outputStream.putNextEntry(new JarEntry(path));
+            outputStream.closeEntry();
+
+            for (Class<?> clazz : CLASSES) {
+                String name = clazz.getName().replace('.', '/') + ".class";
+                outputStream.putNextEntry(new JarEntry(name));
+                copy(getClass().getClassLoader().getResourceAsStream(name), outputStream);
+                outputStream.closeEntry();
+            }
+
+            // the generated accessors are never bound
+            outputStream.putNextEntry(new JarEntry(CLASSES[0].getName().replace('.', '/')
+                    + JAXBAccessorFactory.CLASS_NAME_SUFFIX + ".class"));
+            outputStream.closeEntry();
+
+            if (index != null) {
+                outputStream.putNextEntry(new JarEntry(path + JAXBPackageScanner.INDEX_NAME));
+                outputStream.write(index.getBytes("UTF-8"));
+                outputStream.closeEntry();
+            }
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    /**
+     * Copies the input stream to the output stream and closes the input stream.
+     *
+     * @param inputStream  the input stream
+     * @param outputStream the output stream
+     *
+     * @throws IOException if any error occurs
+     */
+    private static void copy(InputStream inputStream, OutputStream outputStream) throws IOException {
+
+        try {
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, read);
+            }
+        } finally {
+            inputStream.close();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb.resolver;
+
+import org.castor.entities.Entity;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the {@link JAXBStartupReport} class.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+public class JAXBStartupReportTest {
+
+    /**
+     * Represents the tested report.
+     */
+    private JAXBStartupReport report;
+
+    /**
+     * Sets up the test environment.
+     */
+    @Before
+    public void setUp() {
+        report = new JAXBStartupReport();
+    }
+
+    /**
+     * Tests the {@link JAXBStartupReport#record(JAXBStartupReport.Phase, long)} method.
+     */
+    @Test
+    public void testRecord() {
+
+        report.record(JAXBStartupReport.Phase.PACKAGE_SCAN, 10);
+        report.record(JAXBStartupReport.Phase.PACKAGE_SCAN, 5);
+
+        assertEquals(15, report.getTime(JAXBStartupReport.Phase.PACKAGE_SCAN));
+        assertEquals(2, report.getCount(JAXBStartupReport.Phase.PACKAGE_SCAN));
+        assertEquals(0, report.getCount(JAXBStartupReport.Phase.PREWARM));
+        assertTrue(report.getClassTimings().isEmpty());
+    }
+
+    /**
+     * Tests the {@link JAXBStartupReport#record(JAXBStartupReport.Phase, Class, long)} method.
+     */
+    @Test
+    public void testRecordClass() {
+
+        report.record(JAXBStartupReport.Phase.CLASS_INFO, Entity.class, 10);
+        report.record(JAXBStartupReport.Phase.CLASS_DESCRIPTOR, Entity.class, 20);
+        report.record(JAXBStartupReport.Phase.CLASS_INFO, Integer.class, 40);
+
+        assertEquals(50, report.getTime(JAXBStartupReport.Phase.CLASS_INFO));
+        assertEquals(2, report.getCount(JAXBStartupReport.Phase.CLASS_INFO));
+
+        JAXBStartupReport.ClassTiming timing = report.getClassTiming(Entity.class.getName());
+        assertEquals(10, timing.getClassInfoTime());
+        assertEquals(20, timing.getClassDescriptorTime());
+        assertEquals(30, timing.getTotalTime());
+        assertNull(report.getClassTiming(String.class.getName()));
+
+        List<JAXBStartupReport.ClassTiming> timings = report.getClassTimings();
+        assertEquals(2, timings.size());
+        assertEquals("Slowest class should be first.", Integer.class.getName(), timings.get(0).getClassName());
+    }
+
+    /**
+     * Tests the {@link JAXBStartupReport#getSummary()} method.
+     */
+    @Test
+    public void testGetSummary() {
+
+        report.record(JAXBStartupReport.Phase.SET_CLASSES, TimeUnit.MILLISECONDS.toNanos(3));
+        report.record(JAXBStartupReport.Phase.CLASS_INFO, Entity.class, TimeUnit.MILLISECONDS.toNanos(2));
+
+        String summary = report.getSummary();
+        assertTrue(summary, summary.startsWith("Castor JAXB context startup:"));
+        assertTrue(summary, summary.contains(JAXBStartupReport.Phase.SET_CLASSES.getLabel()));
+        assertTrue(summary, summary.contains(Entity.class.getName()));
+        assertTrue(summary, !summary.contains(JAXBStartupReport.Phase.PREWARM.getLabel()));
+    }
+}
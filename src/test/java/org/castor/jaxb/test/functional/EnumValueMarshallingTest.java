@@ -0,0 +1,110 @@
+/*
+ * Copyright 2011 Jakub Narloch
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.castor.jaxb.test.functional;
+
+import org.castor.jaxb.test.functional.enumValue.ElementWithValues;
+import org.castor.jaxb.test.functional.enumValue.Shape;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the marshalling of the enum values, including {@link javax.xml.bind.annotation.XmlEnumValue}, and of the
+ * integral values.
+ *
+ * @author Jakub Narloch, jmnarloch AT gmail DOT org
+ * @version 1.0
+ */
+public class EnumValueMarshallingTest extends BaseFunctionalTest {
+
+    private Unmarshaller unmarshaller;
+
+    @Before
+    @Override
+    public void setUp() throws JAXBException {
+        javax.xml.bind.JAXBContext context = javax.xml.bind.JAXBContext.newInstance(
+                "org.castor.jaxb.test.functional.enumValue");
+        marshaller = context.createMarshaller();
+        unmarshaller = context.createUnmarshaller();
+    }
+
+    @Test
+    public void testXmlEnumValue() throws Exception {
+        String expectedXml = "<element shape=\"square\"><shape>circle</shape><count>42</count>"
+                + "<total>1234567890123</total></element>";
+
+        ElementWithValues element = new ElementWithValues();
+        element.setShapeAttribute(Shape.SQUARE);
+        element.setShape(Shape.CIRCLE);
+        element.setCount(42);
+        element.setTotal(1234567890123L);
+
+        String actualXml = marshal(element);
+
+        assertXmlEquals("Marshaller written invalid result.", expectedXml, actualXml);
+    }
+
+    @Test
+    public void testEnumName() throws Exception {
+        String expectedXml = "<element><shape>TRIANGLE</shape><count>-2048</count><total>0</total></element>";
+
+        ElementWithValues element = new ElementWithValues();
+        element.setShape(Shape.TRIANGLE);
+        element.setCount(-2048);
+
+        String actualXml = marshal(element);
+
+        assertXmlEquals("Marshaller written invalid result.", expectedXml, actualXml);
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        ElementWithValues element = new ElementWithValues();
+        element.setShapeAttribute(Shape.TRIANGLE);
+        element.setShape(Shape.SQUARE);
+        element.setCount(7);
+        element.setTotal(-1234567890123L);
+
+        ElementWithValues result = (ElementWithValues) unmarshaller.unmarshal(new StringReader(marshal(element)));
+
+        assertEquals("Invalid attribute value.", Shape.TRIANGLE, result.getShapeAttribute());
+        assertEquals("Invalid element value.", Shape.SQUARE, result.getShape());
+        assertEquals("Invalid int value.", 7, result.getCount());
+        assertEquals("Invalid long value.", -1234567890123L, result.getTotal());
+    }
+
+    @Test
+    public void testUnmarshalEnumName() throws Exception {
+        String xml = "<element shape=\"CIRCLE\"><shape>square</shape><count>1</count><total>2</total></element>";
+
+        ElementWithValues result = (ElementWithValues) unmarshaller.unmarshal(new StringReader(xml));
+
+        assertEquals("Invalid attribute value.", Shape.CIRCLE, result.getShapeAttribute());
+        assertEquals("Invalid element value.", Shape.SQUARE, result.getShape());
+    }
+
+    @Test(expected = JAXBException.class)
+    public void testUnmarshalUnknownEnumValue() throws Exception {
+        String xml = "<element><shape>hexagon</shape><count>1</count><total>2</total></element>";
+
+        unmarshaller.unmarshal(new StringReader(xml));
+    }
+}